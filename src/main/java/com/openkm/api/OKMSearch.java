@@ -98,6 +98,16 @@ public class OKMSearch implements SearchModule {
 		return rs;
 	}
 
+	@Override
+	public ResultSet findPaginated(String token, QueryParams params, String cursor, int limit) throws IOException,
+			ParseException, AccessDeniedException, RepositoryException, DatabaseException {
+		log.debug("findPaginated({}, {}, {}, {})", token, params, cursor, limit);
+		SearchModule sm = ModuleManager.getSearchModule();
+		ResultSet rs = sm.findPaginated(token, params, cursor, limit);
+		log.debug("findPaginated: {}", rs);
+		return rs;
+	}
+
 	@Override
 	public List<QueryResult> findByQuery(String token, String query) throws IOException, ParseException, AccessDeniedException,
 			RepositoryException, DatabaseException {
@@ -283,6 +293,26 @@ public class OKMSearch implements SearchModule {
 		return ret;
 	}
 
+	@Override
+	public Map<String, String> getExcerpts(String token, QueryParams params, List<String> uuids) throws IOException,
+			ParseException, AccessDeniedException, RepositoryException, DatabaseException {
+		log.debug("getExcerpts({}, {}, {})", token, params, uuids);
+		SearchModule sm = ModuleManager.getSearchModule();
+		Map<String, String> excerpts = sm.getExcerpts(token, params, uuids);
+		log.debug("getExcerpts: {}", excerpts.keySet());
+		return excerpts;
+	}
+
+	@Override
+	public Map<String, String> getSimpleQueryExcerpts(String token, String statement, List<String> uuids) throws ParseException,
+			AccessDeniedException, RepositoryException, DatabaseException {
+		log.debug("getSimpleQueryExcerpts({}, {}, {})", token, statement, uuids);
+		SearchModule sm = ModuleManager.getSearchModule();
+		Map<String, String> excerpts = sm.getSimpleQueryExcerpts(token, statement, uuids);
+		log.debug("getSimpleQueryExcerpts: {}", excerpts.keySet());
+		return excerpts;
+	}
+
 	@Override
 	public ResultSet findMoreLikeThis(String token, String uuid, int maxResults) throws AccessDeniedException, RepositoryException,
 			DatabaseException {
@@ -0,0 +1,169 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.bean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Datastore consistency scan results. Only the first problems found are kept as
+ * samples, but every problem is counted.
+ */
+public class DataStoreScanReport implements Serializable {
+	private static final long serialVersionUID = 1L;
+	public static final int MAX_SAMPLES = 1000;
+
+	private long scannedObjects;
+	private long scannedBlobs;
+	private long orphanObjects;
+	private long orphanBlobs;
+	private long missingObjects;
+	private long missingBlobs;
+	private long refsMismatches;
+	private long recent;
+	private long purged;
+	private long time;
+	private boolean resumed;
+	private List<String> samples = new ArrayList<>();
+
+	public synchronized long getScannedObjects() {
+		return scannedObjects;
+	}
+
+	public synchronized void addScannedObjects(long scannedObjects) {
+		this.scannedObjects += scannedObjects;
+	}
+
+	public synchronized long getScannedBlobs() {
+		return scannedBlobs;
+	}
+
+	public synchronized void addScannedBlobs(long scannedBlobs) {
+		this.scannedBlobs += scannedBlobs;
+	}
+
+	public synchronized long getOrphanObjects() {
+		return orphanObjects;
+	}
+
+	public synchronized void addOrphanObject(String key) {
+		orphanObjects++;
+		addSample("Orphan object: " + key);
+	}
+
+	public synchronized long getOrphanBlobs() {
+		return orphanBlobs;
+	}
+
+	public synchronized void addOrphanBlob(String key) {
+		orphanBlobs++;
+		addSample("Orphan blob: " + key);
+	}
+
+	public synchronized long getMissingObjects() {
+		return missingObjects;
+	}
+
+	public synchronized void addMissingObject(String uuid) {
+		missingObjects++;
+		addSample("Missing object for document version: " + uuid);
+	}
+
+	public synchronized long getMissingBlobs() {
+		return missingBlobs;
+	}
+
+	public synchronized void addMissingBlob(String hash) {
+		missingBlobs++;
+		addSample("Missing blob: " + hash);
+	}
+
+	public synchronized long getRefsMismatches() {
+		return refsMismatches;
+	}
+
+	public synchronized void addRefsMismatch(String hash) {
+		refsMismatches++;
+		addSample("Blob references not matching document versions: " + hash);
+	}
+
+	public synchronized long getRecent() {
+		return recent;
+	}
+
+	public synchronized void addRecent() {
+		recent++;
+	}
+
+	public synchronized long getPurged() {
+		return purged;
+	}
+
+	public synchronized void addPurged() {
+		purged++;
+	}
+
+	public synchronized long getTime() {
+		return time;
+	}
+
+	public synchronized void setTime(long time) {
+		this.time = time;
+	}
+
+	public synchronized boolean isResumed() {
+		return resumed;
+	}
+
+	public synchronized void setResumed(boolean resumed) {
+		this.resumed = resumed;
+	}
+
+	public synchronized List<String> getSamples() {
+		return new ArrayList<>(samples);
+	}
+
+	private void addSample(String sample) {
+		if (samples.size() < MAX_SAMPLES) {
+			samples.add(sample);
+		}
+	}
+
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("scannedObjects=").append(scannedObjects);
+		sb.append(", scannedBlobs=").append(scannedBlobs);
+		sb.append(", orphanObjects=").append(orphanObjects);
+		sb.append(", orphanBlobs=").append(orphanBlobs);
+		sb.append(", missingObjects=").append(missingObjects);
+		sb.append(", missingBlobs=").append(missingBlobs);
+		sb.append(", refsMismatches=").append(refsMismatches);
+		sb.append(", recent=").append(recent);
+		sb.append(", purged=").append(purged);
+		sb.append(", time=").append(time);
+		sb.append(", resumed=").append(resumed);
+		sb.append("}");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.bean;
+
+import java.io.Serializable;
+
+/**
+ * Number and size of datastore objects in each tier
+ */
+public class DataStoreTierInfo implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private long hotObjects;
+	private long hotSize;
+	private long coldObjects;
+	private long coldSize;
+
+	public long getHotObjects() {
+		return hotObjects;
+	}
+
+	public void setHotObjects(long hotObjects) {
+		this.hotObjects = hotObjects;
+	}
+
+	public long getHotSize() {
+		return hotSize;
+	}
+
+	public void setHotSize(long hotSize) {
+		this.hotSize = hotSize;
+	}
+
+	public long getColdObjects() {
+		return coldObjects;
+	}
+
+	public void setColdObjects(long coldObjects) {
+		this.coldObjects = coldObjects;
+	}
+
+	public long getColdSize() {
+		return coldSize;
+	}
+
+	public void setColdSize(long coldSize) {
+		this.coldSize = coldSize;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("hotObjects=").append(hotObjects);
+		sb.append(", hotSize=").append(hotSize);
+		sb.append(", coldObjects=").append(coldObjects);
+		sb.append(", coldSize=").append(coldSize);
+		sb.append("}");
+		return sb.toString();
+	}
+}
@@ -30,6 +30,7 @@ import java.util.List;
 public class ResultSet implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private long total;
+	private String cursor;
 	private List<QueryResult> results = new ArrayList<>();
 
 	public long getTotal() {
@@ -48,11 +49,25 @@ public class ResultSet implements Serializable {
 		this.results = results;
 	}
 
+	/**
+	 * Opaque token to continue the search after the last result of this page, or null if no more
+	 * results are known.
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("{");
 		sb.append("total=");
 		sb.append(total);
+		sb.append(", cursor=");
+		sb.append(cursor);
 		sb.append(", results=");
 		sb.append(results);
 		sb.append("}");
@@ -28,6 +28,7 @@ import java.util.List;
 public class NodeResultSet implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private long total;
+	private String cursor;
 	private List<NodeQueryResult> results = new ArrayList<>();
 
 	public long getTotal() {
@@ -46,11 +47,25 @@ public class NodeResultSet implements Serializable {
 		this.results = results;
 	}
 
+	/**
+	 * Opaque token to continue the search after the last result of this page, or null if no more
+	 * results are known.
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("{");
 		sb.append("total=");
 		sb.append(total);
+		sb.append(", cursor=");
+		sb.append(cursor);
 		sb.append(", results=");
 		sb.append(results);
 		sb.append("}");
@@ -24,6 +24,7 @@ package com.openkm.core;
 import com.openkm.bean.ConfigStoredFile;
 import com.openkm.dao.ConfigDAO;
 import com.openkm.dao.SearchDAO;
+import com.openkm.datastore.ContentCodec;
 import com.openkm.module.db.stuff.DbSimpleAccessManager;
 import com.openkm.module.db.stuff.FsDataStore;
 import com.openkm.principal.DatabasePrincipalAdapter;
@@ -107,8 +108,22 @@ public class Config {
 	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_POOL_THREADS = "managed.text.extraction.pool.threads";
 	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_POOL_TIMEOUT = "managed.text.extraction.pool.timeout";
 	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_CONCURRENT = "managed.text.extraction.concurrent";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_LEASE = "managed.text.extraction.lease";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS = "managed.text.extraction.max.attempts";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_RETRY_DELAY = "managed.text.extraction.retry.delay";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_TIMEOUT = "managed.text.extraction.timeout";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_SIZE = "managed.text.extraction.max.size";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_CHARS = "managed.text.extraction.max.chars";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_LIMITS = "managed.text.extraction.limits";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_FORKED_MIME_TYPES = "managed.text.extraction.forked.mime.types";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_FORKED_MEMORY = "managed.text.extraction.forked.memory";
+	public static final String PROPERTY_MANAGED_TEXT_EXTRACTION_CACHE = "managed.text.extraction.cache";
 	public static final String PROPERTY_MOBILE_THEME = "mobile.theme";
 	public static final String PROPERTY_REPOSITORY_CONTENT_CHECKSUM = "repository.content.checksum";
+	public static final String PROPERTY_REPOSITORY_CONTENT_CHECKSUM_ALGORITHM = "repository.content.checksum.algorithm";
+	public static final String PROPERTY_REPOSITORY_DATASTORE_COLD_AGE = "repository.datastore.cold.age";
+	public static final String PROPERTY_REPOSITORY_DATASTORE_COMPRESSION = "repository.datastore.compression";
+	public static final String PROPERTY_REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES = "repository.datastore.compression.mime.types";
 	public static final String PROPERTY_REPOSITORY_PURGATORY_HOME = "repository.purgatory.home";
 	public static final String PROPERTY_REPOSITORY_STATS_OPTIMIZATION = "repository.stats.optimization";
 	public static final String PROPERTY_AMAZON_ACCESS_KEY = "amazon.access.key";
@@ -117,12 +132,19 @@ public class Config {
 	public static final String PROPERTY_USER_PASSWORD_RESET = "user.password.reset";
 	public static final String PROPERTY_KEEP_SESSION_ALIVE_INTERVAL = "keep.session.alive.interval";
 	public static final String PROPERTY_ACTIVITY_LOG_ACTIONS = "activity.log.actions";
+	public static final String PROPERTY_ACTIVITY_LOG_ASYNC = "activity.log.async";
+	public static final String PROPERTY_ACTIVITY_LOG_QUEUE_SIZE = "activity.log.queue.size";
+	public static final String PROPERTY_ACTIVITY_LOG_BATCH_SIZE = "activity.log.batch.size";
+	public static final String PROPERTY_ACTIVITY_LOG_FLUSH_INTERVAL = "activity.log.flush.interval";
+	public static final String PROPERTY_ACTIVITY_LOG_RETENTION = "activity.log.retention";
 	public static final String PROPERTY_STORE_NODE_PATH = "store.node.path";
 	public static final String PROPERTY_TOMCAT_CONNECTOR_URI_ENCODING = "tomcat.connector.uri.encoding";
 
 	// Security properties
 	public static final String PROPERTY_SECURITY_ACCESS_MANAGER = "security.access.manager";
 	public static final String PROPERTY_SECURITY_SEARCH_EVALUATION = "security.search.evaluation";
+	public static final String PROPERTY_SECURITY_SEARCH_FILTER_CACHE = "security.search.filter.cache";
+	public static final String PROPERTY_SECURITY_SEARCH_FILTER_CACHE_SIZE = "security.search.filter.cache.size";
 	public static final String PROPERTY_SECURITY_EXTENDED_MASK = "security.extended.mask";
 	public static final String PROPERTY_SECURITY_MODE_MULTIPLE = "security.mode.multiple";
 	public static final String PROPERTY_SECURITY_LIVE_CHANGE_NODE_LIMIT = "security.live.change.node.limit";
@@ -133,6 +155,9 @@ public class Config {
 	public static final String PROPERTY_REPOSITORY_HOME = "repository.home";
 	public static final String PROPERTY_REPOSITORY_DATASTORE_BACKEND = "repository.datastore.backend";
 	public static final String PROPERTY_REPOSITORY_DATASTORE_HOME = "repository.datastore.home";
+	public static final String PROPERTY_REPOSITORY_DATASTORE_S3_ENDPOINT = "repository.datastore.s3.endpoint";
+	public static final String PROPERTY_REPOSITORY_DATASTORE_S3_BUCKET = "repository.datastore.s3.bucket";
+	public static final String PROPERTY_REPOSITORY_DATASTORE_COLD_HOME = "repository.datastore.cold.home";
 	public static final String PROPERTY_REPOSITORY_CACHE_HOME = "repository.cache.home";
 	public static final String PROPERTY_VERSION_NUMERATION_ADAPTER = "version.numeration.adapter";
 	public static final String PROPERTY_VERSION_NUMERATION_FORMAT = "version.numeration.format";
@@ -141,6 +166,8 @@ public class Config {
 	public static final String PROPERTY_MAX_SEARCH_RESULTS = "max.search.results";
 	public static final String PROPERTY_MAX_SEARCH_CLAUSES = "max.search.clauses";
 	public static final String PROPERTY_MIN_SEARCH_CHARACTERS = "min.search.characters";
+	public static final String PROPERTY_SEARCH_LAZY_EXCERPTS = "search.lazy.excerpts";
+	public static final String PROPERTY_SEARCH_RESULT_CACHE = "search.result.cache";
 	public static final String PROPERTY_SEND_MAIL_FROM_USER = "send.mail.from.user";
 	public static final String PROPERTY_DEFAULT_USER_ROLE = "default.user.role";
 	public static final String PROPERTY_DEFAULT_ADMIN_ROLE = "default.admin.role";
@@ -228,6 +255,9 @@ public class Config {
 	public static final String PROPERTY_SYSTEM_KEYWORD_LOWERCASE = "system.keyword.lowercase";
 	public static final String PROPERTY_SYSTEM_EXECUTION_TIMEOUT = "system.execution.timeout";
 	public static final String PROPERTY_SYSTEM_PROFILING = "system.profiling";
+	public static final String PROPERTY_SYSTEM_PROFILING_SAMPLE_RATE = "system.profiling.sample.rate";
+	public static final String PROPERTY_SYSTEM_METRICS = "system.metrics";
+	public static final String PROPERTY_SYSTEM_METRICS_ALLOWED_HOSTS = "system.metrics.allowed.hosts";
 
 	public static final String PROPERTY_UPDATE_INFO = "update.info";
 	public static final String PROPERTY_APPLICATION_URL = "application.url";
@@ -275,6 +305,8 @@ public class Config {
 	public static final String PROPERTY_HIBERNATE_INDEXER_THREADS_SUBSEQUENT_FETCHING = "hibernate.indexer.threads.subsequent.fetching";
 	public static final String PROPERTY_HIBERNATE_INDEXER_THREADS_LOAD_OBJECTS = "hibernate.indexer.threads.load.objects";
 	public static final String PROPERTY_HIBERNATE_INDEXER_THREADS_INDEX_WRITER = "hibernate.indexer.threads.index.writer";
+	public static final String PROPERTY_HIBERNATE_INDEXER_PARALLEL = "hibernate.indexer.parallel";
+	public static final String PROPERTY_HIBERNATE_INDEXER_CHECKPOINT_INTERVAL = "hibernate.indexer.checkpoint.interval";
 
 	// Hibernate Search indexes
 	public static String PROPERTY_HIBERNATE_SEARCH_INDEX_HOME = "hibernate.search.index.home";
@@ -282,6 +314,10 @@ public class Config {
 	public static String PROPERTY_HIBERNATE_SEARCH_WORKER_EXECUTION = "hibernate.search.worker.execution";
 	public static String PROPERTY_HIBERNATE_SEARCH_WORKER_THREAD_POOL_SIZE = "hibernate.search.worker.thread.pool.size";
 	public static String PROPERTY_HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX = "hibernate.search.worker.buffer.queue.max";
+	public static String PROPERTY_HIBERNATE_SEARCH_WORKER_BACKEND = "hibernate.search.worker.backend";
+	public static String PROPERTY_HIBERNATE_SEARCH_WORKER_COMMIT_SIZE = "hibernate.search.worker.commit.size";
+	public static String PROPERTY_HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL = "hibernate.search.worker.refresh.interval";
+	public static String PROPERTY_HIBERNATE_JDBC_BATCH_SIZE = "hibernate.jdbc.batch.size";
 
 	// Logo icons & login texts
 	public static final String PROPERTY_TEXT_BANNER = "text.banner";
@@ -358,7 +394,40 @@ public class Config {
 	public static int MANAGED_TEXT_EXTRACTION_POOL_THREADS = 5;
 	public static int MANAGED_TEXT_EXTRACTION_POOL_TIMEOUT = 1; // 1 minute
 	public static boolean MANAGED_TEXT_EXTRACTION_CONCURRENT = false;
+	public static int MANAGED_TEXT_EXTRACTION_LEASE = 30; // 30 minutes
+	public static int MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS = 3;
+	public static int MANAGED_TEXT_EXTRACTION_RETRY_DELAY = 5; // 5 minutes, doubled on each attempt
+	public static int MANAGED_TEXT_EXTRACTION_TIMEOUT = 120; // 2 minutes
+	public static int MANAGED_TEXT_EXTRACTION_MAX_SIZE = 100; // 100 MB
+	public static int MANAGED_TEXT_EXTRACTION_MAX_CHARS = 10 * 1024 * 1024;
+	public static List<String> MANAGED_TEXT_EXTRACTION_LIMITS = new ArrayList<>();
+	private static final String DEFAULT_MANAGED_TEXT_EXTRACTION_LIMITS =
+			"application/pdf 300 200\n" +
+					"application/vnd\\.ms-excel 120 50\n" +
+					"application/vnd\\.openxmlformats-officedocument\\.spreadsheetml\\.sheet 120 50\n" +
+					"image/.* 300 50";
+	public static List<String> MANAGED_TEXT_EXTRACTION_FORKED_MIME_TYPES = new ArrayList<>();
+	public static int MANAGED_TEXT_EXTRACTION_FORKED_MEMORY = 512; // 512 MB
+	public static boolean MANAGED_TEXT_EXTRACTION_CACHE = true;
 	public static boolean REPOSITORY_CONTENT_CHECKSUM = true;
+	public static String REPOSITORY_CONTENT_CHECKSUM_ALGORITHM = "MD5";
+	public static int REPOSITORY_DATASTORE_COLD_AGE = 90; // 90 days
+	public static String REPOSITORY_DATASTORE_COMPRESSION = ContentCodec.COMPRESSION_NONE;
+	public static List<String> REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES = new ArrayList<>();
+	private static final String DEFAULT_REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES =
+			"text/.*\n" +
+					"application/xml\n" +
+					"application/.*\\+xml\n" +
+					"application/json\n" +
+					"application/javascript\n" +
+					"application/x-sh.*\n" +
+					"application/rtf\n" +
+					"application/msword\n" +
+					"application/vnd.ms-excel\n" +
+					"application/vnd.ms-powerpoint\n" +
+					"application/postscript\n" +
+					"image/tiff\n" +
+					"image/bmp";
 	public static String REPOSITORY_PURGATORY_HOME = "";
 	public static boolean REPOSITORY_STATS_OPTIMIZATION = true;
 	public static String AMAZON_ACCESS_KEY = "";
@@ -378,12 +447,19 @@ public class Config {
 					"CHECKOUT_DOCUMENT\n" +
 					"CHECKIN_DOCUMENT\n" +
 					"GET_DOCUMENT_CONTENT.*";
+	public static boolean ACTIVITY_LOG_ASYNC = true;
+	public static int ACTIVITY_LOG_QUEUE_SIZE = 10000;
+	public static int ACTIVITY_LOG_BATCH_SIZE = 100;
+	public static long ACTIVITY_LOG_FLUSH_INTERVAL = 1000; // 1 second
+	public static int ACTIVITY_LOG_RETENTION = 0; // Months, 0 keeps all activity in database
 	public static boolean STORE_NODE_PATH = true;
 	public static String TOMCAT_CONNECTOR_URI_ENCODING = "ISO-8859-1";
 
 	// Security properties
 	public static String SECURITY_ACCESS_MANAGER = "";
 	public static String SECURITY_SEARCH_EVALUATION = "";
+	public static boolean SECURITY_SEARCH_FILTER_CACHE = true;
+	public static int SECURITY_SEARCH_FILTER_CACHE_SIZE = 500;
 	public static int SECURITY_EXTENDED_MASK = 0;
 	public static boolean SECURITY_MODE_MULTIPLE = false;
 	public static int SECURITY_LIVE_CHANGE_NODE_LIMIT = 100;
@@ -393,6 +469,9 @@ public class Config {
 	public static String REPOSITORY_DIRNAME = "repository";
 	public static String REPOSITORY_DATASTORE_BACKEND;
 	public static String REPOSITORY_DATASTORE_HOME;
+	public static String REPOSITORY_DATASTORE_S3_ENDPOINT;
+	public static String REPOSITORY_DATASTORE_S3_BUCKET;
+	public static String REPOSITORY_DATASTORE_COLD_HOME;
 	public static String VERSION_NUMERATION_ADAPTER = MajorMinorVersionNumerationAdapter.class.getCanonicalName();
 	public static String VERSION_NUMERATION_FORMAT = "%d";
 	public static boolean VERSION_APPEND_DOWNLOAD = false;
@@ -400,6 +479,8 @@ public class Config {
 	public static int MAX_SEARCH_RESULTS;
 	public static int MAX_SEARCH_CLAUSES;
 	public static int MIN_SEARCH_CHARACTERS;
+	public static boolean SEARCH_LAZY_EXCERPTS = false;
+	public static boolean SEARCH_RESULT_CACHE = true;
 	public static boolean SEND_MAIL_FROM_USER;
 	public static String SYSTEM_USER = "system";
 	public static String ADMIN_USER = "okmAdmin";
@@ -493,6 +574,10 @@ public class Config {
 	public static boolean SYSTEM_KEYWORD_LOWERCASE = false;
 	public static int SYSTEM_EXECUTION_TIMEOUT = 5; // 5 min
 	public static boolean SYSTEM_PROFILING = false;
+	public static int SYSTEM_PROFILING_SAMPLE_RATE = 100; // One in 100 calls, 0 disables trace capture
+	public static boolean SYSTEM_METRICS = false;
+	public static List<String> SYSTEM_METRICS_ALLOWED_HOSTS = new ArrayList<>();
+	private static final String DEFAULT_SYSTEM_METRICS_ALLOWED_HOSTS = ""; // Behind a proxy every request comes from its address
 
 	public static boolean UPDATE_INFO = true;
 	public static String APPLICATION_URL;
@@ -547,6 +632,8 @@ public class Config {
 	public static int HIBERNATE_INDEXER_THREADS_SUBSEQUENT_FETCHING = 8;
 	public static int HIBERNATE_INDEXER_THREADS_LOAD_OBJECTS = 4;
 	public static int HIBERNATE_INDEXER_THREADS_INDEX_WRITER = 3;
+	public static boolean HIBERNATE_INDEXER_PARALLEL = false;
+	public static int HIBERNATE_INDEXER_CHECKPOINT_INTERVAL = 5000;
 
 	// Hibernate Search indexes
 	public static String HIBERNATE_SEARCH_INDEX_HOME;
@@ -555,6 +642,10 @@ public class Config {
 	public static String HIBERNATE_SEARCH_WORKER_EXECUTION = "sync";
 	public static String HIBERNATE_SEARCH_WORKER_THREAD_POOL_SIZE = "1";
 	public static String HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX = "256";
+	public static String HIBERNATE_SEARCH_WORKER_BACKEND = "lucene";
+	public static String HIBERNATE_SEARCH_WORKER_COMMIT_SIZE = "1000";
+	public static String HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL = "1000";
+	public static String HIBERNATE_JDBC_BATCH_SIZE = "50";
 
 	// Logo icons and login texts
 	public static String TEXT_BANNER;
@@ -684,6 +775,14 @@ public class Config {
 			values.put(PROPERTY_HIBERNATE_SEARCH_WORKER_THREAD_POOL_SIZE, HIBERNATE_SEARCH_WORKER_THREAD_POOL_SIZE);
 			HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX = config.getProperty(PROPERTY_HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX, HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX);
 			values.put(PROPERTY_HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX, HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX);
+			HIBERNATE_SEARCH_WORKER_BACKEND = config.getProperty(PROPERTY_HIBERNATE_SEARCH_WORKER_BACKEND, HIBERNATE_SEARCH_WORKER_BACKEND);
+			values.put(PROPERTY_HIBERNATE_SEARCH_WORKER_BACKEND, HIBERNATE_SEARCH_WORKER_BACKEND);
+			HIBERNATE_SEARCH_WORKER_COMMIT_SIZE = config.getProperty(PROPERTY_HIBERNATE_SEARCH_WORKER_COMMIT_SIZE, HIBERNATE_SEARCH_WORKER_COMMIT_SIZE);
+			values.put(PROPERTY_HIBERNATE_SEARCH_WORKER_COMMIT_SIZE, HIBERNATE_SEARCH_WORKER_COMMIT_SIZE);
+			HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL = config.getProperty(PROPERTY_HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL, HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL);
+			values.put(PROPERTY_HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL, HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL);
+			HIBERNATE_JDBC_BATCH_SIZE = config.getProperty(PROPERTY_HIBERNATE_JDBC_BATCH_SIZE, HIBERNATE_JDBC_BATCH_SIZE);
+			values.put(PROPERTY_HIBERNATE_JDBC_BATCH_SIZE, HIBERNATE_JDBC_BATCH_SIZE);
 
 			// Cloud
 			CLOUD_MODE = "on".equalsIgnoreCase(config.getProperty(PROPERTY_CLOUD_MODE, "off"));
@@ -720,6 +819,9 @@ public class Config {
 			REPOSITORY_CACHE_HOME = config.getProperty(PROPERTY_REPOSITORY_CACHE_HOME, Config.REPOSITORY_HOME + File.separator + REPOSITORY_CACHE_DIRNAME);
 			REPOSITORY_DATASTORE_BACKEND = config.getProperty(PROPERTY_REPOSITORY_DATASTORE_BACKEND, FsDataStore.DATASTORE_BACKEND_FS);
 			REPOSITORY_DATASTORE_HOME = config.getProperty(PROPERTY_REPOSITORY_DATASTORE_HOME, Config.REPOSITORY_HOME + File.separator + FsDataStore.DATASTORE_DIRNAME);
+			REPOSITORY_DATASTORE_S3_ENDPOINT = config.getProperty(PROPERTY_REPOSITORY_DATASTORE_S3_ENDPOINT, "");
+			REPOSITORY_DATASTORE_S3_BUCKET = config.getProperty(PROPERTY_REPOSITORY_DATASTORE_S3_BUCKET, "");
+			REPOSITORY_DATASTORE_COLD_HOME = config.getProperty(PROPERTY_REPOSITORY_DATASTORE_COLD_HOME, "");
 			HIBERNATE_SEARCH_INDEX_HOME = config.getProperty(PROPERTY_HIBERNATE_SEARCH_INDEX_HOME, Config.REPOSITORY_HOME + File.separator + HIBERNATE_SEARCH_INDEX_DIRNAME);
 
 			values.put(PROPERTY_REPOSITORY_CACHE_HOME, REPOSITORY_CACHE_HOME);
@@ -732,6 +834,9 @@ public class Config {
 			values.put(PROPERTY_HIBERNATE_SEARCH_INDEX_HOME, HIBERNATE_SEARCH_INDEX_HOME);
 			values.put(PROPERTY_REPOSITORY_DATASTORE_BACKEND, REPOSITORY_DATASTORE_BACKEND);
 			values.put(PROPERTY_REPOSITORY_DATASTORE_HOME, REPOSITORY_DATASTORE_HOME);
+			values.put(PROPERTY_REPOSITORY_DATASTORE_S3_ENDPOINT, REPOSITORY_DATASTORE_S3_ENDPOINT);
+			values.put(PROPERTY_REPOSITORY_DATASTORE_S3_BUCKET, REPOSITORY_DATASTORE_S3_BUCKET);
+			values.put(PROPERTY_REPOSITORY_DATASTORE_COLD_HOME, REPOSITORY_DATASTORE_COLD_HOME);
 			values.put(PROPERTY_REPOSITORY_HOME, REPOSITORY_HOME);
 
 			JBPM_CONFIG = INSTANCE_HOME + File.separator + "jbpm.xml";
@@ -776,9 +881,37 @@ public class Config {
 			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_POOL_TIMEOUT, Integer.toString(MANAGED_TEXT_EXTRACTION_POOL_TIMEOUT));
 			MANAGED_TEXT_EXTRACTION_CONCURRENT = ConfigDAO.getBoolean(PROPERTY_MANAGED_TEXT_EXTRACTION_CONCURRENT, MANAGED_TEXT_EXTRACTION_CONCURRENT);
 			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_CONCURRENT, Boolean.toString(MANAGED_TEXT_EXTRACTION_CONCURRENT));
+			MANAGED_TEXT_EXTRACTION_LEASE = ConfigDAO.getInteger(PROPERTY_MANAGED_TEXT_EXTRACTION_LEASE, MANAGED_TEXT_EXTRACTION_LEASE);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_LEASE, Integer.toString(MANAGED_TEXT_EXTRACTION_LEASE));
+			MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS = ConfigDAO.getInteger(PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS, MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS, Integer.toString(MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS));
+			MANAGED_TEXT_EXTRACTION_RETRY_DELAY = ConfigDAO.getInteger(PROPERTY_MANAGED_TEXT_EXTRACTION_RETRY_DELAY, MANAGED_TEXT_EXTRACTION_RETRY_DELAY);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_RETRY_DELAY, Integer.toString(MANAGED_TEXT_EXTRACTION_RETRY_DELAY));
+			MANAGED_TEXT_EXTRACTION_TIMEOUT = ConfigDAO.getInteger(PROPERTY_MANAGED_TEXT_EXTRACTION_TIMEOUT, MANAGED_TEXT_EXTRACTION_TIMEOUT);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_TIMEOUT, Integer.toString(MANAGED_TEXT_EXTRACTION_TIMEOUT));
+			MANAGED_TEXT_EXTRACTION_MAX_SIZE = ConfigDAO.getInteger(PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_SIZE, MANAGED_TEXT_EXTRACTION_MAX_SIZE);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_SIZE, Integer.toString(MANAGED_TEXT_EXTRACTION_MAX_SIZE));
+			MANAGED_TEXT_EXTRACTION_MAX_CHARS = ConfigDAO.getInteger(PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_CHARS, MANAGED_TEXT_EXTRACTION_MAX_CHARS);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_MAX_CHARS, Integer.toString(MANAGED_TEXT_EXTRACTION_MAX_CHARS));
+			MANAGED_TEXT_EXTRACTION_LIMITS = ConfigDAO.getList(PROPERTY_MANAGED_TEXT_EXTRACTION_LIMITS, DEFAULT_MANAGED_TEXT_EXTRACTION_LIMITS);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_LIMITS, String.valueOf(MANAGED_TEXT_EXTRACTION_LIMITS));
+			MANAGED_TEXT_EXTRACTION_FORKED_MIME_TYPES = ConfigDAO.getList(PROPERTY_MANAGED_TEXT_EXTRACTION_FORKED_MIME_TYPES, "");
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_FORKED_MIME_TYPES, String.valueOf(MANAGED_TEXT_EXTRACTION_FORKED_MIME_TYPES));
+			MANAGED_TEXT_EXTRACTION_FORKED_MEMORY = ConfigDAO.getInteger(PROPERTY_MANAGED_TEXT_EXTRACTION_FORKED_MEMORY, MANAGED_TEXT_EXTRACTION_FORKED_MEMORY);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_FORKED_MEMORY, Integer.toString(MANAGED_TEXT_EXTRACTION_FORKED_MEMORY));
+			MANAGED_TEXT_EXTRACTION_CACHE = ConfigDAO.getBoolean(PROPERTY_MANAGED_TEXT_EXTRACTION_CACHE, MANAGED_TEXT_EXTRACTION_CACHE);
+			values.put(PROPERTY_MANAGED_TEXT_EXTRACTION_CACHE, Boolean.toString(MANAGED_TEXT_EXTRACTION_CACHE));
 
 			REPOSITORY_CONTENT_CHECKSUM = ConfigDAO.getBoolean(PROPERTY_REPOSITORY_CONTENT_CHECKSUM, REPOSITORY_CONTENT_CHECKSUM);
 			values.put(PROPERTY_REPOSITORY_CONTENT_CHECKSUM, Boolean.toString(REPOSITORY_CONTENT_CHECKSUM));
+			REPOSITORY_CONTENT_CHECKSUM_ALGORITHM = ConfigDAO.getSelectedOption(PROPERTY_REPOSITORY_CONTENT_CHECKSUM_ALGORITHM, "*MD5|SHA-256");
+			values.put(PROPERTY_REPOSITORY_CONTENT_CHECKSUM_ALGORITHM, REPOSITORY_CONTENT_CHECKSUM_ALGORITHM);
+			REPOSITORY_DATASTORE_COLD_AGE = ConfigDAO.getInteger(PROPERTY_REPOSITORY_DATASTORE_COLD_AGE, REPOSITORY_DATASTORE_COLD_AGE);
+			values.put(PROPERTY_REPOSITORY_DATASTORE_COLD_AGE, Integer.toString(REPOSITORY_DATASTORE_COLD_AGE));
+			REPOSITORY_DATASTORE_COMPRESSION = ConfigDAO.getSelectedOption(PROPERTY_REPOSITORY_DATASTORE_COMPRESSION, "*none|deflate");
+			values.put(PROPERTY_REPOSITORY_DATASTORE_COMPRESSION, REPOSITORY_DATASTORE_COMPRESSION);
+			REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES = ConfigDAO.getList(PROPERTY_REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES, DEFAULT_REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES);
+			values.put(PROPERTY_REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES, String.valueOf(REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES));
 			REPOSITORY_PURGATORY_HOME = ConfigDAO.getString(PROPERTY_REPOSITORY_PURGATORY_HOME, REPOSITORY_PURGATORY_HOME);
 			values.put(PROPERTY_REPOSITORY_PURGATORY_HOME, REPOSITORY_PURGATORY_HOME);
 			REPOSITORY_STATS_OPTIMIZATION = ConfigDAO.getBoolean(PROPERTY_REPOSITORY_STATS_OPTIMIZATION, REPOSITORY_STATS_OPTIMIZATION);
@@ -795,6 +928,16 @@ public class Config {
 			values.put(PROPERTY_KEEP_SESSION_ALIVE_INTERVAL, Integer.toString(KEEP_SESSION_ALIVE_INTERVAL));
 			ACTIVITY_LOG_ACTIONS = ConfigDAO.getList(PROPERTY_ACTIVITY_LOG_ACTIONS, DEFAULT_ACTIVITY_LOG_ACTIONS);
 			values.put(PROPERTY_ACTIVITY_LOG_ACTIONS, String.valueOf(ACTIVITY_LOG_ACTIONS));
+			ACTIVITY_LOG_ASYNC = ConfigDAO.getBoolean(PROPERTY_ACTIVITY_LOG_ASYNC, ACTIVITY_LOG_ASYNC);
+			values.put(PROPERTY_ACTIVITY_LOG_ASYNC, Boolean.toString(ACTIVITY_LOG_ASYNC));
+			ACTIVITY_LOG_QUEUE_SIZE = ConfigDAO.getInteger(PROPERTY_ACTIVITY_LOG_QUEUE_SIZE, ACTIVITY_LOG_QUEUE_SIZE);
+			values.put(PROPERTY_ACTIVITY_LOG_QUEUE_SIZE, Integer.toString(ACTIVITY_LOG_QUEUE_SIZE));
+			ACTIVITY_LOG_BATCH_SIZE = ConfigDAO.getInteger(PROPERTY_ACTIVITY_LOG_BATCH_SIZE, ACTIVITY_LOG_BATCH_SIZE);
+			values.put(PROPERTY_ACTIVITY_LOG_BATCH_SIZE, Integer.toString(ACTIVITY_LOG_BATCH_SIZE));
+			ACTIVITY_LOG_FLUSH_INTERVAL = ConfigDAO.getLong(PROPERTY_ACTIVITY_LOG_FLUSH_INTERVAL, ACTIVITY_LOG_FLUSH_INTERVAL);
+			values.put(PROPERTY_ACTIVITY_LOG_FLUSH_INTERVAL, Long.toString(ACTIVITY_LOG_FLUSH_INTERVAL));
+			ACTIVITY_LOG_RETENTION = ConfigDAO.getInteger(PROPERTY_ACTIVITY_LOG_RETENTION, ACTIVITY_LOG_RETENTION);
+			values.put(PROPERTY_ACTIVITY_LOG_RETENTION, Integer.toString(ACTIVITY_LOG_RETENTION));
 			STORE_NODE_PATH = ConfigDAO.getBoolean(PROPERTY_STORE_NODE_PATH, "on".equalsIgnoreCase(cfg.getProperty(PROPERTY_STORE_NODE_PATH, "off")));
 			values.put(PROPERTY_STORE_NODE_PATH, Boolean.toString(STORE_NODE_PATH));
 			TOMCAT_CONNECTOR_URI_ENCODING = ConfigDAO.getString(PROPERTY_TOMCAT_CONNECTOR_URI_ENCODING, TOMCAT_CONNECTOR_URI_ENCODING);
@@ -805,6 +948,10 @@ public class Config {
 			values.put(PROPERTY_SECURITY_ACCESS_MANAGER, SECURITY_ACCESS_MANAGER);
 			SECURITY_SEARCH_EVALUATION = ConfigDAO.getString(PROPERTY_SECURITY_SEARCH_EVALUATION, SearchDAO.SEARCH_LUCENE);
 			values.put(PROPERTY_SECURITY_SEARCH_EVALUATION, SECURITY_SEARCH_EVALUATION);
+			SECURITY_SEARCH_FILTER_CACHE = ConfigDAO.getBoolean(PROPERTY_SECURITY_SEARCH_FILTER_CACHE, SECURITY_SEARCH_FILTER_CACHE);
+			values.put(PROPERTY_SECURITY_SEARCH_FILTER_CACHE, Boolean.toString(SECURITY_SEARCH_FILTER_CACHE));
+			SECURITY_SEARCH_FILTER_CACHE_SIZE = ConfigDAO.getInteger(PROPERTY_SECURITY_SEARCH_FILTER_CACHE_SIZE, SECURITY_SEARCH_FILTER_CACHE_SIZE);
+			values.put(PROPERTY_SECURITY_SEARCH_FILTER_CACHE_SIZE, Integer.toString(SECURITY_SEARCH_FILTER_CACHE_SIZE));
 			SECURITY_MODE_MULTIPLE = ConfigDAO.getBoolean(PROPERTY_SECURITY_MODE_MULTIPLE, SECURITY_MODE_MULTIPLE);
 			values.put(PROPERTY_SECURITY_MODE_MULTIPLE, Boolean.toString(SECURITY_MODE_MULTIPLE));
 			SECURITY_LIVE_CHANGE_NODE_LIMIT = ConfigDAO.getInteger(PROPERTY_SECURITY_LIVE_CHANGE_NODE_LIMIT, SECURITY_LIVE_CHANGE_NODE_LIMIT);
@@ -825,6 +972,10 @@ public class Config {
 			values.put(PROPERTY_MAX_SEARCH_CLAUSES, Integer.toString(MAX_SEARCH_CLAUSES));
 			MIN_SEARCH_CHARACTERS = ConfigDAO.getInteger(PROPERTY_MIN_SEARCH_CHARACTERS, 3);
 			values.put(PROPERTY_MIN_SEARCH_CHARACTERS, Integer.toString(MIN_SEARCH_CHARACTERS));
+			SEARCH_LAZY_EXCERPTS = ConfigDAO.getBoolean(PROPERTY_SEARCH_LAZY_EXCERPTS, SEARCH_LAZY_EXCERPTS);
+			values.put(PROPERTY_SEARCH_LAZY_EXCERPTS, Boolean.toString(SEARCH_LAZY_EXCERPTS));
+			SEARCH_RESULT_CACHE = ConfigDAO.getBoolean(PROPERTY_SEARCH_RESULT_CACHE, SEARCH_RESULT_CACHE);
+			values.put(PROPERTY_SEARCH_RESULT_CACHE, Boolean.toString(SEARCH_RESULT_CACHE));
 			SEND_MAIL_FROM_USER = ConfigDAO.getBoolean(PROPERTY_SEND_MAIL_FROM_USER, "on".equalsIgnoreCase(cfg.getProperty(PROPERTY_SEND_MAIL_FROM_USER, "on")));
 			values.put(PROPERTY_SEND_MAIL_FROM_USER, Boolean.toString(SEND_MAIL_FROM_USER));
 			DEFAULT_USER_ROLE = ConfigDAO.getString(PROPERTY_DEFAULT_USER_ROLE, cfg.getProperty(PROPERTY_DEFAULT_USER_ROLE, DEFAULT_USER_ROLE));
@@ -994,6 +1145,12 @@ public class Config {
 			values.put(PROPERTY_SYSTEM_EXECUTION_TIMEOUT, Integer.toString(SYSTEM_EXECUTION_TIMEOUT));
 			SYSTEM_PROFILING = ConfigDAO.getBoolean(PROPERTY_SYSTEM_PROFILING, false);
 			values.put(PROPERTY_SYSTEM_PROFILING, Boolean.toString(SYSTEM_PROFILING));
+			SYSTEM_PROFILING_SAMPLE_RATE = ConfigDAO.getInteger(PROPERTY_SYSTEM_PROFILING_SAMPLE_RATE, SYSTEM_PROFILING_SAMPLE_RATE);
+			values.put(PROPERTY_SYSTEM_PROFILING_SAMPLE_RATE, Integer.toString(SYSTEM_PROFILING_SAMPLE_RATE));
+			SYSTEM_METRICS = ConfigDAO.getBoolean(PROPERTY_SYSTEM_METRICS, SYSTEM_METRICS);
+			values.put(PROPERTY_SYSTEM_METRICS, Boolean.toString(SYSTEM_METRICS));
+			SYSTEM_METRICS_ALLOWED_HOSTS = ConfigDAO.getList(PROPERTY_SYSTEM_METRICS_ALLOWED_HOSTS, DEFAULT_SYSTEM_METRICS_ALLOWED_HOSTS);
+			values.put(PROPERTY_SYSTEM_METRICS_ALLOWED_HOSTS, String.valueOf(SYSTEM_METRICS_ALLOWED_HOSTS));
 
 			// Guess default application URL
 			String defaultApplicationUrl = cfg.getProperty(PROPERTY_APPLICATION_URL);
@@ -1072,6 +1229,10 @@ public class Config {
 			values.put(PROPERTY_HIBERNATE_INDEXER_THREADS_LOAD_OBJECTS, Integer.toString(HIBERNATE_INDEXER_THREADS_LOAD_OBJECTS));
 			HIBERNATE_INDEXER_THREADS_INDEX_WRITER = ConfigDAO.getInteger(PROPERTY_HIBERNATE_INDEXER_THREADS_INDEX_WRITER, 3);
 			values.put(PROPERTY_HIBERNATE_INDEXER_THREADS_INDEX_WRITER, Integer.toString(HIBERNATE_INDEXER_THREADS_INDEX_WRITER));
+			HIBERNATE_INDEXER_PARALLEL = ConfigDAO.getBoolean(PROPERTY_HIBERNATE_INDEXER_PARALLEL, false);
+			values.put(PROPERTY_HIBERNATE_INDEXER_PARALLEL, Boolean.toString(HIBERNATE_INDEXER_PARALLEL));
+			HIBERNATE_INDEXER_CHECKPOINT_INTERVAL = ConfigDAO.getInteger(PROPERTY_HIBERNATE_INDEXER_CHECKPOINT_INTERVAL, 5000);
+			values.put(PROPERTY_HIBERNATE_INDEXER_CHECKPOINT_INTERVAL, Integer.toString(HIBERNATE_INDEXER_CHECKPOINT_INTERVAL));
 
 			// Logo icons & login texts
 			TEXT_BANNER = ConfigDAO.getString(PROPERTY_TEXT_BANNER, "&nbsp;");
@@ -23,6 +23,7 @@ package com.openkm.core;
 
 import com.openkm.dao.MimeTypeDAO;
 import com.openkm.dao.bean.MimeType;
+import com.openkm.datastore.ContentCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -115,4 +116,19 @@ public class MimeTypeConfig {
 			log.error(e.getMessage(), e);
 		}
 	}
+
+	/**
+	 * Get the compression to be used for documents of this MIME type in the datastore
+	 */
+	public static String getCompression(String mimeType) {
+		if (mimeType != null && !ContentCodec.COMPRESSION_NONE.equals(Config.REPOSITORY_DATASTORE_COMPRESSION)) {
+			for (String regex : Config.REPOSITORY_DATASTORE_COMPRESSION_MIME_TYPES) {
+				if (mimeType.matches(regex)) {
+					return Config.REPOSITORY_DATASTORE_COMPRESSION;
+				}
+			}
+		}
+
+		return ContentCodec.COMPRESSION_NONE;
+	}
 }
@@ -24,6 +24,8 @@ package com.openkm.dao;
 import com.openkm.core.DatabaseException;
 import com.openkm.dao.bean.Activity;
 import com.openkm.dao.bean.ActivityFilter;
+import com.openkm.dao.bean.DashboardActivity;
+import com.openkm.util.ActivityArchiver;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
 import org.hibernate.Session;
@@ -31,7 +33,11 @@ import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class ActivityDAO {
@@ -60,12 +66,60 @@ public class ActivityDAO {
 		}
 	}
 
+	/**
+	 * Create activities in a single transaction, with batched inserts
+	 */
+	public static void create(List<Activity> activities, List<DashboardActivity> dashActivities) throws DatabaseException {
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getBatchSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			for (Activity activity : activities) {
+				session.save(activity);
+			}
+
+			for (DashboardActivity dashAct : dashActivities) {
+				session.save(dashAct);
+			}
+
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Find by filter, including archived activity
+	 */
+	public static List<Activity> findByFilter(ActivityFilter filter) throws DatabaseException, IOException {
+		log.debug("findByFilter({})", filter);
+		Calendar archivedUntil = ActivityArchiver.getArchivedUntil();
+		List<Activity> ret = new ArrayList<>();
+
+		// Database only keeps activity not archived, which can be older than the last archived month
+		if (archivedUntil != null && filter.getBegin().before(archivedUntil)) {
+			ret.addAll(ActivityArchiver.findByFilter(filter));
+			ret.addAll(findByFilterInDatabase(filter));
+			sortByDate(ret);
+		} else {
+			ret.addAll(findByFilterInDatabase(filter));
+		}
+
+		log.debug("findByFilter: {}", ret);
+		return ret;
+	}
+
 	/**
 	 * Find by filter
 	 */
 	@SuppressWarnings("unchecked")
-	public static List<Activity> findByFilter(ActivityFilter filter) throws DatabaseException {
-		log.debug("findByFilter({})", filter);
+	private static List<Activity> findByFilterInDatabase(ActivityFilter filter) throws DatabaseException {
 		String qs = "from Activity a where a.date between :begin and :end ";
 
 		if (filter.getUser() != null && !filter.getUser().equals(""))
@@ -92,9 +146,7 @@ public class ActivityDAO {
 			if (filter.getItem() != null && !filter.getItem().equals(""))
 				q.setString("item", filter.getItem());
 
-			List<Activity> ret = q.list();
-			log.debug("findByFilter: {}", ret);
-			return ret;
+			return q.list();
 		} catch (HibernateException e) {
 			throw new DatabaseException(e.getMessage(), e);
 		} finally {
@@ -103,11 +155,59 @@ public class ActivityDAO {
 	}
 
 	/**
-	 * Find by filter
+	 * Find by item, including archived activity
+	 */
+	public static List<Activity> findByFilterByItem(ActivityFilter filter) throws DatabaseException, IOException {
+		log.debug("findByFilterByItem({})", filter);
+		Calendar archivedUntil = ActivityArchiver.getArchivedUntil();
+		List<Activity> ret = new ArrayList<>();
+
+		if (archivedUntil != null) {
+			// Only read archived months since the item was created
+			ActivityFilter archived = new ActivityFilter();
+			archived.setItem(filter.getItem());
+			archived.setAction(filter.getAction());
+			archived.setBegin(getItemCreationMonth(filter.getItem()));
+
+			if (archived.getBegin() == null || archived.getBegin().before(archivedUntil)) {
+				ret.addAll(ActivityArchiver.findByFilter(archived));
+			}
+
+			ret.addAll(findByFilterByItemInDatabase(filter));
+			sortByDate(ret);
+		} else {
+			ret.addAll(findByFilterByItemInDatabase(filter));
+		}
+
+		log.debug("findByFilterByItem: {}", ret);
+		return ret;
+	}
+
+	/**
+	 * Beginning of the month the item was created, or null if it does not exist anymore
+	 */
+	private static Calendar getItemCreationMonth(String uuid) throws DatabaseException {
+		String qs = "select nb.created from NodeBase nb where nb.uuid=:uuid";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("uuid", uuid);
+			Calendar created = (Calendar) q.setMaxResults(1).uniqueResult();
+			return created == null ? null : ActivityArchiver.getMonth(created);
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Find by item
 	 */
 	@SuppressWarnings("unchecked")
-	public static List<Activity> findByFilterByItem(ActivityFilter filter) throws DatabaseException {
-		log.debug("findByFilter({})", filter);
+	private static List<Activity> findByFilterByItemInDatabase(ActivityFilter filter) throws DatabaseException {
 		String qs = "from Activity a where a.item=:item ";
 		if (filter.getAction() != null && !filter.getAction().equals(""))
 			qs += "and a.action=:action ";
@@ -120,9 +220,7 @@ public class ActivityDAO {
 			if (filter.getAction() != null && !filter.getAction().equals(""))
 				q.setString("action", filter.getAction());
 
-			List<Activity> ret = q.list();
-			log.debug("findByFilterByItem: {}", ret);
-			return ret;
+			return q.list();
 		} catch (HibernateException e) {
 			throw new DatabaseException(e.getMessage(), e);
 		} finally {
@@ -130,6 +228,18 @@ public class ActivityDAO {
 		}
 	}
 
+	/**
+	 * Sort activities from archive and database
+	 */
+	private static void sortByDate(List<Activity> activities) {
+		Collections.sort(activities, new Comparator<Activity>() {
+			@Override
+			public int compare(Activity o1, Activity o2) {
+				return o1.getDate().compareTo(o2.getDate());
+			}
+		});
+	}
+
 	/**
 	 * Get activity date
 	 */
@@ -0,0 +1,246 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.bean.DashboardStats;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Calendar;
+import java.util.Iterator;
+
+/**
+ * Daily dashboard counters, maintained as activity is logged so top node widgets
+ * do not need to scan the dashboard activity.
+ */
+public class DashboardStatsDAO {
+	private static Logger log = LoggerFactory.getLogger(DashboardStatsDAO.class);
+
+	private DashboardStatsDAO() {
+	}
+
+	/**
+	 * Count an action performed on a node.
+	 */
+	public static void increment(String action, String item, Calendar date) throws DatabaseException {
+		increment(action, item, date, 1);
+	}
+
+	/**
+	 * Count an action performed several times on a node.
+	 *
+	 * @param date Date of the last one.
+	 */
+	public static void increment(String action, String item, Calendar date, long times) throws DatabaseException {
+		try {
+			if (!update(action, item, date, times)) {
+				create(action, item, date, times);
+			}
+		} catch (ConstraintViolationException e) {
+			// Counter created concurrently
+			update(action, item, date, times);
+		}
+	}
+
+	/**
+	 * Increment an existing counter.
+	 */
+	private static boolean update(String action, String item, Calendar date, long times) throws DatabaseException {
+		String qs = "update DashboardStats ds set ds.count=ds.count+:times, ds.last=:last " +
+				"where ds.day=:day and ds.action=:action and ds.item=:item";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			Query q = session.createQuery(qs);
+			q.setLong("times", times);
+			q.setCalendar("last", date);
+			q.setCalendar("day", getDay(date));
+			q.setString("action", action);
+			q.setString("item", item);
+			int rows = q.executeUpdate();
+			HibernateUtil.commit(tx);
+			return rows > 0;
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Create a new counter.
+	 */
+	private static void create(String action, String item, Calendar date, long times) throws DatabaseException {
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			DashboardStats ds = new DashboardStats();
+			ds.setDay(getDay(date));
+			ds.setAction(action);
+			ds.setItem(item);
+			ds.setCount(times);
+			ds.setLast(date);
+			session.save(ds);
+			HibernateUtil.commit(tx);
+		} catch (ConstraintViolationException e) {
+			HibernateUtil.rollback(tx);
+			throw e;
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Check if there are no counters.
+	 */
+	public static boolean isEmpty() throws DatabaseException {
+		String qs = "select count(ds) from DashboardStats ds";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			return (Long) q.uniqueResult() == 0;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Build counters from the dashboard activity of these actions on nodes under a path.
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized void rebuild(String[] actions, String path) throws DatabaseException {
+		log.debug("rebuild({}, {})", actions, path);
+		String qs = "select da.action, da.item, da.date from DashboardActivity da " +
+				"where da.action in (:actions) and da.path like :path order by da.action, da.item, da.date";
+		Session session = null;
+		Transaction tx = null;
+		int count = 0;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			session.createQuery("delete DashboardStats").executeUpdate();
+			Query q = session.createQuery(qs);
+			q.setParameterList("actions", actions);
+			q.setString("path", path + "%");
+			DashboardStats ds = null;
+
+			for (Iterator<Object[]> it = q.iterate(); it.hasNext(); ) {
+				Object[] obj = it.next();
+				String action = (String) obj[0];
+				String item = (String) obj[1];
+				Calendar date = (Calendar) obj[2];
+				Calendar day = getDay(date);
+
+				if (ds == null || !ds.getAction().equals(action) || !ds.getItem().equals(item) || !ds.getDay().equals(day)) {
+					if (ds != null) {
+						session.save(ds);
+						count++;
+					}
+
+					ds = new DashboardStats();
+					ds.setDay(day);
+					ds.setAction(action);
+					ds.setItem(item);
+				}
+
+				ds.setCount(ds.getCount() + 1);
+				ds.setLast(date);
+			}
+
+			if (ds != null) {
+				session.save(ds);
+				count++;
+			}
+
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+
+		log.info("Created {} dashboard counters from activity", count);
+		log.debug("rebuild: void");
+	}
+
+	/**
+	 * Purge one month old counters
+	 */
+	public static synchronized void purge() throws DatabaseException {
+		log.debug("purge()");
+		String qs = "delete DashboardStats ds where ds.day < :day";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			Query q = session.createQuery(qs);
+			Calendar cal = Calendar.getInstance();
+			cal.add(Calendar.MONTH, -1);
+			q.setCalendar("day", getDay(cal));
+			q.executeUpdate();
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+
+		log.debug("purge: void");
+	}
+
+	/**
+	 * Truncate a date to the beginning of its day.
+	 */
+	public static Calendar getDay(Calendar date) {
+		Calendar day = (Calendar) date.clone();
+		day.set(Calendar.HOUR_OF_DAY, 0);
+		day.set(Calendar.MINUTE, 0);
+		day.set(Calendar.SECOND, 0);
+		day.set(Calendar.MILLISECOND, 0);
+		return day;
+	}
+}
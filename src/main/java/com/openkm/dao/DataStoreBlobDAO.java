@@ -0,0 +1,162 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.bean.DataStoreBlob;
+import org.hibernate.HibernateException;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+
+/**
+ * DataStoreBlobDAO
+ *
+ * Keep track of content addressed blob references.
+ */
+public class DataStoreBlobDAO extends GenericDAO<DataStoreBlob, String> {
+	private static Logger log = LoggerFactory.getLogger(DataStoreBlobDAO.class);
+	private static DataStoreBlobDAO single = new DataStoreBlobDAO();
+	private static final String INSERT_BLOB = "insert into OKM_DATASTORE_BLOB (DSB_HASH, DSB_SIZE, DSB_REFS, DSB_CREATED, "
+			+ "DSB_COMPRESSION) values (?, ?, 0, ?, ?)";
+
+	private DataStoreBlobDAO() {
+	}
+
+	public static DataStoreBlobDAO getInstance() {
+		return single;
+	}
+
+	/**
+	 * Lock a blob row until the end of the session transaction, so its references and
+	 * content can't be changed by other transactions, even in other cluster nodes.
+	 *
+	 * @return The blob, or null if it does not exist.
+	 */
+	public DataStoreBlob lock(Session session, String hash) throws HibernateException {
+		return (DataStoreBlob) session.get(DataStoreBlob.class, hash, LockOptions.UPGRADE);
+	}
+
+	/**
+	 * Lock a blob row until the end of the session transaction, creating it without references
+	 * if it does not exist. When the same blob is being created by another transaction, this
+	 * one waits until it ends and then locks the existing row.
+	 */
+	public DataStoreBlob lockOrCreate(Session session, String hash, long size, String compression) throws HibernateException {
+		DataStoreBlob dsBlob = lock(session, hash);
+
+		if (dsBlob == null) {
+			insertIfAbsent(session, hash, size, compression);
+			dsBlob = lock(session, hash);
+		}
+
+		return dsBlob;
+	}
+
+	/**
+	 * Increment blob references in the session transaction, creating the blob with the given
+	 * size and compression if it does not exist. The blob row is locked until the transaction ends.
+	 *
+	 * @return The blob, whose compression is the one of its stored content.
+	 */
+	public DataStoreBlob incRefs(Session session, String hash, long size, String compression) throws HibernateException {
+		log.debug("incRefs({}, {}, {}, {})", session, hash, size, compression);
+		DataStoreBlob dsBlob = lockOrCreate(session, hash, size, compression);
+		dsBlob.setRefs(dsBlob.getRefs() + 1);
+		session.update(dsBlob);
+		log.debug("incRefs: {}", dsBlob);
+		return dsBlob;
+	}
+
+	/**
+	 * Insert a blob row without references, unless it has been inserted by another transaction.
+	 * The insert is done under a savepoint, so a duplicate key failure does not abort the session
+	 * transaction.
+	 */
+	private void insertIfAbsent(Session session, final String hash, final long size, final String compression)
+			throws HibernateException {
+		session.doWork(new Work() {
+			@Override
+			public void execute(Connection con) throws SQLException {
+				Savepoint sp = con.setSavepoint();
+				PreparedStatement ps = null;
+
+				try {
+					ps = con.prepareStatement(INSERT_BLOB);
+					ps.setString(1, hash);
+					ps.setLong(2, size);
+					ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+					ps.setString(4, compression);
+					ps.executeUpdate();
+				} catch (SQLException e) {
+					con.rollback(sp);
+
+					// Integrity constraint violation: created meanwhile by another transaction
+					if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+						throw e;
+					}
+
+					log.debug("insertIfAbsent: {} already exists", hash);
+				} finally {
+					if (ps != null) {
+						ps.close();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Decrement blob references in the session transaction, removing the blob when nobody
+	 * references it. The blob row is locked until the transaction ends.
+	 *
+	 * @return true if the blob has been removed.
+	 */
+	public boolean decRefs(Session session, String hash) throws HibernateException {
+		log.debug("decRefs({}, {})", session, hash);
+		DataStoreBlob dsBlob = lock(session, hash);
+		boolean removed = false;
+
+		if (dsBlob != null) {
+			dsBlob.setRefs(dsBlob.getRefs() - 1);
+
+			if (dsBlob.getRefs() <= 0) {
+				session.delete(dsBlob);
+				session.flush();
+				removed = true;
+			} else {
+				session.update(dsBlob);
+			}
+		}
+
+		log.debug("decRefs: {}", removed);
+		return removed;
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.bean.DataStoreObject;
+import org.apache.commons.io.IOUtils;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * DataStoreObjectDAO
+ *
+ * Content is streamed from and to the database, so there is no need to keep it in memory.
+ */
+public class DataStoreObjectDAO extends GenericDAO<DataStoreObject, String> {
+	private static Logger log = LoggerFactory.getLogger(DataStoreObjectDAO.class);
+	private static DataStoreObjectDAO single = new DataStoreObjectDAO();
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private DataStoreObjectDAO() {
+	}
+
+	public static DataStoreObjectDAO getInstance() {
+		return single;
+	}
+
+	/**
+	 * Create or replace an object.
+	 *
+	 * @param size Exact content length.
+	 */
+	public void put(String name, InputStream is, long size) throws DatabaseException {
+		log.debug("put({}, {}, {})", name, is, size);
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			DataStoreObject dsObject = (DataStoreObject) session.get(DataStoreObject.class, name);
+
+			if (dsObject == null) {
+				dsObject = new DataStoreObject();
+				dsObject.setName(name);
+			}
+
+			dsObject.setSize(size);
+			dsObject.setContent(Hibernate.getLobCreator(session).createBlob(is, size));
+			dsObject.setCreated(Calendar.getInstance());
+			session.saveOrUpdate(dsObject);
+			HibernateUtil.commit(tx);
+			log.debug("put: void");
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Write object content, or a part of it, to a stream.
+	 *
+	 * @param offset First byte to be written.
+	 * @param length Number of bytes to be written, or -1 to reach the end of content.
+	 * @return false if the object does not exist.
+	 */
+	public boolean getContent(String name, long offset, long length, OutputStream os) throws DatabaseException,
+			IOException {
+		log.debug("getContent({}, {}, {}, {})", name, offset, length, os);
+		Session session = null;
+		Transaction tx = null;
+		InputStream is = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			DataStoreObject dsObject = (DataStoreObject) session.get(DataStoreObject.class, name);
+			boolean found = dsObject != null;
+
+			if (found) {
+				Blob blob = dsObject.getContent();
+				long available = Math.max(0, dsObject.getSize() - offset);
+				long toRead = length < 0 ? available : Math.min(length, available);
+
+				if (toRead > 0) {
+					// JDBC blob positions start at 1
+					is = offset == 0 && toRead == dsObject.getSize() ? blob.getBinaryStream()
+							: blob.getBinaryStream(offset + 1, toRead);
+					IOUtils.copyLarge(is, os, new byte[BUFFER_SIZE]);
+				}
+			}
+
+			HibernateUtil.commit(tx);
+			log.debug("getContent: {}", found);
+			return found;
+		} catch (HibernateException | SQLException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(is);
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Check if an object exists
+	 */
+	public boolean exists(String name) throws DatabaseException {
+		log.debug("exists({})", name);
+		String qs = "select count(*) from DataStoreObject dso where dso.name=:name";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("name", name);
+			boolean ret = ((Long) q.uniqueResult()) > 0;
+			log.debug("exists: {}", ret);
+			return ret;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Get the time an object was stored, or 0 if it does not exist
+	 */
+	public long lastModified(String name) throws DatabaseException {
+		log.debug("lastModified({})", name);
+		String qs = "select dso.created from DataStoreObject dso where dso.name=:name";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("name", name);
+			Calendar created = (Calendar) q.uniqueResult();
+			long ret = created == null ? 0 : created.getTimeInMillis();
+			log.debug("lastModified: {}", ret);
+			return ret;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Remove an object, if exists
+	 */
+	public void delete(String name) throws DatabaseException {
+		log.debug("delete({})", name);
+		String qs = "delete from DataStoreObject dso where dso.name=:name";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			Query q = session.createQuery(qs);
+			q.setString("name", name);
+			q.executeUpdate();
+			HibernateUtil.commit(tx);
+			log.debug("delete: void");
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Find object names starting with a prefix, ordered and placed after a given one so
+	 * they can be retrieved by pages.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> findNames(String prefix, String last, int max) throws DatabaseException {
+		log.debug("findNames({}, {}, {})", prefix, last, max);
+		String qs = "select dso.name from DataStoreObject dso where dso.name like :prefix and dso.name>:last "
+				+ "order by dso.name";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("prefix", prefix + "%");
+			q.setString("last", last);
+			q.setMaxResults(max);
+			List<String> ret = q.list();
+			log.debug("findNames: {}", ret.size());
+			return ret;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.bean.ExtractedText;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Calendar;
+
+/**
+ * ExtractedTextDAO
+ *
+ * Persistent cache of extracted text.
+ */
+public class ExtractedTextDAO extends GenericDAO<ExtractedText, String> {
+	private static Logger log = LoggerFactory.getLogger(ExtractedTextDAO.class);
+	private static ExtractedTextDAO single = new ExtractedTextDAO();
+
+	private ExtractedTextDAO() {
+	}
+
+	public static ExtractedTextDAO getInstance() {
+		return single;
+	}
+
+	/**
+	 * Find cached text.
+	 *
+	 * @param hash Cache key, built from content and text extractor version.
+	 * @return The extracted text, or null if not cached.
+	 */
+	public String findText(String hash) throws DatabaseException {
+		log.debug("findText({})", hash);
+		String qs = "select etx.text from ExtractedText etx where etx.hash=:hash";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("hash", hash);
+			String text = (String) q.setMaxResults(1).uniqueResult();
+			log.debug("findText: {}", text == null ? null : text.length() + " chars");
+			return text;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Cache extracted text.
+	 */
+	public void save(String hash, String extractor, String text) throws DatabaseException {
+		log.debug("save({}, {}, {})", hash, extractor, text == null ? null : text.length() + " chars");
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			ExtractedText etx = new ExtractedText();
+			etx.setHash(hash);
+			etx.setExtractor(extractor);
+			etx.setText(text);
+			etx.setCreated(Calendar.getInstance());
+			session.saveOrUpdate(etx);
+
+			HibernateUtil.commit(tx);
+			log.debug("save: void");
+		} catch (ConstraintViolationException e) {
+			// Cached by another node at the same time
+			HibernateUtil.rollback(tx);
+			log.debug("Text already cached: {}", hash);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Remove cached text of other text extractor versions.
+	 *
+	 * @param prefix  Text extractor versions prefix.
+	 * @param current Text extractor version to keep.
+	 */
+	public int purge(String prefix, String current) throws DatabaseException {
+		log.debug("purge({}, {})", prefix, current);
+		String qs = "delete from ExtractedText etx where etx.extractor like :prefix and etx.extractor!=:current";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			Query q = session.createQuery(qs);
+			q.setString("prefix", prefix + "%");
+			q.setString("current", current);
+			int rowCount = q.executeUpdate();
+
+			HibernateUtil.commit(tx);
+			log.debug("purge: {}", rowCount);
+			return rowCount;
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Remove every cached text.
+	 */
+	public int deleteAll() throws DatabaseException {
+		log.debug("deleteAll()");
+		String qs = "delete from ExtractedText";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			int rowCount = session.createQuery(qs).executeUpdate();
+			HibernateUtil.commit(tx);
+			log.debug("deleteAll: {}", rowCount);
+			return rowCount;
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+}
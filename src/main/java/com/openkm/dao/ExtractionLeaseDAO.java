@@ -0,0 +1,278 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.bean.ExtractionLease;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * ExtractionLeaseDAO
+ *
+ * Claim documents pending of text extraction, so several workers or cluster nodes
+ * can share the extraction queue without extracting the same document twice.
+ */
+public class ExtractionLeaseDAO extends GenericDAO<ExtractionLease, String> {
+	private static Logger log = LoggerFactory.getLogger(ExtractionLeaseDAO.class);
+	private static final int MAX_ERROR_LENGTH = 512;
+	private static ExtractionLeaseDAO single = new ExtractionLeaseDAO();
+
+	private ExtractionLeaseDAO() {
+	}
+
+	public static ExtractionLeaseDAO getInstance() {
+		return single;
+	}
+
+	/**
+	 * Claim documents pending of text extraction which are not leased or whose lease
+	 * has expired. Every claim increments the lease attempts. The whole batch is claimed
+	 * in a single transaction: expired leases with a conditional update, so only one
+	 * owner can get each of them, and new leases with inserts which fail if another owner
+	 * inserted them first.
+	 *
+	 * @param owner      Lease owner, which identifies the cluster node.
+	 * @param max        Maximum number of documents to claim.
+	 * @param expiration Lease expiration.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ExtractionLease> claim(String owner, int max, Calendar expiration) throws DatabaseException {
+		log.debug("claim({}, {}, {})", owner, max, expiration == null ? null : expiration.getTime());
+		String qs = "select nd.uuid from NodeDocument nd where nd.textExtracted=:extracted and not exists "
+				+ "(select el.document from ExtractionLease el where el.document=nd.uuid and el.expiration>:now)";
+		String qsLeased = "select el.document from ExtractionLease el where el.document in (:documents)";
+		String qsUpdate = "update ExtractionLease el set el.owner=:owner, el.claim=:claim, el.expiration=:expiration, "
+				+ "el.attempts=el.attempts+1 where el.document in (:documents) and el.expiration<=:now";
+		String qsClaimed = "from ExtractionLease el where el.claim=:claim";
+		String claim = UUID.randomUUID().toString();
+		List<ExtractionLease> ret = new ArrayList<>();
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Calendar now = Calendar.getInstance();
+			Query q = session.createQuery(qs);
+			q.setBoolean("extracted", false);
+			q.setCalendar("now", now);
+			q.setMaxResults(max);
+			List<String> candidates = q.list();
+
+			if (!candidates.isEmpty()) {
+				tx = session.beginTransaction();
+				Query qLeased = session.createQuery(qsLeased);
+				qLeased.setParameterList("documents", candidates);
+				Set<String> leased = new HashSet<>(qLeased.list());
+
+				if (!leased.isEmpty()) {
+					Query qUpdate = session.createQuery(qsUpdate);
+					qUpdate.setString("owner", owner);
+					qUpdate.setString("claim", claim);
+					qUpdate.setCalendar("expiration", expiration);
+					qUpdate.setParameterList("documents", leased);
+					qUpdate.setCalendar("now", now);
+					qUpdate.executeUpdate();
+				}
+
+				for (String docUuid : candidates) {
+					if (!leased.contains(docUuid)) {
+						ExtractionLease lease = new ExtractionLease();
+						lease.setDocument(docUuid);
+						lease.setOwner(owner);
+						lease.setClaim(claim);
+						lease.setExpiration(expiration);
+						lease.setAttempts(1);
+						session.save(lease);
+					}
+				}
+
+				session.flush();
+				Query qClaimed = session.createQuery(qsClaimed);
+				qClaimed.setString("claim", claim);
+				ret = qClaimed.list();
+				HibernateUtil.commit(tx);
+			}
+
+			log.debug("claim: {}", ret);
+			return ret;
+		} catch (ConstraintViolationException e) {
+			// Some documents claimed by another owner at the same time, so try again later
+			HibernateUtil.rollback(tx);
+			log.debug("Documents already claimed: {}", e.getMessage());
+			return new ArrayList<>();
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Release the lease of a processed document.
+	 */
+	public void release(String docUuid) throws DatabaseException {
+		log.debug("release({})", docUuid);
+		String qs = "delete from ExtractionLease el where el.document=:document";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			Query q = session.createQuery(qs);
+			q.setString("document", docUuid);
+			q.executeUpdate();
+
+			HibernateUtil.commit(tx);
+			log.debug("release: void");
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Keep the lease of a failed document until the next retry.
+	 */
+	public void retry(String docUuid, String error, Calendar next) throws DatabaseException {
+		log.debug("retry({}, {}, {})", docUuid, error, next == null ? null : next.getTime());
+		String qs = "update ExtractionLease el set el.owner=null, el.expiration=:expiration, el.error=:error "
+				+ "where el.document=:document";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			Query q = session.createQuery(qs);
+			q.setCalendar("expiration", next);
+			q.setString("error", error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+			q.setString("document", docUuid);
+			q.executeUpdate();
+
+			HibernateUtil.commit(tx);
+			log.debug("retry: void");
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Find failed documents waiting for a retry.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ExtractionLease> findWaiting(int max) throws DatabaseException {
+		log.debug("findWaiting({})", max);
+		String qs = "from ExtractionLease el where el.owner is null order by el.expiration";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setMaxResults(max);
+			List<ExtractionLease> ret = q.list();
+			log.debug("findWaiting: {}", ret);
+			return ret;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Remove leases of documents no longer pending of extraction, because they have
+	 * been deleted or extracted by other means.
+	 */
+	public int purge() throws DatabaseException {
+		log.debug("purge()");
+		String qs = "delete from ExtractionLease el where not exists (select nd.uuid from NodeDocument nd "
+				+ "where nd.uuid=el.document and nd.textExtracted=:extracted)";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			Query q = session.createQuery(qs);
+			q.setBoolean("extracted", false);
+			int rowCount = q.executeUpdate();
+
+			HibernateUtil.commit(tx);
+			log.debug("purge: {}", rowCount);
+			return rowCount;
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Remove the leases of an owner, along with failed documents waiting for a retry and
+	 * expired leases, so the whole queue can be processed again. Leases held by other owners
+	 * are kept, because their documents are being extracted right now.
+	 */
+	public int reset(String owner) throws DatabaseException {
+		log.debug("reset({})", owner);
+		String qs = "delete from ExtractionLease el where el.owner=:owner or el.owner is null or el.expiration<=:now";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			Query q = session.createQuery(qs);
+			q.setString("owner", owner);
+			q.setCalendar("now", Calendar.getInstance());
+			int rowCount = q.executeUpdate();
+
+			HibernateUtil.commit(tx);
+			log.debug("reset: {}", rowCount);
+			return rowCount;
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+}
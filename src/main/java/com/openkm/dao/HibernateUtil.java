@@ -28,6 +28,8 @@ import com.openkm.dao.bean.cache.UserItems;
 import com.openkm.dao.bean.cache.UserNodeKeywords;
 import com.openkm.extension.dao.bean.WikiPage;
 import com.openkm.extension.dao.bean.ZohoToken;
+import com.openkm.module.db.stuff.BatchBackendQueueProcessorFactory;
+import com.openkm.module.db.stuff.IndexErrorHandler;
 import com.openkm.util.ConfigUtils;
 import com.openkm.util.DatabaseDialectAdapter;
 import com.openkm.util.EnvironmentDetector;
@@ -65,9 +67,11 @@ import java.util.List;
 public class HibernateUtil {
 	private static Logger log = LoggerFactory.getLogger(HibernateUtil.class);
 	private static SessionFactory sessionFactory;
+	private static SessionFactory batchSessionFactory;
 	public static String HBM2DDL_CREATE = "create";
 	public static String HBM2DDL_UPDATE = "update";
 	public static String HBM2DDL_NONE = "none";
+	public static final String BATCH_BACKEND = "batch";
 
 	/**
 	 * Disable constructor to guaranty a single instance
@@ -100,6 +104,7 @@ public class HibernateUtil {
 		cfg.addAnnotatedClass(com.openkm.dao.bean.Config.class);
 		cfg.addAnnotatedClass(Profiling.class);
 		cfg.addAnnotatedClass(DashboardActivity.class);
+		cfg.addAnnotatedClass(DashboardStats.class);
 		cfg.addAnnotatedClass(Css.class);
 		cfg.addAnnotatedClass(Omr.class);
 		cfg.addAnnotatedClass(PendingTask.class);
@@ -117,6 +122,11 @@ public class HibernateUtil {
 		cfg.addAnnotatedClass(NodeBase.class);
 		cfg.addAnnotatedClass(NodeDocument.class);
 		cfg.addAnnotatedClass(NodeDocumentVersion.class);
+		cfg.addAnnotatedClass(DataStoreBlob.class);
+		cfg.addAnnotatedClass(DataStoreObject.class);
+		cfg.addAnnotatedClass(ExtractionLease.class);
+		cfg.addAnnotatedClass(ExtractedText.class);
+		cfg.addAnnotatedClass(NodeTree.class);
 		cfg.addAnnotatedClass(NodeFolder.class);
 		cfg.addAnnotatedClass(NodeMail.class);
 		cfg.addAnnotatedClass(NodeNote.class);
@@ -150,10 +160,21 @@ public class HibernateUtil {
 				cfg.setProperty("hibernate.search.default.exclusive_index_use", Config.HIBERNATE_SEARCH_INDEX_EXCLUSIVE);
 				cfg.setProperty("hibernate.search.default.optimizer.operation_limit.max", "500");
 				cfg.setProperty("hibernate.search.default.optimizer.transaction_limit.max", "75");
-				cfg.setProperty("hibernate.search.worker.execution", Config.HIBERNATE_SEARCH_WORKER_EXECUTION);
 				cfg.setProperty("hibernate.search.worker.thread_pool.size", Config.HIBERNATE_SEARCH_WORKER_THREAD_POOL_SIZE);
 				cfg.setProperty("hibernate.search.worker.buffer_queue.max", Config.HIBERNATE_SEARCH_WORKER_BUFFER_QUEUE_MAX);
 
+				if (BATCH_BACKEND.equals(Config.HIBERNATE_SEARCH_WORKER_BACKEND)) {
+					// The batch backend only queues the changes, so it is already asynchronous
+					cfg.setProperty("hibernate.search.worker.backend", BatchBackendQueueProcessorFactory.class.getName());
+					cfg.setProperty("hibernate.search.worker.execution", "sync");
+					cfg.setProperty("hibernate.search.error_handler", IndexErrorHandler.class.getName());
+					cfg.setProperty(BatchBackendQueueProcessorFactory.COMMIT_SIZE, Config.HIBERNATE_SEARCH_WORKER_COMMIT_SIZE);
+					cfg.setProperty(BatchBackendQueueProcessorFactory.REFRESH_INTERVAL, Config.HIBERNATE_SEARCH_WORKER_REFRESH_INTERVAL);
+				} else {
+					cfg.setProperty("hibernate.search.worker.backend", Config.HIBERNATE_SEARCH_WORKER_BACKEND);
+					cfg.setProperty("hibernate.search.worker.execution", Config.HIBERNATE_SEARCH_WORKER_EXECUTION);
+				}
+
 				// http://relation.to/Bloggers/PostgreSQLAndBLOBs
 				// cfg.setProperty("hibernate.jdbc.use_streams_for_binary", "false");
 
@@ -166,6 +187,8 @@ public class HibernateUtil {
 				log.info("Hibernate 'hibernate.search.default.directory_provider' = {}",
 						cfg.getProperty("hibernate.search.default.directory_provider"));
 				log.info("Hibernate 'hibernate.search.default.indexBase' = {}", cfg.getProperty("hibernate.search.default.indexBase"));
+				log.info("Hibernate 'hibernate.search.worker.backend' = {}", cfg.getProperty("hibernate.search.worker.backend"));
+				log.info("Hibernate 'hibernate.search.worker.execution' = {}", cfg.getProperty("hibernate.search.worker.execution"));
 
 				if (HBM2DDL_CREATE.equals(hbm2ddl)) {
 					// In case of database schema creation, also clean filesystem data.
@@ -185,6 +208,9 @@ public class HibernateUtil {
 					IOUtils.closeQuietly(is);
 				}
 
+				// Apply schema changes not handled by hbm2ddl
+				SchemaUpgrade.upgrade(sessionFactory);
+
 				if (HBM2DDL_CREATE.equals(hbm2ddl) || HBM2DDL_UPDATE.equals(hbm2ddl)) {
 					// Create or update translations
 					for (String res : ConfigUtils.getResources("i18n")) {
@@ -268,10 +294,46 @@ public class HibernateUtil {
 		return sessionFactory;
 	}
 
+	/**
+	 * Get a factory which batches inserts, used to write the activity log. JDBC batching is a
+	 * factory wide setting which delays statement errors until flush, so it is kept apart from
+	 * the main factory and only maps the activity tables.
+	 */
+	public static synchronized SessionFactory getBatchSessionFactory() {
+		if (batchSessionFactory == null) {
+			// Schema is created or updated by the main factory
+			getSessionFactory();
+
+			Configuration cfg = new Configuration();
+			cfg.addAnnotatedClass(Activity.class);
+			cfg.addAnnotatedClass(DashboardActivity.class);
+			cfg.setProperty("hibernate.dialect", Config.HIBERNATE_DIALECT);
+			cfg.setProperty("hibernate.connection.datasource", Config.HIBERNATE_DATASOURCE);
+			cfg.setProperty("hibernate.hbm2ddl.auto", HBM2DDL_NONE);
+			cfg.setProperty("hibernate.show_sql", Config.HIBERNATE_SHOW_SQL);
+			cfg.setProperty("hibernate.jdbc.batch_size", Config.HIBERNATE_JDBC_BATCH_SIZE);
+			cfg.setProperty("hibernate.order_inserts", "true");
+			cfg.setProperty("hibernate.cache.use_second_level_cache", "false");
+			cfg.setProperty("hibernate.cache.use_query_cache", "false");
+			cfg.setProperty("hibernate.search.autoregister_listeners", "false");
+			log.info("Hibernate batch 'hibernate.jdbc.batch_size' = {}", cfg.getProperty("hibernate.jdbc.batch_size"));
+			batchSessionFactory = cfg.buildSessionFactory();
+		}
+
+		return batchSessionFactory;
+	}
+
 	/**
 	 * Close factory
 	 */
 	public static void closeSessionFactory() {
+		synchronized (HibernateUtil.class) {
+			if (batchSessionFactory != null) {
+				batchSessionFactory.close();
+				batchSessionFactory = null;
+			}
+		}
+
 		if (sessionFactory != null) {
 			sessionFactory.close();
 			sessionFactory = null;
@@ -28,23 +28,33 @@ import com.openkm.dao.bean.*;
 import com.openkm.extension.dao.WikiPageDAO;
 import com.openkm.extension.dao.bean.WikiPage;
 import com.openkm.module.db.base.BaseNoteModule;
+import com.openkm.module.db.stuff.EffectivePermissionCache;
+import com.openkm.module.db.stuff.InheritedReadAccess;
 import com.openkm.module.db.stuff.SecurityHelper;
 import com.openkm.util.CloneUtils;
 import com.openkm.util.FormatUtil;
 import com.openkm.util.PathUtils;
 import com.openkm.util.SystemProfiling;
+import com.openkm.util.metrics.RepositoryMetrics;
 import org.hibernate.*;
 import org.hibernate.type.StandardBasicTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NodeBaseDAO {
 	private static Logger log = LoggerFactory.getLogger(NodeBaseDAO.class);
 	private static NodeBaseDAO single = new NodeBaseDAO();
 	private static final String CACHE_PARENT_NODE_PERMISSIONS = "com.openkm.cache.parentNodePermissions";
+	private static final int IN_BATCH_SIZE = 500;
+	private static final AtomicInteger pendingPathTasks = new AtomicInteger();
+	private static volatile boolean missingStoredPath = false;
+	private static volatile boolean storedPathLoaded = false;
 
 	private NodeBaseDAO() {
 	}
@@ -85,28 +95,289 @@ public class NodeBaseDAO {
 	 * Get node path from UUID
 	 */
 	public String getPathFromUuid(String uuid) throws PathNotFoundException, DatabaseException {
-		return calculatePathFromUuid(uuid);
+		if (isStoredPathReliable()) {
+			return searchPathFromUuid(uuid);
+		} else {
+			return calculatePathFromUuid(uuid);
+		}
 	}
 
 	/**
 	 * Get node path from UUID
 	 */
 	public String getPathFromUuid(Session session, String uuid) throws PathNotFoundException, HibernateException {
-		return calculatePathFromUuid(session, uuid);
+		if (isStoredPathReliable(session)) {
+			return searchPathFromUuid(session, uuid);
+		} else {
+			return calculatePathFromUuid(session, uuid);
+		}
+	}
+
+	/**
+	 * Get path of an already loaded node, avoiding the tree walk when the stored path can be trusted.
+	 */
+	public String getPath(NodeBase node) throws PathNotFoundException, DatabaseException {
+		if (node.getPath() != null && isStoredPathReliable()) {
+			return node.getPath();
+		} else {
+			return getPathFromUuid(node.getUuid());
+		}
+	}
+
+	/**
+	 * Get paths of several nodes at once.
+	 */
+	public Map<String, String> getPathsFromUuids(Collection<String> uuids) throws DatabaseException {
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			return getPathsFromUuids(session, uuids);
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Get paths of several nodes at once. When the stored path can be trusted it is read with
+	 * a single query per batch, otherwise nodes are read by tree levels, so the number of
+	 * queries depends on the tree depth and not on the number of nodes. Nodes not found
+	 * are not included in the result.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, String> getPathsFromUuids(Session session, Collection<String> uuids) throws HibernateException {
+		log.debug("getPathsFromUuids({}, {})", session, uuids);
+		String qs = "select nb.uuid, nb.name, nb.parent from NodeBase nb where nb.uuid in (:uuids)";
+		Map<String, String[]> nodes = new HashMap<>();
+		Map<String, String> paths = new HashMap<>();
+		Set<String> pending = new HashSet<>(uuids);
+		pending.remove(Config.ROOT_NODE_UUID);
+
+		if (isStoredPathReliable(session)) {
+			String qsPath = "select nb.uuid, nb.path from NodeBase nb where nb.uuid in (:uuids)";
+			List<String> batch = new ArrayList<>(pending);
+
+			for (int i = 0; i < batch.size(); i += IN_BATCH_SIZE) {
+				Query q = session.createQuery(qsPath);
+				q.setParameterList("uuids", batch.subList(i, Math.min(i + IN_BATCH_SIZE, batch.size())));
+
+				for (Object[] row : (List<Object[]>) q.list()) {
+					if (row[1] != null) {
+						paths.put((String) row[0], (String) row[1]);
+						pending.remove(row[0]);
+					}
+				}
+			}
+
+			if (uuids.contains(Config.ROOT_NODE_UUID)) {
+				paths.put(Config.ROOT_NODE_UUID, "/");
+			}
+
+			// Nodes not found
+			pending.clear();
+		}
+
+		while (!pending.isEmpty()) {
+			List<String> level = new ArrayList<>(pending);
+			pending.clear();
+
+			for (int i = 0; i < level.size(); i += IN_BATCH_SIZE) {
+				Query q = session.createQuery(qs);
+				q.setParameterList("uuids", level.subList(i, Math.min(i + IN_BATCH_SIZE, level.size())));
+
+				for (Object[] row : (List<Object[]>) q.list()) {
+					nodes.put((String) row[0], new String[]{(String) row[1], (String) row[2]});
+				}
+			}
+
+			for (String uuid : level) {
+				String[] node = nodes.get(uuid);
+
+				if (node != null && !Config.ROOT_NODE_UUID.equals(node[1]) && !nodes.containsKey(node[1])) {
+					pending.add(node[1]);
+				}
+			}
+		}
+
+		for (String uuid : uuids) {
+			if (!paths.containsKey(uuid)) {
+				String path = Config.ROOT_NODE_UUID.equals(uuid) ? "/" : buildPath(uuid, nodes);
+
+				if (path != null) {
+					paths.put(uuid, path);
+				}
+			}
+		}
+
+		log.debug("getPathsFromUuids: {}", paths);
+		return paths;
+	}
+
+	/**
+	 * Build node path from already read nodes, the same way calculatePathFromUuid() does.
+	 */
+	private String buildPath(String uuid, Map<String, String[]> nodes) {
+		String path = "";
+
+		for (int depth = 0; depth <= nodes.size(); depth++) {
+			String[] node = nodes.get(uuid);
+
+			if (node == null) {
+				return null;
+			}
+
+			path = "/".concat(node[0]).concat(path);
+
+			if (Config.ROOT_NODE_UUID.equals(node[1]) || uuid.equals(node[1])) {
+				break;
+			}
+
+			uuid = node[1];
+		}
+
+		return path;
 	}
 
 	/**
 	 * Get node UUID from path
 	 */
 	public String getUuidFromPath(String path) throws PathNotFoundException, DatabaseException {
-		return calculateUuidFromPath(path);
+		long begin = System.nanoTime();
+
+		try {
+			if (isStoredPathReliable()) {
+				return searchUuidFromPath(path);
+			} else {
+				return calculateUuidFromPath(path);
+			}
+		} finally {
+			RepositoryMetrics.PATH_RESOLUTION.observe(System.nanoTime() - begin);
+		}
 	}
 
 	/**
 	 * Get node UUID from path
 	 */
 	public String getUuidFromPath(Session session, String path) throws PathNotFoundException, DatabaseException {
-		return calculateUuidFromPath(session, path);
+		long begin = System.nanoTime();
+
+		try {
+			if (isStoredPathReliable(session)) {
+				return searchUuidFromPath(session, path);
+			} else {
+				return calculateUuidFromPath(session, path);
+			}
+		} finally {
+			RepositoryMetrics.PATH_RESOLUTION.observe(System.nanoTime() - begin);
+		}
+	}
+
+	/**
+	 * Check if the stored node path can be used to resolve paths. It can't while there are nodes
+	 * without stored path or while an UpdatePathTask is still fixing the descendants of a renamed
+	 * or moved folder, in which case paths are calculated walking the tree.
+	 */
+	public boolean isStoredPathReliable() throws DatabaseException {
+		if (!Config.STORE_NODE_PATH) {
+			return false;
+		}
+
+		if (!storedPathLoaded) {
+			Session session = null;
+
+			try {
+				session = HibernateUtil.getSessionFactory().openSession();
+				loadStoredPathState(session);
+			} catch (HibernateException e) {
+				throw new DatabaseException(e.getMessage(), e);
+			} finally {
+				HibernateUtil.close(session);
+			}
+		}
+
+		return pendingPathTasks.get() == 0 && !missingStoredPath;
+	}
+
+	/**
+	 * Check if the stored node path can be used to resolve paths.
+	 */
+	private boolean isStoredPathReliable(Session session) throws HibernateException {
+		if (!Config.STORE_NODE_PATH) {
+			return false;
+		}
+
+		loadStoredPathState(session);
+		return pendingPathTasks.get() == 0 && !missingStoredPath;
+	}
+
+	/**
+	 * Register an UpdatePathTask queued in the session transaction. Stored paths are not trusted
+	 * from now on, and again once the task finishes or the transaction is rolled back.
+	 */
+	public void pathTaskQueued(Session session) throws HibernateException {
+		loadStoredPathState(session);
+		pendingPathTasks.incrementAndGet();
+		session.getTransaction().registerSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status != Status.STATUS_COMMITTED) {
+					pendingPathTasks.decrementAndGet();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Register a completed UpdatePathTask, once its removal from the queue has been committed.
+	 */
+	public void pathTaskFinished() {
+		if (storedPathLoaded) {
+			pendingPathTasks.decrementAndGet();
+
+			if (missingStoredPath) {
+				Session session = null;
+
+				try {
+					session = HibernateUtil.getSessionFactory().openSession();
+					missingStoredPath = hasMissingStoredPath(session);
+				} catch (HibernateException e) {
+					log.warn(e.getMessage(), e);
+				} finally {
+					HibernateUtil.close(session);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the stored path state from database. Done only once, before the first UpdatePathTask
+	 * is queued, so the in memory counter includes the tasks left from a previous run.
+	 */
+	private static synchronized void loadStoredPathState(Session session) throws HibernateException {
+		if (!storedPathLoaded) {
+			log.debug("loadStoredPathState({})", session);
+			String qs = "select count(pt.id) from PendingTask pt where pt.task=:task";
+			Query q = session.createQuery(qs);
+			q.setString("task", PendingTask.TASK_UPDATE_PATH);
+			pendingPathTasks.set(((Long) q.uniqueResult()).intValue());
+			missingStoredPath = hasMissingStoredPath(session);
+			storedPathLoaded = true;
+			log.debug("loadStoredPathState: {} tasks, missing {}", pendingPathTasks.get(), missingStoredPath);
+		}
+	}
+
+	/**
+	 * Check for nodes without stored path.
+	 */
+	private static boolean hasMissingStoredPath(Session session) throws HibernateException {
+		String qs = "select nb.uuid from NodeBase nb where nb.path is null";
+		return !session.createQuery(qs).setMaxResults(1).list().isEmpty();
 	}
 
 	/**
@@ -248,21 +519,19 @@ public class NodeBaseDAO {
 	}
 
 	/**
-	 * Get node path from UUID
+	 * Get node path from UUID. This is the new one which reads the stored path.
 	 */
-	@SuppressWarnings("unused")
 	private String searchPathFromUuid(String uuid) throws PathNotFoundException, DatabaseException {
 		log.debug("searchPathFromUuid({})", uuid);
 		Session session = null;
 
+		if (Config.ROOT_NODE_UUID.equals(uuid)) {
+			return "/";
+		}
+
 		try {
 			session = HibernateUtil.getSessionFactory().openSession();
-			String path = getPathFromUuid(session, uuid);
-
-			if (path == null) {
-				throw new PathNotFoundException(uuid);
-			}
-
+			String path = searchPathFromUuid(session, uuid);
 			log.debug("searchPathFromUuid: {}", path);
 			return path;
 		} catch (HibernateException e) {
@@ -273,38 +542,37 @@ public class NodeBaseDAO {
 	}
 
 	/**
-	 * Get node path from UUID
+	 * Get node path from UUID. This is the new one which reads the stored path.
 	 */
-	@SuppressWarnings("unused")
 	private String searchPathFromUuid(Session session, String uuid) throws PathNotFoundException, HibernateException {
-		log.debug("searchPathFromUuid({})", uuid);
-		String qs = "select nb.path from NodeBase nb where nb.uuid=:uuid";
-		Query q = session.createQuery(qs);
-		q.setString("uuid", uuid);
-		String path = (String) q.setMaxResults(1).uniqueResult();
-		log.debug("searchPathFromUuid: {}", path);
-		return path;
+		log.debug("searchPathFromUuid({}, {})", session, uuid);
+
+		if (Config.ROOT_NODE_UUID.equals(uuid)) {
+			return "/";
+		}
+
+		NodeBase node = (NodeBase) session.get(NodeBase.class, uuid);
+
+		if (node == null) {
+			throw new PathNotFoundException(uuid);
+		} else if (node.getPath() == null) {
+			return calculatePathFromUuid(session, uuid);
+		}
+
+		log.debug("searchPathFromUuid: {}", node.getPath());
+		return node.getPath();
 	}
 
 	/**
-	 * Get node UUID from path. This is the old one which calculates the uuid.
+	 * Get node UUID from path. This is the new one which reads the stored path.
 	 */
-	@SuppressWarnings("unused")
 	private String searchUuidFromPath(String path) throws PathNotFoundException, DatabaseException {
 		log.debug("searchUuidFromPath({})", path);
-		String qs = "select nb.uuid from NodeBase nb where nb.path=:path";
 		Session session = null;
 
 		try {
 			session = HibernateUtil.getSessionFactory().openSession();
-			Query q = session.createQuery(qs);
-			q.setString("path", path);
-			String uuid = (String) q.setMaxResults(1).uniqueResult();
-
-			if (uuid == null) {
-				throw new PathNotFoundException(path);
-			}
-
+			String uuid = searchUuidFromPath(session, path);
 			log.debug("searchUuidFromPath: {}", uuid);
 			return uuid;
 		} catch (HibernateException e) {
@@ -314,6 +582,35 @@ public class NodeBaseDAO {
 		}
 	}
 
+	/**
+	 * Get node UUID from path. This is the new one which reads the stored path.
+	 */
+	private String searchUuidFromPath(Session session, String path) throws PathNotFoundException, HibernateException {
+		log.debug("searchUuidFromPath({}, {})", session, path);
+		String qs = "select nb.uuid from NodeBase nb where nb.path=:path";
+		StringBuilder sb = new StringBuilder();
+
+		// Fix for & and &amp; strings in the path
+		for (StringTokenizer st = new StringTokenizer(PathUtils.encodeEntities(path), "/"); st.hasMoreTokens(); ) {
+			sb.append("/").append(st.nextToken());
+		}
+
+		if (sb.length() == 0) {
+			return Config.ROOT_NODE_UUID;
+		}
+
+		Query q = session.createQuery(qs).setCacheable(true);
+		q.setString("path", sb.toString());
+		String uuid = (String) q.setMaxResults(1).uniqueResult();
+
+		if (uuid == null) {
+			throw new PathNotFoundException(path);
+		}
+
+		log.debug("searchUuidFromPath: {}", uuid);
+		return uuid;
+	}
+
 	/**
 	 * Get user permissions
 	 */
@@ -373,9 +670,11 @@ public class NodeBaseDAO {
 				log.info("grantUserPermissions.Time: {}", FormatUtil.formatMiliSeconds(System.currentTimeMillis() - begin));
 			} else {
 				grantUserPermissions(session, node, user, permissions, false);
+				InheritedReadAccess.subtreeChanged(session, node);
 			}
 
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			log.debug("grantUserPermissions: void");
 		} catch (PathNotFoundException | AccessDeniedException | DatabaseException e) {
 			HibernateUtil.rollback(tx);
@@ -427,6 +726,7 @@ public class NodeBaseDAO {
 	private int grantUserPermissionsInDepth(Session session, NodeBase node, String user, int permissions) throws PathNotFoundException,
 			AccessDeniedException, DatabaseException, HibernateException {
 		int total = grantUserPermissions(session, node, user, permissions, true);
+		InheritedReadAccess.reindex(session, node);
 
 		// Calculate children nodes
 		String qs = "from NodeBase nb where nb.parent=:parent";
@@ -435,7 +735,7 @@ public class NodeBaseDAO {
 		List<NodeBase> ret = q.list();
 
 		// Security Check
-		SecurityHelper.pruneNodeList(ret);
+		InheritedReadAccess.pruneNodeList(session, node, ret);
 
 		for (NodeBase child : ret) {
 			total += grantUserPermissionsInDepth(session, child, user, permissions);
@@ -468,9 +768,11 @@ public class NodeBaseDAO {
 				log.info("revokeUserPermissions.Total: {}", total);
 			} else {
 				revokeUserPermissions(session, node, user, permissions, false);
+				InheritedReadAccess.subtreeChanged(session, node);
 			}
 
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			log.debug("revokeUserPermissions: void");
 		} catch (PathNotFoundException | AccessDeniedException | DatabaseException e) {
 			HibernateUtil.rollback(tx);
@@ -526,6 +828,7 @@ public class NodeBaseDAO {
 	private int revokeUserPermissionsInDepth(Session session, NodeBase node, String user, int permissions) throws PathNotFoundException,
 			AccessDeniedException, DatabaseException, HibernateException {
 		int total = revokeUserPermissions(session, node, user, permissions, true);
+		InheritedReadAccess.reindex(session, node);
 
 		// Calculate children nodes
 		String qs = "from NodeBase nb where nb.parent=:parent";
@@ -534,7 +837,7 @@ public class NodeBaseDAO {
 		List<NodeBase> ret = q.list();
 
 		// Security Check
-		SecurityHelper.pruneNodeList(ret);
+		InheritedReadAccess.pruneNodeList(session, node, ret);
 
 		for (NodeBase child : ret) {
 			total += revokeUserPermissionsInDepth(session, child, user, permissions);
@@ -602,9 +905,11 @@ public class NodeBaseDAO {
 				log.info("grantRolePermissions.Total: {}", total);
 			} else {
 				grantRolePermissions(session, node, role, permissions, false);
+				InheritedReadAccess.subtreeChanged(session, node);
 			}
 
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			log.debug("grantRolePermissions: void");
 		} catch (PathNotFoundException | AccessDeniedException | DatabaseException e) {
 			HibernateUtil.rollback(tx);
@@ -656,6 +961,7 @@ public class NodeBaseDAO {
 	private int grantRolePermissionsInDepth(Session session, NodeBase node, String role, int permissions) throws PathNotFoundException,
 			AccessDeniedException, DatabaseException, HibernateException {
 		int total = grantRolePermissions(session, node, role, permissions, true);
+		InheritedReadAccess.reindex(session, node);
 
 		// Calculate children nodes
 		String qs = "from NodeBase nb where nb.parent=:parent";
@@ -664,7 +970,7 @@ public class NodeBaseDAO {
 		List<NodeBase> ret = q.list();
 
 		// Security Check
-		SecurityHelper.pruneNodeList(ret);
+		InheritedReadAccess.pruneNodeList(session, node, ret);
 
 		for (NodeBase child : ret) {
 			total += grantRolePermissionsInDepth(session, child, role, permissions);
@@ -697,9 +1003,11 @@ public class NodeBaseDAO {
 				log.info("revokeRolePermissions.Total: {}", total);
 			} else {
 				revokeRolePermissions(session, node, role, permissions, false);
+				InheritedReadAccess.subtreeChanged(session, node);
 			}
 
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			log.debug("revokeRolePermissions: void");
 		} catch (PathNotFoundException | AccessDeniedException | DatabaseException e) {
 			HibernateUtil.rollback(tx);
@@ -755,6 +1063,7 @@ public class NodeBaseDAO {
 	private int revokeRolePermissionsInDepth(Session session, NodeBase node, String role, int permissions) throws PathNotFoundException,
 			AccessDeniedException, DatabaseException, HibernateException {
 		int total = revokeRolePermissions(session, node, role, permissions, true);
+		InheritedReadAccess.reindex(session, node);
 
 		// Calculate children nodes
 		String qs = "from NodeBase nb where nb.parent=:parent";
@@ -763,7 +1072,7 @@ public class NodeBaseDAO {
 		List<NodeBase> ret = q.list();
 
 		// Security Check
-		SecurityHelper.pruneNodeList(ret);
+		InheritedReadAccess.pruneNodeList(session, node, ret);
 
 		for (NodeBase child : ret) {
 			total += revokeRolePermissionsInDepth(session, child, role, permissions);
@@ -798,9 +1107,11 @@ public class NodeBaseDAO {
 				log.info("changeSecurity.Total: {}", total);
 			} else {
 				changeSecurity(session, node, grantUsers, revokeUsers, grantRoles, revokeRoles, false);
+				InheritedReadAccess.subtreeChanged(session, node);
 			}
 
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			log.debug("grantRolePermissions: void");
 		} catch (PathNotFoundException | AccessDeniedException | DatabaseException e) {
 			HibernateUtil.rollback(tx);
@@ -900,6 +1211,7 @@ public class NodeBaseDAO {
 			Map<String, Integer> grantRoles, Map<String, Integer> revokeRoles) throws PathNotFoundException, AccessDeniedException,
 			DatabaseException, HibernateException {
 		int total = changeSecurity(session, node, grantUsers, revokeUsers, grantRoles, revokeRoles, true);
+		InheritedReadAccess.reindex(session, node);
 
 		// Calculate children nodes
 		String qs = "from NodeBase nb where nb.parent=:parent";
@@ -908,7 +1220,7 @@ public class NodeBaseDAO {
 		List<NodeBase> ret = q.list();
 
 		// Security Check
-		SecurityHelper.pruneNodeList(ret);
+		InheritedReadAccess.pruneNodeList(session, node, ret);
 
 		for (NodeBase child : ret) {
 			total += changeSecurityInDepth(session, child, grantUsers, revokeUsers, grantRoles, revokeRoles);
@@ -1308,7 +1620,7 @@ public class NodeBaseDAO {
 	@SuppressWarnings("unchecked")
 	public NodeBase getParentNodePermissions(Session session, String uuid) throws HibernateException {
 		log.debug("getParentNodePermissions({}, {})", session, uuid);
-		String qs = "select nb1.uuid, index(userPermissions), userPermissions, index(rolePermissions), rolePermissions "
+		String qs = "select nb1.uuid, index(userPermissions), userPermissions, index(rolePermissions), rolePermissions, nb1.parent "
 				+ "from NodeBase nb1 join nb1.userPermissions userPermissions join nb1.rolePermissions rolePermissions "
 				+ "where nb1.uuid = (select nb2.parent from NodeBase nb2 where nb2.uuid=:uuid)";
 		Query q = session.createQuery(qs).setCacheable(true);
@@ -1320,9 +1632,10 @@ public class NodeBaseDAO {
 		if (!perms.isEmpty()) {
 			nBase = new NodeBase();
 
-			for (Object[] tupla : (List<Object[]>) q.list()) {
+			for (Object[] tupla : perms) {
 				if (nBase.getUuid() == null) {
 					nBase.setUuid((String) tupla[0]);
+					nBase.setParent((String) tupla[5]);
 				}
 
 				if (!nBase.getUserPermissions().containsKey((String) tupla[1])) {
@@ -1458,7 +1771,12 @@ public class NodeBaseDAO {
 			tx = session.beginTransaction();
 
 			String uuid = getUuidFromPath(path);
-			total = getSubtreeCountHelper(session, nodeType, uuid, depth, 1);
+
+			if (NodeTreeDAO.getInstance().isReady()) {
+				total = getSubtreeCountTree(session, nodeType, uuid, depth);
+			} else {
+				total = getSubtreeCountHelper(session, nodeType, uuid, depth, 1);
+			}
 
 			HibernateUtil.commit(tx);
 			SystemProfiling.log(nodeType + ", " + path + ", " + depth, System.currentTimeMillis() - begin);
@@ -1476,6 +1794,30 @@ public class NodeBaseDAO {
 		}
 	}
 
+	/**
+	 * Count subtree nodes from the node tree closure table. Like getSubtreeCountHelper(), only
+	 * folders and documents are counted and mail attachments are not.
+	 */
+	private long getSubtreeCountTree(Session session, String nodeType, String parentUuid, int depth) throws HibernateException {
+		log.debug("getSubtreeCountTree({}, {}, {})", nodeType, parentUuid, depth);
+		String qs = null;
+
+		if (NodeFolder.class.getSimpleName().equals(nodeType)) {
+			qs = "select count(*) from NodeFolder nf, NodeTree nt where nt.ancestor=:parent and nt.depth>=:depth "
+					+ "and nf.uuid=nt.descendant";
+		} else if (NodeDocument.class.getSimpleName().equals(nodeType)) {
+			qs = "select count(*) from NodeDocument nd, NodeTree nt where nt.ancestor=:parent and nt.depth>=:depth "
+					+ "and nd.uuid=nt.descendant and nd.parent not in (select nm.uuid from NodeMail nm)";
+		} else {
+			return 0;
+		}
+
+		Query q = session.createQuery(qs);
+		q.setString("parent", parentUuid);
+		q.setInteger("depth", depth);
+		return (Long) q.uniqueResult();
+	}
+
 	/**
 	 * Helper method.
 	 */
@@ -1523,8 +1865,7 @@ public class NodeBaseDAO {
 			tx = session.beginTransaction();
 
 			String uuid = getUuidFromPath(path);
-			long count = subTreeHasMoreThanNodesHelper(session, uuid, maxNodes, 0);
-			ret = count > maxNodes;
+			ret = subTreeHasMoreThanNodes(session, uuid, maxNodes);
 
 			HibernateUtil.commit(tx);
 			SystemProfiling.log(path + ", " + maxNodes, System.currentTimeMillis() - begin);
@@ -1542,6 +1883,25 @@ public class NodeBaseDAO {
 		}
 	}
 
+	/**
+	 * Check if a subtree contains more than maxNodes nodes
+	 */
+	public boolean subTreeHasMoreThanNodes(Session session, String uuid, long maxNodes) throws HibernateException,
+			DatabaseException {
+		long count = 0;
+
+		if (NodeTreeDAO.getInstance().isReady()) {
+			String qs = "select count(*) from NodeTree nt where nt.ancestor=:parent and nt.depth>0";
+			Query q = session.createQuery(qs);
+			q.setString("parent", uuid);
+			count = (Long) q.uniqueResult();
+		} else {
+			count = subTreeHasMoreThanNodesHelper(session, uuid, maxNodes, 0);
+		}
+
+		return count > maxNodes;
+	}
+
 	/**
 	 * Helper method.
 	 */
@@ -53,6 +53,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.net.URISyntaxException;
 import java.util.*;
 
 public class NodeDocumentDAO {
@@ -102,10 +103,11 @@ public class NodeDocumentDAO {
 			newDocVer.setMimeType(nDoc.getMimeType());
 
 			// Persist file in datastore
-			FsDataStore.persist(newDocVer, is);
+			FsDataStore.persist(session, newDocVer, is);
 
 			session.save(nDoc);
 			session.save(newDocVer);
+			NodeTreeDAO.getInstance().insert(session, nDoc);
 			HibernateUtil.commit(tx);
 
 			log.debug("create: {}", newDocVer);
@@ -117,7 +119,7 @@ public class NodeDocumentDAO {
 			HibernateUtil.rollback(tx);
 
 			// What happen when create fails? This datastore file should be deleted!
-			FsDataStore.delete(newDocVer.getUuid());
+			FsDataStore.discard(newDocVer);
 			throw new DatabaseException(e.getMessage(), e);
 		} finally {
 			HibernateUtil.close(session);
@@ -564,6 +566,7 @@ public class NodeDocumentDAO {
 			}
 
 			nDoc.setParent(dstUuid);
+			NodeTreeDAO.getInstance().move(session, uuid, dstUuid);
 
 			if (Config.STORE_NODE_PATH) {
 				nDoc.setPath(nDstFld.getPath() + "/" + nDoc.getName());
@@ -620,6 +623,7 @@ public class NodeDocumentDAO {
 
 			nDoc.setContext(nTrashFld.getContext());
 			nDoc.setParent(trashUuid);
+			NodeTreeDAO.getInstance().move(session, uuid, trashUuid);
 			nDoc.setName(testName);
 
 			if (Config.STORE_NODE_PATH) {
@@ -823,6 +827,7 @@ public class NodeDocumentDAO {
 
 		// Delete the node itself
 		session.delete(nDocument);
+		NodeTreeDAO.getInstance().delete(session, nDocument.getUuid());
 
 		// Update user items size
 		if (Config.USER_ITEM_CACHE) {
@@ -1208,7 +1213,12 @@ public class NodeDocumentDAO {
 			tx = session.beginTransaction();
 
 			String uuid = NodeBaseDAO.getInstance().getUuidFromPath(path);
-			total = getSubtreeSizeHelper(session, uuid);
+
+			if (NodeTreeDAO.getInstance().isReady()) {
+				total = getSubtreeSizeTree(session, uuid);
+			} else {
+				total = getSubtreeSizeHelper(session, uuid);
+			}
 
 			HibernateUtil.commit(tx);
 			SystemProfiling.log(path, System.currentTimeMillis() - begin);
@@ -1223,6 +1233,22 @@ public class NodeDocumentDAO {
 		}
 	}
 
+	/**
+	 * Sum subtree document sizes from the node tree closure table. Like getSubtreeSizeHelper(),
+	 * mail attachments are not included.
+	 */
+	private long getSubtreeSizeTree(Session session, String parentUuid) throws HibernateException {
+		log.debug("getSubtreeSizeTree({})", parentUuid);
+		String qs = "select sum(ndv.size) from NodeDocument nd, NodeDocumentVersion ndv, NodeTree nt "
+				+ "where nt.ancestor=:parent and nd.uuid=nt.descendant and ndv.parent=nd.uuid and ndv.current=:current "
+				+ "and nd.parent not in (select nm.uuid from NodeMail nm)";
+		Query q = session.createQuery(qs);
+		q.setString("parent", parentUuid);
+		q.setBoolean("current", true);
+		Long total = (Long) q.uniqueResult();
+		return total == null ? 0 : total;
+	}
+
 	/**
 	 * Helper method.
 	 */
@@ -1338,42 +1364,28 @@ public class NodeDocumentDAO {
 	@SuppressWarnings("unchecked")
 	public List<TextExtractorWork> getPendingExtractions(int maxResults) throws DatabaseException {
 		log.debug("getPendingExtractions({})", maxResults);
-		String qsDoc = "select nd.uuid from NodeDocument nd where nd.textExtracted=:extracted";
-		String qsDocVer = "from NodeDocumentVersion ndv where ndv.parent=:parent and ndv.current=:current";
+		String qs = "select nd.uuid, ndv.uuid, ndv.created from NodeDocument nd, NodeDocumentVersion ndv "
+				+ "where ndv.parent=nd.uuid and ndv.current=:current and nd.textExtracted=:extracted";
 		Session session = null;
 		Transaction tx = null;
-		List<TextExtractorWork> ret = new ArrayList<>();
 
 		try {
 			long begin = System.currentTimeMillis();
 			session = HibernateUtil.getSessionFactory().openSession();
 			tx = session.beginTransaction();
 
-			Query qDoc = session.createQuery(qsDoc);
-			qDoc.setBoolean("extracted", false);
-			qDoc.setMaxResults(maxResults);
-
-			for (String docUuid : (List<String>) qDoc.list()) {
-				Query qDocVer = session.createQuery(qsDocVer);
-				qDocVer.setString("parent", docUuid);
-				qDocVer.setBoolean("current", true);
-				NodeDocumentVersion nDocVer = (NodeDocumentVersion) qDocVer.uniqueResult();
-				String docPath = NodeBaseDAO.getInstance().getPathFromUuid(session, docUuid);
-
-				TextExtractorWork work = new TextExtractorWork();
-				work.setDocUuid(docUuid);
-				work.setDocPath(docPath);
-				work.setDocVerUuid(nDocVer.getUuid());
-				work.setDate(nDocVer.getCreated());
-				ret.add(work);
-			}
+			Query q = session.createQuery(qs);
+			q.setBoolean("current", true);
+			q.setBoolean("extracted", false);
+			q.setMaxResults(maxResults);
+			List<TextExtractorWork> ret = getExtractionWorks(session, (List<Object[]>) q.list());
 
 			HibernateUtil.commit(tx);
 			SystemProfiling.log(String.valueOf(maxResults), System.currentTimeMillis() - begin);
 			log.trace("getPendingExtractions.MaxResults: {}, Time: {}", maxResults, System.currentTimeMillis() - begin);
 			log.debug("getPendingExtractions: {}", ret);
 			return ret;
-		} catch (PathNotFoundException | HibernateException e) {
+		} catch (HibernateException e) {
 			HibernateUtil.rollback(tx);
 			throw new DatabaseException(e.getMessage(), e);
 		} finally {
@@ -1381,6 +1393,61 @@ public class NodeDocumentDAO {
 		}
 	}
 
+	/**
+	 * Get extraction works of claimed documents. Documents removed in the meantime are skipped.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<TextExtractorWork> getExtractionWorks(List<String> docUuids) throws DatabaseException {
+		log.debug("getExtractionWorks({})", docUuids);
+		String qs = "select nd.uuid, ndv.uuid, ndv.created from NodeDocument nd, NodeDocumentVersion ndv "
+				+ "where ndv.parent=nd.uuid and ndv.current=:current and nd.uuid in (:uuids)";
+		Session session = null;
+
+		if (docUuids.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setBoolean("current", true);
+			q.setParameterList("uuids", docUuids);
+			List<TextExtractorWork> ret = getExtractionWorks(session, (List<Object[]>) q.list());
+			log.debug("getExtractionWorks: {}", ret);
+			return ret;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Build extraction works from document uuid, current version uuid and creation rows,
+	 * resolving every document path at once.
+	 */
+	private List<TextExtractorWork> getExtractionWorks(Session session, List<Object[]> rows) throws HibernateException {
+		List<TextExtractorWork> ret = new ArrayList<>();
+		List<String> docUuids = new ArrayList<>();
+
+		for (Object[] row : rows) {
+			docUuids.add((String) row[0]);
+		}
+
+		Map<String, String> paths = NodeBaseDAO.getInstance().getPathsFromUuids(session, docUuids);
+
+		for (Object[] row : rows) {
+			TextExtractorWork work = new TextExtractorWork();
+			work.setDocUuid((String) row[0]);
+			work.setDocPath(paths.get(row[0]));
+			work.setDocVerUuid((String) row[1]);
+			work.setDate((Calendar) row[2]);
+			ret.add(work);
+		}
+
+		return ret;
+	}
+
 	/**
 	 * Get pending extraction size
 	 */
@@ -1416,8 +1483,18 @@ public class NodeDocumentDAO {
 	/**
 	 * Helps on extracting text from documents
 	 */
-	public String textExtractorHelper(TextExtractorWork work) throws DatabaseException, FileNotFoundException {
-		log.debug("textExtractorHelper({})", work);
+	public String textExtractorHelper(TextExtractorWork work) throws DatabaseException, IOException {
+		return textExtractorHelper(work, false);
+	}
+
+	/**
+	 * Helps on extracting text from documents
+	 *
+	 * @param failOnError Throw an exception when text extraction fails, so it can be retried,
+	 *                    instead of recording the failure and marking the document as extracted.
+	 */
+	public String textExtractorHelper(TextExtractorWork work, boolean failOnError) throws DatabaseException, IOException {
+		log.debug("textExtractorHelper({}, {})", work, failOnError);
 		Session session = null;
 		Transaction tx = null;
 		InputStream isContent = null;
@@ -1427,14 +1504,15 @@ public class NodeDocumentDAO {
 			session = HibernateUtil.getSessionFactory().openSession();
 			tx = session.beginTransaction();
 
-			if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
-				isContent = FsDataStore.read(work.getDocVerUuid());
-			} else {
-				NodeDocumentVersion nDocVer = (NodeDocumentVersion) session.load(NodeDocumentVersion.class, work.getDocVerUuid());
-				isContent = new ByteArrayInputStream(nDocVer.getContent());
-			}
-
+			NodeDocumentVersion nDocVer = (NodeDocumentVersion) session.load(NodeDocumentVersion.class, work.getDocVerUuid());
 			NodeDocument nDoc = (NodeDocument) session.load(NodeDocument.class, work.getDocUuid());
+			String cacheKey = getExtractedTextKey(nDocVer, nDoc.getMimeType());
+			String cachedText = cacheKey == null ? null : ExtractedTextDAO.getInstance().findText(cacheKey);
+
+			// Identical content already extracted
+			if (cachedText == null) {
+				isContent = FsDataStore.read(nDocVer);
+			}
 
 			try {
 				// AUTOMATION - PRE
@@ -1442,7 +1520,19 @@ public class NodeDocumentDAO {
 				env.put(AutomationUtils.DOCUMENT_NODE, nDoc);
 				AutomationManager.getInstance().fireEvent(AutomationRule.EVENT_TEXT_EXTRACTOR, AutomationRule.AT_PRE, env);
 
-				textExtracted = RegisteredExtractors.getText(work.getDocPath(), nDoc.getMimeType(), null, isContent);
+				if (cachedText != null) {
+					textExtracted = cachedText;
+				} else {
+					textExtracted = RegisteredExtractors.getText(work.getDocPath(), nDoc.getMimeType(), null, isContent);
+
+					if (cacheKey != null) {
+						try {
+							ExtractedTextDAO.getInstance().save(cacheKey, getExtractorVersion(nDoc.getMimeType()), textExtracted);
+						} catch (DatabaseException | URISyntaxException e) {
+							log.warn("Extracted text not cached: {}", e.getMessage());
+						}
+					}
+				}
 
 				// AUTOMATION - POST
 				env.put(AutomationUtils.TEXT_EXTRACTED, textExtracted);
@@ -1468,6 +1558,11 @@ public class NodeDocumentDAO {
 					log.warn("Language detection problem: {}", e.getMessage(), e);
 				}
 			} catch (Exception e) {
+				if (failOnError) {
+					HibernateUtil.rollback(tx);
+					throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+				}
+
 				try {
 					String docPath = NodeBaseDAO.getInstance().getPathFromUuid(nDoc.getUuid());
 					log.warn("There was a problem extracting text from '{}': {}", docPath, e.getMessage());
@@ -1491,6 +1586,103 @@ public class NodeDocumentDAO {
 		}
 	}
 
+	/**
+	 * Get extracted text cache key of a document version, or null if it can't be cached
+	 */
+	private String getExtractedTextKey(NodeDocumentVersion nDocVer, String mimeType) {
+		if (Config.MANAGED_TEXT_EXTRACTION_CACHE) {
+			try {
+				return RegisteredExtractors.getCacheKey(FsDataStore.getContentHash(nDocVer), mimeType);
+			} catch (URISyntaxException e) {
+				log.warn(e.getMessage(), e);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get version of the text extractor of a MIME type
+	 */
+	private String getExtractorVersion(String mimeType) throws URISyntaxException {
+		return RegisteredExtractors.getExtractorVersion(RegisteredExtractors.getTextExtractor(mimeType));
+	}
+
+	/**
+	 * Record a text extraction which has failed too many times and stop trying.
+	 */
+	public void textExtractionFailed(TextExtractorWork work, String error) throws DatabaseException {
+		log.debug("textExtractionFailed({}, {})", work, error);
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			NodeDocument nDoc = (NodeDocument) session.get(NodeDocument.class, work.getDocUuid());
+
+			if (nDoc != null) {
+				log.warn("There was a problem extracting text from '{}': {}", work.getDocPath(), error);
+				UserActivity.log(Config.SYSTEM_USER, "MISC_TEXT_EXTRACTION_FAILURE", nDoc.getUuid(), work.getDocPath(), error);
+				nDoc.setTextExtracted(true);
+				session.update(nDoc);
+			}
+
+			HibernateUtil.commit(tx);
+			log.debug("textExtractionFailed: void");
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Stop text extraction of documents without a current version, because there is
+	 * nothing to extract and they would be claimed again and again. Documents removed in
+	 * the meantime are ignored.
+	 */
+	@SuppressWarnings("unchecked")
+	public void textExtractionSkipped(List<String> docUuids) throws DatabaseException {
+		log.debug("textExtractionSkipped({})", docUuids);
+		String qs = "select ndv.parent from NodeDocumentVersion ndv where ndv.current=:current and ndv.parent in (:uuids)";
+		Session session = null;
+		Transaction tx = null;
+
+		if (docUuids.isEmpty()) {
+			return;
+		}
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			Query q = session.createQuery(qs);
+			q.setBoolean("current", true);
+			q.setParameterList("uuids", docUuids);
+			Set<String> versioned = new HashSet<>(q.list());
+
+			for (String docUuid : docUuids) {
+				NodeDocument nDoc = (NodeDocument) session.get(NodeDocument.class, docUuid);
+
+				if (nDoc != null && !versioned.contains(docUuid)) {
+					log.warn("Document '{}' has no current version, skipping text extraction", docUuid);
+					nDoc.setTextExtracted(true);
+					session.update(nDoc);
+				}
+			}
+
+			HibernateUtil.commit(tx);
+			log.debug("textExtractionSkipped: void");
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
 	/**
 	 * Get extracted text.
 	 */
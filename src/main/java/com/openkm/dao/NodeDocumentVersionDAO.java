@@ -281,11 +281,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			NodeDocumentVersion nDocVer = (NodeDocumentVersion) q.setMaxResults(1).uniqueResult();
 
 			if (nDocVer != null) {
-				if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
-					ret = FsDataStore.read(nDocVer.getUuid());
-				} else {
-					ret = new ByteArrayInputStream(nDocVer.getContent());
-				}
+				ret = FsDataStore.read(nDocVer);
 			} else {
 				throw new DatabaseException("Document version content not found for: " + docUuid);
 			}
@@ -328,11 +324,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			q.setString("name", name);
 			NodeDocumentVersion nDocVer = (NodeDocumentVersion) q.setMaxResults(1).uniqueResult();
 
-			if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
-				ret = FsDataStore.read(nDocVer.getUuid());
-			} else {
-				ret = new ByteArrayInputStream(nDocVer.getContent());
-			}
+			ret = FsDataStore.read(nDocVer);
 
 			HibernateUtil.commit(tx);
 			log.debug("getVersionContentByParent: {}", ret);
@@ -395,7 +387,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			newDocVersion.setPrevious(curDocVersion.getUuid());
 
 			// Persist file in datastore
-			FsDataStore.persist(newDocVersion, is);
+			FsDataStore.persist(session, newDocVersion, is);
 
 			session.save(newDocVersion);
 
@@ -422,7 +414,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			HibernateUtil.rollback(tx);
 
 			// What happen when create fails? This datastore file should be deleted!
-			FsDataStore.delete(newDocVersion.getUuid());
+			FsDataStore.discard(newDocVersion);
 			throw new DatabaseException(e.getMessage(), e);
 		} finally {
 			HibernateUtil.close(session);
@@ -467,7 +459,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			session.update(curDocVersion);
 
 			// Persist file in datastore
-			FsDataStore.persist(curDocVersion, is);
+			FsDataStore.persist(session, curDocVersion, is);
 
 			HibernateUtil.commit(tx);
 			log.debug("setContent: void");
@@ -578,9 +570,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 				String author = nDocVer.getAuthor();
 				long size = nDocVer.getSize();
 
-				if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
-					FsDataStore.delete(nDocVer.getUuid());
-				}
+				FsDataStore.delete(session, nDocVer);
 
 				// And delete version
 				session.delete(nDocVer);
@@ -621,9 +611,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			String author = nDocVer.getAuthor();
 			long size = nDocVer.getSize();
 
-			if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
-				FsDataStore.delete(nDocVer.getUuid());
-			}
+			FsDataStore.delete(session, nDocVer);
 
 			session.delete(nDocVer);
 
@@ -736,13 +724,13 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			if (tmpFile.exists()) {
 				newDocVersion.setSize(tmpFile.length());
 				is = new FileInputStream(tmpFile);
-				FsDataStore.persist(newDocVersion, is);
+				FsDataStore.persist(session, newDocVersion, is);
 				FileUtils.deleteQuietly(tmpFile);
 			} else {
 				// When there is no file uploaded from applet and user perform checkin
 				newDocVersion.setSize(curDocVersion.getSize());
 				newDocVersion.setChecksum(curDocVersion.getChecksum());
-				FsDataStore.copy(curDocVersion, newDocVersion);
+				FsDataStore.copy(session, curDocVersion, newDocVersion);
 			}
 
 			session.save(newDocVersion);
@@ -770,7 +758,7 @@ public class NodeDocumentVersionDAO extends GenericDAO<NodeDocumentVersion, Stri
 			HibernateUtil.rollback(tx);
 
 			// What happen when create fails? This datastore file should be deleted!
-			FsDataStore.delete(newDocVersion.getUuid());
+			FsDataStore.discard(newDocVersion);
 			throw new DatabaseException(e.getMessage(), e);
 		} finally {
 			IOUtils.closeQuietly(is);
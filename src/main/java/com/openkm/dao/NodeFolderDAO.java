@@ -27,10 +27,13 @@ import com.openkm.core.*;
 import com.openkm.dao.bean.NodeBase;
 import com.openkm.dao.bean.NodeFolder;
 import com.openkm.dao.bean.NodeMail;
+import com.openkm.dao.bean.PendingTask;
 import com.openkm.extension.dao.ForumDAO;
 import com.openkm.extension.dao.StapleGroupDAO;
 import com.openkm.extension.dao.WikiPageDAO;
 import com.openkm.module.db.stuff.DbAccessManager;
+import com.openkm.module.db.stuff.EffectivePermissionCache;
+import com.openkm.module.db.stuff.InheritedReadAccess;
 import com.openkm.module.db.stuff.SecurityHelper;
 import com.openkm.spring.PrincipalUtils;
 import com.openkm.util.SystemProfiling;
@@ -69,6 +72,7 @@ public class NodeFolderDAO {
 			tx = session.beginTransaction();
 
 			session.save(nFolder);
+			NodeTreeDAO.getInstance().insert(session, nFolder);
 			HibernateUtil.commit(tx);
 			log.debug("createBase: void");
 		} catch (HibernateException e) {
@@ -100,6 +104,7 @@ public class NodeFolderDAO {
 			NodeBaseDAO.getInstance().checkItemExistence(session, nFolder.getParent(), nFolder.getName());
 
 			session.save(nFolder);
+			NodeTreeDAO.getInstance().insert(session, nFolder);
 			HibernateUtil.commit(tx);
 			log.debug("create: void");
 		} catch (PathNotFoundException | AccessDeniedException | ItemExistsException | DatabaseException e) {
@@ -418,6 +423,7 @@ public class NodeFolderDAO {
 
 			if (Config.STORE_NODE_PATH) {
 				nFld.setPath(parentNode.getPath() + "/" + newName);
+				addUpdatePathTask(session, uuid, "RENAME_FOLDER");
 			}
 
 			session.update(nFld);
@@ -476,13 +482,17 @@ public class NodeFolderDAO {
 			}
 
 			nFld.setParent(dstUuid);
+			NodeTreeDAO.getInstance().move(session, uuid, dstUuid);
 
 			if (Config.STORE_NODE_PATH) {
 				nFld.setPath(nDstFld.getPath() + "/" + nFld.getName());
+				addUpdatePathTask(session, uuid, "MOVE_FOLDER");
 			}
 
+			InheritedReadAccess.subtreeChanged(session, nFld);
 			session.update(nFld);
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			SystemProfiling.log(uuid, System.currentTimeMillis() - begin);
 			log.trace("move.Time: {}", System.currentTimeMillis() - begin);
 			log.debug("move: void");
@@ -532,14 +542,18 @@ public class NodeFolderDAO {
 
 			nFld.setContext(nTrashFld.getContext());
 			nFld.setParent(trashUuid);
+			NodeTreeDAO.getInstance().move(session, uuid, trashUuid);
 			nFld.setName(testName);
 
 			if (Config.STORE_NODE_PATH) {
 				nFld.setPath(nTrashFld.getPath() + "/" + testName);
+				addUpdatePathTask(session, uuid, "DELETE_FOLDER");
 			}
 
+			InheritedReadAccess.subtreeChanged(session, nFld);
 			session.update(nFld);
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			SystemProfiling.log(uuid, System.currentTimeMillis() - begin);
 			log.trace("delete.Time: {}", System.currentTimeMillis() - begin);
 			log.debug("delete: void");
@@ -732,6 +746,7 @@ public class NodeFolderDAO {
 
 			// Delete the node itself
 			session.delete(nFolder);
+			NodeTreeDAO.getInstance().delete(session, nFolder.getUuid());
 
 			// Update user items size
 			if (Config.USER_ITEM_CACHE) {
@@ -788,4 +803,18 @@ public class NodeFolderDAO {
 			initialize(nFolder);
 		}
 	}
+
+	/**
+	 * Queue the update of the stored path of the folder descendants in the same transaction
+	 * which changes the folder, so the stored path is never trusted in the meantime.
+	 */
+	private void addUpdatePathTask(Session session, String uuid, String params) throws HibernateException {
+		PendingTask pt = new PendingTask();
+		pt.setNode(uuid);
+		pt.setTask(PendingTask.TASK_UPDATE_PATH);
+		pt.setParams(params);
+		pt.setCreated(Calendar.getInstance());
+		NodeBaseDAO.getInstance().pathTaskQueued(session);
+		session.save(pt);
+	}
 }
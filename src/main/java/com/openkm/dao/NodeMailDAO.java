@@ -28,6 +28,8 @@ import com.openkm.dao.bean.NodeMail;
 import com.openkm.extension.dao.ForumDAO;
 import com.openkm.extension.dao.StapleGroupDAO;
 import com.openkm.extension.dao.WikiPageDAO;
+import com.openkm.module.db.stuff.EffectivePermissionCache;
+import com.openkm.module.db.stuff.InheritedReadAccess;
 import com.openkm.module.db.stuff.SecurityHelper;
 import com.openkm.spring.PrincipalUtils;
 import com.openkm.util.FormatUtil;
@@ -84,6 +86,7 @@ public class NodeMailDAO {
 			nMail.setContent(FormatUtil.trimUnicodeSurrogates(nMail.getContent()));
 
 			session.save(nMail);
+			NodeTreeDAO.getInstance().insert(session, nMail);
 			HibernateUtil.commit(tx);
 			log.debug("create: void");
 		} catch (PathNotFoundException | AccessDeniedException | ItemExistsException | DatabaseException e) {
@@ -442,6 +445,7 @@ public class NodeMailDAO {
 
 			if (Config.STORE_NODE_PATH) {
 				nMail.setPath(parentNode.getPath() + "/" + newName);
+				updateAttachmentsPath(session, nMail);
 			}
 
 			session.update(nMail);
@@ -494,13 +498,17 @@ public class NodeMailDAO {
 			}
 
 			nMail.setParent(dstUuid);
+			NodeTreeDAO.getInstance().move(session, uuid, dstUuid);
 
 			if (Config.STORE_NODE_PATH) {
 				nMail.setPath(nDstFld.getPath() + "/" + nMail.getName());
+				updateAttachmentsPath(session, nMail);
 			}
 
+			InheritedReadAccess.subtreeChanged(session, nMail);
 			session.update(nMail);
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			SystemProfiling.log(uuid, System.currentTimeMillis() - begin);
 			log.trace("move.Time: {}", System.currentTimeMillis() - begin);
 			log.debug("move: void");
@@ -551,14 +559,18 @@ public class NodeMailDAO {
 
 			nMail.setContext(nTrashFld.getContext());
 			nMail.setParent(trashUuid);
+			NodeTreeDAO.getInstance().move(session, uuid, trashUuid);
 			nMail.setName(testName);
 
 			if (Config.STORE_NODE_PATH) {
 				nMail.setPath(nTrashFld.getPath() + "/" + testName);
+				updateAttachmentsPath(session, nMail);
 			}
 
+			InheritedReadAccess.subtreeChanged(session, nMail);
 			session.update(nMail);
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 			SystemProfiling.log(uuid, System.currentTimeMillis() - begin);
 			log.trace("delete.Time: {}", System.currentTimeMillis() - begin);
 			log.debug("delete: void");
@@ -584,6 +596,20 @@ public class NodeMailDAO {
 		}
 	}
 
+	/**
+	 * Update stored path of mail attachments. They are not processed by any UpdatePathTask.
+	 */
+	@SuppressWarnings("unchecked")
+	private void updateAttachmentsPath(Session session, NodeMail nMail) throws HibernateException {
+		String qs = "from NodeBase nb where nb.parent=:parent";
+		Query q = session.createQuery(qs);
+		q.setString("parent", nMail.getUuid());
+
+		for (NodeBase nBase : (List<NodeBase>) q.list()) {
+			nBase.setPath(nMail.getPath() + "/" + nBase.getName());
+		}
+	}
+
 	/**
 	 * Purge in depth
 	 */
@@ -670,6 +696,7 @@ public class NodeMailDAO {
 
 		// Delete the node itself
 		session.delete(nMail);
+		NodeTreeDAO.getInstance().delete(session, nMail.getUuid());
 
 		// Activity log
 		UserActivity.log(user, "PURGE_MAIL", nMail.getUuid(), path, null);
@@ -0,0 +1,292 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.bean.NodeBase;
+import com.openkm.dao.bean.NodeTree;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.transaction.Synchronization;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * NodeTreeDAO
+ *
+ * Maintain the node tree closure table, so subtree operations can be resolved with a single
+ * query instead of walking the tree folder by folder. The table is maintained in the same
+ * transaction as the node creation, move or purge. Until it has been built for an existing
+ * repository, callers must fall back to walk the tree.
+ * <p>
+ * Readiness is checked once at startup and after every rebuild, in its own session, never
+ * inside a transaction which is changing the tree.
+ * <p>
+ * Node creations, moves and purges wait while the table is being rebuilt, and a rebuild waits
+ * for the transactions already changing the tree to finish. This only applies to the local
+ * cluster node, so rebuild when the repository is in maintenance mode.
+ */
+public class NodeTreeDAO extends GenericDAO<NodeTree, Long> {
+	private static Logger log = LoggerFactory.getLogger(NodeTreeDAO.class);
+	private static final int IN_BATCH_SIZE = 500;
+	private static final long REBUILD_LOCK_TIMEOUT = 5 * 60;
+	private static final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+	private static NodeTreeDAO single = new NodeTreeDAO();
+	private static volatile boolean ready = false;
+
+	private NodeTreeDAO() {
+	}
+
+	public static NodeTreeDAO getInstance() {
+		return single;
+	}
+
+	/**
+	 * Check if the closure table has been built for every node, as found by the last check.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Check if the closure table has been built for every node, called on startup before the
+	 * tree is changed. Tree changes wait until finished.
+	 */
+	public boolean check() throws DatabaseException {
+		log.debug("check()");
+		Session session = null;
+
+		rebuildLock.writeLock().lock();
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			ready = evaluate(session);
+			log.debug("check: {}", ready);
+			return ready;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+			rebuildLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Check if the closure table has been built for every node. Every node has a row at depth 0,
+	 * plus the one of the repository root. Then ancestors are validated against the parent of
+	 * each node: every ancestor row must come from an ancestor row of the parent, and every
+	 * ancestor row of the parent must have been propagated to the node.
+	 */
+	private boolean evaluate(Session session) throws HibernateException {
+		String qsStale = "select count(*) from NodeTree nt, NodeBase nb where nt.descendant=nb.uuid and nt.depth>0 "
+				+ "and not exists (select up.id from NodeTree up where up.ancestor=nt.ancestor and up.descendant=nb.parent "
+				+ "and up.depth=nt.depth-1)";
+		String qsMissing = "select count(*) from NodeTree up, NodeBase nb where up.descendant=nb.parent "
+				+ "and not exists (select nt.id from NodeTree nt where nt.ancestor=up.ancestor and nt.descendant=nb.uuid "
+				+ "and nt.depth=up.depth+1)";
+		Long rows = (Long) session.createQuery("select count(*) from NodeTree nt where nt.depth=0").uniqueResult();
+		Long nodes = (Long) session.createQuery("select count(*) from NodeBase nb").uniqueResult();
+		boolean built = rows == nodes + 1;
+
+		if (!built) {
+			log.warn("Node tree not built ({} of {} nodes), subtree operations will walk the tree", rows, nodes + 1);
+		} else {
+			Long stale = (Long) session.createQuery(qsStale).uniqueResult();
+			Long missing = (Long) session.createQuery(qsMissing).uniqueResult();
+			built = stale == 0 && missing == 0;
+
+			if (!built) {
+				log.warn("Node tree not consistent ({} stale and {} missing ancestors), subtree operations will walk the tree",
+						stale, missing);
+			}
+		}
+
+			return built;
+	}
+
+	/**
+	 * Wait until any rebuild has finished, and keep new rebuilds waiting until the session
+	 * transaction ends.
+	 */
+	private void lockStructure(Session session) throws HibernateException {
+		Transaction tx = session.getTransaction();
+
+		if (tx != null && tx.isActive()) {
+			rebuildLock.readLock().lock();
+			tx.registerSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					rebuildLock.readLock().unlock();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Add a new node as descendant of its parent ancestors.
+	 */
+	@SuppressWarnings("unchecked")
+	public void insert(Session session, NodeBase node) throws HibernateException {
+		log.debug("insert({}, {})", session, node.getUuid());
+		String qs = "select nt.ancestor, nt.depth from NodeTree nt where nt.descendant=:parent";
+
+		lockStructure(session);
+
+		if (ready) {
+			Query q = session.createQuery(qs);
+			q.setString("parent", node.getParent());
+
+			for (Object[] row : (List<Object[]>) q.list()) {
+				session.save(new NodeTree((String) row[0], node.getUuid(), (Integer) row[1] + 1));
+			}
+
+			session.save(new NodeTree(node.getUuid(), node.getUuid(), 0));
+		}
+
+		log.debug("insert: void");
+	}
+
+	/**
+	 * Move a node and all its descendants under a new parent.
+	 */
+	@SuppressWarnings("unchecked")
+	public void move(Session session, String uuid, String dstUuid) throws HibernateException {
+		log.debug("move({}, {}, {})", session, uuid, dstUuid);
+		String qsAncestors = "select nt.ancestor from NodeTree nt where nt.descendant=:node and nt.depth>0";
+		String qsSubtree = "select nt.descendant from NodeTree nt where nt.ancestor=:node";
+		String qsDelete = "delete from NodeTree nt where nt.ancestor in (:ancestors) and nt.descendant in (:descendants)";
+		String qsInsert = "insert into NodeTree (ancestor, descendant, depth) "
+				+ "select sup.ancestor, sub.descendant, sup.depth + sub.depth + 1 from NodeTree sup, NodeTree sub "
+				+ "where sup.descendant=:parent and sub.ancestor=:node";
+
+		lockStructure(session);
+
+		if (ready) {
+			Query q = session.createQuery(qsAncestors);
+			q.setString("node", uuid);
+			List<String> ancestors = q.list();
+
+			if (!ancestors.isEmpty()) {
+				q = session.createQuery(qsSubtree);
+				q.setString("node", uuid);
+				List<String> subtree = q.list();
+
+				for (int i = 0; i < subtree.size(); i += IN_BATCH_SIZE) {
+					q = session.createQuery(qsDelete);
+					q.setParameterList("ancestors", ancestors);
+					q.setParameterList("descendants", subtree.subList(i, Math.min(i + IN_BATCH_SIZE, subtree.size())));
+					q.executeUpdate();
+				}
+			}
+
+			q = session.createQuery(qsInsert);
+			q.setString("parent", dstUuid);
+			q.setString("node", uuid);
+			int rows = q.executeUpdate();
+			log.debug("move: {} rows", rows);
+		}
+	}
+
+	/**
+	 * Remove a purged node. Descendants are expected to be purged too.
+	 */
+	public void delete(Session session, String uuid) throws HibernateException {
+		log.debug("delete({}, {})", session, uuid);
+		String qs = "delete from NodeTree nt where nt.descendant=:node";
+
+		lockStructure(session);
+
+		if (ready) {
+			Query q = session.createQuery(qs);
+			q.setString("node", uuid);
+			q.executeUpdate();
+		}
+
+		log.debug("delete: void");
+	}
+
+	/**
+	 * Build the closure table from scratch, tree level by tree level. Nodes not connected to
+	 * the repository root only get their own row. Tree changes wait until finished.
+	 */
+	public void rebuild() throws DatabaseException {
+		log.debug("rebuild()");
+		String qsSelf = "insert into NodeTree (ancestor, descendant, depth) select nb.uuid, nb.uuid, 0 from NodeBase nb";
+		String qsLevel = "insert into NodeTree (ancestor, descendant, depth) "
+				+ "select nt.ancestor, nb.uuid, nt.depth + 1 from NodeBase nb, NodeTree nt, NodeTree lvl "
+				+ "where lvl.ancestor=:root and lvl.depth=:level and nb.parent=lvl.descendant and nt.descendant=lvl.descendant";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			if (!rebuildLock.writeLock().tryLock(REBUILD_LOCK_TIMEOUT, TimeUnit.SECONDS)) {
+				throw new DatabaseException("Node tree still being changed, can't rebuild");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DatabaseException("Node tree rebuild interrupted", e);
+		}
+
+		ready = false;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			session.createQuery("delete from NodeTree").executeUpdate();
+			session.save(new NodeTree(Config.ROOT_NODE_UUID, Config.ROOT_NODE_UUID, 0));
+			session.flush();
+			int rows = session.createQuery(qsSelf).executeUpdate();
+			HibernateUtil.commit(tx);
+			log.info("Node tree nodes: {}", rows);
+
+			for (int level = 0; rows > 0; level++) {
+				tx = session.beginTransaction();
+				Query q = session.createQuery(qsLevel);
+				q.setString("root", Config.ROOT_NODE_UUID);
+				q.setInteger("level", level);
+				rows = q.executeUpdate();
+				HibernateUtil.commit(tx);
+				log.info("Node tree level {}: {} rows", level + 1, rows);
+			}
+
+			ready = evaluate(session);
+			log.debug("rebuild: void");
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+			rebuildLock.writeLock().unlock();
+		}
+	}
+}
@@ -60,6 +60,30 @@ public class ProfilingDAO {
 		}
 	}
 
+	/**
+	 * Create several profiling entries
+	 */
+	public static void create(List<Profiling> profilings) throws DatabaseException {
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+
+			for (Profiling profiling : profilings) {
+				session.save(profiling);
+			}
+
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
 	/**
 	 * Clear table
 	 */
@@ -0,0 +1,160 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.core.Config;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.Work;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Schema changes which "hibernate.hbm2ddl.auto=update" does not perform, like widening
+ * an existing column. Executed on every startup, so they also apply when schema update
+ * is disabled.
+ */
+public class SchemaUpgrade {
+	private static Logger log = LoggerFactory.getLogger(SchemaUpgrade.class);
+	private static final String VERSION_TABLE = "OKM_NODE_DOCUMENT_VERSION";
+	private static final String CHECKSUM_COLUMN = "NDV_CHECKSUM";
+	private static final int CHECKSUM_LENGTH = 64;
+	private static volatile boolean checksumUpgraded = false;
+
+	private SchemaUpgrade() {
+	}
+
+	/**
+	 * Apply pending schema changes.
+	 */
+	public static void upgrade(SessionFactory sessionFactory) {
+		log.debug("upgrade({})", sessionFactory);
+		Session session = null;
+
+		try {
+			session = sessionFactory.openSession();
+			session.doWork(new Work() {
+				@Override
+				public void execute(Connection con) throws SQLException {
+					checksumUpgraded = widenColumn(con, VERSION_TABLE, CHECKSUM_COLUMN, CHECKSUM_LENGTH);
+				}
+			});
+		} catch (HibernateException e) {
+			log.error("Schema upgrade failed: {}", e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+
+		log.debug("upgrade: void");
+	}
+
+	/**
+	 * Check if the document version checksum column can store a SHA-256 checksum.
+	 */
+	public static boolean isChecksumUpgraded() {
+		return checksumUpgraded;
+	}
+
+	/**
+	 * Widen a VARCHAR column if it is shorter than the given length.
+	 *
+	 * @return true if the column has the required length.
+	 */
+	private static boolean widenColumn(Connection con, String table, String column, int length) throws SQLException {
+		int current = getColumnSize(con, table, column);
+
+		if (current < 0) {
+			log.warn("Column {}.{} not found", table, column);
+			return false;
+		} else if (current >= length) {
+			return true;
+		}
+
+		String sql = getAlterColumnSql(table, column, length);
+		log.info("Widening column {}.{} from {} to {}: {}", table, column, current, length, sql);
+		boolean autoCommit = con.getAutoCommit();
+		Statement stmt = null;
+
+		try {
+			con.setAutoCommit(true);
+			stmt = con.createStatement();
+			stmt.executeUpdate(sql);
+		} catch (SQLException e) {
+			log.error("Unable to widen column {}.{}, execute manually: {}", table, column, sql);
+			log.error(e.getMessage(), e);
+		} finally {
+			LegacyDAO.close(stmt);
+			con.setAutoCommit(autoCommit);
+		}
+
+		return getColumnSize(con, table, column) >= length;
+	}
+
+	/**
+	 * Get column size from database metadata, or -1 if not found.
+	 */
+	private static int getColumnSize(Connection con, String table, String column) throws SQLException {
+		DatabaseMetaData md = con.getMetaData();
+
+		// Identifiers may be stored in upper or lower case depending on the database
+		for (String[] names : new String[][]{{table, column}, {table.toLowerCase(), column.toLowerCase()}}) {
+			ResultSet rs = md.getColumns(null, null, names[0], names[1]);
+
+			try {
+				if (rs.next()) {
+					return rs.getInt("COLUMN_SIZE");
+				}
+			} finally {
+				rs.close();
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Get dialect specific statement to change a VARCHAR column length.
+	 */
+	private static String getAlterColumnSql(String table, String column, int length) {
+		String dialect = Config.HIBERNATE_DIALECT == null ? "" : Config.HIBERNATE_DIALECT;
+
+		if (dialect.contains("MySQL")) {
+			return "ALTER TABLE " + table + " MODIFY " + column + " VARCHAR(" + length + ")";
+		} else if (dialect.contains("Oracle")) {
+			return "ALTER TABLE " + table + " MODIFY (" + column + " VARCHAR2(" + length + "))";
+		} else if (dialect.contains("PostgreSQL")) {
+			return "ALTER TABLE " + table + " ALTER COLUMN " + column + " TYPE VARCHAR(" + length + ")";
+		} else if (dialect.contains("Derby")) {
+			return "ALTER TABLE " + table + " ALTER COLUMN " + column + " SET DATA TYPE VARCHAR(" + length + ")";
+		} else {
+			// SQL Server, H2 and HSQLDB
+			return "ALTER TABLE " + table + " ALTER COLUMN " + column + " VARCHAR(" + length + ")";
+		}
+	}
+}
@@ -41,11 +41,14 @@ import com.openkm.util.SystemProfiling;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.index.TermPositionVector;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.*;
@@ -68,9 +71,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Search results are filtered by com.openkm.module.db.stuff.ReadAccessFilterFactory, which limit the results only for
@@ -82,7 +91,9 @@ public class SearchDAO {
 	private static Logger log = LoggerFactory.getLogger(SearchDAO.class);
 	private static SearchDAO single = new SearchDAO();
 	private static final int MAX_FRAGMENT_LEN = 256;
+	private static final int CURSOR_MIN_WINDOW = 20;
 	public static final String SEARCH_LUCENE = "lucene";
+	public static final String SEARCH_LUCENE_INHERITED = "lucene_inherited";
 	public static final String SEARCH_ACCESS_MANAGER_MORE = "am_more";
 	public static final String SEARCH_ACCESS_MANAGER_WINDOW = "am_window";
 	public static final String SEARCH_ACCESS_MANAGER_LIMITED = "am_limited";
@@ -129,16 +140,12 @@ public class SearchDAO {
 			ftSession = Search.getFullTextSession(session);
 			tx = ftSession.beginTransaction();
 
-			NodeResultSet result = null;
+			String cacheKey = getCacheKey(ftSession, query, offset + "," + limit);
+			NodeResultSet result = getCachedResult(ftSession, cacheKey);
 
-			if (SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryLucene(ftSession, query, offset, limit);
-			} else if (SEARCH_ACCESS_MANAGER_MORE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryAccessManagerMore(ftSession, query, offset, limit);
-			} else if (SEARCH_ACCESS_MANAGER_WINDOW.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryAccessManagerWindow(ftSession, query, offset, limit);
-			} else if (SEARCH_ACCESS_MANAGER_LIMITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryAccessManagerLimited(ftSession, query, offset, limit);
+			if (result == null) {
+				result = runQuery(ftSession, query, offset, limit);
+				putCachedResult(cacheKey, result);
 			}
 
 			HibernateUtil.commit(tx);
@@ -155,6 +162,46 @@ public class SearchDAO {
 		}
 	}
 
+	/**
+	 * Search by query continuing from a cursor returned in a previous {@link NodeResultSet}. A null cursor
+	 * returns the first page. Unlike offset pagination, the Lucene hits before the cursor are not read nor
+	 * checked again by the access manager, so deep pages cost the same as the first one.
+	 */
+	public NodeResultSet findByQuery(Query query, String cursor, int limit) throws ParseException, DatabaseException {
+		log.debug("findByQuery({}, {}, {})", query, cursor, limit);
+		FullTextSession ftSession = null;
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			long begin = System.currentTimeMillis();
+			SearchCursor from = SearchCursor.decode(cursor, query);
+			session = HibernateUtil.getSessionFactory().openSession();
+			ftSession = Search.getFullTextSession(session);
+			tx = ftSession.beginTransaction();
+
+			String cacheKey = getCacheKey(ftSession, query, cursor + "," + limit);
+			NodeResultSet result = getCachedResult(ftSession, cacheKey);
+
+			if (result == null) {
+				result = runQuery(ftSession, query, from, limit);
+				putCachedResult(cacheKey, result);
+			}
+
+			HibernateUtil.commit(tx);
+			SystemProfiling.log(query + ", " + cursor + ", " + limit, System.currentTimeMillis() - begin);
+			log.trace("findByQuery.Time: {}", FormatUtil.formatMiliSeconds(System.currentTimeMillis() - begin));
+			log.debug("findByQuery: {}", result);
+			return result;
+		} catch (IOException | InvalidTokenOffsetsException | HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(ftSession);
+			HibernateUtil.close(session);
+		}
+	}
+
 	/**
 	 * Search by simple query
 	 */
@@ -173,17 +220,13 @@ public class SearchDAO {
 
 			QueryParser parser = new QueryParser(Config.LUCENE_VERSION, NodeDocument.TEXT_FIELD, analyzer);
 			Query query = parser.parse(expression);
-			NodeResultSet result = null;
 			log.debug("findBySimpleQuery.query: {}", query);
+			String cacheKey = getCacheKey(ftSession, query, offset + "," + limit);
+			NodeResultSet result = getCachedResult(ftSession, cacheKey);
 
-			if (SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryLucene(ftSession, query, offset, limit);
-			} else if (SEARCH_ACCESS_MANAGER_MORE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryAccessManagerMore(ftSession, query, offset, limit);
-			} else if (SEARCH_ACCESS_MANAGER_WINDOW.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryAccessManagerWindow(ftSession, query, offset, limit);
-			} else if (SEARCH_ACCESS_MANAGER_LIMITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
-				result = runQueryAccessManagerLimited(ftSession, query, offset, limit);
+			if (result == null) {
+				result = runQuery(ftSession, query, offset, limit);
+				putCachedResult(cacheKey, result);
 			}
 
 			HibernateUtil.commit(tx);
@@ -203,6 +246,48 @@ public class SearchDAO {
 		}
 	}
 
+	/**
+	 * Run query using the configured security evaluation
+	 */
+	private NodeResultSet runQuery(FullTextSession ftSession, Query query, int offset, int limit) throws IOException,
+			InvalidTokenOffsetsException, HibernateException, DatabaseException {
+		NodeResultSet result = null;
+
+		if (SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION) || SEARCH_LUCENE_INHERITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			result = runQueryLucene(ftSession, query, offset, limit);
+		} else if (SEARCH_ACCESS_MANAGER_MORE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			result = runQueryAccessManagerMore(ftSession, query, offset, limit);
+		} else if (SEARCH_ACCESS_MANAGER_WINDOW.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			result = runQueryAccessManagerWindow(ftSession, query, offset, limit);
+		} else if (SEARCH_ACCESS_MANAGER_LIMITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			result = runQueryAccessManagerLimited(ftSession, query, offset, limit);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Run query from a search cursor using the configured security evaluation
+	 */
+	private NodeResultSet runQuery(FullTextSession ftSession, Query query, SearchCursor from, int limit) throws IOException,
+			InvalidTokenOffsetsException, HibernateException, DatabaseException {
+		NodeResultSet result = null;
+
+		if (SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION) || SEARCH_LUCENE_INHERITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			// Hits are already pruned by Lucene, so the position is the offset
+			result = runQueryLucene(ftSession, query, from.granted, limit);
+
+			if (from.granted + result.getResults().size() < result.getTotal()) {
+				int position = from.granted + result.getResults().size();
+				result.setCursor(new SearchCursor(query, position, position, null).encode());
+			}
+		} else {
+			result = runQueryAccessManagerCursor(ftSession, query, from, limit);
+		}
+
+		return result;
+	}
+
 	/**
 	 * Parses a query string, returning a {@link org.apache.lucene.search.Query}.
 	 *
@@ -479,18 +564,128 @@ public class SearchDAO {
 		return result;
 	}
 
+	/**
+	 * Security is not evaluate in Lucene but by AccessManager, like the other runQueryAccessManager methods,
+	 * but the Lucene hits are read in windows starting at the cursor position instead of iterating from the
+	 * first one. Every window is checked with a single access manager call. The amount of pending results
+	 * checked after the page depends on the configured evaluation mode, as in the offset based methods.
+	 * <p>
+	 * If the hit before the cursor position is not the last returned node anymore (the index has changed
+	 * since the previous page), the position is not reliable and the hits are read again from the beginning
+	 * skipping the already returned granted results.
+	 */
+	@SuppressWarnings("unchecked")
+	private NodeResultSet runQueryAccessManagerCursor(FullTextSession ftSession, Query query, SearchCursor from,
+			int limit) throws IOException, InvalidTokenOffsetsException, DatabaseException, HibernateException {
+		log.debug("runQueryAccessManagerCursor({}, {}, {}, {})", ftSession, query, from, limit);
+		List<NodeQueryResult> results = new ArrayList<>();
+		NodeResultSet result = new NodeResultSet();
+		QueryScorer scorer = new QueryScorer(query, NodeDocument.TEXT_FIELD);
+		DbAccessManager am = SecurityHelper.getAccessManager();
+		int window = Math.max(limit * 2, CURSOR_MIN_WINDOW);
+		int position = from.position;
+		int skip = 0;
+		int pending = 0;
+		int maxPending = 0;
+		int next = 0;
+		String lastUuid = null;
+		boolean done = false;
+
+		// Highlight using a CSS style
+		SimpleHTMLFormatter formatter = new SimpleHTMLFormatter("<span class='highlight'>", "</span>");
+		Highlighter highlighter = new Highlighter(formatter, scorer);
+		highlighter.setTextFragmenter(new SimpleSpanFragmenter(scorer, MAX_FRAGMENT_LEN));
+
+		if (SEARCH_ACCESS_MANAGER_MORE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			maxPending = 1;
+		} else if (SEARCH_ACCESS_MANAGER_WINDOW.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			maxPending = limit;
+		} else if (SEARCH_ACCESS_MANAGER_LIMITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			maxPending = Math.max(0, Config.MAX_SEARCH_RESULTS - from.granted - limit);
+		}
+
+		// Check the cursor is still valid
+		if (position > 0 && !from.matches(ftSession, query)) {
+			log.info("Search cursor outdated, reading hits from the beginning: {}", from);
+			position = 0;
+			skip = from.granted;
+		}
+
+		next = position;
+
+		while (!done) {
+			FullTextQuery ftq = ftSession.createFullTextQuery(query, NodeDocument.class, NodeFolder.class, NodeMail.class);
+			ftq.setProjection(FullTextQuery.SCORE, FullTextQuery.THIS);
+			ftq.enableFullTextFilter("readAccess");
+			ftq.setFirstResult(position);
+			ftq.setMaxResults(window);
+			List<Object[]> hits = ftq.list();
+			List<NodeBase> nodes = new ArrayList<>();
+
+			for (Object[] qRes : hits) {
+				nodes.add((NodeBase) qRes[1]);
+			}
+
+			Map<String, Boolean> granted = am.isGranted(nodes, Permission.READ);
+
+			for (Iterator<Object[]> it = hits.iterator(); it.hasNext() && !done; ) {
+				Object[] qRes = it.next();
+				Float score = (Float) qRes[0];
+				NodeBase nBase = (NodeBase) qRes[1];
+				position++;
+
+				if (Boolean.TRUE.equals(granted.get(nBase.getUuid()))) {
+					if (skip > 0) {
+						skip--;
+					} else if (results.size() < limit) {
+						// Add result
+						addResult(ftSession, results, highlighter, score, nBase);
+						lastUuid = nBase.getUuid();
+						next = position;
+					} else {
+						pending++;
+					}
+				}
+
+				done = results.size() >= limit && pending >= maxPending;
+			}
+
+			done = done || hits.size() < window;
+		}
+
+		if (pending > 0) {
+			result.setCursor(new SearchCursor(query, next, from.granted + results.size(), lastUuid).encode());
+		}
+
+		result.setTotal(from.granted + results.size() + pending);
+		result.setResults(results);
+		log.debug("runQueryAccessManagerCursor: {}", result);
+		return result;
+	}
+
 	/**
 	 * Add result
 	 */
 	private void addResult(FullTextSession ftSession, List<NodeQueryResult> results, Highlighter highlighter, Float score,
 			NodeBase nBase)	throws IOException, InvalidTokenOffsetsException, DatabaseException {
-		NodeQueryResult qr = new NodeQueryResult();
-		NodeDocument nDocument = null;
-		NodeMail nMail = null;
 		String excerpt = null;
 
+		// Excerpts can be requested later only for the displayed results
+		if (!Config.SEARCH_LAZY_EXCERPTS) {
+			excerpt = getExcerpt(null, highlighter, nBase);
+		}
+
+		addResult(results, score, excerpt, nBase);
+	}
+
+	/**
+	 * Add result with an already calculated excerpt
+	 */
+	private void addResult(List<NodeQueryResult> results, Float score, String excerpt, NodeBase nBase) throws DatabaseException {
+		NodeQueryResult qr = new NodeQueryResult();
+
 		if (nBase instanceof NodeDocument) {
-			nDocument = (NodeDocument) nBase;
+			NodeDocument nDocument = (NodeDocument) nBase;
 
 			if (NodeMailDAO.getInstance().itemExists(nDocument.getParent())) {
 				log.debug("NODE DOCUMENT - ATTACHMENT");
@@ -505,21 +700,15 @@ public class SearchDAO {
 			qr.setFolder(nFld);
 		} else if (nBase instanceof NodeMail) {
 			log.debug("NODE MAIL");
-			nMail = (NodeMail) nBase;
+			NodeMail nMail = (NodeMail) nBase;
 			qr.setMail(nMail);
 		} else {
 			log.warn("NODE UNKNOWN");
 		}
 
-		if (nDocument != null && nDocument.getText() != null) {
-			excerpt = highlighter.getBestFragment(analyzer, NodeDocument.TEXT_FIELD, nDocument.getText());
-		} else if (nMail != null && nMail.getContent() != null) {
-			excerpt = highlighter.getBestFragment(analyzer, NodeMail.CONTENT_FIELD, nMail.getContent());
-		}
-
 		log.debug("Result: SCORE({}), EXCERPT({}), DOCUMENT({})", score, excerpt, nBase);
 		qr.setScore(score);
-		qr.setExcerpt(FormatUtil.stripNonValidXMLCharacters(excerpt));
+		qr.setExcerpt(excerpt);
 
 		if (qr.getDocument() != null) {
 			NodeDocumentDAO.getInstance().initialize(qr.getDocument(), false);
@@ -536,6 +725,199 @@ public class SearchDAO {
 		}
 	}
 
+	/**
+	 * Get the search result cache key, or null if the cache is disabled
+	 */
+	private String getCacheKey(FullTextSession ftSession, Query query, String page) {
+		if (Config.SEARCH_RESULT_CACHE) {
+			return SearchResultCache.getKey(ftSession, query, page);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Get search results from cache loading again the result nodes, or null if not cached
+	 */
+	private NodeResultSet getCachedResult(FullTextSession ftSession, String key) throws DatabaseException {
+		SearchResultCache.CachedResultSet crs = key == null ? null : SearchResultCache.get(key);
+
+		if (crs != null) {
+			List<NodeQueryResult> results = new ArrayList<>();
+			NodeResultSet result = new NodeResultSet();
+
+			for (SearchResultCache.CachedResult cr : crs.getResults()) {
+				NodeBase nBase = (NodeBase) ftSession.get(NodeBase.class, cr.getUuid());
+
+				if (nBase == null) {
+					// Deleted after the index version was read
+					return null;
+				}
+
+				addResult(results, cr.getScore(), cr.getExcerpt(), nBase);
+			}
+
+			result.setTotal(crs.getTotal());
+			result.setCursor(crs.getCursor());
+			result.setResults(results);
+			log.debug("getCachedResult: {}", result);
+			return result;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Put search results in cache
+	 */
+	private void putCachedResult(String key, NodeResultSet result) {
+		if (key != null && result != null) {
+			SearchResultCache.put(key, result);
+		}
+	}
+
+	/**
+	 * Get highlighted excerpts of the given nodes, usually the visible results of a previous search
+	 * made with the same query. Nodes not readable by the user, without text or without any query
+	 * term are not included in the returned map.
+	 */
+	public Map<String, String> getExcerpts(Query query, List<String> uuids) throws DatabaseException {
+		log.debug("getExcerpts({}, {})", query, uuids);
+		Map<String, String> excerpts = new HashMap<>();
+		FullTextSession ftSession = null;
+		Session session = null;
+		Transaction tx = null;
+		IndexReader docReader = null;
+		IndexReader mailReader = null;
+
+		try {
+			long begin = System.currentTimeMillis();
+			session = HibernateUtil.getSessionFactory().openSession();
+			ftSession = Search.getFullTextSession(session);
+			tx = ftSession.beginTransaction();
+			List<NodeBase> nodes = new ArrayList<>();
+
+			for (String uuid : uuids) {
+				NodeBase nBase = (NodeBase) session.get(NodeBase.class, uuid);
+
+				if (nBase instanceof NodeDocument || nBase instanceof NodeMail) {
+					nodes.add(nBase);
+				}
+			}
+
+			// Security Check
+			Map<String, Boolean> granted = SecurityHelper.getAccessManager().isGranted(nodes, Permission.READ);
+
+			// Highlight using a CSS style
+			QueryScorer scorer = new QueryScorer(query, NodeDocument.TEXT_FIELD);
+			SimpleHTMLFormatter formatter = new SimpleHTMLFormatter("<span class='highlight'>", "</span>");
+			Highlighter highlighter = new Highlighter(formatter, scorer);
+			highlighter.setTextFragmenter(new SimpleSpanFragmenter(scorer, MAX_FRAGMENT_LEN));
+
+			for (NodeBase nBase : nodes) {
+				if (Boolean.TRUE.equals(granted.get(nBase.getUuid()))) {
+					String excerpt = null;
+
+					if (nBase instanceof NodeDocument) {
+						if (docReader == null) {
+							docReader = getReader(ftSession, NodeDocument.class);
+						}
+
+						excerpt = getExcerpt(docReader, highlighter, nBase);
+					} else {
+						if (mailReader == null) {
+							mailReader = getReader(ftSession, NodeMail.class);
+						}
+
+						excerpt = getExcerpt(mailReader, highlighter, nBase);
+					}
+
+					if (excerpt != null) {
+						excerpts.put(nBase.getUuid(), excerpt);
+					}
+				}
+			}
+
+			HibernateUtil.commit(tx);
+			log.trace("getExcerpts.Time: {}", FormatUtil.formatMiliSeconds(System.currentTimeMillis() - begin));
+			log.debug("getExcerpts: {}", excerpts.keySet());
+			return excerpts;
+		} catch (IOException | InvalidTokenOffsetsException | HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			closeReader(ftSession, docReader);
+			closeReader(ftSession, mailReader);
+			HibernateUtil.close(ftSession);
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Highlight the node text. When an index reader is given, the token stream is rebuilt from the stored
+	 * term vector so the text does not need to be analyzed again.
+	 */
+	private String getExcerpt(IndexReader reader, Highlighter highlighter, NodeBase nBase) throws IOException,
+			InvalidTokenOffsetsException {
+		String field = null;
+		String text = null;
+
+		if (nBase instanceof NodeDocument) {
+			field = NodeDocument.TEXT_FIELD;
+			text = ((NodeDocument) nBase).getText();
+		} else if (nBase instanceof NodeMail) {
+			field = NodeMail.CONTENT_FIELD;
+			text = ((NodeMail) nBase).getContent();
+		}
+
+		if (text == null) {
+			return null;
+		}
+
+		TokenStream tokenStream = null;
+
+		if (reader != null) {
+			tokenStream = getTermVectorTokenStream(reader, nBase.getUuid(), field);
+		}
+
+		if (tokenStream == null) {
+			tokenStream = analyzer.tokenStream(field, new StringReader(text));
+		}
+
+		return FormatUtil.stripNonValidXMLCharacters(highlighter.getBestFragment(tokenStream, text));
+	}
+
+	/**
+	 * Get a token stream from the term vector of a node field, or null if it has not been indexed with
+	 * positions and offsets (documents indexed before they were enabled).
+	 */
+	private TokenStream getTermVectorTokenStream(IndexReader reader, String uuid, String field) throws IOException {
+		TermDocs termDocs = reader.termDocs(new Term("uuid", uuid));
+
+		try {
+			if (termDocs.next()) {
+				TermFreqVector tfv = reader.getTermFreqVector(termDocs.doc(), field);
+
+				if (tfv instanceof TermPositionVector && tfv.size() > 0 && ((TermPositionVector) tfv).getOffsets(0) != null) {
+					return TokenSources.getTokenStream((TermPositionVector) tfv);
+				}
+			}
+		} finally {
+			termDocs.close();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Close an index reader opened by getReader
+	 */
+	private void closeReader(FullTextSession ftSession, IndexReader reader) {
+		if (ftSession != null && reader != null) {
+			ftSession.getSearchFactory().getReaderProvider().closeReader(reader);
+		}
+	}
+
 	/**
 	 * Find by parent in depth
 	 * <p>
@@ -567,7 +949,11 @@ public class SearchDAO {
 				NodeBase parentNode = (NodeBase) session.load(NodeBase.class, parentUuid);
 				SecurityHelper.checkRead(parentNode);
 
-				ret = findFoldersInDepthHelper(session, parentUuid);
+				if (NodeTreeDAO.getInstance().isReady()) {
+					ret = findFoldersInDepthTree(session, parentUuid);
+				} else {
+					ret = findFoldersInDepthHelper(session, parentUuid);
+				}
 				HibernateUtil.commit(tx);
 
 				// TODO DISABLE CACHE
@@ -589,6 +975,37 @@ public class SearchDAO {
 		return ret;
 	}
 
+	/**
+	 * Find by parent in depth from the node tree closure table. Like findFoldersInDepthHelper(),
+	 * folders below a not readable folder are skipped.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<String> findFoldersInDepthTree(Session session, String parentUuid) throws HibernateException,
+			DatabaseException {
+		log.debug("findFoldersInDepthTree({}, {})", "session", parentUuid);
+		List<String> ret = new ArrayList<>();
+		String qs = "select nf from NodeFolder nf, NodeTree nt where nt.ancestor=:parent and nt.depth>0 "
+				+ "and nf.uuid=nt.descendant order by nt.depth";
+		org.hibernate.Query q = session.createQuery(qs);
+		q.setString("parent", parentUuid);
+		List<NodeFolder> results = q.list();
+		Set<String> granted = new HashSet<>();
+		granted.add(parentUuid);
+
+		// Security Check
+		DbAccessManager am = SecurityHelper.getAccessManager();
+
+		for (NodeFolder node : results) {
+			if (granted.contains(node.getParent()) && am.isGranted(node, Permission.READ)) {
+				granted.add(node.getUuid());
+				ret.add(node.getUuid());
+			}
+		}
+
+		log.debug("findFoldersInDepthTree: {}", ret);
+		return ret;
+	}
+
 	/**
 	 * Find by parent in depth helper
 	 */
@@ -653,7 +1070,7 @@ public class SearchDAO {
 				query.add(new TermQuery(new Term("uuid", uuid)), Occur.MUST_NOT);
 				log.debug("moreLikeThis.Query: {}", query);
 
-				if (SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+				if (SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION) || SEARCH_LUCENE_INHERITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
 					result = runQueryLucene(ftSession, query, 0, maxResults);
 				} else if (SEARCH_ACCESS_MANAGER_MORE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
 					result = runQueryAccessManagerMore(ftSession, query, 0, maxResults);
@@ -746,4 +1163,78 @@ public class SearchDAO {
 
 		return terms;
 	}
+
+	/**
+	 * Continuation point of a paginated search: position of the next Lucene hit to check, number of
+	 * granted results before it and uuid of the last returned node. The query hash prevents a cursor
+	 * from being used with another query.
+	 */
+	private static class SearchCursor {
+		private static final String SEPARATOR = ":";
+		private final int hash;
+		private final int position;
+		private final int granted;
+		private final String uuid;
+
+		private SearchCursor(Query query, int position, int granted, String uuid) {
+			this(query.toString().hashCode(), position, granted, uuid);
+		}
+
+		private SearchCursor(int hash, int position, int granted, String uuid) {
+			this.hash = hash;
+			this.position = position;
+			this.granted = granted;
+			this.uuid = uuid;
+		}
+
+		/**
+		 * Parse a cursor token, a null or empty token means the first page.
+		 */
+		private static SearchCursor decode(String token, Query query) throws ParseException {
+			if (token == null || token.isEmpty()) {
+				return new SearchCursor(query, 0, 0, null);
+			}
+
+			try {
+				String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+				String[] fields = value.split(SEPARATOR, 4);
+				SearchCursor cursor = new SearchCursor(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+						Integer.parseInt(fields[2]), fields[3].isEmpty() ? null : fields[3]);
+
+				if (cursor.hash != query.toString().hashCode() || cursor.position < 0 || cursor.granted < 0) {
+					throw new ParseException("Search cursor does not belong to this query");
+				}
+
+				return cursor;
+			} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				throw new ParseException("Invalid search cursor: " + token, e);
+			}
+		}
+
+		private String encode() {
+			String value = hash + SEPARATOR + position + SEPARATOR + granted + SEPARATOR + (uuid == null ? "" : uuid);
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * Check the hit just before the cursor position is still the last returned node.
+		 */
+		private boolean matches(FullTextSession ftSession, Query query) {
+			if (uuid == null) {
+				return true;
+			}
+
+			FullTextQuery ftq = ftSession.createFullTextQuery(query, NodeDocument.class, NodeFolder.class, NodeMail.class);
+			ftq.setProjection(FullTextQuery.ID);
+			ftq.enableFullTextFilter("readAccess");
+			ftq.setFirstResult(position - 1);
+			ftq.setMaxResults(1);
+			List<?> hits = ftq.list();
+			return !hits.isEmpty() && uuid.equals(((Object[]) hits.get(0))[0]);
+		}
+
+		public String toString() {
+			return "{position=" + position + ", granted=" + granted + ", uuid=" + uuid + "}";
+		}
+	}
 }
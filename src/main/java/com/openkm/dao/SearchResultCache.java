@@ -0,0 +1,194 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao;
+
+import com.openkm.bean.nr.NodeQueryResult;
+import com.openkm.bean.nr.NodeResultSet;
+import com.openkm.cache.CacheProvider;
+import com.openkm.core.Config;
+import com.openkm.dao.bean.NodeDocument;
+import com.openkm.dao.bean.NodeFolder;
+import com.openkm.dao.bean.NodeMail;
+import com.openkm.spring.PrincipalUtils;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.SearchFactory;
+import org.hibernate.search.reader.ReaderProvider;
+import org.hibernate.search.store.DirectoryProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Cache the results of a search for a principal set. The key includes the version of the node
+ * indexes, so any index commit makes previous entries unreachable and they are evicted when they
+ * expire. Only the uuid, score and excerpt of each result are cached: the nodes are loaded again
+ * when the entry is used, so they are always up to date.
+ *
+ * @see com.openkm.dao.SearchDAO
+ */
+public class SearchResultCache {
+	private static Logger log = LoggerFactory.getLogger(SearchResultCache.class);
+	public static final String CACHE_SEARCH_RESULTS = "com.openkm.cache.searchResults";
+	private static final Class<?>[] INDEXED_NODES = {NodeDocument.class, NodeFolder.class, NodeMail.class};
+
+	private SearchResultCache() {
+	}
+
+	/**
+	 * Build the key of a search page for the current principal set.
+	 */
+	public static String getKey(FullTextSession ftSession, Query query, String page) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(Config.SECURITY_SEARCH_EVALUATION).append("|");
+		sb.append(Config.SEARCH_LAZY_EXCERPTS).append("|");
+		sb.append(PrincipalUtils.getUser()).append("|");
+		sb.append(new TreeSet<>(PrincipalUtils.getRoles())).append("|");
+		sb.append(getIndexVersion(ftSession)).append("|");
+		sb.append(page).append("|");
+		sb.append(query);
+		return sb.toString();
+	}
+
+	/**
+	 * Get cached search results, or null if not cached.
+	 */
+	public static CachedResultSet get(String key) {
+		Element elto = getCache().get(key);
+		return elto == null ? null : (CachedResultSet) elto.getObjectValue();
+	}
+
+	/**
+	 * Cache search results.
+	 */
+	public static void put(String key, NodeResultSet nrs) {
+		CachedResultSet crs = new CachedResultSet();
+		crs.total = nrs.getTotal();
+		crs.cursor = nrs.getCursor();
+
+		for (NodeQueryResult nqr : nrs.getResults()) {
+			CachedResult cr = new CachedResult();
+			cr.score = nqr.getScore();
+			cr.excerpt = nqr.getExcerpt();
+
+			if (nqr.getDocument() != null) {
+				cr.uuid = nqr.getDocument().getUuid();
+			} else if (nqr.getAttachment() != null) {
+				cr.uuid = nqr.getAttachment().getUuid();
+			} else if (nqr.getFolder() != null) {
+				cr.uuid = nqr.getFolder().getUuid();
+			} else if (nqr.getMail() != null) {
+				cr.uuid = nqr.getMail().getUuid();
+			}
+
+			crs.results.add(cr);
+		}
+
+		getCache().put(new Element(key, crs));
+	}
+
+	/**
+	 * Remove every cached search result.
+	 */
+	public static void invalidate() {
+		log.debug("invalidate()");
+		getCache().removeAll();
+	}
+
+	/**
+	 * Get the version of every node index, which changes with each index commit.
+	 */
+	private static String getIndexVersion(FullTextSession ftSession) {
+		SearchFactory searchFactory = ftSession.getSearchFactory();
+		ReaderProvider readerProvider = searchFactory.getReaderProvider();
+		StringBuilder sb = new StringBuilder();
+
+		for (Class<?> entity : INDEXED_NODES) {
+			for (DirectoryProvider<?> provider : searchFactory.getDirectoryProviders(entity)) {
+				IndexReader reader = readerProvider.openReader(provider);
+
+				try {
+					sb.append(reader.getVersion()).append(".");
+				} finally {
+					readerProvider.closeReader(reader);
+				}
+			}
+		}
+
+		return sb.toString();
+	}
+
+	private static Cache getCache() {
+		return CacheProvider.getInstance().getCache(CACHE_SEARCH_RESULTS);
+	}
+
+	/**
+	 * Cached search results
+	 */
+	public static class CachedResultSet implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private long total;
+		private String cursor;
+		private List<CachedResult> results = new ArrayList<>();
+
+		public long getTotal() {
+			return total;
+		}
+
+		public String getCursor() {
+			return cursor;
+		}
+
+		public List<CachedResult> getResults() {
+			return results;
+		}
+	}
+
+	/**
+	 * Cached search result
+	 */
+	public static class CachedResult implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private String uuid;
+		private float score;
+		private String excerpt;
+
+		public String getUuid() {
+			return uuid;
+		}
+
+		public float getScore() {
+			return score;
+		}
+
+		public String getExcerpt() {
+			return excerpt;
+		}
+	}
+}
@@ -59,6 +59,8 @@ public class Activity implements Serializable {
 	private String action;
 
 	@Column(name = "ACT_ITEM", length = 64)
+	// CREATE INDEX IDX_ACTIVITY_ITEM ON OKM_ACTIVITY(ACT_ITEM);
+	@Index(name = "IDX_ACTIVITY_ITEM")
 	private String item;
 
 	@Column(name = "ACT_PATH")
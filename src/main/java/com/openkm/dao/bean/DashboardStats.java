@@ -0,0 +1,124 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao.bean;
+
+import org.hibernate.annotations.Index;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Calendar;
+
+/**
+ * Daily dashboard counters: number of times an action was performed on a node in a day.
+ */
+@Entity
+@Table(name = "OKM_DASHBOARD_STATS", uniqueConstraints = {@UniqueConstraint(columnNames = {"DST_DAY", "DST_ACTION", "DST_ITEM"})})
+@org.hibernate.annotations.Table(appliesTo = "OKM_DASHBOARD_STATS",
+		indexes = {
+				// CREATE INDEX IDX_DASH_STATS_ACTDAY ON OKM_DASHBOARD_STATS(DST_ACTION, DST_DAY);
+				@Index(name = "IDX_DASH_STATS_ACTDAY", columnNames = {"DST_ACTION", "DST_DAY"})
+		}
+)
+public class DashboardStats implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@Column(name = "DST_ID")
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private long id;
+
+	@Column(name = "DST_DAY", nullable = false)
+	private Calendar day;
+
+	@Column(name = "DST_ACTION", length = 127, nullable = false)
+	private String action;
+
+	@Column(name = "DST_ITEM", length = 64, nullable = false)
+	private String item;
+
+	@Column(name = "DST_COUNT")
+	private long count;
+
+	@Column(name = "DST_LAST")
+	private Calendar last;
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public Calendar getDay() {
+		return day;
+	}
+
+	public void setDay(Calendar day) {
+		this.day = day;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	public void setAction(String action) {
+		this.action = action;
+	}
+
+	public String getItem() {
+		return item;
+	}
+
+	public void setItem(String item) {
+		this.item = item;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	public Calendar getLast() {
+		return last;
+	}
+
+	public void setLast(Calendar last) {
+		this.last = last;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("id=").append(id);
+		sb.append(", day=").append(day == null ? null : day.getTime());
+		sb.append(", action=").append(action);
+		sb.append(", item=").append(item);
+		sb.append(", count=").append(count);
+		sb.append(", last=").append(last == null ? null : last.getTime());
+		sb.append("}");
+		return sb.toString();
+	}
+}
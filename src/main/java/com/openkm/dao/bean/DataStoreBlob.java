@@ -0,0 +1,119 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao.bean;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Calendar;
+
+/**
+ * Content addressed datastore blob. Several document versions with the same
+ * binary content share a single blob, which is removed when its reference
+ * count drops to zero.
+ */
+@Entity
+@Table(name = "OKM_DATASTORE_BLOB")
+public class DataStoreBlob implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@Column(name = "DSB_HASH", length = 64)
+	private String hash;
+
+	@Column(name = "DSB_SIZE")
+	private long size;
+
+	@Column(name = "DSB_REFS")
+	private long refs;
+
+	@Column(name = "DSB_CREATED")
+	private Calendar created;
+
+	// Datastore tier where content has been moved, null when in the hot tier
+	@Column(name = "DSB_TIER", length = 16)
+	private String tier;
+
+	// Datastore compression codec of the stored content, null when stored raw
+	@Column(name = "DSB_COMPRESSION", length = 16)
+	private String compression;
+
+	public String getHash() {
+		return hash;
+	}
+
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+	public long getRefs() {
+		return refs;
+	}
+
+	public void setRefs(long refs) {
+		this.refs = refs;
+	}
+
+	public Calendar getCreated() {
+		return created;
+	}
+
+	public void setCreated(Calendar created) {
+		this.created = created;
+	}
+
+	public String getTier() {
+		return tier;
+	}
+
+	public void setTier(String tier) {
+		this.tier = tier;
+	}
+
+	public String getCompression() {
+		return compression;
+	}
+
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("hash=").append(hash);
+		sb.append(", size=").append(size);
+		sb.append(", refs=").append(refs);
+		sb.append(", created=").append(created == null ? null : created.getTime());
+		sb.append(", tier=").append(tier);
+		sb.append(", compression=").append(compression);
+		sb.append("}");
+		return sb.toString();
+	}
+}
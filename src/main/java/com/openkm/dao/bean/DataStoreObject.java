@@ -0,0 +1,93 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao.bean;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.sql.Blob;
+import java.util.Calendar;
+
+/**
+ * Datastore object, used when document content is stored in the database. The
+ * content is a JDBC blob so it can be streamed instead of loaded into memory.
+ */
+@Entity
+@Table(name = "OKM_DATASTORE_OBJECT")
+public class DataStoreObject implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@Column(name = "DSO_NAME", length = 128)
+	private String name;
+
+	@Column(name = "DSO_SIZE")
+	private long size;
+
+	@Column(name = "DSO_CONTENT")
+	@Lob
+	private Blob content;
+
+	@Column(name = "DSO_CREATED")
+	private Calendar created;
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+	public Blob getContent() {
+		return content;
+	}
+
+	public void setContent(Blob content) {
+		this.content = content;
+	}
+
+	public Calendar getCreated() {
+		return created;
+	}
+
+	public void setCreated(Calendar created) {
+		this.created = created;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("name=").append(name);
+		sb.append(", size=").append(size);
+		sb.append(", created=").append(created == null ? null : created.getTime());
+		sb.append("}");
+		return sb.toString();
+	}
+}
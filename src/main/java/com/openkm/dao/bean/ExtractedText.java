@@ -0,0 +1,96 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao.bean;
+
+import org.hibernate.annotations.Type;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Calendar;
+
+/**
+ * Text extracted from a document content by a text extractor version, so identical
+ * content is not extracted again.
+ */
+@Entity
+@Table(name = "OKM_EXTRACTED_TEXT")
+public class ExtractedText implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@Column(name = "ETX_HASH", length = 64)
+	private String hash;
+
+	@Column(name = "ETX_EXTRACTOR", length = 256)
+	private String extractor;
+
+	@Column(name = "ETX_TEXT")
+	@Lob
+	@Type(type = "org.hibernate.type.StringClobType")
+	private String text;
+
+	@Column(name = "ETX_CREATED")
+	private Calendar created;
+
+	public String getHash() {
+		return hash;
+	}
+
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+
+	public String getExtractor() {
+		return extractor;
+	}
+
+	public void setExtractor(String extractor) {
+		this.extractor = extractor;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public void setText(String text) {
+		this.text = text;
+	}
+
+	public Calendar getCreated() {
+		return created;
+	}
+
+	public void setCreated(Calendar created) {
+		this.created = created;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("hash=").append(hash);
+		sb.append(", extractor=").append(extractor);
+		sb.append(", text=").append(text == null ? null : text.length() + " chars");
+		sb.append(", created=").append(created == null ? null : created.getTime());
+		sb.append("}");
+		return sb.toString();
+	}
+}
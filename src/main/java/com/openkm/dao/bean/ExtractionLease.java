@@ -0,0 +1,118 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao.bean;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Calendar;
+
+/**
+ * Text extraction claim of a document. While not expired, no other worker or cluster
+ * node will extract the document. Failed extractions keep the lease without owner until
+ * the next retry.
+ */
+@Entity
+@Table(name = "OKM_EXTRACTION_LEASE")
+public class ExtractionLease implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@Column(name = "ELE_DOCUMENT", length = 64)
+	private String document;
+
+	@Column(name = "ELE_OWNER", length = 128)
+	private String owner;
+
+	// Identifies the claim which got the lease, so a batch of leases can be claimed at once
+	@Column(name = "ELE_CLAIM", length = 64)
+	private String claim;
+
+	@Column(name = "ELE_EXPIRATION")
+	private Calendar expiration;
+
+	@Column(name = "ELE_ATTEMPTS")
+	private int attempts;
+
+	@Column(name = "ELE_ERROR", length = 512)
+	private String error;
+
+	public String getDocument() {
+		return document;
+	}
+
+	public void setDocument(String document) {
+		this.document = document;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public String getClaim() {
+		return claim;
+	}
+
+	public void setClaim(String claim) {
+		this.claim = claim;
+	}
+
+	public Calendar getExpiration() {
+		return expiration;
+	}
+
+	public void setExpiration(Calendar expiration) {
+		this.expiration = expiration;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("document=").append(document);
+		sb.append(", owner=").append(owner);
+		sb.append(", claim=").append(claim);
+		sb.append(", expiration=").append(expiration == null ? null : expiration.getTime());
+		sb.append(", attempts=").append(attempts);
+		sb.append(", error=").append(error);
+		sb.append("}");
+		return sb.toString();
+	}
+}
@@ -34,6 +34,8 @@ import java.util.*;
 @Entity
 @Indexed
 @FullTextFilterDef(name = "readAccess", impl = ReadAccessFilterFactory.class, cache = FilterCacheModeType.NONE)
+@ClassBridge(name = InheritedReadAccessBridge.PRINCIPAL_FIELD, index = Index.UN_TOKENIZED, store = Store.NO,
+		impl = InheritedReadAccessBridge.class)
 @Table(name = "OKM_NODE_BASE")
 @Inheritance(strategy = InheritanceType.JOINED)
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
@@ -62,6 +64,8 @@ public class NodeBase implements Serializable {
 
 	@Column(name = "NBS_PATH", length = 1024)
 	@Field(index = Index.UN_TOKENIZED, store = Store.YES)
+	// CREATE INDEX IDX_NODE_BASE_PATH ON OKM_NODE_BASE(NBS_PATH);
+	@org.hibernate.annotations.Index(name = "IDX_NODE_BASE_PATH")
 	protected String path;
 
 	@Column(name = "NBS_AUTHOR", length = 64)
@@ -127,6 +131,9 @@ public class NodeBase implements Serializable {
 	@FieldBridge(impl = SetPropertiesFieldBridge.class)
 	protected Set<NodeProperty> properties = new HashSet<>();
 
+	@Transient
+	protected transient List<NodeBase> ancestorsPermissions;
+
 	public String getUuid() {
 		return uuid;
 	}
@@ -251,6 +258,19 @@ public class NodeBase implements Serializable {
 		this.rolePermissions = rolePermissions;
 	}
 
+	/**
+	 * Permissions inherited from the ancestors, when already known by an in depth process.
+	 *
+	 * @see com.openkm.module.db.stuff.InheritedReadAccess
+	 */
+	public List<NodeBase> getAncestorsPermissions() {
+		return ancestorsPermissions;
+	}
+
+	public void setAncestorsPermissions(List<NodeBase> ancestorsPermissions) {
+		this.ancestorsPermissions = ancestorsPermissions;
+	}
+
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("{");
@@ -61,7 +61,7 @@ public class NodeDocument extends NodeBase {
 	@Column(name = "NDC_TEXT")
 	@Lob
 	@Type(type = "org.hibernate.type.StringClobType")
-	@Field(index = Index.TOKENIZED, store = Store.NO)
+	@Field(index = Index.TOKENIZED, store = Store.NO, termVector = TermVector.WITH_POSITION_OFFSETS)
 	private String text;
 
 	@Column(name = "NDC_CHECKED_OUT", nullable = false)
@@ -90,10 +90,23 @@ public class NodeDocumentVersion implements Serializable {
 	@Field(index = Index.UN_TOKENIZED, store = Store.YES)
 	private String mimeType;
 
-	@Column(name = "NDV_CHECKSUM", length = 32)
+	@Column(name = "NDV_CHECKSUM", length = 64)
 	@Field(index = Index.UN_TOKENIZED, store = Store.YES)
 	private String checksum;
 
+	// Content hash of the shared blob when using the "cas" datastore backend
+	@Column(name = "NDV_BLOB", length = 64)
+	@org.hibernate.annotations.Index(name = "IDX_NOD_DOC_VER_BLOB")
+	private String blob;
+
+	// Datastore tier where content has been moved, null when in the hot tier
+	@Column(name = "NDV_TIER", length = 16)
+	private String tier;
+
+	// Datastore compression codec of the stored content, null when stored raw
+	@Column(name = "NDV_COMPRESSION", length = 16)
+	private String compression;
+
 	// http://stackoverflow.com/questions/3677380/proper-hibernate-annotation-for-byte
 	@Column(name = "NDV_CONTENT")
 	@Lob
@@ -191,6 +204,30 @@ public class NodeDocumentVersion implements Serializable {
 		this.checksum = checksum;
 	}
 
+	public String getBlob() {
+		return blob;
+	}
+
+	public void setBlob(String blob) {
+		this.blob = blob;
+	}
+
+	public String getTier() {
+		return tier;
+	}
+
+	public void setTier(String tier) {
+		this.tier = tier;
+	}
+
+	public String getCompression() {
+		return compression;
+	}
+
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+
 	public byte[] getContent() {
 		return content;
 	}
@@ -221,6 +258,9 @@ public class NodeDocumentVersion implements Serializable {
 		sb.append(", comment=").append(comment);
 		sb.append(", mimeType=").append(mimeType);
 		sb.append(", checksum=").append(checksum);
+		sb.append(", blob=").append(blob);
+		sb.append(", tier=").append(tier);
+		sb.append(", compression=").append(compression);
 		sb.append(", content=").append(String.valueOf(content));
 		sb.append(", text=").append(text);
 		sb.append("}");
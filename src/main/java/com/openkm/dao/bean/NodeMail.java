@@ -93,7 +93,7 @@ public class NodeMail extends NodeBase {
 	@Column(name = "NML_CONTENT")
 	@Lob
 	@Type(type = "org.hibernate.type.StringClobType")
-	@Field(index = Index.TOKENIZED, store = Store.NO)
+	@Field(index = Index.TOKENIZED, store = Store.NO, termVector = TermVector.WITH_POSITION_OFFSETS)
 	private String content;
 
 	@Column(name = "NML_MIME_TYPE", length = 64)
@@ -0,0 +1,111 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.dao.bean;
+
+import org.hibernate.annotations.Index;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Closure table of the node tree: one row for every ancestor of a node, including the
+ * node itself at depth 0. The repository root is an ancestor of every node in the tree.
+ */
+@Entity
+@Table(name = "OKM_NODE_TREE", uniqueConstraints = {@UniqueConstraint(columnNames = {"NTR_ANCESTOR", "NTR_DESCENDANT"})})
+@org.hibernate.annotations.Table(appliesTo = "OKM_NODE_TREE",
+		indexes = {
+				// CREATE INDEX IDX_NODE_TREE_ANCDEP ON OKM_NODE_TREE(NTR_ANCESTOR, NTR_DEPTH);
+				@Index(name = "IDX_NODE_TREE_ANCDEP", columnNames = {"NTR_ANCESTOR", "NTR_DEPTH"})
+		}
+)
+public class NodeTree implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@Column(name = "NTR_ID")
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private long id;
+
+	@Column(name = "NTR_ANCESTOR", length = 64, nullable = false)
+	private String ancestor;
+
+	@Column(name = "NTR_DESCENDANT", length = 64, nullable = false)
+	// CREATE INDEX IDX_NODE_TREE_DESCENDANT ON OKM_NODE_TREE(NTR_DESCENDANT);
+	@Index(name = "IDX_NODE_TREE_DESCENDANT")
+	private String descendant;
+
+	@Column(name = "NTR_DEPTH")
+	private int depth;
+
+	public NodeTree() {
+	}
+
+	public NodeTree(String ancestor, String descendant, int depth) {
+		this.ancestor = ancestor;
+		this.descendant = descendant;
+		this.depth = depth;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getAncestor() {
+		return ancestor;
+	}
+
+	public void setAncestor(String ancestor) {
+		this.ancestor = ancestor;
+	}
+
+	public String getDescendant() {
+		return descendant;
+	}
+
+	public void setDescendant(String descendant) {
+		this.descendant = descendant;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("id=").append(id);
+		sb.append(", ancestor=").append(ancestor);
+		sb.append(", descendant=").append(descendant);
+		sb.append(", depth=").append(depth);
+		sb.append("}");
+		return sb.toString();
+	}
+}
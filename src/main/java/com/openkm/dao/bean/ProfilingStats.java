@@ -32,6 +32,10 @@ public class ProfilingStats implements Serializable {
 	private Long totalTime;
 	private Long avgTime;
 	private Long executionCount;
+	private Long errorCount;
+	private Long p50Time;
+	private Long p90Time;
+	private Long p99Time;
 
 	public String getClazz() {
 		return clazz;
@@ -89,6 +93,38 @@ public class ProfilingStats implements Serializable {
 		this.executionCount = executionCount;
 	}
 
+	public Long getErrorCount() {
+		return errorCount;
+	}
+
+	public void setErrorCount(Long errorCount) {
+		this.errorCount = errorCount;
+	}
+
+	public Long getP50Time() {
+		return p50Time;
+	}
+
+	public void setP50Time(Long p50Time) {
+		this.p50Time = p50Time;
+	}
+
+	public Long getP90Time() {
+		return p90Time;
+	}
+
+	public void setP90Time(Long p90Time) {
+		this.p90Time = p90Time;
+	}
+
+	public Long getP99Time() {
+		return p99Time;
+	}
+
+	public void setP99Time(Long p99Time) {
+		this.p99Time = p99Time;
+	}
+
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("{");
@@ -106,6 +142,14 @@ public class ProfilingStats implements Serializable {
 		sb.append(totalTime);
 		sb.append(", executionCount=");
 		sb.append(executionCount);
+		sb.append(", errorCount=");
+		sb.append(errorCount);
+		sb.append(", p50Time=");
+		sb.append(p50Time);
+		sb.append(", p90Time=");
+		sb.append(p90Time);
+		sb.append(", p99Time=");
+		sb.append(p99Time);
 		sb.append("}");
 		return sb.toString();
 	}
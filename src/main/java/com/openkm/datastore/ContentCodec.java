@@ -0,0 +1,215 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.datastore;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compress datastore objects. The compression used is recorded along with each object, so
+ * compressed objects can live together with uncompressed ones. Compressed objects also start
+ * with a small header, which is checked when decoding.
+ */
+public class ContentCodec {
+	public static final String COMPRESSION_NONE = "none";
+	public static final String COMPRESSION_DEFLATE = "deflate";
+	private static final byte[] MAGIC = {'O', 'K', 'M', 'Z'};
+	private static final int CODEC_DEFLATE = 1;
+	private static final int HEADER_SIZE = MAGIC.length + 1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Compress the content written to a stream. Closing the returned stream closes the
+	 * given one.
+	 */
+	public static OutputStream encode(OutputStream os, String compression) throws IOException {
+		int codec = getCodec(compression);
+
+		if (codec == 0) {
+			return os;
+		} else {
+			os.write(MAGIC);
+			os.write(codec);
+			return compressor(os);
+		}
+	}
+
+	/**
+	 * Compress the content read from a stream.
+	 */
+	public static InputStream encode(InputStream is, String compression) throws IOException {
+		int codec = getCodec(compression);
+
+		if (codec == 0) {
+			return is;
+		} else {
+			return new EncodingInputStream(is, codec);
+		}
+	}
+
+	/**
+	 * Uncompress the content read from a stream. The compression must be the one recorded
+	 * when the content was stored, because raw content may start like a compression header.
+	 */
+	public static InputStream decode(InputStream is, String compression) throws IOException {
+		int codec = getCodec(compression);
+
+		if (codec == 0) {
+			return is;
+		}
+
+		byte[] header = new byte[HEADER_SIZE];
+		int read = IOUtils.read(is, header);
+
+		if (read != HEADER_SIZE || !Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC) || header[MAGIC.length] != codec) {
+			IOUtils.closeQuietly(is);
+			throw new IOException("Content is not compressed with " + compression);
+		}
+
+		return new InflaterInputStream(is, new Inflater(), BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					inf.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Compression to be recorded along with the stored content, or null if stored raw
+	 */
+	public static String getStoredCompression(String compression) {
+		return getCodec(compression) == 0 ? null : compression;
+	}
+
+	/**
+	 * Codec identifier from compression name, or 0 if none
+	 */
+	private static int getCodec(String compression) {
+		if (COMPRESSION_DEFLATE.equals(compression)) {
+			return CODEC_DEFLATE;
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Create compressor stream, which also releases the native deflater when closed.
+	 * Fastest level is used because most gain comes from highly redundant content.
+	 */
+	private static OutputStream compressor(OutputStream os) {
+		return new DeflaterOutputStream(os, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					def.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Compress while reading, so compressed content can be handed to any datastore
+	 * without a temporary copy. Compressed bytes are produced a chunk at a time.
+	 */
+	private static class EncodingInputStream extends InputStream {
+		private final InputStream raw;
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+		private final OutputStream out;
+		private final byte[] chunk = new byte[BUFFER_SIZE];
+		private byte[] pending = new byte[0];
+		private int pos = 0;
+		private boolean eof = false;
+
+		EncodingInputStream(InputStream raw, int codec) throws IOException {
+			this.raw = raw;
+			buffer.write(MAGIC);
+			buffer.write(codec);
+			out = compressor(buffer);
+		}
+
+		private boolean fill() throws IOException {
+			while (pos == pending.length) {
+				if (buffer.size() > 0) {
+					pending = buffer.toByteArray();
+					pos = 0;
+					buffer.reset();
+				} else if (eof) {
+					return false;
+				} else {
+					int n = raw.read(chunk);
+
+					if (n < 0) {
+						out.close();
+						eof = true;
+					} else {
+						out.write(chunk, 0, n);
+					}
+				}
+			}
+
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fill() ? pending[pos++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			} else if (!fill()) {
+				return -1;
+			}
+
+			int n = Math.min(len, pending.length - pos);
+			System.arraycopy(pending, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (!eof) {
+					out.close();
+					eof = true;
+				}
+			} finally {
+				raw.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.datastore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Object storage for document content. Objects are addressed by a key, which may be
+ * prefixed by a namespace like "cas/0123...".
+ *
+ * @see FileSystemDataStore
+ * @see DbDataStore
+ * @see S3DataStore
+ */
+public interface DataStore {
+	String NAMESPACE_SEPARATOR = "/";
+
+	/**
+	 * Store an object, replacing any previous one with the same key.
+	 *
+	 * @param key Object key.
+	 * @param is Object content, which is not closed.
+	 * @param size Content length or -1 if unknown.
+	 */
+	void put(String key, InputStream is, long size) throws IOException;
+
+	/**
+	 * Store an object from a local file. Implementations may take advantage of the
+	 * file being already on disk.
+	 *
+	 * @param key Object key.
+	 * @param file File with the object content.
+	 * @param move If the file can be consumed, so there is no need to keep it.
+	 */
+	void put(String key, File file, boolean move) throws IOException;
+
+	/**
+	 * Retrieve the object content.
+	 *
+	 * @throws java.io.FileNotFoundException If the object does not exist.
+	 */
+	InputStream get(String key) throws IOException;
+
+	/**
+	 * Retrieve a part of the object content.
+	 *
+	 * @param offset First byte to be read.
+	 * @param length Number of bytes to be read.
+	 * @throws java.io.FileNotFoundException If the object does not exist.
+	 */
+	InputStream get(String key, long offset, long length) throws IOException;
+
+	/**
+	 * Remove an object. Does nothing if the object does not exist.
+	 */
+	void delete(String key) throws IOException;
+
+	/**
+	 * Check if an object exists.
+	 */
+	boolean exists(String key) throws IOException;
+
+	/**
+	 * Get the time an object was last stored, in milliseconds since the epoch.
+	 *
+	 * @return The time, or 0 if the object does not exist.
+	 */
+	long lastModified(String key) throws IOException;
+
+	/**
+	 * Iterate through the keys of a namespace starting with a prefix, without its children
+	 * namespaces. Use an empty namespace to get the keys with no namespace at all, and an
+	 * empty prefix to get every key. Keys are not sorted.
+	 */
+	Iterator<String> list(String namespace, String prefix) throws IOException;
+}
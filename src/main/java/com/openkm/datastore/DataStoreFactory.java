@@ -0,0 +1,87 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.datastore;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.openkm.core.Config;
+import com.openkm.module.db.stuff.FsDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+public class DataStoreFactory {
+	private static Logger log = LoggerFactory.getLogger(DataStoreFactory.class);
+	private static DataStore dataStore = null;
+
+	/**
+	 * Singleton pattern for global datastore, selected by the configured backend.
+	 */
+	public static synchronized DataStore getDataStore() {
+		if (dataStore == null) {
+			log.info("DataStore: {}", Config.REPOSITORY_DATASTORE_BACKEND);
+
+			if (FsDataStore.DATASTORE_BACKEND_DB.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
+				dataStore = new DbDataStore();
+			} else if (FsDataStore.DATASTORE_BACKEND_S3.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
+				dataStore = new S3DataStore(getAmazonS3(), Config.REPOSITORY_DATASTORE_S3_BUCKET);
+			} else if (!Config.REPOSITORY_DATASTORE_COLD_HOME.equals("")) {
+				log.info("DataStore cold tier: {}", Config.REPOSITORY_DATASTORE_COLD_HOME);
+				dataStore = new TieredDataStore(new FileSystemDataStore(new File(Config.REPOSITORY_DATASTORE_HOME)),
+						new FileSystemDataStore(new File(Config.REPOSITORY_DATASTORE_COLD_HOME)));
+			} else {
+				dataStore = new FileSystemDataStore(new File(Config.REPOSITORY_DATASTORE_HOME));
+			}
+		}
+
+		return dataStore;
+	}
+
+	/**
+	 * Create S3 client. Falls back to the default credentials chain when there are no
+	 * Amazon Web Service keys configured.
+	 */
+	private static AmazonS3 getAmazonS3() {
+		AmazonS3 s3;
+
+		if (!Config.AMAZON_ACCESS_KEY.equals("") && !Config.AMAZON_SECRET_KEY.equals("")) {
+			s3 = new AmazonS3Client(new BasicAWSCredentials(Config.AMAZON_ACCESS_KEY, Config.AMAZON_SECRET_KEY));
+		} else {
+			s3 = new AmazonS3Client();
+		}
+
+		if (!Config.REPOSITORY_DATASTORE_S3_ENDPOINT.equals("")) {
+			log.info("DataStore S3 endpoint: {}", Config.REPOSITORY_DATASTORE_S3_ENDPOINT);
+			s3.setEndpoint(Config.REPOSITORY_DATASTORE_S3_ENDPOINT);
+		}
+
+		if (Config.REPOSITORY_DATASTORE_S3_BUCKET.equals("")) {
+			throw new IllegalStateException("Missing datastore bucket: " + Config.PROPERTY_REPOSITORY_DATASTORE_S3_BUCKET);
+		} else if (!s3.doesBucketExist(Config.REPOSITORY_DATASTORE_S3_BUCKET)) {
+			s3.createBucket(Config.REPOSITORY_DATASTORE_S3_BUCKET);
+		}
+
+		return s3;
+	}
+}
@@ -0,0 +1,223 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.datastore;
+
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.DataStoreObjectDAO;
+import com.openkm.util.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Store objects in the database. Content is streamed through temporary files when
+ * bigger than a threshold, so huge objects are never fully loaded into memory.
+ */
+public class DbDataStore implements DataStore {
+	private static Logger log = LoggerFactory.getLogger(DbDataStore.class);
+	private static final int MEMORY_THRESHOLD = 1024 * 1024;
+	private static final int LIST_PAGE_SIZE = 1000;
+
+	@Override
+	public void put(String key, InputStream is, long size) throws IOException {
+		log.debug("put({}, {}, {})", key, is, size);
+
+		if (size < 0) {
+			// The blob length should be known in advance
+			File tmp = FileUtils.createTempFile();
+
+			try {
+				FileUtils.copy(is, tmp);
+				put(key, tmp, true);
+			} finally {
+				FileUtils.deleteQuietly(tmp);
+			}
+		} else {
+			try {
+				DataStoreObjectDAO.getInstance().put(key, is, size);
+			} catch (DatabaseException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+	}
+
+	@Override
+	public void put(String key, File file, boolean move) throws IOException {
+		log.debug("put({}, {}, {})", key, file, move);
+		FileInputStream fis = new FileInputStream(file);
+
+		try {
+			put(key, fis, file.length());
+		} finally {
+			IOUtils.closeQuietly(fis);
+		}
+
+		if (move) {
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	@Override
+	public InputStream get(String key) throws IOException {
+		return get(key, 0, -1);
+	}
+
+	@Override
+	public InputStream get(String key, long offset, long length) throws IOException {
+		log.debug("get({}, {}, {})", key, offset, length);
+		File tmp = FileUtils.createTempFile();
+		DeferredFileOutputStream dfos = new DeferredFileOutputStream(MEMORY_THRESHOLD, tmp);
+		boolean found = false;
+
+		try {
+			found = DataStoreObjectDAO.getInstance().getContent(key, offset, length, dfos);
+		} catch (DatabaseException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(dfos);
+
+			if (!found || dfos.isInMemory()) {
+				FileUtils.deleteQuietly(tmp);
+			}
+		}
+
+		if (!found) {
+			throw new FileNotFoundException("Object does not exist: " + key);
+		} else if (dfos.isInMemory()) {
+			return new ByteArrayInputStream(dfos.getData());
+		} else {
+			return new TempFileInputStream(tmp);
+		}
+	}
+
+	@Override
+	public void delete(String key) throws IOException {
+		log.debug("delete({})", key);
+
+		try {
+			DataStoreObjectDAO.getInstance().delete(key);
+		} catch (DatabaseException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean exists(String key) throws IOException {
+		try {
+			return DataStoreObjectDAO.getInstance().exists(key);
+		} catch (DatabaseException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public long lastModified(String key) throws IOException {
+		try {
+			return DataStoreObjectDAO.getInstance().lastModified(key);
+		} catch (DatabaseException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public Iterator<String> list(String namespace, String prefix) {
+		log.debug("list({}, {})", namespace, prefix);
+		return new KeyIterator(namespace.isEmpty() ? "" : namespace + NAMESPACE_SEPARATOR, prefix);
+	}
+
+	/**
+	 * Retrieve keys by pages
+	 */
+	private static class KeyIterator implements Iterator<String> {
+		private final Deque<String> keys = new ArrayDeque<>();
+		private final String nsPrefix;
+		private final String prefix;
+		private String last = "";
+		private boolean exhausted = false;
+
+		KeyIterator(String nsPrefix, String prefix) {
+			this.nsPrefix = nsPrefix;
+			this.prefix = prefix;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (keys.isEmpty() && !exhausted) {
+				try {
+					List<String> names = DataStoreObjectDAO.getInstance().findNames(nsPrefix + prefix, last, LIST_PAGE_SIZE);
+					exhausted = names.size() < LIST_PAGE_SIZE;
+
+					for (String name : names) {
+						// Skip children namespaces
+						if (name.indexOf(NAMESPACE_SEPARATOR, nsPrefix.length()) < 0) {
+							keys.add(name);
+						}
+
+						last = name;
+					}
+				} catch (DatabaseException e) {
+					throw new IllegalStateException(e.getMessage(), e);
+				}
+			}
+
+			return !keys.isEmpty();
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			return keys.poll();
+		}
+	}
+
+	/**
+	 * Temporary file stream, removed once closed
+	 */
+	private static class TempFileInputStream extends FileInputStream {
+		private final File file;
+
+		TempFileInputStream(File file) throws FileNotFoundException {
+			super(file);
+			this.file = file;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				FileUtils.deleteQuietly(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.datastore;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Store objects as files. Keys are spread through four levels of directories built from
+ * the first key characters, so there are not too many files in a directory.
+ */
+public class FileSystemDataStore implements DataStore {
+	private static Logger log = LoggerFactory.getLogger(FileSystemDataStore.class);
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int DEPTH = 4;
+	private File home;
+
+	public FileSystemDataStore(File home) {
+		this.home = home;
+	}
+
+	public File getHome() {
+		return home;
+	}
+
+	@Override
+	public void put(String key, InputStream is, long size) throws IOException {
+		log.debug("put({}, {}, {})", key, is, size);
+		File file = resolveFile(key);
+		file.getParentFile().mkdirs();
+		FileOutputStream fos = new FileOutputStream(file);
+
+		try {
+			IOUtils.copyLarge(is, fos, new byte[BUFFER_SIZE]);
+			fos.flush();
+			fos.getFD().sync();
+		} finally {
+			IOUtils.closeQuietly(fos);
+		}
+	}
+
+	@Override
+	public void put(String key, File src, boolean move) throws IOException {
+		log.debug("put({}, {}, {})", key, src, move);
+		File file = resolveFile(key);
+		file.getParentFile().mkdirs();
+
+		if (move) {
+			try {
+				Files.move(src.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				log.debug("Can't move '{}' atomically: {}", src, e.getMessage());
+				Files.move(src.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} else {
+			try {
+				Files.deleteIfExists(file.toPath());
+				Files.createLink(file.toPath(), src.toPath());
+			} catch (UnsupportedOperationException | IOException e) {
+				log.debug("Can't link '{}', copying instead: {}", src, e.getMessage());
+				Files.copy(src.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	@Override
+	public InputStream get(String key) throws IOException {
+		log.debug("get({})", key);
+		return new FileInputStream(resolveFile(key));
+	}
+
+	@Override
+	public InputStream get(String key, long offset, long length) throws IOException {
+		log.debug("get({}, {}, {})", key, offset, length);
+		FileInputStream fis = new FileInputStream(resolveFile(key));
+
+		try {
+			fis.getChannel().position(offset);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(fis);
+			throw e;
+		}
+
+		return new BoundedInputStream(fis, length);
+	}
+
+	@Override
+	public void delete(String key) throws IOException {
+		log.debug("delete({})", key);
+		File file = resolveFile(key);
+
+		if (!file.delete() && file.exists()) {
+			throw new IOException("Can't delete file (locked) '" + file.getPath() + "'");
+		}
+	}
+
+	@Override
+	public boolean exists(String key) {
+		return resolveFile(key).isFile();
+	}
+
+	@Override
+	public long lastModified(String key) {
+		return resolveFile(key).lastModified();
+	}
+
+	@Override
+	public Iterator<String> list(String namespace, String prefix) {
+		log.debug("list({}, {})", namespace, prefix);
+		File dir = namespace.isEmpty() ? home : new File(home, namespace);
+		String nsPrefix = namespace.isEmpty() ? "" : namespace + NAMESPACE_SEPARATOR;
+		return new KeyIterator(dir.toPath(), nsPrefix, prefix);
+	}
+
+	/**
+	 * Get the file where an object is stored
+	 */
+	public File resolveFile(String key) {
+		int idx = key.lastIndexOf(NAMESPACE_SEPARATOR);
+		String name = idx < 0 ? key : key.substring(idx + 1);
+		File dir = idx < 0 ? home : new File(home, key.substring(0, idx));
+		char[] seq = name.replaceAll("-", "").toCharArray();
+		StringBuilder path = new StringBuilder();
+
+		// For really big repositories maybe better: i < seq.length
+		// But for most usual repositories a 4 depth level is enough
+		for (int i = 0; i < DEPTH * 2 && i + 1 < seq.length; i = i + 2) {
+			path.append(seq[i]).append(seq[i + 1]).append(File.separator);
+		}
+
+		return new File(dir, path.toString() + name);
+	}
+
+	/**
+	 * Walk through the directory levels of a namespace, one directory at a time so huge
+	 * datastores can be listed. The directory depth tells shard levels from objects, so
+	 * there is no need to stat every file, and shard directories not matching the prefix
+	 * are not visited at all.
+	 */
+	private static class KeyIterator implements Iterator<String> {
+		private final Deque<Level> dirs = new ArrayDeque<>();
+		private final Deque<String> keys = new ArrayDeque<>();
+		private final String nsPrefix;
+		private final String prefix;
+		private final String shardPrefix;
+
+		KeyIterator(Path root, String nsPrefix, String prefix) {
+			this.nsPrefix = nsPrefix;
+			this.prefix = prefix;
+			this.shardPrefix = prefix.replaceAll("-", "");
+
+			if (Files.isDirectory(root)) {
+				dirs.push(new Level(root, 0, ""));
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (keys.isEmpty() && !dirs.isEmpty()) {
+				Level level = dirs.pop();
+
+				try (DirectoryStream<Path> ds = Files.newDirectoryStream(level.dir)) {
+					for (Path child : ds) {
+						String name = child.getFileName().toString();
+
+						if (level.depth < DEPTH && name.length() == 2) {
+							// Only shard levels, so nested namespaces are skipped
+							String shards = level.shards + name;
+
+							if (shards.startsWith(shardPrefix) || shardPrefix.startsWith(shards)) {
+								dirs.push(new Level(child, level.depth + 1, shards));
+							}
+						} else if (level.depth > 0 && name.startsWith(prefix)) {
+							keys.add(nsPrefix + name);
+						}
+					}
+				} catch (NotDirectoryException e) {
+					// A two characters key stored at a shard level
+					String name = level.dir.getFileName().toString();
+
+					if (name.startsWith(prefix)) {
+						keys.add(nsPrefix + name);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			return !keys.isEmpty();
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			return keys.poll();
+		}
+	}
+
+	/**
+	 * Directory pending to be visited
+	 */
+	private static class Level {
+		private final Path dir;
+		private final int depth;
+		private final String shards;
+
+		Level(Path dir, int depth, String shards) {
+			this.dir = dir;
+			this.depth = depth;
+			this.shards = shards;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.datastore;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.openkm.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Store objects in a S3 protocol bucket, so several nodes can share the same datastore.
+ * Any S3 compatible service can be used by setting its endpoint.
+ */
+public class S3DataStore implements DataStore {
+	private static Logger log = LoggerFactory.getLogger(S3DataStore.class);
+	private static final int HTTP_NOT_FOUND = 404;
+	private static final int LIST_PAGE_SIZE = 1000;
+	private AmazonS3 s3;
+	private String bucket;
+
+	public S3DataStore(AmazonS3 s3, String bucket) {
+		this.s3 = s3;
+		this.bucket = bucket;
+	}
+
+	@Override
+	public void put(String key, InputStream is, long size) throws IOException {
+		log.debug("put({}, {}, {})", key, is, size);
+
+		if (size < 0) {
+			// Otherwise the whole content is buffered in memory to get its length
+			File tmp = FileUtils.createTempFile();
+
+			try {
+				FileUtils.copy(is, tmp);
+				put(key, tmp, true);
+			} finally {
+				FileUtils.deleteQuietly(tmp);
+			}
+		} else {
+			try {
+				ObjectMetadata md = new ObjectMetadata();
+				md.setContentLength(size);
+				s3.putObject(bucket, key, is, md);
+			} catch (AmazonClientException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+	}
+
+	@Override
+	public void put(String key, File file, boolean move) throws IOException {
+		log.debug("put({}, {}, {})", key, file, move);
+
+		try {
+			s3.putObject(bucket, key, file);
+		} catch (AmazonClientException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		if (move) {
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	@Override
+	public InputStream get(String key) throws IOException {
+		log.debug("get({})", key);
+		return get(new GetObjectRequest(bucket, key));
+	}
+
+	@Override
+	public InputStream get(String key, long offset, long length) throws IOException {
+		log.debug("get({}, {}, {})", key, offset, length);
+
+		if (length <= 0) {
+			return new ByteArrayInputStream(new byte[0]);
+		} else {
+			GetObjectRequest req = new GetObjectRequest(bucket, key);
+			req.setRange(offset, offset + length - 1);
+			return get(req);
+		}
+	}
+
+	/**
+	 * Retrieve object content stream
+	 */
+	private InputStream get(GetObjectRequest req) throws IOException {
+		try {
+			return s3.getObject(req).getObjectContent();
+		} catch (AmazonServiceException e) {
+			if (e.getStatusCode() == HTTP_NOT_FOUND) {
+				throw new FileNotFoundException("Object does not exist: " + req.getKey());
+			} else {
+				throw new IOException(e.getMessage(), e);
+			}
+		} catch (AmazonClientException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void delete(String key) throws IOException {
+		log.debug("delete({})", key);
+
+		try {
+			s3.deleteObject(bucket, key);
+		} catch (AmazonClientException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean exists(String key) throws IOException {
+		try {
+			s3.getObjectMetadata(bucket, key);
+			return true;
+		} catch (AmazonServiceException e) {
+			if (e.getStatusCode() == HTTP_NOT_FOUND) {
+				return false;
+			} else {
+				throw new IOException(e.getMessage(), e);
+			}
+		} catch (AmazonClientException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public long lastModified(String key) throws IOException {
+		try {
+			return s3.getObjectMetadata(bucket, key).getLastModified().getTime();
+		} catch (AmazonServiceException e) {
+			if (e.getStatusCode() == HTTP_NOT_FOUND) {
+				return 0;
+			} else {
+				throw new IOException(e.getMessage(), e);
+			}
+		} catch (AmazonClientException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public Iterator<String> list(String namespace, String prefix) {
+		log.debug("list({}, {})", namespace, prefix);
+		String nsPrefix = namespace.isEmpty() ? "" : namespace + NAMESPACE_SEPARATOR;
+		return new KeyIterator(new ListObjectsRequest(bucket, nsPrefix + prefix, null, NAMESPACE_SEPARATOR, LIST_PAGE_SIZE));
+	}
+
+	/**
+	 * Retrieve keys by pages. Children namespaces are common prefixes because of the
+	 * request delimiter, so they are not listed.
+	 */
+	private class KeyIterator implements Iterator<String> {
+		private final Deque<String> keys = new ArrayDeque<>();
+		private final ListObjectsRequest request;
+		private ObjectListing listing;
+
+		KeyIterator(ListObjectsRequest request) {
+			this.request = request;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (keys.isEmpty() && (listing == null || listing.isTruncated())) {
+				listing = listing == null ? s3.listObjects(request) : s3.listNextBatchOfObjects(listing);
+
+				for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+					keys.add(summary.getKey());
+				}
+			}
+
+			return !keys.isEmpty();
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			return keys.poll();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.datastore;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Two tiers datastore. New objects are always stored in the hot tier, and rarely
+ * used ones can be moved to the cold tier. Objects are read from the tier they are
+ * found in, so moving them is transparent.
+ */
+public class TieredDataStore implements DataStore {
+	private static Logger log = LoggerFactory.getLogger(TieredDataStore.class);
+	private DataStore hot;
+	private DataStore cold;
+
+	public TieredDataStore(DataStore hot, DataStore cold) {
+		this.hot = hot;
+		this.cold = cold;
+	}
+
+	public DataStore getHot() {
+		return hot;
+	}
+
+	public DataStore getCold() {
+		return cold;
+	}
+
+	@Override
+	public void put(String key, InputStream is, long size) throws IOException {
+		hot.put(key, is, size);
+	}
+
+	@Override
+	public void put(String key, File file, boolean move) throws IOException {
+		hot.put(key, file, move);
+	}
+
+	@Override
+	public InputStream get(String key) throws IOException {
+		try {
+			return hot.get(key);
+		} catch (FileNotFoundException e) {
+			return cold.get(key);
+		}
+	}
+
+	@Override
+	public InputStream get(String key, long offset, long length) throws IOException {
+		try {
+			return hot.get(key, offset, length);
+		} catch (FileNotFoundException e) {
+			return cold.get(key, offset, length);
+		}
+	}
+
+	@Override
+	public void delete(String key) throws IOException {
+		hot.delete(key);
+		cold.delete(key);
+	}
+
+	@Override
+	public boolean exists(String key) throws IOException {
+		return hot.exists(key) || cold.exists(key);
+	}
+
+	@Override
+	public long lastModified(String key) throws IOException {
+		return Math.max(hot.lastModified(key), cold.lastModified(key));
+	}
+
+	@Override
+	public Iterator<String> list(String namespace, String prefix) throws IOException {
+		final Iterator<String> hotKeys = hot.list(namespace, prefix);
+		final Iterator<String> coldKeys = cold.list(namespace, prefix);
+
+		return new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return hotKeys.hasNext() || coldKeys.hasNext();
+			}
+
+			@Override
+			public String next() {
+				if (hotKeys.hasNext()) {
+					return hotKeys.next();
+				} else if (coldKeys.hasNext()) {
+					return coldKeys.next();
+				} else {
+					throw new NoSuchElementException();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Copy an object from the hot tier to the cold one. The hot copy is kept, so it
+	 * should be removed once the move has been recorded.
+	 */
+	public void copyToCold(String key) throws IOException {
+		log.debug("copyToCold({})", key);
+		InputStream is = hot.get(key);
+
+		try {
+			cold.put(key, is, -1);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+}
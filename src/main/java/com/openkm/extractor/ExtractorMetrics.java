@@ -0,0 +1,118 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.extractor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Text extraction metrics of a text extractor class.
+ */
+public class ExtractorMetrics {
+	private final String extractor;
+	private final AtomicLong extractions = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong time = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong chars = new AtomicLong();
+
+	public ExtractorMetrics(String extractor) {
+		this.extractor = extractor;
+	}
+
+	/**
+	 * Record a successful extraction.
+	 */
+	public void success(long time, long bytes, long chars) {
+		record(time, bytes);
+		this.chars.addAndGet(chars);
+	}
+
+	/**
+	 * Record a failed extraction.
+	 */
+	public void failure(long time, long bytes) {
+		record(time, bytes);
+		failures.incrementAndGet();
+	}
+
+	/**
+	 * Record a timed out extraction.
+	 */
+	public void timeout(long time, long bytes) {
+		failure(time, bytes);
+		timeouts.incrementAndGet();
+	}
+
+	private void record(long time, long bytes) {
+		extractions.incrementAndGet();
+		this.time.addAndGet(time);
+		this.bytes.addAndGet(bytes);
+	}
+
+	public String getExtractor() {
+		return extractor;
+	}
+
+	public long getExtractions() {
+		return extractions.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	public long getTime() {
+		return time.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public long getChars() {
+		return chars.get();
+	}
+
+	public long getAverageTime() {
+		long count = extractions.get();
+		return count == 0 ? 0 : time.get() / count;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{");
+		sb.append("extractor=").append(extractor);
+		sb.append(", extractions=").append(extractions);
+		sb.append(", failures=").append(failures);
+		sb.append(", timeouts=").append(timeouts);
+		sb.append(", time=").append(time);
+		sb.append(", bytes=").append(bytes);
+		sb.append(", chars=").append(chars);
+		sb.append("}");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.extractor;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+
+/**
+ * Run a text extractor in its own JVM, so a document which hangs or exhausts memory
+ * can't harm the repository. Document content is read from the standard input and
+ * the extracted text is written to the standard output in UTF-8. Any failure is
+ * written to the standard error and ends with a non zero exit code.
+ * <p>
+ * Arguments: extractor class name, MIME type and optional encoding.
+ *
+ * @see RegisteredExtractors
+ */
+public class ForkedTextExtractor {
+
+	public static void main(String[] args) {
+		// Keep logging and extractor output away from the extracted text
+		PrintStream out = System.out;
+		System.setOut(System.err);
+
+		try {
+			TextExtractor te = (TextExtractor) Class.forName(args[0]).newInstance();
+			String encoding = args.length > 2 && !args[2].isEmpty() ? args[2] : null;
+			String text = RegisteredExtractors.extractText(te, System.in, args[1], encoding);
+			Writer writer = new OutputStreamWriter(out, "UTF-8");
+			writer.write(text == null ? "" : text);
+			writer.flush();
+			System.exit(0);
+		} catch (Throwable e) {
+			System.err.println(e.getClass().getName() + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -26,24 +26,27 @@ import com.ibm.icu.text.CharsetMatch;
 import com.openkm.core.Config;
 import com.openkm.core.DatabaseException;
 import com.openkm.core.PathNotFoundException;
+import com.openkm.dao.ExtractedTextDAO;
 import com.openkm.dao.NodeBaseDAO;
 import com.openkm.dao.PluginDAO;
 import com.openkm.module.db.stuff.PersistentFile;
 import com.openkm.util.PluginUtils;
 import com.openkm.util.SystemProfiling;
 import com.openkm.util.UserActivity;
+import com.openkm.util.WarUtils;
 import net.xeoh.plugins.base.Plugin;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
 
 /**
  * @author pavila
@@ -53,6 +56,17 @@ public class RegisteredExtractors {
 	public static final String PLUGIN_URI = "classpath://com.openkm.extractor.**";
 	private static List<TextExtractor> extractorList = null;
 	private static final int MIN_EXTRACTION = 16;
+	private static final ConcurrentMap<String, ExtractorMetrics> metrics = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, String> extractorVersions = new ConcurrentHashMap<>();
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r);
+			t.setName("TextExtractionThread-" + t.getId());
+			t.setDaemon(true);
+			return t;
+		}
+	});
 
 	/**
 	 * Return guessed text extractor
@@ -70,6 +84,51 @@ public class RegisteredExtractors {
 		return null;
 	}
 
+	/**
+	 * Get extracted text cache key of a content and MIME type, or null if there is no
+	 * text extractor for it. Changing the text extractor version invalidates the key.
+	 *
+	 * @param contentHash Content hash, including the algorithm.
+	 */
+	public static String getCacheKey(String contentHash, String mimeType) throws URISyntaxException {
+		TextExtractor te = getTextExtractor(mimeType);
+
+		if (te == null || contentHash == null) {
+			return null;
+		}
+
+		return DigestUtils.sha256Hex(contentHash + "\n" + mimeType + "\n" + getExtractorVersion(te));
+	}
+
+	/**
+	 * Get text extractor version, which is the application version for the built-in ones.
+	 * Cached text of previous versions is removed the first time a version is used.
+	 */
+	public static String getExtractorVersion(TextExtractor te) {
+		String extractor = te.getClass().getName();
+		String version = extractorVersions.get(extractor);
+
+		if (version == null) {
+			version = te.getClass().getPackage() == null ? null : te.getClass().getPackage().getImplementationVersion();
+
+			if (version == null) {
+				version = WarUtils.getAppVersion() == null ? "" : WarUtils.getAppVersion().toString();
+			}
+
+			version = extractor + "@" + version;
+
+			if (extractorVersions.putIfAbsent(extractor, version) == null) {
+				try {
+					ExtractedTextDAO.getInstance().purge(extractor + "@", version);
+				} catch (DatabaseException e) {
+					log.warn(e.getMessage(), e);
+				}
+			}
+		}
+
+		return version;
+	}
+
 	/**
 	 * Check for registered text extractor
 	 */
@@ -119,33 +178,260 @@ public class RegisteredExtractors {
 	}
 
 	/**
-	 * Extract text to be indexed
+	 * Extract text to be indexed, within the time and size budget configured for the
+	 * MIME type. Extracted text is truncated to the maximum number of characters.
 	 */
 	public static String getText(String mimeType, String encoding, InputStream isContent) throws IOException {
-		BufferedInputStream bis = new BufferedInputStream(isContent);
-		String text = null;
+		TextExtractor te = null;
 
 		try {
-			TextExtractor te = getTextExtractor(mimeType);
-
-			if (te != null) {
-				if (mimeType.startsWith("text/") && encoding == null) {
-					CharsetDetector detector = new CharsetDetector();
-					detector.setText(bis);
-					CharsetMatch cm = detector.detect();
-					encoding = cm.getName();
-				}
+			te = getTextExtractor(mimeType);
+		} catch (URISyntaxException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		if (te == null) {
+			throw new IOException("Full text indexing of '" + mimeType + "' is not supported");
+		}
+
+		ExtractionLimits limits = getLimits(mimeType);
+		ExtractorMetrics em = getMetrics(te.getClass().getName());
+		BudgetInputStream bis = new BudgetInputStream(new BufferedInputStream(isContent), limits.maxSize);
+		long begin = System.currentTimeMillis();
+
+		try {
+			String text;
+
+			if (isForked(mimeType)) {
+				text = extractForked(te, bis, mimeType, encoding, limits.timeout);
+			} else {
+				text = extract(te, bis, mimeType, encoding, limits.timeout);
+			}
+
+			if (text != null && text.length() > Config.MANAGED_TEXT_EXTRACTION_MAX_CHARS) {
+				log.info("Extracted text truncated from {} to {} characters", text.length(), Config.MANAGED_TEXT_EXTRACTION_MAX_CHARS);
+				text = text.substring(0, Config.MANAGED_TEXT_EXTRACTION_MAX_CHARS);
+			}
+
+			em.success(System.currentTimeMillis() - begin, bis.getByteCount(), text == null ? 0 : text.length());
+			return text;
+		} catch (ExtractionTimeoutException e) {
+			em.timeout(System.currentTimeMillis() - begin, bis.getByteCount());
+			throw e;
+		} catch (IOException e) {
+			em.failure(System.currentTimeMillis() - begin, bis.getByteCount());
+			throw e;
+		} finally {
+			IOUtils.closeQuietly(bis);
+		}
+	}
+
+	/**
+	 * Extract text with a text extractor, detecting text encoding when needed.
+	 */
+	static String extractText(TextExtractor te, InputStream is, String mimeType, String encoding) throws IOException {
+		if (mimeType.startsWith("text/") && encoding == null) {
+			if (!is.markSupported()) {
+				is = new BufferedInputStream(is);
+			}
+
+			CharsetDetector detector = new CharsetDetector();
+			detector.setText(is);
+			CharsetMatch cm = detector.detect();
+			encoding = cm.getName();
+		}
+
+		return te.extractText(is, mimeType, encoding);
+	}
+
+	/**
+	 * Extract text in another thread, which is cancelled when running out of time.
+	 */
+	private static String extract(final TextExtractor te, final BudgetInputStream bis, final String mimeType,
+			final String encoding, long timeout) throws IOException {
+		Future<String> future = executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return extractText(te, bis, mimeType, encoding);
+			}
+		});
 
-				text = te.extractText(bis, mimeType, encoding);
+		try {
+			return future.get(timeout, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			// Extractors ignoring interruption will fail on next read
+			bis.cancel();
+			future.cancel(true);
+			throw new ExtractionTimeoutException("Text extraction timed out after " + timeout + " seconds");
+		} catch (InterruptedException e) {
+			bis.cancel();
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Text extraction interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
 			} else {
-				throw new IOException("Full text indexing of '" + mimeType + "' is not supported");
+				throw new IOException(e.getCause().toString(), e.getCause());
 			}
+		}
+	}
+
+	/**
+	 * Extract text in a new JVM, which is killed when running out of time.
+	 */
+	private static String extractForked(TextExtractor te, final BudgetInputStream bis, String mimeType, String encoding,
+			long timeout) throws IOException {
+		List<String> cmd = new ArrayList<>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		cmd.add("-Xmx" + Config.MANAGED_TEXT_EXTRACTION_FORKED_MEMORY + "m");
+		cmd.add("-cp");
+		cmd.add(getClassPath());
+		cmd.add(ForkedTextExtractor.class.getName());
+		cmd.add(te.getClass().getName());
+		cmd.add(mimeType);
+		cmd.add(encoding == null ? "" : encoding);
+		final Process process = new ProcessBuilder(cmd).start();
+
+		try {
+			Future<?> input = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					OutputStream os = process.getOutputStream();
+
+					try {
+						IOUtils.copyLarge(bis, os);
+					} finally {
+						IOUtils.closeQuietly(os);
+					}
+
+					return null;
+				}
+			});
+			Future<String> output = executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return readText(process.getInputStream(), Config.MANAGED_TEXT_EXTRACTION_MAX_CHARS);
+				}
+			});
+			Future<String> error = executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return readText(process.getErrorStream(), 4 * 1024).trim();
+				}
+			});
+
+			if (!process.waitFor(timeout, TimeUnit.SECONDS)) {
+				input.cancel(true);
+				throw new ExtractionTimeoutException("Text extraction timed out after " + timeout + " seconds");
+			}
+
+			// Content exceeding the maximum size
+			input.get();
+
+			if (process.exitValue() != 0) {
+				String msg = error.get();
+				throw new IOException(msg.isEmpty() ? "Text extraction process failed with " + process.exitValue() : msg);
+			}
+
+			return output.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Text extraction interrupted");
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			process.destroyForcibly();
+		}
+	}
+
+	/**
+	 * Read UTF-8 text up to a maximum number of characters, discarding the rest.
+	 */
+	private static String readText(InputStream is, int maxChars) throws IOException {
+		Reader reader = new InputStreamReader(is, "UTF-8");
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[8 * 1024];
+
+		for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+			sb.append(buffer, 0, Math.max(0, Math.min(read, maxChars - sb.length())));
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Get class path of the web application, to be used by forked extractions.
+	 */
+	private static String getClassPath() throws IOException {
+		try {
+			File location = new File(RegisteredExtractors.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			File lib = location.isDirectory() ? new File(location.getParentFile(), "lib") : location.getParentFile();
+			return location.getPath() + File.pathSeparator + lib.getPath() + File.separator + "*";
 		} catch (URISyntaxException e) {
 			throw new IOException(e.getMessage(), e);
 		}
+	}
 
-		IOUtils.closeQuietly(bis);
-		return text;
+	/**
+	 * Check if text extraction of a MIME type should be done in another JVM
+	 */
+	private static boolean isForked(String mimeType) {
+		for (String regex : Config.MANAGED_TEXT_EXTRACTION_FORKED_MIME_TYPES) {
+			if (Pattern.matches(regex, mimeType)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get time and size limits of a MIME type. Each configured limit is a MIME type
+	 * regular expression, the timeout in seconds and the maximum size in MB.
+	 */
+	private static ExtractionLimits getLimits(String mimeType) {
+		for (String limit : Config.MANAGED_TEXT_EXTRACTION_LIMITS) {
+			String[] fields = limit.trim().split("\\s+");
+
+			if (fields.length == 3 && Pattern.matches(fields[0], mimeType)) {
+				try {
+					return new ExtractionLimits(Long.parseLong(fields[1]), Long.parseLong(fields[2]) * 1024 * 1024);
+				} catch (NumberFormatException e) {
+					log.warn("Wrong text extraction limit: {}", limit);
+				}
+			}
+		}
+
+		return new ExtractionLimits(Config.MANAGED_TEXT_EXTRACTION_TIMEOUT, Config.MANAGED_TEXT_EXTRACTION_MAX_SIZE * 1024L * 1024L);
+	}
+
+	/**
+	 * Get metrics of a text extractor
+	 */
+	private static ExtractorMetrics getMetrics(String extractor) {
+		ExtractorMetrics em = metrics.get(extractor);
+
+		if (em == null) {
+			metrics.putIfAbsent(extractor, new ExtractorMetrics(extractor));
+			em = metrics.get(extractor);
+		}
+
+		return em;
+	}
+
+	/**
+	 * Get metrics of every text extractor used
+	 */
+	public static List<ExtractorMetrics> getMetrics() {
+		List<ExtractorMetrics> ret = new ArrayList<>(metrics.values());
+		Collections.sort(ret, new Comparator<ExtractorMetrics>() {
+			@Override
+			public int compare(ExtractorMetrics o1, ExtractorMetrics o2) {
+				return o1.getExtractor().compareTo(o2.getExtractor());
+			}
+		});
+		return ret;
 	}
 
 	//
@@ -214,4 +500,79 @@ public class RegisteredExtractors {
 
 		return extractorList;
 	}
+
+	/**
+	 * Time and size budget
+	 */
+	private static class ExtractionLimits {
+		private final long timeout;
+		private final long maxSize;
+
+		ExtractionLimits(long timeout, long maxSize) {
+			this.timeout = timeout;
+			this.maxSize = maxSize;
+		}
+	}
+
+	/**
+	 * Document content which can be cancelled and fails when exceeding the maximum size
+	 */
+	private static class BudgetInputStream extends CountingInputStream {
+		private final long maxSize;
+		private volatile boolean cancelled = false;
+
+		BudgetInputStream(InputStream in, long maxSize) {
+			super(in);
+			this.maxSize = maxSize;
+		}
+
+		void cancel() {
+			cancelled = true;
+		}
+
+		@Override
+		protected void beforeRead(int n) throws IOException {
+			if (cancelled) {
+				throw new InterruptedIOException("Text extraction cancelled");
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int ret = super.read();
+			checkSize();
+			return ret;
+		}
+
+		@Override
+		public int read(byte[] b) throws IOException {
+			int ret = super.read(b);
+			checkSize();
+			return ret;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int ret = super.read(b, off, len);
+			checkSize();
+			return ret;
+		}
+
+		private void checkSize() throws IOException {
+			if (getByteCount() > maxSize) {
+				throw new IOException("Document exceeds text extraction maximum size of " + (maxSize / 1024 / 1024) + " MB");
+			}
+		}
+	}
+
+	/**
+	 * Text extraction ran out of time
+	 */
+	private static class ExtractionTimeoutException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		ExtractionTimeoutException(String message) {
+			super(message);
+		}
+	}
 }
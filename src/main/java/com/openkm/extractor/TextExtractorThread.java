@@ -21,35 +21,38 @@
 
 package com.openkm.extractor;
 
-import com.openkm.core.DatabaseException;
-import com.openkm.dao.NodeDocumentDAO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileNotFoundException;
+import java.util.concurrent.BlockingQueue;
 
 /**
+ * Long lived text extraction worker, which takes works from the queue until interrupted.
+ *
  * @author pavila
  */
 public class TextExtractorThread implements Runnable {
 	private static final Logger log = LoggerFactory.getLogger(TextExtractorThread.class);
 	private static volatile long global = 1;
-	private TextExtractorWork work;
+	private BlockingQueue<TextExtractorWork> queue;
 	private long id = 0;
 
-	public TextExtractorThread(TextExtractorWork work) {
+	public TextExtractorThread(BlockingQueue<TextExtractorWork> queue) {
 		this.id = global++;
-		this.work = work;
+		this.queue = queue;
 	}
 
 	@Override
 	public void run() {
 		try {
-			log.debug("processConcurrent.Working {} on {}", id, work);
-			NodeDocumentDAO.getInstance().textExtractorHelper(work);
-			log.debug("processConcurrent.Finish {} on {}", id, work);
-		} catch (FileNotFoundException | DatabaseException e) {
-			log.warn(e.getMessage(), e);
+			while (!Thread.currentThread().isInterrupted()) {
+				TextExtractorWork work = queue.take();
+				log.debug("processConcurrent.Working {} on {}", id, work);
+				TextExtractorWorker.process(work);
+				log.debug("processConcurrent.Finish {} on {}", id, work);
+			}
+		} catch (InterruptedException e) {
+			log.debug("Worker {} interrupted", id);
 		}
 	}
 }
@@ -31,6 +31,7 @@ public class TextExtractorWork {
 	private String docPath;
 	private String docVerUuid;
 	private Calendar date = Calendar.getInstance();
+	private int attempts;
 
 	public String getDocUuid() {
 		return docUuid;
@@ -64,6 +65,14 @@ public class TextExtractorWork {
 		this.date = date;
 	}
 
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("{");
@@ -72,6 +81,7 @@ public class TextExtractorWork {
 		sb.append(", docVerUuid=").append(docVerUuid);
 		sb.append(", date=");
 		sb.append(date == null ? null : date.getTime());
+		sb.append(", attempts=").append(attempts);
 		sb.append("}");
 		return sb.toString();
 	}
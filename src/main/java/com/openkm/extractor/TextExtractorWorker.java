@@ -23,33 +23,49 @@ package com.openkm.extractor;
 
 import com.openkm.core.Config;
 import com.openkm.core.DatabaseException;
+import com.openkm.dao.ExtractionLeaseDAO;
 import com.openkm.dao.NodeDocumentDAO;
-import com.openkm.util.SystemProfiling;
+import com.openkm.dao.bean.ExtractionLease;
 import com.openkm.util.ThreadPoolManager;
 import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.List;
-import java.util.TimerTask;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Text extraction pipeline. A feeder thread claims pending documents and puts them in
+ * a bounded queue, which is consumed by long lived workers. Claimed documents are leased,
+ * so several cluster nodes can share the pending queue, and failed extractions are retried
+ * with an increasing delay until the maximum number of attempts is reached.
+ *
  * @author pavila
  */
 public class TextExtractorWorker extends TimerTask {
 	private static final Logger log = LoggerFactory.getLogger(TextExtractorWorker.class);
-	private static List<TextExtractorWork> inProgress = new ArrayList<>();
+	private static final String OWNER = ManagementFactory.getRuntimeMXBean().getName();
+	private static final long IDLE_WAIT = TimeUnit.SECONDS.toMillis(30);
+	private static final long MAX_RETRY_DELAY = TimeUnit.DAYS.toMillis(1);
+	private static final Object feedLock = new Object();
+	private static Map<String, TextExtractorWork> inProgress = new ConcurrentHashMap<>();
+	private static BlockingQueue<TextExtractorWork> queue = null;
+	private static ThreadPoolManager workers = null;
+	private static Thread feeder = null;
+	private static boolean feedRequested = false;
+	private static volatile MassIndexerProgressMonitor monitor = null;
 	private static Calendar lastExecution = null;
-	private static volatile boolean running = false;
 
 	/**
 	 * Get in progress extraction works.
 	 */
 	public static List<TextExtractorWork> getInProgressWorks() throws DatabaseException {
-		return inProgress;
+		return new ArrayList<>(inProgress.values());
 	}
 
 	/**
@@ -66,43 +82,45 @@ public class TextExtractorWorker extends TimerTask {
 		return NodeDocumentDAO.getInstance().getPendingExtractionSize();
 	}
 
+	/**
+	 * Get failed extractions waiting for a retry.
+	 */
+	public static List<ExtractionLease> getWaitingWorks(int max) throws DatabaseException {
+		return ExtractionLeaseDAO.getInstance().findWaiting(max);
+	}
+
 	/**
 	 * Return if text extraction worker is running.
 	 */
 	public static boolean isRunning() {
-		return running;
+		return !inProgress.isEmpty();
 	}
 
 	/**
-	 * Return text extractor worker last execution
+	 * Return text extractor worker last execution, which is the last time the pending
+	 * queue was found empty.
 	 */
 	public static Calendar lastExecution() {
 		return lastExecution;
 	}
 
 	/**
-	 * Document text extraction batch
+	 * Start the pipeline if needed and check for pending documents
 	 */
 	@Override
 	public void run() {
-		if (running) {
-			log.warn("*** Text extraction already running ***");
-		} else {
-			running = true;
-			log.debug("*** Begin text extraction ***");
+		if (!Config.SYSTEM_READONLY) {
+			start();
 
 			try {
-				if (!Config.SYSTEM_READONLY) {
-					processQueue(null, Config.MANAGED_TEXT_EXTRACTION_BATCH);
-				} else {
-					log.warn("*** Text extraction disabled because system is readonly ***");
-				}
-			} finally {
-				running = false;
+				ExtractionLeaseDAO.getInstance().purge();
+			} catch (DatabaseException e) {
+				log.warn(e.getMessage(), e);
 			}
 
-			lastExecution = Calendar.getInstance();
-			log.debug("*** End text extraction ***");
+			feed();
+		} else {
+			log.warn("*** Text extraction disabled because system is readonly ***");
 		}
 	}
 
@@ -110,24 +128,25 @@ public class TextExtractorWorker extends TimerTask {
 	 * Force text extraction of every document in the repository
 	 */
 	public void rebuildWorker(MassIndexerProgressMonitor monitor) throws DatabaseException, InterruptedException {
-		if (running) {
+		if (TextExtractorWorker.monitor != null) {
 			log.warn("*** Text extraction already running ***");
 		} else {
-			running = true;
+			TextExtractorWorker.monitor = monitor;
 			log.debug("*** Begin massive text extraction ***");
 
 			try {
-				// Clear pending extraction queue
+				// Clear pending extraction queue, but not the documents other cluster nodes are extracting
 				NodeDocumentDAO.getInstance().resetAllPendingExtractionFlags();
+				ExtractionLeaseDAO.getInstance().reset(OWNER);
+				start();
+				feed();
 
-				// Process queue
+				// Wait for the pipeline, failed documents are retried before finishing
 				while (NodeDocumentDAO.getInstance().hasPendingExtractions()) {
-					processQueue(monitor, Config.MANAGED_TEXT_EXTRACTION_BATCH);
 					Thread.sleep(750);
-					System.gc();
 				}
 			} finally {
-				running = false;
+				TextExtractorWorker.monitor = null;
 			}
 
 			log.debug("*** End massive text extraction ***");
@@ -135,68 +154,184 @@ public class TextExtractorWorker extends TimerTask {
 	}
 
 	/**
-	 * Process text extraction pending queue
+	 * Start feeder and workers.
 	 */
-	private void processQueue(MassIndexerProgressMonitor monitor, int maxResults) {
-		if (Config.MANAGED_TEXT_EXTRACTION_CONCURRENT) {
-			log.debug("Processing queue concurrently with {} processors", Config.AVAILABLE_PROCESSORS);
-			processConcurrent(monitor, maxResults);
-		} else {
-			processSerial(monitor, maxResults);
+	public static synchronized void start() {
+		if (feeder == null) {
+			int threads = Config.MANAGED_TEXT_EXTRACTION_CONCURRENT ? Config.MANAGED_TEXT_EXTRACTION_POOL_THREADS : 1;
+			log.info("Starting text extraction pipeline with {} workers", threads);
+			queue = new ArrayBlockingQueue<>(Math.max(1, Config.MANAGED_TEXT_EXTRACTION_BATCH));
+			workers = new ThreadPoolManager(threads, "TextExtractorWorker");
+
+			for (int i = 0; i < threads; i++) {
+				workers.add(new TextExtractorThread(queue));
+			}
+
+			feeder = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					feedLoop();
+				}
+			}, "TextExtractorFeeder");
+			feeder.setDaemon(true);
+			feeder.start();
 		}
 	}
 
 	/**
-	 * Process queue serial
+	 * Stop feeder and workers. Queued works are released so other cluster nodes can take them.
 	 */
-	private void processSerial(MassIndexerProgressMonitor monitor, int maxResults) {
-		log.debug("processSerial({}, {})", monitor, maxResults);
-		long begin = System.currentTimeMillis();
+	public static synchronized void shutdown() {
+		if (feeder != null) {
+			feeder.interrupt();
 
-		try {
-			for (TextExtractorWork work : NodeDocumentDAO.getInstance().getPendingExtractions(maxResults)) {
-				log.info("processSerial.Working on {}", work);
-				inProgress.add(work);
-				NodeDocumentDAO.getInstance().textExtractorHelper(work);
-				inProgress.clear();
-
-				if (monitor != null) {
-					monitor.documentsAdded(1);
+			try {
+				feeder.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			workers.shutdown(true);
+			List<TextExtractorWork> pending = new ArrayList<>();
+			queue.drainTo(pending);
+
+			for (TextExtractorWork work : pending) {
+				try {
+					ExtractionLeaseDAO.getInstance().release(work.getDocUuid());
+				} catch (DatabaseException e) {
+					log.warn(e.getMessage(), e);
 				}
 			}
-		} catch (FileNotFoundException | DatabaseException e) {
-			log.warn(e.getMessage(), e);
-		} finally {
-			inProgress.clear();
+
+			feeder = null;
+			workers = null;
 		}
+	}
 
-		SystemProfiling.log(String.valueOf(maxResults), System.currentTimeMillis() - begin);
-		log.trace("processSerial.Time: {}", System.currentTimeMillis() - begin);
+	/**
+	 * Ask the feeder to look for pending documents now.
+	 */
+	private static void feed() {
+		synchronized (feedLock) {
+			feedRequested = true;
+			feedLock.notifyAll();
+		}
 	}
 
 	/**
-	 * Process queue concurrent
+	 * Keep the queue filled with claimed documents.
 	 */
-	private void processConcurrent(MassIndexerProgressMonitor monitor, int maxResults) {
-		log.info("processConcurrent({}, {})", monitor, maxResults);
-		long begin = System.currentTimeMillis();
+	private static void feedLoop() {
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				int room = queue.remainingCapacity();
 
-		try {
-			ThreadPoolManager threadPool = new ThreadPoolManager(Config.MANAGED_TEXT_EXTRACTION_POOL_THREADS, "TextExtractorWorker");
+				if (room > 0 && (!Config.SYSTEM_READONLY || monitor != null)) {
+					Calendar expiration = Calendar.getInstance();
+					expiration.add(Calendar.MINUTE, Config.MANAGED_TEXT_EXTRACTION_LEASE);
+					List<ExtractionLease> leases = ExtractionLeaseDAO.getInstance().claim(OWNER, room, expiration);
+					Map<String, Integer> attempts = new HashMap<>();
+
+					for (ExtractionLease lease : leases) {
+						attempts.put(lease.getDocument(), lease.getAttempts());
+					}
 
-			for (TextExtractorWork pendExts : NodeDocumentDAO.getInstance().getPendingExtractions(maxResults)) {
-				threadPool.add(new TextExtractorThread(pendExts));
-				inProgress.add(pendExts);
+					for (TextExtractorWork work : NodeDocumentDAO.getInstance().getExtractionWorks(new ArrayList<>(attempts.keySet()))) {
+						work.setAttempts(attempts.remove(work.getDocUuid()));
+						queue.put(work);
+					}
+
+					// Documents removed in the meantime or without a current version
+					skip(new ArrayList<>(attempts.keySet()));
+
+					if (leases.size() < room) {
+						lastExecution = Calendar.getInstance();
+					}
+				}
+
+				synchronized (feedLock) {
+					if (!feedRequested) {
+						feedLock.wait(IDLE_WAIT);
+					}
+
+					feedRequested = false;
+				}
+			} catch (DatabaseException e) {
+				log.warn(e.getMessage(), e);
+
+				try {
+					Thread.sleep(IDLE_WAIT);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		log.debug("Text extraction feeder stopped");
+	}
+
+	/**
+	 * Mark claimed documents which can't be extracted as done, and release their leases.
+	 */
+	private static void skip(List<String> docUuids) throws DatabaseException {
+		NodeDocumentDAO.getInstance().textExtractionSkipped(docUuids);
+
+		for (String docUuid : docUuids) {
+			ExtractionLeaseDAO.getInstance().release(docUuid);
+		}
+	}
+
+	/**
+	 * Extract text from a claimed document.
+	 */
+	static void process(TextExtractorWork work) {
+		inProgress.put(work.getDocUuid(), work);
+
+		try {
+			if (work.getAttempts() > Config.MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS) {
+				// Lease expired too many times, so extraction hangs or kills the node
+				NodeDocumentDAO.getInstance().textExtractionFailed(work, "Not finished after " + (work.getAttempts() - 1) + " attempts");
+			} else {
+				NodeDocumentDAO.getInstance().textExtractorHelper(work, true);
 			}
 
-			threadPool.shutdown();
-		} catch (DatabaseException e) {
-			log.warn(e.getMessage(), e);
+			ExtractionLeaseDAO.getInstance().release(work.getDocUuid());
+		} catch (IOException | DatabaseException e) {
+			failed(work, e);
 		} finally {
-			inProgress.clear();
+			inProgress.remove(work.getDocUuid());
+
+			if (monitor != null) {
+				monitor.documentsAdded(1);
+			}
+
+			// Top up the queue before workers run out of works
+			if (queue.size() <= queue.remainingCapacity()) {
+				feed();
+			}
 		}
+	}
 
-		SystemProfiling.log(String.valueOf(maxResults), System.currentTimeMillis() - begin);
-		log.trace("processConcurrent.Time: {}", System.currentTimeMillis() - begin);
+	/**
+	 * Schedule a retry of a failed extraction, or give up.
+	 */
+	private static void failed(TextExtractorWork work, Exception e) {
+		try {
+			if (work.getAttempts() >= Config.MANAGED_TEXT_EXTRACTION_MAX_ATTEMPTS) {
+				NodeDocumentDAO.getInstance().textExtractionFailed(work, e.getMessage());
+				ExtractionLeaseDAO.getInstance().release(work.getDocUuid());
+			} else {
+				long delay = TimeUnit.MINUTES.toMillis(Config.MANAGED_TEXT_EXTRACTION_RETRY_DELAY) << Math.min(work.getAttempts() - 1, 16);
+				Calendar next = Calendar.getInstance();
+				next.setTimeInMillis(next.getTimeInMillis() + Math.min(delay, MAX_RETRY_DELAY));
+				log.info("Text extraction of '{}' failed, retry at {}: {}", work.getDocPath(), next.getTime(), e.getMessage());
+				ExtractionLeaseDAO.getInstance().retry(work.getDocUuid(), e.getMessage(), next);
+			}
+		} catch (DatabaseException de) {
+			// The lease will expire and the document will be claimed again
+			log.warn(de.getMessage(), de);
+		}
 	}
 }
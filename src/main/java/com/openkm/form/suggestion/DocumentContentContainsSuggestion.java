@@ -32,7 +32,7 @@ import com.openkm.extractor.TextExtractorWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -79,8 +79,8 @@ public class DocumentContentContainsSuggestion implements Suggestion {
 					}
 				}
 			}
-		} catch (FileNotFoundException e) {
-			throw new SuggestionException("FileNotFoundException: " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw new SuggestionException("IOException: " + e.getMessage(), e);
 		}
 
 		return list;
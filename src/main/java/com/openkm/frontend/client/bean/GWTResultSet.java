@@ -35,6 +35,7 @@ import java.util.Collection;
 public class GWTResultSet implements IsSerializable {
 	private Collection<GWTQueryResult> results = new ArrayList<>();
 	private long total;
+	private String cursor;
 
 	public long getTotal() {
 		return total;
@@ -51,4 +52,12 @@ public class GWTResultSet implements IsSerializable {
 	public void setResults(Collection<GWTQueryResult> results) {
 		this.results = results;
 	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
 }
@@ -53,6 +53,7 @@ public class GWTWorkspace implements IsSerializable {
 	private String previewer = "";
 	private List<GWTReport> reports = new ArrayList<>();
 	private int minSearchCharacters = 0;
+	private boolean searchLazyExcerpts = false;
 	private int securityExtendedMask = 0;
 	private boolean systemReadOnly = false;
 
@@ -834,6 +835,14 @@ public class GWTWorkspace implements IsSerializable {
 		this.minSearchCharacters = minSearchCharacters;
 	}
 
+	public boolean isSearchLazyExcerpts() {
+		return searchLazyExcerpts;
+	}
+
+	public void setSearchLazyExcerpts(boolean searchLazyExcerpts) {
+		this.searchLazyExcerpts = searchLazyExcerpts;
+	}
+
 	public int getSecurityExtendedMask() {
 		return securityExtendedMask;
 	}
@@ -29,6 +29,7 @@ import com.openkm.frontend.client.bean.GWTQueryParams;
 import com.openkm.frontend.client.bean.GWTResultSet;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * OKMSearchService
@@ -46,6 +47,8 @@ public interface OKMSearchService extends RemoteService {
 
 	GWTResultSet findPaginated(GWTQueryParams params, int offset, int limit) throws OKMException;
 
+	GWTResultSet findPaginatedByCursor(GWTQueryParams params, String cursor, int limit) throws OKMException;
+
 	List<GWTKeyword> getKeywordMap(List<String> filter) throws OKMException;
 
 	GWTResultSet find(GWTQueryParams params) throws OKMException;
@@ -57,4 +60,8 @@ public interface OKMSearchService extends RemoteService {
 	GWTResultSet findSimpleQueryPaginated(String statement, int offset, int limit) throws OKMException;
 
 	GWTResultSet findMoreLikeThis(String uuid) throws OKMException;
+
+	Map<String, String> getExcerpts(GWTQueryParams params, List<String> uuids) throws OKMException;
+
+	Map<String, String> getSimpleQueryExcerpts(String statement, List<String> uuids) throws OKMException;
 }
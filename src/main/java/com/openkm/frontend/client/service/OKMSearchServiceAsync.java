@@ -27,6 +27,7 @@ import com.openkm.frontend.client.bean.GWTQueryParams;
 import com.openkm.frontend.client.bean.GWTResultSet;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author jllort
@@ -41,6 +42,8 @@ public interface OKMSearchServiceAsync {
 
 	void findPaginated(GWTQueryParams params, int offset, int limit, AsyncCallback<GWTResultSet> callback);
 
+	void findPaginatedByCursor(GWTQueryParams params, String cursor, int limit, AsyncCallback<GWTResultSet> callback);
+
 	void getKeywordMap(List<String> filter, AsyncCallback<List<GWTKeyword>> callback);
 
 	void find(GWTQueryParams params, AsyncCallback<GWTResultSet> callback);
@@ -52,4 +55,8 @@ public interface OKMSearchServiceAsync {
 	void findSimpleQueryPaginated(String statement, int offset, int limit, AsyncCallback<GWTResultSet> callback);
 
 	void findMoreLikeThis(String uuid, AsyncCallback<GWTResultSet> callback);
+
+	void getExcerpts(GWTQueryParams params, List<String> uuids, AsyncCallback<Map<String, String>> callback);
+
+	void getSimpleQueryExcerpts(String statement, List<String> uuids, AsyncCallback<Map<String, String>> callback);
 }
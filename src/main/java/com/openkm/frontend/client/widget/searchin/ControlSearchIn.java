@@ -33,6 +33,8 @@ import com.openkm.frontend.client.util.JSONUtil;
 import com.openkm.frontend.client.util.OKMBundleResources;
 import com.openkm.frontend.client.util.Util;
 
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * ControlSearchIn
@@ -54,6 +56,7 @@ public class ControlSearchIn extends Composite {
 	private GWTQueryParams gwtParams;            // Actual search values
 	private String statement;                    // Simple search valeu
 	private long total = 0;
+	private List<String> cursors = new ArrayList<String>(); // Search cursor of each visited page
 
 	public ControlSearchIn() {
 		controlPanel = new VerticalPanel();
@@ -94,7 +97,7 @@ public class ControlSearchIn extends Composite {
 				if (previousEnabled) {
 					offset -= limit;
 					if (gwtParams != null) {
-						Main.get().mainPanel.search.searchBrowser.searchResult.findPaginated(gwtParams, offset, limit);
+						findPaginated();
 					} else {
 						Main.get().mainPanel.search.searchBrowser.searchResult.findSimpleQueryPaginated(statement, offset, limit);
 					}
@@ -109,7 +112,7 @@ public class ControlSearchIn extends Composite {
 				if (nextEnabled) {
 					offset += limit;
 					if (gwtParams != null) {
-						Main.get().mainPanel.search.searchBrowser.searchResult.findPaginated(gwtParams, offset, limit);
+						findPaginated();
 					} else {
 						Main.get().mainPanel.search.searchBrowser.searchResult.findSimpleQueryPaginated(statement, offset, limit);
 					}
@@ -141,7 +144,8 @@ public class ControlSearchIn extends Composite {
 		this.statement = null;
 		this.limit = limit;
 		offset = 0;
-		Main.get().mainPanel.search.searchBrowser.searchResult.findPaginated(gwtParams, offset, limit);
+		cursors.clear();
+		findPaginated();
 	}
 
 	/**
@@ -155,6 +159,37 @@ public class ControlSearchIn extends Composite {
 		Main.get().mainPanel.search.searchBrowser.searchResult.findSimpleQueryPaginated(statement, offset, limit);
 	}
 
+	/**
+	 * Find the actual page, by cursor when known to avoid checking again the previous results
+	 */
+	private void findPaginated() {
+		int page = offset / limit;
+
+		if (page == 0 || (page < cursors.size() && cursors.get(page) != null)) {
+			String cursor = (page == 0) ? null : cursors.get(page);
+			Main.get().mainPanel.search.searchBrowser.searchResult.findPaginatedByCursor(gwtParams, cursor, limit);
+		} else {
+			Main.get().mainPanel.search.searchBrowser.searchResult.findPaginated(gwtParams, offset, limit);
+		}
+	}
+
+	/**
+	 * Sets the cursor of the page after the actual one
+	 *
+	 * @param cursor
+	 */
+	public void setNextCursor(String cursor) {
+		if (gwtParams != null) {
+			int page = offset / limit + 1;
+
+			while (cursors.size() <= page) {
+				cursors.add(null);
+			}
+
+			cursors.set(page, cursor);
+		}
+	}
+
 	/**
 	 * Refresh control values
 	 *
@@ -33,6 +33,10 @@ import com.openkm.frontend.client.service.OKMSearchService;
 import com.openkm.frontend.client.service.OKMSearchServiceAsync;
 import com.openkm.frontend.client.widget.searchin.SearchControl;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author jllort
  *
@@ -46,6 +50,9 @@ public class SearchResult extends Composite {
 	public Status status;
 	private GWTResultSet resultSet = new GWTResultSet();
 	private int resultsViewMode = SearchControl.RESULTS_VIEW_NORMAL;
+	private GWTQueryParams params;        // Actual search values
+	private String statement;             // Actual simple search value
+	private boolean excerptsRequested = false;
 
 
 	public SearchResult() {
@@ -111,6 +118,7 @@ public class SearchResult extends Composite {
 	final AsyncCallback<GWTResultSet> callbackFindPaginated = new AsyncCallback<GWTResultSet>() {
 		public void onSuccess(GWTResultSet result) {
 			resultSet = result;
+			excerptsRequested = false;
 			drawResults();
 			status.unsetFlag_findPaginated();
 		}
@@ -125,6 +133,7 @@ public class SearchResult extends Composite {
 	 * drawResults
 	 */
 	private void drawResults() {
+		Main.get().mainPanel.search.searchBrowser.searchIn.searchControl.controlSearch.setNextCursor(resultSet.getCursor());
 		Main.get().mainPanel.search.searchBrowser.searchIn.searchControl.controlSearch.refreshControl(resultSet.getTotal());
 		removeAllRows();
 
@@ -143,6 +152,78 @@ public class SearchResult extends Composite {
 		if (resultsViewMode == SearchControl.RESULTS_VIEW_COMPACT && searchCompactResult.isSorted()) {
 			searchCompactResult.refreshSort();
 		}
+
+		loadExcerpts();
+	}
+
+	/**
+	 * Load the excerpts of the actual results when they are not returned by the search
+	 */
+	private void loadExcerpts() {
+		if (!Main.get().workspaceUserProperties.getWorkspace().isSearchLazyExcerpts() || excerptsRequested ||
+				resultsViewMode != SearchControl.RESULTS_VIEW_NORMAL) {
+			return;
+		}
+
+		// Excerpts are only shown when searching by content
+		if (Main.get().mainPanel.search.searchBrowser.searchIn.searchControl.getSearchMode() != SearchControl.SEARCH_MODE_SIMPLE &&
+				Main.get().mainPanel.search.searchBrowser.searchIn.searchNormal.content.getText().equals("")) {
+			return;
+		}
+
+		List<String> uuids = new ArrayList<String>();
+
+		for (GWTQueryResult gwtQueryResult : resultSet.getResults()) {
+			if (gwtQueryResult.getExcerpt() == null) {
+				if (gwtQueryResult.getDocument() != null) {
+					uuids.add(gwtQueryResult.getDocument().getUuid());
+				} else if (gwtQueryResult.getAttachment() != null) {
+					uuids.add(gwtQueryResult.getAttachment().getUuid());
+				} else if (gwtQueryResult.getMail() != null) {
+					uuids.add(gwtQueryResult.getMail().getUuid());
+				}
+			}
+		}
+
+		if (!uuids.isEmpty()) {
+			final GWTResultSet requested = resultSet;
+			AsyncCallback<Map<String, String>> callbackGetExcerpts = new AsyncCallback<Map<String, String>>() {
+				public void onSuccess(Map<String, String> result) {
+					// Discard if there has been another search meanwhile
+					if (requested == resultSet && !result.isEmpty()) {
+						for (GWTQueryResult gwtQueryResult : resultSet.getResults()) {
+							String uuid = null;
+
+							if (gwtQueryResult.getDocument() != null) {
+								uuid = gwtQueryResult.getDocument().getUuid();
+							} else if (gwtQueryResult.getAttachment() != null) {
+								uuid = gwtQueryResult.getAttachment().getUuid();
+							} else if (gwtQueryResult.getMail() != null) {
+								uuid = gwtQueryResult.getMail().getUuid();
+							}
+
+							if (uuid != null && result.containsKey(uuid)) {
+								gwtQueryResult.setExcerpt(result.get(uuid));
+							}
+						}
+
+						drawResults();
+					}
+				}
+
+				public void onFailure(Throwable caught) {
+					Main.get().showError("GetExcerpts", caught);
+				}
+			};
+
+			excerptsRequested = true;
+
+			if (params != null) {
+				searchService.getExcerpts(params, uuids, callbackGetExcerpts);
+			} else if (statement != null) {
+				searchService.getSimpleQueryExcerpts(statement, uuids, callbackGetExcerpts);
+			}
+		}
 	}
 
 	/**
@@ -151,16 +232,32 @@ public class SearchResult extends Composite {
 	 * @param words The path id
 	 */
 	public void findPaginated(GWTQueryParams params, int offset, int limit) {
+		this.params = params;
+		this.statement = null;
 		status.setFlag_findPaginated();
 		searchService.findPaginated(params, offset, limit, callbackFindPaginated);
 	}
 
+	/**
+	 * Find paginated by cursor
+	 *
+	 * @param cursor The cursor of the page, or null for the first page
+	 */
+	public void findPaginatedByCursor(GWTQueryParams params, String cursor, int limit) {
+		this.params = params;
+		this.statement = null;
+		status.setFlag_findPaginated();
+		searchService.findPaginatedByCursor(params, cursor, limit, callbackFindPaginated);
+	}
+
 	/**
 	 * findSimpleQueryPaginated
 	 *
 	 * @param words The path id
 	 */
 	public void findSimpleQueryPaginated(String statement, int offset, int limit) {
+		this.params = null;
+		this.statement = statement;
 		status.setFlag_findPaginated();
 		searchService.findSimpleQueryPaginated(statement, offset, limit, callbackFindPaginated);
 	}
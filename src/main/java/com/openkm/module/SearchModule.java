@@ -86,6 +86,19 @@ public interface SearchModule {
 	ResultSet findPaginated(String token, QueryParams params, int offset, int limit) throws IOException, ParseException,
 			AccessDeniedException, RepositoryException, DatabaseException;
 
+	/**
+	 * Performs a complex search by content, name and keywords. Cursor paginated version.
+	 *
+	 * @param params The complex search elements.
+	 * @param cursor The cursor returned by the previous page, or null for the first page.
+	 * @param limit Query result list limit.
+	 * @return A result set with the total of the results, a collection of document from the resulting query
+	 *         statement and the cursor of the next page.
+	 * @throws RepositoryException If there is any general repository problem.
+	 */
+	ResultSet findPaginated(String token, QueryParams params, String cursor, int limit) throws IOException, ParseException,
+			AccessDeniedException, RepositoryException, DatabaseException;
+
 	/**
 	 * Make a search by a Lucene query
 	 *
@@ -275,6 +288,28 @@ public interface SearchModule {
 	ResultSet findSimpleQueryPaginated(String token, String statement, int offset, int limit) throws AccessDeniedException,
 			RepositoryException, DatabaseException;
 
+	/**
+	 * Get the highlighted excerpts of some results of a complex search.
+	 *
+	 * @param params The complex search elements.
+	 * @param uuids The uuids of the results which excerpt is needed.
+	 * @return A map with the excerpt of each result, only results with an excerpt are included.
+	 * @throws RepositoryException If there is any general repository problem.
+	 */
+	Map<String, String> getExcerpts(String token, QueryParams params, List<String> uuids) throws IOException, ParseException,
+			AccessDeniedException, RepositoryException, DatabaseException;
+
+	/**
+	 * Get the highlighted excerpts of some results of a simple search.
+	 *
+	 * @param statement The simple search in GQL language.
+	 * @param uuids The uuids of the results which excerpt is needed.
+	 * @return A map with the excerpt of each result, only results with an excerpt are included.
+	 * @throws RepositoryException If there is any general repository problem.
+	 */
+	Map<String, String> getSimpleQueryExcerpts(String token, String statement, List<String> uuids) throws ParseException,
+			AccessDeniedException, RepositoryException, DatabaseException;
+
 	/**
 	 * Find documents like a given one.
 	 * @param uuid Uuid of the document to find other similar.
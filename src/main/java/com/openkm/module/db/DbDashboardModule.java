@@ -703,14 +703,14 @@ public class DbDashboardModule implements DashboardModule {
 	public List<DashboardDocumentResult> getLastWeekTopDownloadedDocumentsSrv(String user) throws DatabaseException {
 		log.debug("getUserLastImportedMailAttachmentsSrv({})", user);
 		long begin = System.currentTimeMillis();
-		String qs = "select a.item, max(a.date) from DashboardActivity a " +
-				"where a.action='GET_DOCUMENT_CONTENT' and a.path like '/" + Repository.ROOT + "/%' and a.date>:date " +
-				"group by a.item " +
-				"order by count(a.item) desc";
+		String qs = "select ds.item, max(ds.last) from DashboardStats ds " +
+				"where ds.action='GET_DOCUMENT_CONTENT' and ds.day>=:date " +
+				"group by ds.item " +
+				"order by sum(ds.count) desc";
 		final String SOURCE = "LastWeekTopDownloadedDocuments";
 		Calendar cal = Calendar.getInstance();
 		cal.add(Calendar.WEEK_OF_YEAR, -1);
-		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, cal);
+		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, DashboardStatsDAO.getDay(cal));
 
 		// Check for already visited results
 		checkVisitedDocuments(user, SOURCE, al);
@@ -746,14 +746,14 @@ public class DbDashboardModule implements DashboardModule {
 	public List<DashboardDocumentResult> getLastMonthTopDownloadedDocumentsSrv(String user) throws DatabaseException {
 		log.debug("getLastMonthTopDownloadedDocumentsSrv({})", user);
 		long begin = System.currentTimeMillis();
-		String qs = "select a.item, max(a.date) from DashboardActivity a " +
-				"where a.action='GET_DOCUMENT_CONTENT' and a.path like '/" + Repository.ROOT + "/%' and a.date>:date " +
-				"group by a.item " +
-				"order by count(a.item) desc";
+		String qs = "select ds.item, max(ds.last) from DashboardStats ds " +
+				"where ds.action='GET_DOCUMENT_CONTENT' and ds.day>=:date " +
+				"group by ds.item " +
+				"order by sum(ds.count) desc";
 		final String SOURCE = "LastMonthTopDownloadedDocuments";
 		Calendar cal = Calendar.getInstance();
 		cal.add(Calendar.MONTH, -1);
-		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, cal);
+		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, DashboardStatsDAO.getDay(cal));
 
 		// Check for already visited results
 		checkVisitedDocuments(user, SOURCE, al);
@@ -789,14 +789,14 @@ public class DbDashboardModule implements DashboardModule {
 	public List<DashboardDocumentResult> getLastWeekTopModifiedDocumentsSrv(String user) throws DatabaseException {
 		log.debug("getLastWeekTopModifiedDocumentsSrv({})", user);
 		long begin = System.currentTimeMillis();
-		String qs = "select a.item, max(a.date) from DashboardActivity a " +
-				"where a.action='CHECKIN_DOCUMENT' and a.path like '/" + Repository.ROOT + "/%' and a.date>:date " +
-				"group by a.item " +
-				"order by count(a.item) desc";
+		String qs = "select ds.item, max(ds.last) from DashboardStats ds " +
+				"where ds.action='CHECKIN_DOCUMENT' and ds.day>=:date " +
+				"group by ds.item " +
+				"order by sum(ds.count) desc";
 		final String SOURCE = "LastWeekTopModifiedDocuments";
 		Calendar cal = Calendar.getInstance();
 		cal.add(Calendar.WEEK_OF_YEAR, -1);
-		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, cal);
+		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, DashboardStatsDAO.getDay(cal));
 
 		// Check for already visited results
 		checkVisitedDocuments(user, SOURCE, al);
@@ -832,14 +832,14 @@ public class DbDashboardModule implements DashboardModule {
 	public List<DashboardDocumentResult> getLastMonthTopModifiedDocumentsSrv(String user) throws DatabaseException {
 		log.debug("getLastMonthTopModifiedDocumentsSrv({})", user);
 		long begin = System.currentTimeMillis();
-		String qs = "select a.item, max(a.date) from DashboardActivity a " +
-				"where a.action='CHECKIN_DOCUMENT' and a.path like '/" + Repository.ROOT + "/%' and a.date>:date " +
-				"group by a.item " +
-				"order by count(a.item) desc";
+		String qs = "select ds.item, max(ds.last) from DashboardStats ds " +
+				"where ds.action='CHECKIN_DOCUMENT' and ds.day>=:date " +
+				"group by ds.item " +
+				"order by sum(ds.count) desc";
 		final String SOURCE = "LastMonthTopModifiedDocuments";
 		Calendar cal = Calendar.getInstance();
 		cal.add(Calendar.MONTH, -1);
-		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, cal);
+		List<DashboardDocumentResult> al = getTopDocuments(user, SOURCE, qs, DashboardStatsDAO.getDay(cal));
 
 		// Check for already visited results
 		checkVisitedDocuments(user, SOURCE, al);
@@ -40,6 +40,7 @@ import com.openkm.module.db.base.BaseNotificationModule;
 import com.openkm.spring.PrincipalUtils;
 import com.openkm.util.*;
 import com.openkm.util.impexp.RepositoryExporter;
+import com.openkm.util.metrics.RepositoryMetrics;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -275,6 +276,8 @@ public class DbDocumentModule implements DocumentModule {
 			}
 		}
 
+		RepositoryMetrics.DOCUMENT_UPLOAD.observeMillis(System.currentTimeMillis() - begin);
+		RepositoryMetrics.UPLOAD_BYTES.add(size);
 		SystemProfiling.log(doc.getPath(), System.currentTimeMillis() - begin);
 		log.trace("create.Time: {}", System.currentTimeMillis() - begin);
 		log.debug("create: {}", newDocument);
@@ -553,6 +556,7 @@ public class DbDocumentModule implements DocumentModule {
 			}
 		}
 
+		RepositoryMetrics.DOCUMENT_DOWNLOAD.observeMillis(System.currentTimeMillis() - begin);
 		SystemProfiling.log(docPath, System.currentTimeMillis() - begin);
 		log.trace("getContent.Time: {}", System.currentTimeMillis() - begin);
 		log.debug("getContent: {}", is);
@@ -977,6 +981,8 @@ public class DbDocumentModule implements DocumentModule {
 			}
 		}
 
+		RepositoryMetrics.DOCUMENT_UPLOAD.observeMillis(System.currentTimeMillis() - begin);
+		RepositoryMetrics.UPLOAD_BYTES.add(size);
 		SystemProfiling.log(docPath, System.currentTimeMillis() - begin);
 		log.trace("checkin.Time: {}", System.currentTimeMillis() - begin);
 		log.debug("checkin: {}", version);
@@ -32,7 +32,6 @@ import com.openkm.core.Config;
 import com.openkm.core.*;
 import com.openkm.dao.NodeBaseDAO;
 import com.openkm.dao.NodeFolderDAO;
-import com.openkm.dao.PendingTaskDAO;
 import com.openkm.dao.bean.*;
 import com.openkm.extension.core.ExtensionException;
 import com.openkm.module.FolderModule;
@@ -224,16 +223,6 @@ public class DbFolderModule implements FolderModule {
 
 			NodeFolderDAO.getInstance().delete(name, fldUuid, userTrashUuid);
 
-			// Add pending task
-			if (Config.STORE_NODE_PATH) {
-				PendingTask pt = new PendingTask();
-				pt.setNode(fldUuid);
-				pt.setTask(PendingTask.TASK_UPDATE_PATH);
-				pt.setParams("DELETE_FOLDER");
-				pt.setCreated(Calendar.getInstance());
-				PendingTaskDAO.getInstance().create(pt);
-			}
-
 			// Activity log
 			UserActivity.log(auth.getName(), "DELETE_FOLDER", fldUuid, fldPath, null);
 		} catch (WorkflowException e) {
@@ -359,16 +348,6 @@ public class DbFolderModule implements FolderModule {
 			if (newName != null && !newName.isEmpty() && !newName.equals(name)) {
 				NodeFolder folderNode = NodeFolderDAO.getInstance().rename(fldUuid, newName);
 				renamedFolder = BaseFolderModule.getProperties(auth.getName(), folderNode);
-
-				// Add pending task
-				if (Config.STORE_NODE_PATH) {
-					PendingTask pt = new PendingTask();
-					pt.setNode(fldUuid);
-					pt.setTask(PendingTask.TASK_UPDATE_PATH);
-					pt.setParams("RENAME_FOLDER");
-					pt.setCreated(Calendar.getInstance());
-					PendingTaskDAO.getInstance().create(pt);
-				}
 			} else {
 				// Don't change anything
 				NodeFolder folderNode = NodeFolderDAO.getInstance().findByPk(fldUuid);
@@ -442,16 +421,6 @@ public class DbFolderModule implements FolderModule {
 
 			NodeFolderDAO.getInstance().move(fldUuid, dstUuid);
 
-			// Add pending task
-			if (Config.STORE_NODE_PATH) {
-				PendingTask pt = new PendingTask();
-				pt.setNode(fldUuid);
-				pt.setTask(PendingTask.TASK_UPDATE_PATH);
-				pt.setParams("MOVE_FOLDER");
-				pt.setCreated(Calendar.getInstance());
-				PendingTaskDAO.getInstance().create(pt);
-			}
-
 			// Activity log
 			UserActivity.log(auth.getName(), "MOVE_FOLDER", fldUuid, fldPath, dstPath);
 		} catch (DatabaseException e) {
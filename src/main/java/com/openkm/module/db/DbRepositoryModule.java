@@ -27,6 +27,7 @@ import com.openkm.core.*;
 import com.openkm.dao.ConfigDAO;
 import com.openkm.dao.NodeBaseDAO;
 import com.openkm.dao.NodeFolderDAO;
+import com.openkm.dao.NodeTreeDAO;
 import com.openkm.dao.RegisteredPropertyGroupDAO;
 import com.openkm.dao.bean.NodeFolder;
 import com.openkm.dao.bean.RegisteredPropertyGroup;
@@ -84,6 +85,9 @@ public class DbRepositoryModule implements RepositoryModule {
 		NodeFolder okmRootNode = null;
 		String okmRootPath = null;
 
+		// Before any tree change, a new repository is checked again once rebuilt
+		NodeTreeDAO.getInstance().check();
+
 		try {
 			okmRootUuid = NodeBaseDAO.getInstance().getUuidFromPath("/" + Repository.ROOT);
 			okmRootNode = NodeFolderDAO.getInstance().findByPk(okmRootUuid);
@@ -94,6 +98,7 @@ public class DbRepositoryModule implements RepositoryModule {
 		try {
 			if (okmRootNode == null) {
 				log.info("Repository creation");
+				NodeTreeDAO.getInstance().rebuild();
 
 				// Create okm:root
 				log.info("Create {}", Repository.ROOT);
@@ -42,6 +42,7 @@ import com.openkm.module.db.base.BaseFolderModule;
 import com.openkm.module.db.base.BaseMailModule;
 import com.openkm.spring.PrincipalUtils;
 import com.openkm.util.*;
+import com.openkm.util.metrics.RepositoryMetrics;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.*;
@@ -133,6 +134,37 @@ public class DbSearchModule implements SearchModule {
 		}
 	}
 
+	@Override
+	public ResultSet findPaginated(String token, QueryParams params, String cursor, int limit) throws IOException, ParseException,
+			AccessDeniedException, RepositoryException, DatabaseException {
+		log.debug("findPaginated({}, {}, {}, {})", token, params, cursor, limit);
+		Authentication auth = null, oldAuth = null;
+		Query query = null;
+
+		try {
+			if (token == null) {
+				auth = PrincipalUtils.getAuthentication();
+			} else {
+				oldAuth = PrincipalUtils.getAuthentication();
+				auth = PrincipalUtils.getAuthenticationByToken(token);
+			}
+
+			if (params.getStatementQuery() != null && !params.getStatementQuery().equals("")) {
+				// query = params.getStatementQuery();
+			} else {
+				query = prepareStatement(params);
+			}
+
+			ResultSet rs = findByStatementPaginated(auth, query, cursor, limit);
+			log.debug("findPaginated: {}", rs);
+			return rs;
+		} finally {
+			if (token != null) {
+				PrincipalUtils.setAuthentication(oldAuth);
+			}
+		}
+	}
+
 	@Override
 	public List<QueryResult> findByQuery(String token, String query) throws ParseException, AccessDeniedException,
 			RepositoryException, DatabaseException {
@@ -411,50 +443,89 @@ public class DbSearchModule implements SearchModule {
 			DatabaseException {
 		log.debug("findByStatementPaginated({}, {}, {}, {})", auth, query, offset, limit);
 		long begin = System.currentTimeMillis();
-		List<QueryResult> results = new ArrayList<>();
 		ResultSet rs = new ResultSet();
 
 		try {
 			if (query != null) {
 				NodeResultSet nrs = SearchDAO.getInstance().findByQuery(query, offset, limit);
-				rs.setTotal(nrs.getTotal());
+				copy(auth, nrs, rs);
+			}
 
-				for (NodeQueryResult nqr : nrs.getResults()) {
-					QueryResult qr = new QueryResult();
-					qr.setExcerpt(nqr.getExcerpt());
-					qr.setScore((long) (100 * nqr.getScore()));
+			// Activity log
+			UserActivity.log(auth.getName(), "FIND_BY_STATEMENT_PAGINATED", null, null, offset + ", " + limit + ", " + query);
+		} catch (PathNotFoundException | ParseException e) {
+			throw new RepositoryException(e.getMessage(), e);
+		} catch (DatabaseException e) {
+			throw e;
+		}
 
-					if (nqr.getDocument() != null) {
-						qr.setNode(BaseDocumentModule.getProperties(auth.getName(), nqr.getDocument()));
-					} else if (nqr.getFolder() != null) {
-						qr.setNode(BaseFolderModule.getProperties(auth.getName(), nqr.getFolder()));
-					} else if (nqr.getMail() != null) {
-						qr.setNode(BaseMailModule.getProperties(auth.getName(), nqr.getMail()));
-					} else if (nqr.getAttachment() != null) {
-						qr.setNode(BaseDocumentModule.getProperties(auth.getName(), nqr.getAttachment()));
-						qr.setAttachment(true);
-					}
+		RepositoryMetrics.SEARCH.observeMillis(System.currentTimeMillis() - begin);
+		SystemProfiling.log(query + ", " + offset + ", " + limit, System.currentTimeMillis() - begin);
+		log.trace("findByStatementPaginated.Time: {}", FormatUtil.formatMiliSeconds(System.currentTimeMillis() - begin));
+		log.debug("findByStatementPaginated: {}", rs);
+		return rs;
+	}
 
-					results.add(qr);
-				}
+	/**
+	 * Find by statement using a search cursor
+	 */
+	private ResultSet findByStatementPaginated(Authentication auth, Query query, String cursor, int limit) throws RepositoryException,
+			DatabaseException {
+		log.debug("findByStatementPaginated({}, {}, {}, {})", auth, query, cursor, limit);
+		long begin = System.currentTimeMillis();
+		ResultSet rs = new ResultSet();
 
-				rs.setResults(results);
+		try {
+			if (query != null) {
+				NodeResultSet nrs = SearchDAO.getInstance().findByQuery(query, cursor, limit);
+				copy(auth, nrs, rs);
 			}
 
 			// Activity log
-			UserActivity.log(auth.getName(), "FIND_BY_STATEMENT_PAGINATED", null, null, offset + ", " + limit + ", " + query);
+			UserActivity.log(auth.getName(), "FIND_BY_STATEMENT_PAGINATED", null, null, cursor + ", " + limit + ", " + query);
 		} catch (PathNotFoundException | ParseException e) {
 			throw new RepositoryException(e.getMessage(), e);
 		} catch (DatabaseException e) {
 			throw e;
 		}
 
-		SystemProfiling.log(query + ", " + offset + ", " + limit, System.currentTimeMillis() - begin);
+		RepositoryMetrics.SEARCH.observeMillis(System.currentTimeMillis() - begin);
+		SystemProfiling.log(query + ", " + cursor + ", " + limit, System.currentTimeMillis() - begin);
 		log.trace("findByStatementPaginated.Time: {}", FormatUtil.formatMiliSeconds(System.currentTimeMillis() - begin));
 		log.debug("findByStatementPaginated: {}", rs);
 		return rs;
 	}
 
+	/**
+	 * Copy search results
+	 */
+	private void copy(Authentication auth, NodeResultSet nrs, ResultSet rs) throws PathNotFoundException, DatabaseException {
+		List<QueryResult> results = new ArrayList<>();
+		rs.setTotal(nrs.getTotal());
+		rs.setCursor(nrs.getCursor());
+
+		for (NodeQueryResult nqr : nrs.getResults()) {
+			QueryResult qr = new QueryResult();
+			qr.setExcerpt(nqr.getExcerpt());
+			qr.setScore((long) (100 * nqr.getScore()));
+
+			if (nqr.getDocument() != null) {
+				qr.setNode(BaseDocumentModule.getProperties(auth.getName(), nqr.getDocument()));
+			} else if (nqr.getFolder() != null) {
+				qr.setNode(BaseFolderModule.getProperties(auth.getName(), nqr.getFolder()));
+			} else if (nqr.getMail() != null) {
+				qr.setNode(BaseMailModule.getProperties(auth.getName(), nqr.getMail()));
+			} else if (nqr.getAttachment() != null) {
+				qr.setNode(BaseDocumentModule.getProperties(auth.getName(), nqr.getAttachment()));
+				qr.setAttachment(true);
+			}
+
+			results.add(qr);
+		}
+
+		rs.setResults(results);
+	}
+
 	@Override
 	public long saveSearch(String token, QueryParams params) throws AccessDeniedException, DatabaseException {
 		log.debug("saveSearch({}, {})", token, params);
@@ -1130,6 +1201,62 @@ public class DbSearchModule implements SearchModule {
 		return rs;
 	}
 
+	@Override
+	public Map<String, String> getExcerpts(String token, QueryParams params, List<String> uuids) throws IOException,
+			ParseException, AccessDeniedException, RepositoryException, DatabaseException {
+		log.debug("getExcerpts({}, {}, {})", token, params, uuids);
+		Authentication oldAuth = null;
+
+		try {
+			if (token != null) {
+				oldAuth = PrincipalUtils.getAuthentication();
+				PrincipalUtils.getAuthenticationByToken(token);
+			}
+
+			Map<String, String> excerpts = new HashMap<>();
+			Query query = prepareStatement(params);
+
+			if (query != null) {
+				excerpts = SearchDAO.getInstance().getExcerpts(query, uuids);
+			}
+
+			log.debug("getExcerpts: {}", excerpts.keySet());
+			return excerpts;
+		} finally {
+			if (token != null) {
+				PrincipalUtils.setAuthentication(oldAuth);
+			}
+		}
+	}
+
+	@Override
+	public Map<String, String> getSimpleQueryExcerpts(String token, String statement, List<String> uuids) throws ParseException,
+			AccessDeniedException, RepositoryException, DatabaseException {
+		log.debug("getSimpleQueryExcerpts({}, {}, {})", token, statement, uuids);
+		Authentication oldAuth = null;
+
+		try {
+			if (token != null) {
+				oldAuth = PrincipalUtils.getAuthentication();
+				PrincipalUtils.getAuthenticationByToken(token);
+			}
+
+			Map<String, String> excerpts = new HashMap<>();
+
+			if (statement != null && !statement.equals("")) {
+				Query query = SearchDAO.getInstance().parseQuery(statement, NodeDocument.TEXT_FIELD);
+				excerpts = SearchDAO.getInstance().getExcerpts(query, uuids);
+			}
+
+			log.debug("getSimpleQueryExcerpts: {}", excerpts.keySet());
+			return excerpts;
+		} finally {
+			if (token != null) {
+				PrincipalUtils.setAuthentication(oldAuth);
+			}
+		}
+	}
+
 	@Override
 	public ResultSet findMoreLikeThis(String token, String uuid, int maxResults) throws AccessDeniedException, RepositoryException,
 			DatabaseException {
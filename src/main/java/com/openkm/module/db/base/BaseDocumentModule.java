@@ -196,7 +196,7 @@ public class BaseDocumentModule {
 		Document doc = new Document();
 
 		// Properties
-		String docPath = NodeBaseDAO.getInstance().getPathFromUuid(nDocument.getUuid());
+		String docPath = NodeBaseDAO.getInstance().getPath(nDocument);
 		doc.setPath(docPath);
 		doc.setCreated(nDocument.getCreated());
 		doc.setLastModified(nDocument.getLastModified());
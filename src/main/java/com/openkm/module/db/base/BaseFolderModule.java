@@ -146,7 +146,7 @@ public class BaseFolderModule {
 		Folder fld = new Folder();
 
 		// Properties
-		String fldPath = NodeBaseDAO.getInstance().getPathFromUuid(nFolder.getUuid());
+		String fldPath = NodeBaseDAO.getInstance().getPath(nFolder);
 		fld.setPath(fldPath);
 		fld.setCreated(nFolder.getCreated());
 		fld.setAuthor(nFolder.getAuthor());
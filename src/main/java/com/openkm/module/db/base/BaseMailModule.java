@@ -176,7 +176,7 @@ public class BaseMailModule {
 		Mail mail = new Mail();
 
 		// Properties
-		String mailPath = NodeBaseDAO.getInstance().getPathFromUuid(nMail.getUuid());
+		String mailPath = NodeBaseDAO.getInstance().getPath(nMail);
 		mail.setPath(mailPath);
 		mail.setCreated(nMail.getCreated());
 		mail.setAuthor(nMail.getAuthor());
@@ -121,7 +121,7 @@ public class BaseModule {
 			node.setPath(nodeId);
 		} else {
 			node = NodeBaseDAO.getInstance().findByPk(nodeId);
-			String nodePath = NodeBaseDAO.getInstance().getPathFromUuid(node.getUuid());
+			String nodePath = NodeBaseDAO.getInstance().getPath(node);
 			node.setPath(nodePath);
 		}
 
@@ -0,0 +1,355 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.UpdatableBackendQueueProcessorFactory;
+import org.hibernate.search.backend.configuration.ConfigurationParseHelper;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessorFactory;
+import org.hibernate.search.spi.WorkerBuildContext;
+import org.hibernate.search.store.DirectoryProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hibernate Search backend which applies the index changes of several transactions in a single
+ * Lucene commit. The committing transaction only queues its changes, so it does not wait for the
+ * index writer. The queue is bounded: when it is full the committing thread waits until there is
+ * room again. Changes are committed when the batch reaches the commit size or when the refresh
+ * interval since the first queued change is over, so they are visible to searches after at most
+ * the refresh interval.
+ * <p>
+ * Index processors do not throw, they report failures to the error handler, so this backend
+ * is used with {@link IndexErrorHandler}. The changes it reports as failed are retried, and
+ * counted as lost when they keep failing.
+ * <p>
+ * Enabled with hibernate.search.worker.backend=batch
+ *
+ * @see org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessorFactory
+ */
+public class BatchBackendQueueProcessorFactory implements UpdatableBackendQueueProcessorFactory {
+	private static Logger log = LoggerFactory.getLogger(BatchBackendQueueProcessorFactory.class);
+	public static final String QUEUE_SIZE = "hibernate.search.worker.buffer_queue.max";
+	public static final String COMMIT_SIZE = "hibernate.search.worker.commit_size";
+	public static final String REFRESH_INTERVAL = "hibernate.search.worker.refresh_interval";
+	private static final int MAX_RETRIES = 3;
+	private static final List<LuceneWork> STOP = new ArrayList<>(0);
+	private static volatile BatchBackendQueueProcessorFactory current = null;
+	private final LuceneBackendQueueProcessorFactory delegate = new LuceneBackendQueueProcessorFactory();
+	private BlockingQueue<List<LuceneWork>> queue;
+	private Thread committer;
+	private int queueSize;
+	private int commitSize;
+	private long refreshInterval;
+	private volatile long commits = 0;
+	private volatile long works = 0;
+	private volatile int lastCommitSize = 0;
+	private volatile long lastCommitTime = 0;
+	private volatile Calendar lastCommit = null;
+	private final AtomicLong failedWorks = new AtomicLong();
+	private volatile String lastError = null;
+
+	@Override
+	public void initialize(Properties props, WorkerBuildContext context) {
+		delegate.initialize(props, context);
+		queueSize = ConfigurationParseHelper.getIntValue(props, QUEUE_SIZE, 256);
+		commitSize = ConfigurationParseHelper.getIntValue(props, COMMIT_SIZE, 1000);
+		refreshInterval = ConfigurationParseHelper.getIntValue(props, REFRESH_INTERVAL, 1000);
+		queue = new LinkedBlockingQueue<>(queueSize);
+		committer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				commitLoop();
+			}
+		}, "Hibernate Search: batch committer");
+		committer.setDaemon(true);
+		committer.start();
+		current = this;
+		log.info("Batch index backend: queue size {}, commit size {}, refresh interval {} ms", queueSize, commitSize,
+				refreshInterval);
+	}
+
+	@Override
+	public void updateDirectoryProviders(Set<DirectoryProvider<?>> providers, WorkerBuildContext context) {
+		delegate.updateDirectoryProviders(providers, context);
+	}
+
+	@Override
+	public Runnable getProcessor(final List<LuceneWork> list) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (!queue.offer(list)) {
+						log.debug("Index queue full, waiting");
+						queue.put(list);
+					}
+				} catch (InterruptedException e) {
+					log.warn("Interrupted while queuing index changes, applying them now");
+
+					// Interrupted status would abort the index writer I/O
+					try {
+						delegate.getProcessor(list).run();
+						lost(IndexErrorHandler.takeFailures(list));
+					} finally {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+		boolean interrupted = false;
+		boolean stopQueued = false;
+
+		// Changes queued before are committed before the committer stops
+		while (committer.isAlive()) {
+			try {
+				if (!stopQueued) {
+					queue.put(STOP);
+					stopQueued = true;
+				}
+
+				committer.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+
+		// Apply changes queued after the committer stopped
+		List<List<LuceneWork>> lists = new ArrayList<>();
+		queue.drainTo(lists);
+		lists.remove(STOP);
+
+		if (!lists.isEmpty()) {
+			commit(lists);
+		}
+
+		if (current == this) {
+			current = null;
+		}
+
+		delegate.close();
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wait for queued changes and commit them in batches, until asked to stop.
+	 */
+	private void commitLoop() {
+		boolean stop = false;
+
+		while (!stop) {
+			List<List<LuceneWork>> lists = new ArrayList<>();
+			int size = 0;
+
+			try {
+				List<LuceneWork> list = queue.take();
+				long deadline = System.currentTimeMillis() + refreshInterval;
+
+				while (list != null) {
+					if (list == STOP) {
+						stop = true;
+						break;
+					}
+
+					lists.add(list);
+					size += list.size();
+
+					if (size >= commitSize) {
+						break;
+					}
+
+					long wait = deadline - System.currentTimeMillis();
+					list = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+				}
+			} catch (InterruptedException e) {
+				log.warn("Batch committer interrupted, index changes are still committed until closed");
+			}
+
+			if (!lists.isEmpty()) {
+				commit(lists);
+			}
+		}
+
+		log.debug("Batch committer stopped");
+	}
+
+	/**
+	 * Apply the changes of several transactions in a single commit.
+	 */
+	private void commit(List<List<LuceneWork>> lists) {
+		long begin = System.currentTimeMillis();
+		List<LuceneWork> batch = new ArrayList<>();
+
+		for (List<LuceneWork> list : lists) {
+			batch.addAll(list);
+		}
+
+		apply(batch);
+
+		commits++;
+		works += batch.size();
+		lastCommitSize = batch.size();
+		lastCommitTime = System.currentTimeMillis() - begin;
+		lastCommit = Calendar.getInstance();
+		log.debug("Committed {} index changes in {} ms", batch.size(), lastCommitTime);
+	}
+
+	/**
+	 * Apply index changes, retrying the ones reported as failed to the error handler.
+	 */
+	private void apply(List<LuceneWork> list) {
+		boolean interrupted = false;
+		List<LuceneWork> pending = list;
+
+		try {
+			for (int attempt = 1; ; attempt++) {
+				long unattributed = IndexErrorHandler.getUnattributed();
+				delegate.getProcessor(pending).run();
+				List<LuceneWork> failed = IndexErrorHandler.takeFailures(pending);
+
+				// A failure not reported with its works, like a commit error, fails all of them
+				if (failed.isEmpty() && IndexErrorHandler.getUnattributed() != unattributed) {
+					failed = pending;
+				}
+
+				if (failed.isEmpty()) {
+					return;
+				} else if (attempt >= MAX_RETRIES) {
+					lost(failed);
+					return;
+				}
+
+				log.warn("Error applying {} index changes, attempt {}: {}", failed.size(), attempt, IndexErrorHandler.getLastError());
+				pending = failed;
+
+				try {
+					Thread.sleep(refreshInterval * attempt);
+				} catch (InterruptedException ie) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			// Restored once done, because interrupted status would abort the index writer I/O
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Count index changes which could not be applied.
+	 */
+	private void lost(List<LuceneWork> failed) {
+		if (!failed.isEmpty()) {
+			log.error("Error applying {} index changes, giving up: {}", failed.size(), IndexErrorHandler.getLastError());
+			failedWorks.addAndGet(failed.size());
+			lastError = IndexErrorHandler.getLastError();
+		}
+	}
+
+	/**
+	 * Check if this backend is in use.
+	 */
+	public static boolean isEnabled() {
+		return current != null;
+	}
+
+	/**
+	 * Transactions waiting to be indexed.
+	 */
+	public static int getQueueDepth() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.queue.size();
+	}
+
+	public static int getQueueSize() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.queueSize;
+	}
+
+	public static int getCommitSize() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.commitSize;
+	}
+
+	public static long getRefreshInterval() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.refreshInterval;
+	}
+
+	public static long getCommits() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.commits;
+	}
+
+	public static long getWorks() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.works;
+	}
+
+	public static int getLastCommitSize() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.lastCommitSize;
+	}
+
+	public static long getLastCommitTime() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.lastCommitTime;
+	}
+
+	public static Calendar getLastCommit() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? null : backend.lastCommit;
+	}
+
+	/**
+	 * Index changes lost because they could not be applied, so the affected nodes should be
+	 * reindexed.
+	 */
+	public static long getFailedWorks() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? 0 : backend.failedWorks.get();
+	}
+
+	public static String getLastError() {
+		BatchBackendQueueProcessorFactory backend = current;
+		return backend == null ? null : backend.lastError;
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.core.RepositoryException;
+import com.openkm.dao.HibernateUtil;
+import com.openkm.dao.bean.NodeDocumentVersion;
+import org.hibernate.HibernateException;
+import org.hibernate.LockOptions;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Convert an existing "fs" datastore to the "cas" one in place.
+ * <p>
+ * The repository may remain online: versions not yet migrated are still read from
+ * its legacy location until they are linked to a blob. Should be executed once the
+ * datastore backend has been configured as "cas", for example from the scripting console:
+ * <p>
+ * com.openkm.module.db.stuff.CasDataStoreMigrator.migrate();
+ */
+public class CasDataStoreMigrator {
+	private static final Logger log = LoggerFactory.getLogger(CasDataStoreMigrator.class);
+	private static final int BATCH_SIZE = 100;
+
+	/**
+	 * Move every legacy datastore file to its content addressed blob.
+	 *
+	 * @return Number of migrated document versions.
+	 */
+	public static synchronized long migrate() throws RepositoryException, DatabaseException, IOException {
+		log.debug("migrate()");
+
+		if (!FsDataStore.DATASTORE_BACKEND_CAS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
+			throw new RepositoryException("Datastore backend should be '" + FsDataStore.DATASTORE_BACKEND_CAS + "'");
+		}
+
+		long begin = System.currentTimeMillis();
+		long migrated = 0;
+		String last = "";
+
+		for (List<String> uuids = findPending(last); !uuids.isEmpty(); uuids = findPending(last)) {
+			for (String uuid : uuids) {
+				if (migrate(uuid)) {
+					migrated++;
+				}
+
+				last = uuid;
+			}
+
+			log.info("Migrated {} document versions to content addressed datastore", migrated);
+		}
+
+		log.info("Datastore migration finished in {} ms", System.currentTimeMillis() - begin);
+		log.debug("migrate: {}", migrated);
+		return migrated;
+	}
+
+	/**
+	 * Migrate a single document version.
+	 */
+	private static boolean migrate(String uuid) throws DatabaseException, IOException {
+		File legacy = FsDataStore.resolveFile(uuid);
+
+		if (!legacy.exists()) {
+			log.warn("Datastore file not found for document version '{}'", uuid);
+			return false;
+		}
+
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			NodeDocumentVersion nDocVer = (NodeDocumentVersion) session.get(NodeDocumentVersion.class, uuid, LockOptions.UPGRADE);
+
+			if (nDocVer == null || nDocVer.getBlob() != null) {
+				// Removed or already migrated in the meantime
+				HibernateUtil.rollback(tx);
+				return false;
+			}
+
+			// Blob may already exist, stored with another compression than the legacy file
+			String hash = FsDataStore.blobHash(legacy, nDocVer.getCompression());
+			String compression = FsDataStore.linkBlob(session, legacy, hash, legacy.length(), nDocVer.getCompression(), false);
+			nDocVer.setBlob(hash);
+			nDocVer.setCompression(compression);
+			session.update(nDocVer);
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+
+		if (!legacy.delete()) {
+			log.warn("Could not delete file '{}'", legacy.getCanonicalPath());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Find next batch of document versions not stored as blob.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<String> findPending(String last) throws DatabaseException {
+		String qs = "select ndv.uuid from NodeDocumentVersion ndv where ndv.blob is null and ndv.uuid>:last order by ndv.uuid";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("last", last);
+			q.setMaxResults(BATCH_SIZE);
+			return q.list();
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+}
@@ -0,0 +1,434 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.openkm.bean.DataStoreScanReport;
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.DataStoreBlobDAO;
+import com.openkm.dao.HibernateUtil;
+import com.openkm.dao.bean.DataStoreBlob;
+import com.openkm.datastore.DataStore;
+import com.openkm.datastore.DataStoreFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Check datastore consistency in both directions: objects without a document version or
+ * blob reference (orphans), and document versions or blobs without content (missing).
+ * <p>
+ * Keys are split in partitions by their two first hexadecimal characters, which is also
+ * the first datastore directory level, and partitions are scanned in parallel. Each one
+ * is compared against the database by pages, and orphan candidates are confirmed with
+ * batched IN queries so no single row is read per object. Finished partitions are
+ * written to a checkpoint file, so an interrupted scan resumes where it was left.
+ * <p>
+ * Purging removes orphans found. Content is stored before its document version or blob
+ * reference is committed, so objects modified recently are skipped instead of being
+ * reported as orphans. Blob reference counts are also checked against the document versions
+ * pointing to each blob, but only reported. A scan without purge is a dry run which only
+ * reports what would be purged.
+ */
+public class DataStoreScanner {
+	private static final Logger log = LoggerFactory.getLogger(DataStoreScanner.class);
+	private static final String HEX_CHARS = "0123456789abcdef";
+	private static final String VERSION_PARTITION = "v:";
+	private static final String BLOB_PARTITION = "b:";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final int PAGE_SIZE = 1000;
+	private static final int BATCH_SIZE = 500;
+	private static final long RECENT_MARGIN = 60 * 60 * 1000;
+	private static volatile boolean running = false;
+
+	/**
+	 * Return if a scan is running.
+	 */
+	public static boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Scan the whole datastore, resuming a previous interrupted scan of the same kind.
+	 *
+	 * @param purge Remove orphan objects and blobs found.
+	 */
+	public static synchronized DataStoreScanReport scan(final boolean purge) throws DatabaseException, IOException {
+		log.debug("scan({})", purge);
+		long begin = System.currentTimeMillis();
+		final long since = begin - RECENT_MARGIN; // Uploads may be in progress when the scan starts
+		final DataStoreScanReport report = new DataStoreScanReport();
+		File checkpoint = getCheckpointFile(purge);
+		Set<String> done = new HashSet<>();
+
+		if (checkpoint.exists()) {
+			done.addAll(FileUtils.readLines(checkpoint, "UTF-8"));
+			report.setResumed(true);
+			log.info("Resuming datastore scan, {} partitions already done", done.size());
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Config.AVAILABLE_PROCESSORS, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setName("DataStoreScannerThread-" + t.getId());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		final Writer checkpointWriter = new OutputStreamWriter(new FileOutputStream(checkpoint, true), "UTF-8");
+		running = true;
+
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>();
+
+			for (char first : HEX_CHARS.toCharArray()) {
+				for (char second : HEX_CHARS.toCharArray()) {
+					final String prefix = new String(new char[]{first, second});
+
+					if (!done.contains(VERSION_PARTITION + prefix)) {
+						tasks.add(new Callable<Void>() {
+							@Override
+							public Void call() throws Exception {
+								scanVersions(prefix, purge, since, report);
+								checkpoint(checkpointWriter, VERSION_PARTITION + prefix);
+								return null;
+							}
+						});
+					}
+
+					if (!done.contains(BLOB_PARTITION + prefix)) {
+						tasks.add(new Callable<Void>() {
+							@Override
+							public Void call() throws Exception {
+								scanBlobs(prefix, purge, since, report);
+								checkpoint(checkpointWriter, BLOB_PARTITION + prefix);
+								return null;
+							}
+						});
+					}
+				}
+			}
+
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Datastore scan interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+
+			if (cause instanceof DatabaseException) {
+				throw (DatabaseException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else {
+				throw new IOException(cause.getMessage(), cause);
+			}
+		} finally {
+			executor.shutdownNow();
+			IOUtils.closeQuietly(checkpointWriter);
+			running = false;
+		}
+
+		// Completed, so next scan starts from the beginning
+		FileUtils.deleteQuietly(checkpoint);
+		report.setTime(System.currentTimeMillis() - begin);
+		log.info("Datastore scan finished: {}", report);
+		log.debug("scan: {}", report);
+		return report;
+	}
+
+	/**
+	 * Scan document version objects starting with a prefix.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void scanVersions(String prefix, boolean purge, long since, DataStoreScanReport report) throws
+			DatabaseException, IOException {
+		String qs = "select ndv.uuid from NodeDocumentVersion ndv where ndv.uuid like :prefix and ndv.uuid>:last "
+				+ "and ndv.blob is null and ndv.content is null order by ndv.uuid";
+		String qsLive = "select ndv.uuid, ndv.blob from NodeDocumentVersion ndv where ndv.uuid in (:uuids)";
+		DataStore ds = DataStoreFactory.getDataStore();
+		Set<String> keys = new HashSet<>();
+		List<String> missing = new ArrayList<>();
+		Session session = null;
+
+		for (Iterator<String> it = ds.list("", prefix); it.hasNext(); ) {
+			keys.add(it.next());
+		}
+
+		report.addScannedObjects(keys.size());
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("prefix", prefix + "%");
+			q.setMaxResults(PAGE_SIZE);
+			String last = "";
+
+			for (boolean more = true; more; ) {
+				q.setString("last", last);
+				List<String> uuids = q.list();
+
+				for (String uuid : uuids) {
+					if (!keys.remove(uuid)) {
+						missing.add(uuid);
+					}
+
+					last = uuid;
+				}
+
+				session.clear();
+				more = uuids.size() == PAGE_SIZE;
+			}
+
+			// Version may have been created after listing
+			for (String uuid : missing) {
+				if (!ds.exists(uuid)) {
+					report.addMissingObject(uuid);
+				}
+			}
+
+			// Remaining keys are orphan candidates, but may have been created after the page query
+			List<String> candidates = new ArrayList<>(keys);
+
+			for (int i = 0; i < candidates.size(); i += BATCH_SIZE) {
+				List<String> batch = candidates.subList(i, Math.min(i + BATCH_SIZE, candidates.size()));
+				Set<String> uuids = new HashSet<>();
+				Set<String> versions = new HashSet<>();
+				Set<String> blobVersions = new HashSet<>();
+
+				for (String key : batch) {
+					uuids.add(getVersionUuid(key));
+				}
+
+				Query qLive = session.createQuery(qsLive);
+				qLive.setParameterList("uuids", uuids);
+
+				for (Object[] row : (List<Object[]>) qLive.list()) {
+					versions.add((String) row[0]);
+
+					if (row[1] != null) {
+						blobVersions.add((String) row[0]);
+					}
+				}
+
+				session.clear();
+
+				for (String key : batch) {
+					String uuid = getVersionUuid(key);
+
+					// Live edit temporary content is kept while its version exists
+					if (!versions.contains(uuid) || (!key.endsWith(TMP_SUFFIX) && blobVersions.contains(uuid))) {
+						if (isRecent(ds, key, since)) {
+							report.addRecent();
+							continue;
+						}
+
+						report.addOrphanObject(key);
+
+						if (purge) {
+							try {
+								ds.delete(key);
+								report.addPurged();
+							} catch (IOException e) {
+								log.warn("Could not delete file '" + key + "': " + e.getMessage());
+							}
+						}
+					}
+				}
+			}
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Scan content addressed blobs starting with a prefix.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void scanBlobs(String prefix, boolean purge, long since, DataStoreScanReport report) throws
+			DatabaseException, IOException {
+		String qs = "select dsb.hash from DataStoreBlob dsb where dsb.hash like :prefix and dsb.hash>:last "
+				+ "and dsb.refs>0 order by dsb.hash";
+		String qsDangling = "select distinct ndv.blob from NodeDocumentVersion ndv where ndv.blob like :prefix "
+				+ "and not exists (select dsb.hash from DataStoreBlob dsb where dsb.hash=ndv.blob)";
+		String qsLive = "select dsb.hash from DataStoreBlob dsb where dsb.refs>0 and dsb.hash in (:hashes)";
+		String qsRefs = "select dsb.hash from DataStoreBlob dsb where dsb.hash like :prefix and dsb.refs<>"
+				+ "(select count(ndv.uuid) from NodeDocumentVersion ndv where ndv.blob=dsb.hash)";
+		DataStore ds = DataStoreFactory.getDataStore();
+		String casPrefix = FsDataStore.getBlobKey("");
+		Set<String> hashes = new HashSet<>();
+		List<String> missing = new ArrayList<>();
+		Session session = null;
+		Transaction tx = null;
+
+		for (Iterator<String> it = ds.list(FsDataStore.CAS_DIRNAME, prefix); it.hasNext(); ) {
+			hashes.add(it.next().substring(casPrefix.length()));
+		}
+
+		report.addScannedBlobs(hashes.size());
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("prefix", prefix + "%");
+			q.setMaxResults(PAGE_SIZE);
+			String last = "";
+
+			for (boolean more = true; more; ) {
+				q.setString("last", last);
+				List<String> page = q.list();
+
+				for (String hash : page) {
+					if (!hashes.remove(hash)) {
+						missing.add(hash);
+					}
+
+					last = hash;
+				}
+
+				session.clear();
+				more = page.size() == PAGE_SIZE;
+			}
+
+			for (String hash : missing) {
+				if (!ds.exists(FsDataStore.getBlobKey(hash))) {
+					report.addMissingBlob(hash);
+				}
+			}
+
+			// Document versions pointing to an unknown blob
+			Query qDangling = session.createQuery(qsDangling);
+			qDangling.setString("prefix", prefix + "%");
+
+			for (String hash : (List<String>) qDangling.list()) {
+				report.addMissingBlob(hash);
+			}
+
+			// Reference count not matching the versions, so the blob would be kept or purged by mistake
+			Query qRefs = session.createQuery(qsRefs);
+			qRefs.setString("prefix", prefix + "%");
+
+			for (String hash : (List<String>) qRefs.list()) {
+				report.addRefsMismatch(hash);
+			}
+
+			session.clear();
+
+			List<String> candidates = new ArrayList<>(hashes);
+
+			for (int i = 0; i < candidates.size(); i += BATCH_SIZE) {
+				List<String> batch = candidates.subList(i, Math.min(i + BATCH_SIZE, candidates.size()));
+
+				Query qLive = session.createQuery(qsLive);
+				qLive.setParameterList("hashes", batch);
+				Set<String> live = new HashSet<>(qLive.list());
+				session.clear();
+
+				for (String hash : batch) {
+					if (!live.contains(hash)) {
+						String key = FsDataStore.getBlobKey(hash);
+
+						if (isRecent(ds, key, since)) {
+							report.addRecent();
+						} else if (purge) {
+							// Blob row is locked, so references can't change while confirming and removing
+							tx = session.beginTransaction();
+							DataStoreBlob dsBlob = DataStoreBlobDAO.getInstance().lock(session, hash);
+
+							if (dsBlob == null || dsBlob.getRefs() <= 0) {
+								report.addOrphanBlob(key);
+
+								try {
+									ds.delete(key);
+									report.addPurged();
+
+									if (dsBlob != null) {
+										session.delete(dsBlob);
+									}
+								} catch (IOException e) {
+									log.warn("Could not delete blob '" + key + "': " + e.getMessage());
+								}
+							}
+
+							HibernateUtil.commit(tx);
+							session.clear();
+						} else {
+							report.addOrphanBlob(key);
+						}
+					}
+				}
+			}
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Check if an object has been stored after the given time, so it may belong to a
+	 * transaction not committed yet.
+	 */
+	private static boolean isRecent(DataStore ds, String key, long since) throws IOException {
+		return ds.lastModified(key) >= since;
+	}
+
+	/**
+	 * Get document version uuid from a datastore key.
+	 */
+	private static String getVersionUuid(String key) {
+		return key.endsWith(TMP_SUFFIX) ? key.substring(0, key.length() - TMP_SUFFIX.length()) : key;
+	}
+
+	/**
+	 * Record a finished partition.
+	 */
+	private static void checkpoint(Writer writer, String partition) throws IOException {
+		synchronized (writer) {
+			writer.write(partition);
+			writer.write("\n");
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Get checkpoint file, which is different for checks and purges.
+	 */
+	private static File getCheckpointFile(boolean purge) {
+		return new File(Config.REPOSITORY_HOME, "datastore." + (purge ? "purge" : "scan") + ".checkpoint");
+	}
+}
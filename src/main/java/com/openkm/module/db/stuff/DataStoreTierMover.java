@@ -0,0 +1,336 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.openkm.bean.DataStoreTierInfo;
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.DataStoreBlobDAO;
+import com.openkm.dao.HibernateUtil;
+import com.openkm.dao.bean.DataStoreBlob;
+import com.openkm.dao.bean.NodeDocumentVersion;
+import com.openkm.datastore.DataStore;
+import com.openkm.datastore.DataStoreFactory;
+import com.openkm.datastore.TieredDataStore;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimerTask;
+
+/**
+ * Move content of non-current document versions older than the configured age to
+ * the datastore cold tier. Shared blobs are moved once every version referencing
+ * them qualifies. Content is read from whatever tier it is in, so the repository
+ * remains online while moving.
+ */
+public class DataStoreTierMover extends TimerTask {
+	private static final Logger log = LoggerFactory.getLogger(DataStoreTierMover.class);
+	private static final int BATCH_SIZE = 100;
+	private static Calendar lastExecution = null;
+	private static volatile boolean running = false;
+
+	/**
+	 * Return if the cold tier is configured.
+	 */
+	public static boolean isEnabled() {
+		return DataStoreFactory.getDataStore() instanceof TieredDataStore;
+	}
+
+	/**
+	 * Return if the mover is running.
+	 */
+	public static boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Return mover last execution
+	 */
+	public static Calendar lastExecution() {
+		return lastExecution;
+	}
+
+	@Override
+	public void run() {
+		if (running) {
+			log.warn("*** Datastore tier mover already running ***");
+		} else {
+			running = true;
+			log.debug("*** Begin datastore tier mover ***");
+
+			try {
+				if (!Config.SYSTEM_READONLY) {
+					moveToCold();
+				} else {
+					log.warn("*** Datastore tier mover disabled because system is readonly ***");
+				}
+			} catch (DatabaseException | IOException e) {
+				log.error(e.getMessage(), e);
+			} finally {
+				running = false;
+			}
+
+			lastExecution = Calendar.getInstance();
+			log.debug("*** End datastore tier mover ***");
+		}
+	}
+
+	/**
+	 * Move every qualifying content to the cold tier.
+	 *
+	 * @return Number of moved datastore objects.
+	 */
+	public static synchronized long moveToCold() throws DatabaseException, IOException {
+		log.debug("moveToCold()");
+		DataStore ds = DataStoreFactory.getDataStore();
+
+		if (!(ds instanceof TieredDataStore)) {
+			log.debug("moveToCold: no cold tier");
+			return 0;
+		}
+
+		TieredDataStore tds = (TieredDataStore) ds;
+		Calendar cutoff = Calendar.getInstance();
+		cutoff.add(Calendar.DAY_OF_YEAR, -Config.REPOSITORY_DATASTORE_COLD_AGE);
+		long begin = System.currentTimeMillis();
+		long moved = 0;
+		String last = "";
+
+		for (List<String> uuids = findVersions(cutoff, last); !uuids.isEmpty(); uuids = findVersions(cutoff, last)) {
+			for (String uuid : uuids) {
+				if (moveVersion(tds, uuid)) {
+					moved++;
+				}
+
+				last = uuid;
+			}
+		}
+
+		last = "";
+
+		for (List<String> hashes = findBlobs(cutoff, last); !hashes.isEmpty(); hashes = findBlobs(cutoff, last)) {
+			for (String hash : hashes) {
+				if (moveBlob(tds, hash)) {
+					moved++;
+				}
+
+				last = hash;
+			}
+		}
+
+		log.info("Moved {} datastore objects to cold tier in {} ms", moved, System.currentTimeMillis() - begin);
+		log.debug("moveToCold: {}", moved);
+		return moved;
+	}
+
+	/**
+	 * Move a single document version content.
+	 */
+	private static boolean moveVersion(TieredDataStore tds, String uuid) throws DatabaseException, IOException {
+		try {
+			tds.copyToCold(uuid);
+		} catch (FileNotFoundException e) {
+			log.warn("Datastore file not found for document version '{}'", uuid);
+			return false;
+		}
+
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			NodeDocumentVersion nDocVer = (NodeDocumentVersion) session.get(NodeDocumentVersion.class, uuid);
+
+			if (nDocVer == null) {
+				// Removed in the meantime
+				HibernateUtil.rollback(tx);
+				tds.getCold().delete(uuid);
+				return false;
+			} else if (nDocVer.getTier() != null) {
+				HibernateUtil.rollback(tx);
+				return false;
+			}
+
+			nDocVer.setTier(FsDataStore.DATASTORE_TIER_COLD);
+			session.update(nDocVer);
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			tds.getCold().delete(uuid);
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+
+		tds.getHot().delete(uuid);
+		return true;
+	}
+
+	/**
+	 * Move a single blob content. The blob row is locked while moving, so its references
+	 * can't change.
+	 */
+	private static boolean moveBlob(TieredDataStore tds, String hash) throws DatabaseException, IOException {
+		String key = FsDataStore.getBlobKey(hash);
+		Session session = null;
+		Transaction tx = null;
+		boolean copied = false;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			DataStoreBlob dsBlob = DataStoreBlobDAO.getInstance().lock(session, hash);
+
+			if (dsBlob == null || dsBlob.getTier() != null) {
+				// Removed or moved in the meantime
+				HibernateUtil.rollback(tx);
+				return false;
+			}
+
+			try {
+				tds.copyToCold(key);
+				copied = true;
+			} catch (FileNotFoundException e) {
+				log.warn("Datastore blob not found '{}'", hash);
+				HibernateUtil.rollback(tx);
+				return false;
+			}
+
+			dsBlob.setTier(FsDataStore.DATASTORE_TIER_COLD);
+			session.update(dsBlob);
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+
+			if (copied) {
+				tds.getCold().delete(key);
+			}
+
+			throw new DatabaseException(e.getMessage(), e);
+		} catch (IOException e) {
+			HibernateUtil.rollback(tx);
+			throw e;
+		} finally {
+			HibernateUtil.close(session);
+		}
+
+		tds.getHot().delete(key);
+		return true;
+	}
+
+	/**
+	 * Find next batch of non-current document versions to be moved.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<String> findVersions(Calendar cutoff, String last) throws DatabaseException {
+		String qs = "select ndv.uuid from NodeDocumentVersion ndv where ndv.current=:current and ndv.created<:cutoff "
+				+ "and ndv.tier is null and ndv.blob is null and ndv.uuid>:last order by ndv.uuid";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setBoolean("current", false);
+			q.setCalendar("cutoff", cutoff);
+			q.setString("last", last);
+			q.setMaxResults(BATCH_SIZE);
+			return q.list();
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Find next batch of blobs only referenced by document versions to be moved.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<String> findBlobs(Calendar cutoff, String last) throws DatabaseException {
+		String qs = "select dsb.hash from DataStoreBlob dsb where dsb.tier is null and dsb.hash>:last "
+				+ "and not exists (select ndv.uuid from NodeDocumentVersion ndv where ndv.blob=dsb.hash "
+				+ "and (ndv.current=:current or ndv.created>=:cutoff)) order by dsb.hash";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setString("last", last);
+			q.setBoolean("current", true);
+			q.setCalendar("cutoff", cutoff);
+			q.setMaxResults(BATCH_SIZE);
+			return q.list();
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Get number and size of datastore objects by tier.
+	 */
+	@SuppressWarnings("unchecked")
+	public static DataStoreTierInfo getTierInfo() throws DatabaseException {
+		log.debug("getTierInfo()");
+		String qsVersions = "select ndv.tier, count(ndv.uuid), sum(ndv.size) from NodeDocumentVersion ndv "
+				+ "where ndv.blob is null group by ndv.tier";
+		String qsBlobs = "select dsb.tier, count(dsb.hash), sum(dsb.size) from DataStoreBlob dsb group by dsb.tier";
+		DataStoreTierInfo info = new DataStoreTierInfo();
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+
+			for (String qs : new String[]{qsVersions, qsBlobs}) {
+				for (Object[] row : (List<Object[]>) session.createQuery(qs).list()) {
+					long objects = row[1] == null ? 0 : (Long) row[1];
+					long size = row[2] == null ? 0 : (Long) row[2];
+
+					if (row[0] == null) {
+						info.setHotObjects(info.getHotObjects() + objects);
+						info.setHotSize(info.getHotSize() + size);
+					} else {
+						info.setColdObjects(info.getColdObjects() + objects);
+						info.setColdSize(info.getColdSize() + size);
+					}
+				}
+			}
+
+			log.debug("getTierInfo: {}", info);
+			return info;
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+}
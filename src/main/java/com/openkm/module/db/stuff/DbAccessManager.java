@@ -27,6 +27,9 @@ import com.openkm.core.PathNotFoundException;
 import com.openkm.dao.bean.NodeBase;
 import com.openkm.principal.PrincipalAdapterException;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Check user permissions on documents and folders.
  *
@@ -39,4 +42,9 @@ public interface DbAccessManager {
 	boolean isGranted(NodeBase node, int permissions) throws DatabaseException;
 
 	boolean isGranted(NodeBase node, String user, int permissions) throws PrincipalAdapterException, DatabaseException;
+
+	/**
+	 * Check permissions of several nodes for the current user. The result is keyed by node UUID.
+	 */
+	Map<String, Boolean> isGranted(List<? extends NodeBase> nodes, int permissions) throws DatabaseException;
 }
@@ -38,6 +38,7 @@ import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -81,10 +82,44 @@ public class DbReadRecursiveAccessManager implements DbAccessManager {
 		return isGranted(node, user, new HashSet<>(roles), permissions);
 	}
 
+	/**
+	 * Check for permissions of several nodes at once, sharing the database session and the
+	 * ancestors evaluation.
+	 */
+	@Override
+	public Map<String, Boolean> isGranted(List<? extends NodeBase> nodes, int permissions) throws DatabaseException {
+		log.debug("isGranted({}, {})", nodes.size(), permissions);
+		String user = PrincipalUtils.getUser();
+		Set<String> roles = PrincipalUtils.getRoles();
+		Map<String, Boolean> ret = new HashMap<>();
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+
+			for (NodeBase node : nodes) {
+				ret.put(node.getUuid(), isGranted(session, node, user, roles, permissions));
+			}
+		} finally {
+			HibernateUtil.close(session);
+		}
+
+		log.debug("isGranted: {}", ret);
+		return ret;
+	}
+
 	/**
 	 * Check for permissions.
 	 */
 	private boolean isGranted(NodeBase node, String user, Set<String> roles, int permissions) throws DatabaseException {
+		return isGranted(null, node, user, roles, permissions);
+	}
+
+	/**
+	 * Check for permissions. If no session is given, a new one is only opened when the
+	 * ancestors effective permissions are not cached.
+	 */
+	private boolean isGranted(Session session, NodeBase node, String user, Set<String> roles, int permissions) throws DatabaseException {
 		log.debug("isGranted({}, {})", node.getUuid(), permissions);
 		long begin = System.currentTimeMillis();
 		boolean access = false;
@@ -97,19 +132,14 @@ public class DbReadRecursiveAccessManager implements DbAccessManager {
 				if (roles.contains(Config.DEFAULT_ADMIN_ROLE)) {
 					// An user with AdminRole has total access
 					access = true;
-				} else {
-					if (permissions == Permission.READ) {
-						Session session = null;
-
-						try {
-							session = HibernateUtil.getSessionFactory().openSession();
-							access = recursiveIsGranted(session, node, user, roles, permissions);
-						} finally {
-							HibernateUtil.close(session);
-						}
-					} else {
-						access = checkProperties(node.getUserPermissions(), node.getRolePermissions(), user, roles, permissions);
+				} else if (permissions == Permission.READ) {
+					access = checkProperties(node.getUserPermissions(), node.getRolePermissions(), user, roles, permissions);
+
+					if (access) {
+						access = ancestorsGranted(session, node, user, roles, permissions);
 					}
+				} else {
+					access = checkProperties(node.getUserPermissions(), node.getRolePermissions(), user, roles, permissions);
 				}
 			}
 		} else {
@@ -128,23 +158,63 @@ public class DbReadRecursiveAccessManager implements DbAccessManager {
 		return access;
 	}
 
-	private boolean recursiveIsGranted(Session session, NodeBase node, String user, Set<String> roles, int perms) throws DatabaseException {
-		if (log.isDebugEnabled()) {
-			log.debug("recursiveIsGranted({}, {}, {}, {})", NodeBaseDAO.getInstance().getParentUuid(node.getUuid()), user, roles, perms);
+	/**
+	 * Check the permissions inherited from the node ancestors.
+	 */
+	private boolean ancestorsGranted(Session session, NodeBase node, String user, Set<String> roles, int perms) throws DatabaseException {
+		if (Config.ROOT_NODE_UUID.equals(node.getParent())) {
+			return true;
 		}
 
-		boolean access = checkProperties(node.getUserPermissions(), node.getRolePermissions(), user, roles, perms);
-
-		if (!Config.ROOT_NODE_UUID.equals(node.getParent())) {
-			NodeBase parent = NodeBaseDAO.getInstance().getParentNodePermissions(session, node.getUuid());
+		String key = EffectivePermissionCache.getKey(user, roles, perms);
+		long generation = EffectivePermissionCache.getGeneration();
+		Boolean cached = node.getParent() == null ? null : EffectivePermissionCache.get(node.getParent(), key);
 
-			while (parent != null) {
-				access &= recursiveIsGranted(session, parent, user, roles, perms);
-				parent = NodeBaseDAO.getInstance().getParentNodePermissions(session, parent.getUuid());
+		if (cached != null) {
+			return cached;
+		} else if (session != null) {
+			return ancestorsGranted(session, node.getUuid(), node.getParent(), user, roles, perms, key, generation);
+		} else {
+			try {
+				session = HibernateUtil.getSessionFactory().openSession();
+				return ancestorsGranted(session, node.getUuid(), node.getParent(), user, roles, perms, key, generation);
+			} finally {
+				HibernateUtil.close(session);
 			}
 		}
+	}
+
+	/**
+	 * Evaluate the effective permissions of a node parent: its own permissions and the ones of its
+	 * ancestors, walking up until a node without permissions is found. Every evaluated ancestor is
+	 * cached, so sibling nodes and deeper nodes reuse it.
+	 */
+	private boolean ancestorsGranted(Session session, String uuid, String parentUuid, String user, Set<String> roles, int perms,
+									 String key, long generation) {
+		log.debug("ancestorsGranted({}, {}, {}, {}, {})", uuid, parentUuid, user, roles, perms);
+
+		if (Config.ROOT_NODE_UUID.equals(parentUuid)) {
+			return true;
+		}
+
+		Boolean cached = parentUuid == null ? null : EffectivePermissionCache.get(parentUuid, key);
+
+		if (cached != null) {
+			return cached;
+		}
+
+		NodeBase parent = NodeBaseDAO.getInstance().getParentNodePermissions(session, uuid);
+		boolean access = true;
+
+		if (parent != null) {
+			access = checkProperties(parent.getUserPermissions(), parent.getRolePermissions(), user, roles, perms)
+					&& ancestorsGranted(session, parent.getUuid(), parent.getParent(), user, roles, perms, key, generation);
+			EffectivePermissionCache.put(parent.getUuid(), key, access, generation);
+		} else if (parentUuid != null) {
+			EffectivePermissionCache.put(parentUuid, key, access, generation);
+		}
 
-		log.debug("recursiveIsGranted: {}", access);
+		log.debug("ancestorsGranted: {}", access);
 		return access;
 	}
 
@@ -34,6 +34,7 @@ import com.openkm.util.StackTraceUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -76,6 +77,22 @@ public class DbSimpleAccessManager implements DbAccessManager {
 		return isGranted(node, user, new HashSet<>(roles), permissions);
 	}
 
+	/**
+	 * Check for permissions of several nodes at once.
+	 */
+	@Override
+	public Map<String, Boolean> isGranted(List<? extends NodeBase> nodes, int permissions) {
+		String user = PrincipalUtils.getUser();
+		Set<String> roles = PrincipalUtils.getRoles();
+		Map<String, Boolean> ret = new HashMap<>();
+
+		for (NodeBase node : nodes) {
+			ret.put(node.getUuid(), isGranted(node, user, roles, permissions));
+		}
+
+		return ret;
+	}
+
 	/**
 	 * Check for permissions.
 	 */
@@ -0,0 +1,102 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.openkm.cache.CacheProvider;
+import com.openkm.dao.SearchResultCache;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache the effective permissions of a node for a principal set: the permissions granted by
+ * the node and all its ancestors. As every node inherits the ones of its ancestors, the cache
+ * is cleared as a whole after a security change or a move. Every clear starts a new generation,
+ * so permissions evaluated before it are not cached afterwards.
+ *
+ * @see com.openkm.module.db.stuff.DbRecursiveAccessManager
+ * @see com.openkm.module.db.stuff.DbReadRecursiveAccessManager
+ */
+public class EffectivePermissionCache {
+	private static Logger log = LoggerFactory.getLogger(EffectivePermissionCache.class);
+	public static final String CACHE_EFFECTIVE_PERMISSIONS = "com.openkm.cache.effectivePermissions";
+	private static final AtomicLong generation = new AtomicLong();
+
+	private EffectivePermissionCache() {
+	}
+
+	/**
+	 * Build the principal set key of a permission check.
+	 */
+	public static String getKey(String user, Set<String> roles, int permissions) {
+		return user + "|" + String.join(",", new TreeSet<>(roles)) + "|" + permissions;
+	}
+
+	/**
+	 * Get cached effective permission of a node, or null if not cached.
+	 */
+	public static Boolean get(String uuid, String key) {
+		Element elto = getCache().get(uuid + "|" + key);
+		return elto == null ? null : (Boolean) elto.getObjectValue();
+	}
+
+	/**
+	 * Get current cache generation, to be read before evaluating the permissions to be cached.
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Cache effective permission of a node, unless the cache has been cleared since the given
+	 * generation was read.
+	 */
+	public static void put(String uuid, String key, boolean access, long generation) {
+		if (EffectivePermissionCache.generation.get() == generation) {
+			getCache().put(new Element(uuid + "|" + key, access));
+
+			// Cleared while putting
+			if (EffectivePermissionCache.generation.get() != generation) {
+				getCache().remove(uuid + "|" + key);
+			}
+		}
+	}
+
+	/**
+	 * Remove every cached effective permission, and the cached search results pruned with them.
+	 */
+	public static void invalidate() {
+		log.debug("invalidate()");
+		generation.incrementAndGet();
+		getCache().removeAll();
+		SearchResultCache.invalidate();
+	}
+
+	private static Cache getCache() {
+		return CacheProvider.getInstance().getCache(CACHE_EFFECTIVE_PERMISSIONS);
+	}
+}
@@ -21,28 +21,55 @@
 
 package com.openkm.module.db.stuff;
 
+import com.openkm.bean.DataStoreScanReport;
 import com.openkm.core.Config;
 import com.openkm.core.DatabaseException;
+import com.openkm.core.MimeTypeConfig;
 import com.openkm.core.PathNotFoundException;
 import com.openkm.core.RepositoryException;
+import com.openkm.dao.DataStoreBlobDAO;
 import com.openkm.dao.HibernateUtil;
 import com.openkm.dao.NodeDocumentVersionDAO;
+import com.openkm.dao.SchemaUpgrade;
+import com.openkm.dao.bean.DataStoreBlob;
 import com.openkm.dao.bean.NodeDocumentVersion;
+import com.openkm.datastore.ContentCodec;
+import com.openkm.datastore.DataStore;
+import com.openkm.datastore.DataStoreFactory;
+import com.openkm.datastore.FileSystemDataStore;
 import com.openkm.util.SecureStore;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import java.io.*;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public class FsDataStore {
 	private static final Logger log = LoggerFactory.getLogger(FsDataStore.class);
 	public static final String DATASTORE_BACKEND_FS = "fs";
 	public static final String DATASTORE_BACKEND_DB = "db";
+	public static final String DATASTORE_BACKEND_CAS = "cas";
+	public static final String DATASTORE_BACKEND_S3 = "s3";
+	public static final String DATASTORE_TIER_COLD = "cold";
 	public static final String DATASTORE_DIRNAME = "datastore";
+	public static final String CAS_DIRNAME = "cas";
+	public static final String CAS_TMP_DIRNAME = "tmp";
+	public static final String CAS_HASH_ALGORITHM = "SHA-256";
+	public static final String CHECKSUM_MD5 = "MD5";
+	public static final String CHECKSUM_SHA256 = "SHA-256";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static volatile boolean checksumFallback = false;
 
 	/**
 	 * Write to data store
@@ -51,12 +78,34 @@ public class FsDataStore {
 		log.debug("save({}, {})", uuid, is);
 		File fs = resolveFile(uuid);
 		fs.getParentFile().mkdirs();
-		FileOutputStream fos = new FileOutputStream(fs);
-		IOUtils.copy(is, fos);
-		IOUtils.closeQuietly(fos);
+		write(is, fs, ContentCodec.COMPRESSION_NONE);
 		return fs;
 	}
 
+	/**
+	 * Write stream to file, updating the given digests with the uncompressed content in
+	 * the same pass. The file is synced to disk once everything has been written.
+	 */
+	private static void write(InputStream is, File file, String compression, MessageDigest... digests) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+
+		try {
+			OutputStream os = ContentCodec.encode(new CloseShieldOutputStream(fos), compression);
+
+			for (MessageDigest md : digests) {
+				if (md != null) {
+					os = new DigestOutputStream(os, md);
+				}
+			}
+
+			IOUtils.copyLarge(is, os, new byte[BUFFER_SIZE]);
+			os.close(); // Only finish compression, file still open
+			fos.getFD().sync();
+		} finally {
+			IOUtils.closeQuietly(fos);
+		}
+	}
+
 	/**
 	 * Read from data store
 	 */
@@ -65,6 +114,20 @@ public class FsDataStore {
 		return new FileInputStream(resolveFile(uuid));
 	}
 
+	/**
+	 * Read document version content, whatever the datastore backend is
+	 */
+	public static InputStream read(NodeDocumentVersion nDocVer) throws IOException {
+		log.debug("read({})", nDocVer);
+
+		if (nDocVer.getContent() != null) {
+			// Content stored along with the document version by former database backend
+			return new ByteArrayInputStream(nDocVer.getContent());
+		} else {
+			return ContentCodec.decode(getDataStore().get(getKey(nDocVer)), nDocVer.getCompression());
+		}
+	}
+
 	/**
 	 * Purge data store file
 	 */
@@ -82,53 +145,283 @@ public class FsDataStore {
 	}
 
 	/**
-	 * Copy a datastore file to another version
+	 * Purge document version content, whatever the datastore backend is. Blob references are
+	 * released in the session transaction.
 	 */
-	public static void copy(NodeDocumentVersion srcDocVer, NodeDocumentVersion dstDocVer) throws IOException {
-		FileInputStream fis = null;
+	public static void delete(Session session, NodeDocumentVersion nDocVer) throws HibernateException, IOException {
+		log.debug("delete({}, {})", session, nDocVer);
 
-		try {
-			fis = new FileInputStream(resolveFile(srcDocVer.getUuid()));
-			save(dstDocVer.getUuid(), fis);
-		} finally {
-			IOUtils.closeQuietly(fis);
+		if (nDocVer.getBlob() != null) {
+			releaseBlob(session, nDocVer.getBlob());
+		} else if (nDocVer.getContent() == null) {
+			getDataStore().delete(nDocVer.getUuid());
+		}
+	}
+
+	/**
+	 * Remove content persisted for a document version whose transaction has been rolled back.
+	 * Blob references are rolled back with the transaction, and a blob created by it is
+	 * removed by the datastore scanner.
+	 */
+	public static void discard(NodeDocumentVersion nDocVer) throws IOException {
+		log.debug("discard({})", nDocVer);
+
+		if (nDocVer.getBlob() == null && nDocVer.getContent() == null) {
+			getDataStore().delete(nDocVer.getUuid());
 		}
 	}
 
 	/**
-	 * Persis document file
+	 * Check if document version content is available
 	 */
-	public static void persist(NodeDocumentVersion nDocVer, InputStream is) throws IOException {
-		log.debug("persist({}, {})", nDocVer, is);
+	public static boolean exists(NodeDocumentVersion nDocVer) throws IOException {
+		return nDocVer.getContent() != null || getDataStore().exists(getKey(nDocVer));
+	}
 
-		if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
-			File dsRaw = FsDataStore.save(nDocVer.getUuid(), is);
+	/**
+	 * Copy a datastore file to another version. Blob references are added in the session
+	 * transaction, which should also save the destination version.
+	 */
+	public static void copy(Session session, NodeDocumentVersion srcDocVer, NodeDocumentVersion dstDocVer) throws
+			HibernateException, IOException {
+		log.debug("copy({}, {}, {})", session, srcDocVer, dstDocVer);
 
-			if (Config.REPOSITORY_CONTENT_CHECKSUM) {
-				try {
-					String checkSum = SecureStore.md5Encode(dsRaw);
-					nDocVer.setChecksum(checkSum);
-				} catch (NoSuchAlgorithmException e) {
-					log.warn(e.getMessage(), e);
+		if (srcDocVer.getBlob() != null) {
+			// Same content, so only one more reference is needed
+			acquireBlob(session, srcDocVer.getBlob());
+			dstDocVer.setBlob(srcDocVer.getBlob());
+			dstDocVer.setCompression(srcDocVer.getCompression());
+		} else {
+			InputStream is = null;
+
+			try {
+				if (DATASTORE_BACKEND_CAS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
+					is = read(srcDocVer);
+					persistBlob(session, dstDocVer, is, null);
+				} else if (srcDocVer.getContent() != null) {
+					is = new ByteArrayInputStream(srcDocVer.getContent());
+					getDataStore().put(dstDocVer.getUuid(), is, -1);
+					dstDocVer.setCompression(null);
+				} else {
+					// Stored content is copied as is, so no need to compress it again
+					is = getDataStore().get(srcDocVer.getUuid());
+					getDataStore().put(dstDocVer.getUuid(), is, -1);
+					dstDocVer.setCompression(srcDocVer.getCompression());
 				}
+			} finally {
+				IOUtils.closeQuietly(is);
 			}
+		}
+	}
+
+	/**
+	 * Persis document file. Content checksum is calculated while the content is being
+	 * written, so it is never read back. Blob references are added in the session
+	 * transaction, which should also save the document version.
+	 */
+	public static void persist(Session session, NodeDocumentVersion nDocVer, InputStream is) throws HibernateException,
+			IOException {
+		log.debug("persist({}, {}, {})", session, nDocVer, is);
+		MessageDigest checksum = getChecksumDigest();
+
+		if (DATASTORE_BACKEND_CAS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
+			persistBlob(session, nDocVer, is, checksum);
 		} else {
-			byte[] raw = IOUtils.toByteArray(is);
-			nDocVer.setContent(raw);
-
-			if (Config.REPOSITORY_CONTENT_CHECKSUM) {
-				try {
-					String checkSum = SecureStore.md5Encode(raw);
-					nDocVer.setChecksum(checkSum);
-				} catch (NoSuchAlgorithmException e) {
-					log.warn(e.getMessage(), e);
-				}
+			// Declared document size is not reliable enough to be used as content length
+			String compression = MimeTypeConfig.getCompression(nDocVer.getMimeType());
+			InputStream dis = checksum == null ? is : new DigestInputStream(is, checksum);
+			getDataStore().put(nDocVer.getUuid(), ContentCodec.encode(dis, compression), -1);
+			nDocVer.setCompression(ContentCodec.getStoredCompression(compression));
+
+			if (checksum != null) {
+				nDocVer.setChecksum(SecureStore.hexEncode(checksum.digest()));
 			}
 		}
 
 		log.debug("persist: void");
 	}
 
+	/**
+	 * Get a new digest for content checksum, or null if checksum is disabled
+	 */
+	private static MessageDigest getChecksumDigest() {
+		if (Config.REPOSITORY_CONTENT_CHECKSUM) {
+			String algorithm = Config.REPOSITORY_CONTENT_CHECKSUM_ALGORITHM;
+
+			// SHA-256 checksum does not fit until the column has been widened
+			if (CHECKSUM_SHA256.equals(algorithm) && !SchemaUpgrade.isChecksumUpgraded()) {
+				if (!checksumFallback) {
+					log.warn("Column NDV_CHECKSUM too short for {} checksum, using {}", CHECKSUM_SHA256, CHECKSUM_MD5);
+					checksumFallback = true;
+				}
+
+				algorithm = CHECKSUM_MD5;
+			}
+
+			try {
+				return MessageDigest.getInstance(algorithm);
+			} catch (NoSuchAlgorithmException e) {
+				log.warn(e.getMessage(), e);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get the algorithm used to calculate a stored checksum
+	 */
+	private static String getChecksumAlgorithm(String checksum) {
+		if (checksum != null && checksum.length() == 64) {
+			return CHECKSUM_SHA256;
+		} else {
+			return CHECKSUM_MD5;
+		}
+	}
+
+	/**
+	 * Store content as a content addressed blob. When an identical blob already exists only
+	 * its reference count is incremented and the new content is discarded.
+	 */
+	private static void persistBlob(Session session, NodeDocumentVersion nDocVer, InputStream is, MessageDigest checksum)
+			throws HibernateException, IOException {
+		log.debug("persistBlob({}, {}, {})", session, nDocVer, is);
+		File casTmp = new File(getCasHome(), CAS_TMP_DIRNAME);
+		casTmp.mkdirs();
+		File tmp = File.createTempFile("blob", ".tmp", casTmp);
+
+		try {
+			MessageDigest md = MessageDigest.getInstance(CAS_HASH_ALGORITHM);
+			boolean sameDigest = checksum != null && CAS_HASH_ALGORITHM.equals(checksum.getAlgorithm());
+			String compression = MimeTypeConfig.getCompression(nDocVer.getMimeType());
+			write(is, tmp, compression, md, sameDigest ? null : checksum);
+
+			String hash = SecureStore.hexEncode(md.digest());
+			String previous = nDocVer.getBlob();
+			compression = linkBlob(session, tmp, hash, tmp.length(), ContentCodec.getStoredCompression(compression), true);
+			nDocVer.setBlob(hash);
+			nDocVer.setCompression(compression);
+
+			// Content replaced in place
+			if (previous != null) {
+				releaseBlob(session, previous);
+			}
+
+			if (checksum != null) {
+				nDocVer.setChecksum(sameDigest ? hash : SecureStore.hexEncode(checksum.digest()));
+			}
+
+			log.debug("persistBlob: {}", hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+
+	/**
+	 * Register a new reference to a blob in the session transaction, placing the given file as
+	 * its content if the blob is not already stored. The source file is moved or kept depending
+	 * on the move parameter. The blob row stays locked until the transaction ends, so a failure
+	 * before commit leaves no reference behind.
+	 *
+	 * @return The compression of the blob content, which is the one of the existing blob if any.
+	 */
+	static String linkBlob(Session session, File src, String hash, long size, String compression, boolean move)
+			throws HibernateException, IOException {
+		String key = getBlobKey(hash);
+		DataStoreBlob dsBlob = DataStoreBlobDAO.getInstance().incRefs(session, hash, size, compression);
+
+		if (!getDataStore().exists(key)) {
+			getDataStore().put(key, src, move);
+			dsBlob.setSize(size);
+			dsBlob.setCompression(compression);
+			session.update(dsBlob);
+		}
+
+		return dsBlob.getCompression();
+	}
+
+	/**
+	 * Add a reference to an existing blob in the session transaction
+	 */
+	private static void acquireBlob(Session session, String hash) throws HibernateException, IOException {
+		if (DataStoreBlobDAO.getInstance().lock(session, hash) == null || !getDataStore().exists(getBlobKey(hash))) {
+			throw new FileNotFoundException("Blob does not exist: " + hash);
+		}
+
+		DataStoreBlobDAO.getInstance().incRefs(session, hash, 0, null);
+	}
+
+	/**
+	 * Drop a reference to a blob in the session transaction, and remove its content when no
+	 * longer referenced, once the transaction has been committed
+	 */
+	static void releaseBlob(Session session, final String hash) throws HibernateException, IOException {
+		log.debug("releaseBlob({}, {})", session, hash);
+
+		if (DataStoreBlobDAO.getInstance().decRefs(session, hash)) {
+			session.getTransaction().registerSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					if (status == Status.STATUS_COMMITTED) {
+						purgeBlob(hash);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Remove the content of a blob no longer referenced. The blob row is created again and kept
+	 * locked while removing, so a concurrent upload of the same content either finds it referenced
+	 * or waits and stores it again. On failure the content is left to the datastore scan.
+	 */
+	private static void purgeBlob(String hash) {
+		log.debug("purgeBlob({})", hash);
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			DataStoreBlob dsBlob = DataStoreBlobDAO.getInstance().lockOrCreate(session, hash, 0, null);
+
+			if (dsBlob.getRefs() <= 0) {
+				getDataStore().delete(getBlobKey(hash));
+				session.delete(dsBlob);
+			}
+
+			HibernateUtil.commit(tx);
+		} catch (HibernateException | IOException e) {
+			HibernateUtil.rollback(tx);
+			log.warn("Could not delete blob '" + hash + "': " + e.getMessage());
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Calculate the content hash used as blob identifier of a file stored with the given
+	 * compression
+	 */
+	static String blobHash(File file, String compression) throws IOException {
+		InputStream is = null;
+
+		try {
+			is = ContentCodec.decode(new FileInputStream(file), compression);
+			return SecureStore.digestEncode(is, CAS_HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
 	/**
 	 * Verify checksum
 	 */
@@ -139,7 +432,7 @@ public class FsDataStore {
 
 		try {
 			String stChecksum = NodeDocumentVersionDAO.getInstance().getVersionContentChecksumByParent(docUuid, verName);
-			String clCheckSum = SecureStore.md5Encode(fsRaw);
+			String clCheckSum = SecureStore.digestEncode(fsRaw, getChecksumAlgorithm(stChecksum));
 
 			if (!clCheckSum.equals(stChecksum)) {
 				throw new RepositoryException("Checksum failure for node '" + docUuid + "' and version '" + verName + "'");
@@ -155,57 +448,91 @@ public class FsDataStore {
 		log.debug("verifyChecksum: void");
 	}
 
+	/**
+	 * Check orphan datastore files without removing anything.
+	 *
+	 * @see DataStoreScanner
+	 */
+	public static DataStoreScanReport checkOrphanFiles() throws DatabaseException, IOException {
+		log.debug("checkOrphanFiles()");
+		DataStoreScanReport report = DataStoreScanner.scan(false);
+		log.debug("checkOrphanFiles: {}", report);
+		return report;
+	}
+
 	/**
 	 * Purge orphan datastore files.
 	 * <p>
-	 * This method will remove datastore files not corresponding with a NodeDocumentVersion.
+	 * This method will remove datastore files not corresponding with a NodeDocumentVersion
+	 * or a referenced blob.
+	 *
+	 * @see DataStoreScanner
 	 */
-	public static void purgeOrphanFiles() throws DatabaseException, IOException {
+	public static DataStoreScanReport purgeOrphanFiles() throws DatabaseException, IOException {
 		log.debug("purgeOrphanFiles()");
-		Session session = null;
+		DataStoreScanReport report = DataStoreScanner.scan(true);
+		log.debug("purgeOrphanFiles: {}", report);
+		return report;
+	}
 
-		try {
-			session = HibernateUtil.getSessionFactory().openSession();
-			purgeOrphanFilesHelper(session, new File(Config.REPOSITORY_DATASTORE_HOME));
-			log.debug("purgeOrphanFiles: void");
-		} catch (HibernateException e) {
-			throw new DatabaseException(e.getMessage(), e);
-		} finally {
-			HibernateUtil.close(session);
+	/**
+	 * Get file from uuid
+	 */
+	public static File resolveFile(String uuid) {
+		return new FileSystemDataStore(new File(Config.REPOSITORY_DATASTORE_HOME)).resolveFile(uuid);
+	}
+
+	/**
+	 * Get datastore key from document version, which may be a shared blob
+	 */
+	public static String getKey(NodeDocumentVersion nDocVer) {
+		if (nDocVer.getBlob() != null) {
+			return getBlobKey(nDocVer.getBlob());
+		} else {
+			return nDocVer.getUuid();
 		}
 	}
 
 	/**
-	 * Purge orphan datastore files helper
+	 * Get a hash which identifies the document version content, or null if unknown
 	 */
-	private static void purgeOrphanFilesHelper(Session session, File dir) throws HibernateException, IOException {
-		for (File child : dir.listFiles()) {
-			if (child.isFile()) {
-				if (session.get(NodeDocumentVersion.class, child.getName()) == null) {
-					if (!child.delete()) {
-						log.warn("Could not delete file '" + child.getCanonicalPath() + "'");
-					}
-				}
-			} else if (child.isDirectory()) {
-				purgeOrphanFilesHelper(session, child);
-			}
+	public static String getContentHash(NodeDocumentVersion nDocVer) {
+		if (nDocVer.getBlob() != null) {
+			return CAS_HASH_ALGORITHM + ":" + nDocVer.getBlob();
+		} else if (nDocVer.getChecksum() != null && !nDocVer.getChecksum().isEmpty()) {
+			return getChecksumAlgorithm(nDocVer.getChecksum()) + ":" + nDocVer.getChecksum();
+		} else {
+			return null;
 		}
 	}
 
 	/**
-	 * Get file from uuid
+	 * Get datastore key from content hash
 	 */
-	public static File resolveFile(String uuid) {
-		char[] seq = uuid.replaceAll("-", "").toCharArray();
-		StringBuilder path = new StringBuilder();
+	static String getBlobKey(String hash) {
+		return CAS_DIRNAME + DataStore.NAMESPACE_SEPARATOR + hash;
+	}
 
-		// For really big repositories maybe better: i < seq.length
-		// But for most usual repositories a 4 depth level is enough
-		for (int i = 0; i < 8; i = i + 2) {
-			path.append(seq[i]).append(seq[i + 1]).append(File.separator);
-		}
+	/**
+	 * Get content addressed blobs home
+	 */
+	private static File getCasHome() {
+		return new File(Config.REPOSITORY_DATASTORE_HOME, CAS_DIRNAME);
+	}
 
-		return new File(Config.REPOSITORY_DATASTORE_HOME + File.separator + path.toString() + uuid);
+	/**
+	 * Get the configured datastore
+	 */
+	private static DataStore getDataStore() {
+		return DataStoreFactory.getDataStore();
+	}
+
+	/**
+	 * Check if document content is stored in the filesystem
+	 */
+	public static boolean isFileBacked() {
+		return DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)
+				|| DATASTORE_BACKEND_CAS.equals(Config.REPOSITORY_DATASTORE_BACKEND);
 	}
 
 	/**
@@ -0,0 +1,100 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package com.openkm.module.db.stuff;
+
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.exception.ErrorContext;
+import org.hibernate.search.exception.ErrorHandler;
+import org.hibernate.search.exception.impl.LogErrorHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hibernate Search error handler used with the batch index backend. Index processors report
+ * failures here instead of throwing, so the failing works are logged and kept until the batch
+ * committer takes them to retry.
+ * <p>
+ * Registered with hibernate.search.error_handler
+ *
+ * @see BatchBackendQueueProcessorFactory
+ */
+public class IndexErrorHandler implements ErrorHandler {
+	private static final Set<LuceneWork> failures = Collections.synchronizedSet(
+			Collections.newSetFromMap(new IdentityHashMap<LuceneWork, Boolean>()));
+	private static final AtomicLong unattributed = new AtomicLong();
+	private static volatile String lastError = null;
+	private final ErrorHandler logHandler = new LogErrorHandler();
+
+	@Override
+	public void handle(ErrorContext context) {
+		logHandler.handle(context);
+		List<LuceneWork> failing = context.getFailingOperations();
+
+		if (failing != null && !failing.isEmpty()) {
+			failures.addAll(failing);
+		} else if (context.getOperationAtFault() != null) {
+			failures.add(context.getOperationAtFault());
+		} else {
+			unattributed.incrementAndGet();
+		}
+
+		Throwable t = context.getThrowable();
+		lastError = t == null ? "Unknown index error" : String.valueOf(t.getMessage());
+	}
+
+	/**
+	 * Remove the failures of these works.
+	 *
+	 * @return Works which have failed.
+	 */
+	static List<LuceneWork> takeFailures(List<LuceneWork> works) {
+		List<LuceneWork> failed = new ArrayList<>();
+
+		for (LuceneWork work : works) {
+			if (failures.remove(work)) {
+				failed.add(work);
+			}
+		}
+
+		return failed;
+	}
+
+	/**
+	 * Number of failures which were not reported with the failing works, like a commit error.
+	 */
+	static long getUnattributed() {
+		return unattributed.get();
+	}
+
+	/**
+	 * Message of the last reported failure.
+	 */
+	static String getLastError() {
+		return lastError;
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.google.gson.Gson;
+import com.openkm.bean.ChangeSecurityParams;
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.NodeBaseDAO;
+import com.openkm.dao.SearchDAO;
+import com.openkm.dao.bean.NodeBase;
+import com.openkm.dao.bean.NodeFolder;
+import com.openkm.dao.bean.PendingTask;
+import com.openkm.spring.PrincipalUtils;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.search.Search;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keep the inherited read permissions stored in the Lucene index up to date, when security is evaluated
+ * by Lucene with inherited permissions.
+ * <p>
+ * Every node index the permissions of its ancestors, walking up while the ancestors have both user and
+ * role permissions, the same way the recursive access managers do. So a security change in a folder
+ * means the whole subtree need to be indexed again.
+ *
+ * @see InheritedReadAccessBridge
+ * @see InheritedReadAccessFilter
+ */
+public class InheritedReadAccess {
+	private static Logger log = LoggerFactory.getLogger(InheritedReadAccess.class);
+
+	private InheritedReadAccess() {
+	}
+
+	/**
+	 * Check if security is evaluated by Lucene with inherited permissions.
+	 */
+	public static boolean isEnabled() {
+		return SearchDAO.SEARCH_LUCENE_INHERITED.equals(Config.SECURITY_SEARCH_EVALUATION);
+	}
+
+	/**
+	 * Get the ancestors permissions of a node, nearest first.
+	 */
+	public static List<NodeBase> getAncestors(Session session, NodeBase node) throws HibernateException {
+		if (node.getAncestorsPermissions() != null) {
+			return node.getAncestorsPermissions();
+		}
+
+		List<NodeBase> ancestors = new ArrayList<>();
+		String parentUuid = node.getParent();
+
+		while (parentUuid != null && !Config.ROOT_NODE_UUID.equals(parentUuid)) {
+			NodeBase parent = (NodeBase) session.get(NodeBase.class, parentUuid);
+
+			if (parent == null || !hasPermissions(parent)) {
+				break;
+			} else if (parent.getAncestorsPermissions() != null) {
+				ancestors.add(parent);
+				ancestors.addAll(parent.getAncestorsPermissions());
+				break;
+			} else {
+				ancestors.add(parent);
+				parentUuid = parent.getParent();
+			}
+		}
+
+		return ancestors;
+	}
+
+	/**
+	 * Set the ancestors permissions of a child node from its already known parent.
+	 */
+	public static void inherit(Session session, NodeBase parent, NodeBase child) throws HibernateException {
+		if (parent == null || !hasPermissions(parent)) {
+			child.setAncestorsPermissions(Collections.<NodeBase>emptyList());
+		} else {
+			List<NodeBase> ancestors = new ArrayList<>();
+			ancestors.add(parent);
+			ancestors.addAll(getAncestors(session, parent));
+			child.setAncestorsPermissions(ancestors);
+		}
+	}
+
+	/**
+	 * Prepare the children of a node processed in depth. When inherited permissions are indexed, every
+	 * child need to be processed because its indexed permissions depend on its ancestors. Otherwise
+	 * the not accessible children are pruned.
+	 */
+	public static void pruneNodeList(Session session, NodeBase parent, List<? extends NodeBase> children) throws
+			DatabaseException, HibernateException {
+		if (isEnabled()) {
+			for (NodeBase child : children) {
+				inherit(session, parent, child);
+			}
+		} else {
+			SecurityHelper.pruneNodeList(children);
+		}
+	}
+
+	/**
+	 * Index again a node processed in depth.
+	 */
+	public static void reindex(Session session, NodeBase node) throws HibernateException {
+		if (isEnabled()) {
+			Search.getFullTextSession(session).index(node);
+		}
+	}
+
+	/**
+	 * The ancestors of a subtree has changed, so index again the subtree. Big folder subtrees are
+	 * processed by a pending task.
+	 */
+	public static void subtreeChanged(Session session, NodeBase node) throws DatabaseException, HibernateException {
+		if (isEnabled()) {
+			log.debug("subtreeChanged({})", node.getUuid());
+
+			if (NodeBaseDAO.getInstance().subTreeHasMoreThanNodes(session, node.getUuid(), Config.SECURITY_LIVE_CHANGE_NODE_LIMIT)
+					&& session.get(NodeFolder.class, node.getUuid()) != null) {
+				// Add pending task because will take too long to complete
+				ChangeSecurityParams params = new ChangeSecurityParams();
+				params.setUser(PrincipalUtils.getUser());
+				params.setRoles(PrincipalUtils.getRoles());
+				PendingTask pt = new PendingTask();
+				pt.setNode(node.getUuid());
+				pt.setTask(PendingTask.TASK_CHANGE_SECURITY);
+				pt.setParams(new Gson().toJson(params));
+				pt.setCreated(Calendar.getInstance());
+				session.save(pt);
+			} else {
+				reindexInDepth(session, node);
+			}
+		}
+	}
+
+	/**
+	 * Index again the descendants of a node.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void reindexInDepth(Session session, NodeBase node) throws HibernateException {
+		String qs = "from NodeBase nb where nb.parent=:parent";
+		Query q = session.createQuery(qs);
+		q.setString("parent", node.getUuid());
+
+		for (NodeBase child : (List<NodeBase>) q.list()) {
+			inherit(session, node, child);
+			reindex(session, child);
+			reindexInDepth(session, child);
+		}
+	}
+
+	/**
+	 * The recursive access managers stop looking at ancestors when one of them lacks user or role permissions.
+	 */
+	private static boolean hasPermissions(NodeBase node) {
+		return !node.getUserPermissions().isEmpty() && !node.getRolePermissions().isEmpty();
+	}
+}
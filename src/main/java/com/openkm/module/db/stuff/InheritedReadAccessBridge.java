@@ -0,0 +1,101 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.openkm.bean.Permission;
+import com.openkm.dao.HibernateUtil;
+import com.openkm.dao.bean.NodeBase;
+import org.apache.lucene.document.Document;
+import org.hibernate.Session;
+import org.hibernate.search.bridge.FieldBridge;
+import org.hibernate.search.bridge.LuceneOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Index the read permissions of a node and its ancestors. Each level is stored as a "readAccessLevel"
+ * value and its principals as "readAccess" values like "1:u:okmAdmin" or "1:r:ROLE_USER", where the
+ * level 0 is the node itself.
+ *
+ * @see InheritedReadAccessFilter
+ */
+public class InheritedReadAccessBridge implements FieldBridge {
+	private static Logger log = LoggerFactory.getLogger(InheritedReadAccessBridge.class);
+	public static final String PRINCIPAL_FIELD = "readAccess";
+	public static final String LEVEL_FIELD = "readAccessLevel";
+	public static final String USER_PREFIX = ":u:";
+	public static final String ROLE_PREFIX = ":r:";
+
+	@Override
+	public void set(String name, Object value, Document document, LuceneOptions luceneOptions) {
+		if (InheritedReadAccess.isEnabled()) {
+			if (value instanceof NodeBase) {
+				NodeBase node = (NodeBase) value;
+				List<NodeBase> ancestors = node.getAncestorsPermissions();
+				Session session = null;
+
+				try {
+					if (ancestors == null) {
+						session = HibernateUtil.getSessionFactory().openSession();
+						ancestors = InheritedReadAccess.getAncestors(session, node);
+					}
+
+					addLevel(0, node, document, luceneOptions);
+
+					for (int i = 0; i < ancestors.size(); i++) {
+						addLevel(i + 1, ancestors.get(i), document, luceneOptions);
+					}
+				} finally {
+					HibernateUtil.close(session);
+				}
+			} else {
+				log.warn("IllegalArgumentException: Support only NodeBase");
+				throw new IllegalArgumentException("Support only NodeBase");
+			}
+		}
+	}
+
+	/**
+	 * Add the principals with read permission of a level.
+	 */
+	private void addLevel(int level, NodeBase node, Document document, LuceneOptions luceneOptions) {
+		luceneOptions.addFieldToDocument(LEVEL_FIELD, Integer.toString(level), document);
+		addPrincipals(level + USER_PREFIX, node.getUserPermissions(), document, luceneOptions);
+		addPrincipals(level + ROLE_PREFIX, node.getRolePermissions(), document, luceneOptions);
+	}
+
+	/**
+	 * Add the principals with read permission.
+	 */
+	private void addPrincipals(String prefix, Map<String, Integer> perms, Document document, LuceneOptions luceneOptions) {
+		for (Entry<String, Integer> elto : perms.entrySet()) {
+			if ((Permission.READ & elto.getValue()) != 0) {
+				log.debug("Added field '{}' with value '{}'", PRINCIPAL_FIELD, prefix + elto.getKey());
+				luceneOptions.addFieldToDocument(PRINCIPAL_FIELD, prefix + elto.getKey(), document);
+			}
+		}
+	}
+}
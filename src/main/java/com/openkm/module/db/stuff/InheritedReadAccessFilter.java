@@ -0,0 +1,114 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Match the documents readable by an user taking into account the inherited permissions: the user or
+ * any of its roles should have read permission in every indexed level. Documents indexed without
+ * inherited permissions are not matched.
+ *
+ * @see InheritedReadAccessBridge
+ */
+public class InheritedReadAccessFilter extends Filter {
+	private static final long serialVersionUID = 1L;
+	private final String user;
+	private final Collection<String> roles;
+
+	public InheritedReadAccessFilter(String user, Collection<String> roles) {
+		this.user = user;
+		this.roles = roles;
+	}
+
+	@Override
+	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+		OpenBitSet result = getDocs(reader, new Term(InheritedReadAccessBridge.LEVEL_FIELD, "0"));
+		TermEnum te = reader.terms(new Term(InheritedReadAccessBridge.LEVEL_FIELD, ""));
+
+		try {
+			do {
+				Term term = te.term();
+
+				if (term == null || !InheritedReadAccessBridge.LEVEL_FIELD.equals(term.field())) {
+					break;
+				}
+
+				// Documents with this level where neither the user nor its roles can read
+				OpenBitSet denied = getDocs(reader, term);
+				denied.andNot(getGranted(reader, term.text()));
+				result.andNot(denied);
+			} while (te.next());
+		} finally {
+			te.close();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the documents of a level where the user or any of its roles can read.
+	 */
+	private OpenBitSet getGranted(IndexReader reader, String level) throws IOException {
+		OpenBitSet granted = getDocs(reader, new Term(InheritedReadAccessBridge.PRINCIPAL_FIELD,
+				level + InheritedReadAccessBridge.USER_PREFIX + user));
+
+		for (String role : roles) {
+			granted.or(getDocs(reader, new Term(InheritedReadAccessBridge.PRINCIPAL_FIELD,
+					level + InheritedReadAccessBridge.ROLE_PREFIX + role)));
+		}
+
+		return granted;
+	}
+
+	/**
+	 * Get the documents which contain a term.
+	 */
+	private OpenBitSet getDocs(IndexReader reader, Term term) throws IOException {
+		OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+		TermDocs td = reader.termDocs(term);
+
+		try {
+			while (td.next()) {
+				bits.set(td.doc());
+			}
+		} finally {
+			td.close();
+		}
+
+		return bits;
+	}
+
+	@Override
+	public String toString() {
+		return "InheritedReadAccessFilter{user=" + user + ", roles=" + roles + "}";
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.openkm.core.AccessDeniedException;
+import com.openkm.core.DatabaseException;
+import com.openkm.core.PathNotFoundException;
+import com.openkm.dao.bean.NodeBase;
+import com.openkm.principal.PrincipalAdapterException;
+import com.openkm.util.metrics.RepositoryMetrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access manager which measures the permission checks of the configured one.
+ */
+public class MeteredAccessManager implements DbAccessManager {
+	private final DbAccessManager delegate;
+
+	public MeteredAccessManager(DbAccessManager delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void checkPermission(NodeBase node, int permissions) throws AccessDeniedException, PathNotFoundException,
+			DatabaseException {
+		long begin = System.nanoTime();
+
+		try {
+			delegate.checkPermission(node, permissions);
+		} catch (AccessDeniedException e) {
+			RepositoryMetrics.ACCESS_DENIED.increment();
+			throw e;
+		} finally {
+			RepositoryMetrics.ACCESS_CHECK.observe(System.nanoTime() - begin);
+		}
+	}
+
+	@Override
+	public boolean isGranted(NodeBase node, int permissions) throws DatabaseException {
+		long begin = System.nanoTime();
+
+		try {
+			return count(delegate.isGranted(node, permissions));
+		} finally {
+			RepositoryMetrics.ACCESS_CHECK.observe(System.nanoTime() - begin);
+		}
+	}
+
+	@Override
+	public boolean isGranted(NodeBase node, String user, int permissions) throws PrincipalAdapterException, DatabaseException {
+		long begin = System.nanoTime();
+
+		try {
+			return count(delegate.isGranted(node, user, permissions));
+		} finally {
+			RepositoryMetrics.ACCESS_CHECK.observe(System.nanoTime() - begin);
+		}
+	}
+
+	@Override
+	public Map<String, Boolean> isGranted(List<? extends NodeBase> nodes, int permissions) throws DatabaseException {
+		long begin = System.nanoTime();
+
+		try {
+			Map<String, Boolean> granted = delegate.isGranted(nodes, permissions);
+
+			for (Boolean value : granted.values()) {
+				count(Boolean.TRUE.equals(value));
+			}
+
+			return granted;
+		} finally {
+			RepositoryMetrics.ACCESS_CHECK.observe(System.nanoTime() - begin);
+		}
+	}
+
+	private boolean count(boolean granted) {
+		if (!granted) {
+			RepositoryMetrics.ACCESS_DENIED.increment();
+		}
+
+		return granted;
+	}
+}
@@ -0,0 +1,557 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.module.db.stuff;
+
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.core.RepositoryException;
+import com.openkm.dao.HibernateUtil;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.CheckIndex;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import org.hibernate.CacheMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.search.SearchException;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.PurgeAllLuceneWork;
+import org.hibernate.search.backend.WorkVisitor;
+import org.hibernate.search.backend.impl.lucene.works.LuceneWorkDelegate;
+import org.hibernate.search.backend.impl.lucene.works.LuceneWorkVisitor;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.engine.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.SearchFactoryImplementor;
+import org.hibernate.search.engine.impl.HibernateStatelessInitializer;
+import org.hibernate.search.store.DirectoryProvider;
+import org.hibernate.search.util.ContextHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuild Lucene indexes into a fresh index directory and swap them in when done.
+ * <p>
+ * Every indexed entity is split in UUID ranges which are indexed in parallel. Text
+ * already extracted is taken from the database, so documents are not extracted again.
+ * Progress is checkpointed to the rebuild directory after every committed batch. An
+ * interrupted rebuild is only resumed from there while the system has been kept in
+ * read only mode since, which is not persisted, so after a restart or once the system
+ * has been writable the checkpoint is discarded and the rebuild starts over. The live
+ * indexes are still used for searching until the rebuilt ones replace them in a single
+ * index commit.
+ */
+public class ParallelIndexRebuilder {
+	private static final Logger log = LoggerFactory.getLogger(ParallelIndexRebuilder.class);
+	public static final String REBUILD_DIRNAME_SUFFIX = ".rebuild";
+	private static final String CHECKPOINT_FILE = "checkpoint.properties";
+	private static final String CHECKPOINT_COUNT = "count";
+	private static final String CHECKPOINT_DONE = ".done";
+	private static final String[] PARTITION_BOUNDS = new String[]{"", "1", "2", "3", "4", "5", "6", "7", "8", "9",
+			"a", "b", "c", "d", "e", "f"};
+	private static final long SWAP_WAIT = TimeUnit.MINUTES.toMillis(1);
+	private static volatile boolean running = false;
+	private static volatile boolean resumable = false;
+
+	private final SearchFactoryImplementor searchFactory;
+	private final MassIndexerProgressMonitor monitor;
+	private final File home;
+	private final Properties checkpoint = new Properties();
+	private final Map<DirectoryProvider<?>, IndexWriter> writers = new LinkedHashMap<>();
+	private final boolean continuous;
+	private long pending = 0;
+
+	private ParallelIndexRebuilder(SearchFactoryImplementor searchFactory, MassIndexerProgressMonitor monitor,
+			boolean continuous) {
+		this.searchFactory = searchFactory;
+		this.monitor = monitor;
+		this.home = getRebuildHome();
+		this.continuous = continuous;
+	}
+
+	/**
+	 * Directory where indexes are rebuilt.
+	 */
+	public static File getRebuildHome() {
+		return new File(Config.HIBERNATE_SEARCH_INDEX_HOME + REBUILD_DIRNAME_SUFFIX);
+	}
+
+	/**
+	 * Check if there is an interrupted rebuild which will be resumed. The caller has to keep
+	 * the system in read only mode until then, or discard it.
+	 */
+	public static boolean hasCheckpoint() {
+		return resumable && new File(getRebuildHome(), CHECKPOINT_FILE).exists();
+	}
+
+	/**
+	 * Discard an interrupted rebuild so the next one starts from scratch.
+	 */
+	public static synchronized void discard() throws IOException {
+		if (running) {
+			throw new IOException("Index rebuild is running");
+		}
+
+		resumable = false;
+		FileUtils.deleteDirectory(getRebuildHome());
+	}
+
+	/**
+	 * Rebuild the indexes of these entities and swap them in.
+	 *
+	 * @return Number of indexed entities.
+	 */
+	public static synchronized long rebuild(Class<?>[] classes, MassIndexerProgressMonitor monitor) throws RepositoryException,
+			DatabaseException, IOException, InterruptedException {
+		log.debug("rebuild({}, {})", classes, monitor);
+		Session session = null;
+		boolean resume = resumable;
+		boolean done = false;
+		long count = 0;
+
+		try {
+			running = true;
+			resumable = false;
+			session = HibernateUtil.getSessionFactory().openSession();
+			ParallelIndexRebuilder rebuilder = new ParallelIndexRebuilder(ContextHelper.getSearchFactory(session), monitor,
+					resume);
+			count = rebuilder.build(classes);
+			rebuilder.swap();
+			FileUtils.deleteDirectory(rebuilder.home);
+			done = true;
+		} finally {
+			// Only resumable while the system is kept in read only mode
+			resumable = !done && Config.SYSTEM_READONLY;
+			running = false;
+			HibernateUtil.close(session);
+		}
+
+		log.debug("rebuild: {}", count);
+		return count;
+	}
+
+	/**
+	 * Index every partition not already done into the rebuild directory.
+	 */
+	private long build(Class<?>[] classes) throws RepositoryException, DatabaseException, IOException, InterruptedException {
+		long begin = System.currentTimeMillis();
+		boolean resume = loadCheckpoint();
+		log.info("{} index rebuild at {}", resume ? "Resuming" : "Starting", home.getPath());
+
+		for (Class<?> cls : classes) {
+			for (DirectoryProvider<?> dp : searchFactory.getDocumentBuilderIndexedEntity(cls).getDirectoryProviders()) {
+				if (!writers.containsKey(dp)) {
+					writers.put(dp, openWriter(dp, resume));
+				}
+			}
+		}
+
+		long previous = Long.parseLong(checkpoint.getProperty(CHECKPOINT_COUNT, "0"));
+
+		if (previous > 0) {
+			progress(previous);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Config.HIBERNATE_INDEXER_THREADS_LOAD_OBJECTS));
+		List<Future<?>> futures = new ArrayList<>();
+
+		try {
+			for (Class<?> cls : classes) {
+				for (int i = 0; i < PARTITION_BOUNDS.length; i++) {
+					if (!Boolean.parseBoolean(checkpoint.getProperty(getKey(cls, i) + CHECKPOINT_DONE))) {
+						futures.add(executor.submit(new Partition(cls, i)));
+					}
+				}
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+
+			checkpoint(null, 0, null, 0);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof DatabaseException) {
+				throw (DatabaseException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else {
+				throw new RepositoryException(cause.getMessage(), cause);
+			}
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(SWAP_WAIT, TimeUnit.MILLISECONDS);
+			closeWriters();
+		}
+
+		long count = Long.parseLong(checkpoint.getProperty(CHECKPOINT_COUNT, "0"));
+		log.info("Indexed {} entities in {} ms", count, System.currentTimeMillis() - begin);
+		return count;
+	}
+
+	/**
+	 * Replace the live indexes with the rebuilt ones.
+	 */
+	@SuppressWarnings("unchecked")
+	private void swap() throws IOException, InterruptedException {
+		List<LuceneWork> works = new ArrayList<>();
+		List<SwapIndexWork> swaps = new ArrayList<>();
+
+		for (DirectoryProvider<?> dp : writers.keySet()) {
+			Class<?> cls = searchFactory.getClassesInDirectoryProvider(dp).iterator().next();
+			SwapIndexWork swap = new SwapIndexWork(cls, getRebuildDirectory(dp));
+			works.add(swap);
+			swaps.add(swap);
+		}
+
+		// Processed by the index writer owned by Hibernate Search, so the swap is a single commit
+		searchFactory.getBackendQueueProcessorFactory().getProcessor(works).run();
+
+		for (SwapIndexWork swap : swaps) {
+			while (!swap.done.await(SWAP_WAIT, TimeUnit.MILLISECONDS)) {
+				log.info("Waiting for index swap from {}", swap.source.getPath());
+			}
+
+			if (swap.error != null) {
+				throw new IOException("Index swap failed: " + swap.error.getMessage(), swap.error);
+			}
+		}
+
+		log.info("Rebuilt indexes swapped in");
+	}
+
+	/**
+	 * Open an index writer on the rebuild directory of an index.
+	 */
+	private IndexWriter openWriter(DirectoryProvider<?> dp, boolean resume) throws IOException {
+		Class<?> cls = searchFactory.getClassesInDirectoryProvider(dp).iterator().next();
+		IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_31, searchFactory.getAnalyzer(cls));
+		iwc.setOpenMode(resume ? IndexWriterConfig.OpenMode.CREATE_OR_APPEND : IndexWriterConfig.OpenMode.CREATE);
+		iwc.setSimilarity(searchFactory.getSimilarity(dp));
+		iwc.setRAMBufferSizeMB(64);
+		return new IndexWriter(FSDirectory.open(getRebuildDirectory(dp)), iwc);
+	}
+
+	/**
+	 * Close rebuild index writers, pending changes are not committed.
+	 */
+	private void closeWriters() {
+		for (IndexWriter writer : writers.values()) {
+			try {
+				writer.rollback();
+			} catch (IOException e) {
+				log.warn("Error closing index writer: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Map a live index to its rebuild directory.
+	 */
+	private File getRebuildDirectory(DirectoryProvider<?> dp) throws IOException {
+		Directory dir = dp.getDirectory();
+
+		if (dir instanceof FSDirectory) {
+			return new File(home, ((FSDirectory) dir).getDirectory().getName());
+		} else {
+			throw new IOException("Only file system indexes can be rebuilt: " + dir);
+		}
+	}
+
+	/**
+	 * Load checkpoint of an interrupted rebuild if it can be resumed, or clean the rebuild directory.
+	 */
+	private boolean loadCheckpoint() throws IOException {
+		File file = new File(home, CHECKPOINT_FILE);
+
+		if (file.exists() && continuous) {
+			try (InputStream is = new FileInputStream(file)) {
+				checkpoint.load(is);
+			}
+
+			return true;
+		} else {
+			if (file.exists()) {
+				log.warn("Discarding index rebuild checkpoint, the repository may have changed since it was written");
+			}
+
+			FileUtils.deleteDirectory(home);
+			FileUtils.forceMkdir(home);
+			return false;
+		}
+	}
+
+	/**
+	 * Record partition progress, and commit every index when the checkpoint interval is reached.
+	 *
+	 * @param cls Indexed entity or null to force the commit.
+	 */
+	private synchronized void checkpoint(Class<?> cls, int partition, String last, int indexed) throws IOException {
+		if (cls != null) {
+			String key = getKey(cls, partition);
+
+			if (last == null) {
+				checkpoint.setProperty(key + CHECKPOINT_DONE, Boolean.TRUE.toString());
+			} else {
+				checkpoint.setProperty(key, last);
+			}
+
+			long count = Long.parseLong(checkpoint.getProperty(CHECKPOINT_COUNT, "0")) + indexed;
+			checkpoint.setProperty(CHECKPOINT_COUNT, Long.toString(count));
+			pending += indexed;
+			progress(indexed);
+		}
+
+		if (cls == null || pending >= Config.HIBERNATE_INDEXER_CHECKPOINT_INTERVAL) {
+			for (IndexWriter writer : writers.values()) {
+				writer.commit();
+			}
+
+			// Written after commit so a restart never skips uncommitted entities
+			File tmp = new File(home, CHECKPOINT_FILE + ".tmp");
+
+			try (OutputStream os = new FileOutputStream(tmp)) {
+				checkpoint.store(os, "Index rebuild checkpoint");
+			}
+
+			File file = new File(home, CHECKPOINT_FILE);
+
+			if (!tmp.renameTo(file)) {
+				FileUtils.copyFile(tmp, file);
+				FileUtils.deleteQuietly(tmp);
+			}
+
+			log.info("Index rebuild checkpoint: {} entities", checkpoint.getProperty(CHECKPOINT_COUNT));
+			pending = 0;
+		}
+	}
+
+	/**
+	 * Report progress, the monitor is not thread safe.
+	 */
+	private void progress(long indexed) {
+		if (monitor != null && indexed > 0) {
+			synchronized (monitor) {
+				monitor.documentsAdded(indexed);
+			}
+		}
+	}
+
+	/**
+	 * Checkpoint key of a partition.
+	 */
+	private static String getKey(Class<?> cls, int partition) {
+		return cls.getSimpleName() + "." + partition;
+	}
+
+	/**
+	 * Index a UUID range of an entity.
+	 */
+	private class Partition implements Runnable {
+		private final Class<?> cls;
+		private final int partition;
+
+		Partition(Class<?> cls, int partition) {
+			this.cls = cls;
+			this.partition = partition;
+		}
+
+		@Override
+		public void run() {
+			String last;
+
+			synchronized (ParallelIndexRebuilder.this) {
+				last = checkpoint.getProperty(getKey(cls, partition), "");
+			}
+
+			try {
+				for (int indexed = index(last); indexed > 0; indexed = index(last)) {
+					synchronized (ParallelIndexRebuilder.this) {
+						last = checkpoint.getProperty(getKey(cls, partition));
+					}
+
+					if (Thread.currentThread().isInterrupted()) {
+						return;
+					}
+				}
+
+				checkpoint(cls, partition, null, 0);
+			} catch (DatabaseException | IOException e) {
+				throw new SearchException(e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * Index next batch of this partition.
+		 *
+		 * @return Number of indexed entities.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private int index(String last) throws DatabaseException, IOException {
+			String lower = PARTITION_BOUNDS[partition];
+			String upper = partition + 1 < PARTITION_BOUNDS.length ? PARTITION_BOUNDS[partition + 1] : null;
+			String qs = "from " + cls.getSimpleName() + " nb where nb.uuid>=:lower and nb.uuid>:last" +
+					(upper == null ? "" : " and nb.uuid<:upper") + " order by nb.uuid";
+			DocumentBuilderIndexedEntity builder = searchFactory.getDocumentBuilderIndexedEntity(cls);
+			Analyzer analyzer = searchFactory.getAnalyzer(cls);
+			Session session = null;
+			String uuid = null;
+			int indexed = 0;
+
+			try {
+				session = HibernateUtil.getSessionFactory().openSession();
+				session.setCacheMode(CacheMode.IGNORE);
+				Query q = session.createQuery(qs).setReadOnly(true);
+				q.setString("lower", lower);
+				q.setString("last", last);
+
+				if (upper != null) {
+					q.setString("upper", upper);
+				}
+
+				q.setMaxResults(Math.max(1, Config.HIBERNATE_INDEXER_BATCH_SIZE_LOAD_OBJECTS));
+
+				for (Object entity : q.list()) {
+					Serializable id = builder.getId(entity);
+					Map<String, String> fieldToAnalyzerMap = new HashMap<>();
+					Document doc = builder.getDocument(entity, id, fieldToAnalyzerMap, HibernateStatelessInitializer.INSTANCE);
+					String idInString = builder.getIdBridge().objectToString(id);
+					DirectoryProvider<?> dp = builder.getDirectoryProviderSelectionStrategy().getDirectoryProviderForAddition(cls, id,
+							idInString, doc);
+					writers.get(dp).updateDocument(new Term(builder.getIdKeywordName(), idInString), doc, analyzer);
+
+					uuid = (String) id;
+					indexed++;
+				}
+			} catch (HibernateException e) {
+				throw new DatabaseException(e.getMessage(), e);
+			} finally {
+				HibernateUtil.close(session);
+			}
+
+			if (indexed > 0) {
+				checkpoint(cls, partition, uuid, indexed);
+			}
+
+			return indexed;
+		}
+	}
+
+	/**
+	 * Replace the content of a live index with a rebuilt one. Routed as a purge of the
+	 * entity index, but executed by its own delegate. The index writer is owned by Hibernate
+	 * Search, which commits it even on failure, so the rebuilt index is checked before the
+	 * live one is touched.
+	 */
+	private static class SwapIndexWork extends PurgeAllLuceneWork {
+		private static final long serialVersionUID = 1L;
+		private final File source;
+		private final transient CountDownLatch done = new CountDownLatch(1);
+		private transient volatile Exception error;
+
+		SwapIndexWork(Class<?> cls, File source) {
+			super(cls);
+			this.source = source;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T getWorkDelegate(WorkVisitor<T> visitor) {
+			if (visitor instanceof LuceneWorkVisitor) {
+				return (T) new LuceneWorkDelegate() {
+					@Override
+					public void performWork(LuceneWork work, IndexWriter writer) {
+						log.info("Swapping index from {}", source.getPath());
+						Directory dir = null;
+						boolean deleted = false;
+
+						try {
+							dir = FSDirectory.open(source);
+							CheckIndex.Status status = new CheckIndex(dir).checkIndex();
+
+							if (!status.clean) {
+								throw new IOException("Rebuilt index is not clean: " + source.getPath());
+							}
+
+							writer.deleteAll();
+							deleted = true;
+							writer.addIndexes(dir);
+						} catch (IOException e) {
+							error = e;
+
+							if (deleted) {
+								log.error("Index swap from {} failed, live index may be incomplete until rebuilt again", source.getPath());
+							} else {
+								log.error("Index swap from {} failed, live index is kept as is", source.getPath());
+							}
+
+							// Reported to the rebuild, which is not retried by the index backend
+						} finally {
+							if (dir != null) {
+								try {
+									dir.close();
+								} catch (IOException e) {
+									log.warn("Error closing index directory: {}", e.getMessage());
+								}
+							}
+
+							done.countDown();
+						}
+					}
+
+					@Override
+					public void logWorkDone(LuceneWork work, MassIndexerProgressMonitor monitor) {
+					}
+				};
+			} else {
+				return super.getWorkDelegate(visitor);
+			}
+		}
+	}
+}
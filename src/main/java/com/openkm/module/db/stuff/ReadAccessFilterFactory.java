@@ -30,16 +30,38 @@ import org.hibernate.search.annotations.Factory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Build the Lucene filter which restricts search results to the nodes readable by the current user.
+ * <p>
+ * The filter of every principal set (user and roles) is kept in a LRU cache and wrapped in a
+ * {@link CachingWrapperFilter}, so the matching document bitset is calculated once per index segment
+ * and reused by the following queries. Cached bitsets are tied to the segment reader: a permission
+ * change reindexes the affected nodes into new segments, so they are evaluated again after the index
+ * reader is reopened.
+ */
 public class ReadAccessFilterFactory {
 	private static Logger log = LoggerFactory.getLogger(SearchDAO.class);
+	private static final Map<String, Filter> filters = new LinkedHashMap<String, Filter>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Filter> eldest) {
+			return size() > Config.SECURITY_SEARCH_FILTER_CACHE_SIZE;
+		}
+	};
 
 	@Factory
 	public Filter buildFilter() {
 		log.debug("buildFilter()");
 
-		if (SearchDAO.SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+		if (SearchDAO.SEARCH_LUCENE.equals(Config.SECURITY_SEARCH_EVALUATION)
+				|| SearchDAO.SEARCH_LUCENE_INHERITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
 			String user = PrincipalUtils.getUser();
 			Set<String> roles = PrincipalUtils.getRoles();
 
@@ -49,22 +71,68 @@ public class ReadAccessFilterFactory {
 			} else if (Config.ADMIN_USER.equals(user) || Config.SYSTEM_USER.equals(user)) {
 				// An "okmAdmin" or "system" user has total access
 				return null;
+			} else if (Config.SECURITY_SEARCH_FILTER_CACHE) {
+				return getCachedFilter(user, roles);
 			} else {
-				BooleanQuery query = new BooleanQuery();
-				Term termUser = new Term("userPermission", user);
-				query.add(new TermQuery(termUser), BooleanClause.Occur.SHOULD);
-
-				for (String role : roles) {
-					Term termRole = new Term("rolePermission", role);
-					query.add(new TermQuery(termRole), BooleanClause.Occur.SHOULD);
-				}
-
-				log.info("buildFilter: {}", query);
-				Filter filter = new QueryWrapperFilter(query);
-				return filter;
+				return createFilter(user, roles);
 			}
 		} else {
 			return null;
 		}
 	}
+
+	/**
+	 * Get the cached filter of a principal set, creating it if needed.
+	 */
+	public static Filter getCachedFilter(String user, Set<String> roles) {
+		String key = Config.SECURITY_SEARCH_EVALUATION + "|" + user + "|" + new TreeSet<>(roles);
+
+		synchronized (filters) {
+			Filter filter = filters.get(key);
+
+			if (filter == null) {
+				filter = new CachingWrapperFilter(createFilter(user, roles));
+				filters.put(key, filter);
+			}
+
+			return filter;
+		}
+	}
+
+	/**
+	 * Create the filter of the configured security evaluation.
+	 */
+	private static Filter createFilter(String user, Set<String> roles) {
+		if (SearchDAO.SEARCH_LUCENE_INHERITED.equals(Config.SECURITY_SEARCH_EVALUATION)) {
+			return new InheritedReadAccessFilter(user, roles);
+		} else {
+			return createFilter(user, (Collection<String>) roles);
+		}
+	}
+
+	/**
+	 * Create a filter which match the documents where the user or any of its roles has permissions.
+	 */
+	public static Filter createFilter(String user, Collection<String> roles) {
+		BooleanQuery query = new BooleanQuery();
+		Term termUser = new Term("userPermission", user);
+		query.add(new TermQuery(termUser), BooleanClause.Occur.SHOULD);
+
+		for (String role : roles) {
+			Term termRole = new Term("rolePermission", role);
+			query.add(new TermQuery(termRole), BooleanClause.Occur.SHOULD);
+		}
+
+		log.info("createFilter: {}", query);
+		return new QueryWrapperFilter(query);
+	}
+
+	/**
+	 * Discard every cached filter.
+	 */
+	public static void invalidate() {
+		synchronized (filters) {
+			filters.clear();
+		}
+	}
 }
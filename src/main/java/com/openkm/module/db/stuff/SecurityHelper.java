@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class SecurityHelper {
 	private static Logger log = LoggerFactory.getLogger(SecurityHelper.class);
@@ -53,6 +54,10 @@ public class SecurityHelper {
 			log.info("Configuring AccessManager with {}", DbReadRecursiveAccessManager.class.getCanonicalName());
 			accessManager = new DbReadRecursiveAccessManager();
 		}
+
+		if (accessManager != null) {
+			accessManager = new MeteredAccessManager(accessManager);
+		}
 	}
 
 	/**
@@ -66,10 +71,16 @@ public class SecurityHelper {
 	 * Prune not accessible nodes
 	 */
 	public static void pruneNodeList(List<? extends NodeBase> nodeList) throws DatabaseException {
+		if (nodeList.isEmpty()) {
+			return;
+		}
+
+		Map<String, Boolean> granted = accessManager.isGranted(nodeList, Permission.READ);
+
 		for (Iterator<? extends NodeBase> it = nodeList.iterator(); it.hasNext(); ) {
 			NodeBase node = it.next();
 
-			if (!accessManager.isGranted(node, Permission.READ)) {
+			if (!Boolean.TRUE.equals(granted.get(node.getUuid()))) {
 				it.remove();
 			}
 		}
@@ -118,7 +118,9 @@ public class SearchService {
 	@GET
 	@Path("/findPaginated")
 	// Default "domain" is "1" for documents.
+	// When "cursor" is present (empty for the first page) it is used instead of "offset" and the next page cursor is returned.
 	public ResultSet findPaginated(@DefaultValue("0") @QueryParam("offset") int offset, @DefaultValue("10") @QueryParam("limit") int limit,
+								   @QueryParam("cursor") String cursor,
 								   @QueryParam("content") String content, @QueryParam("name") String name, @DefaultValue("1") @QueryParam("domain") int domain,
 								   @QueryParam("keyword") List<String> keywords, @QueryParam("category") List<String> categories,
 								   @QueryParam("property") List<String> properties, @QueryParam("author") String author, @QueryParam("mimeType") String mimeType,
@@ -130,7 +132,14 @@ public class SearchService {
 					lastModifiedFrom, lastModifiedTo, mailSubject, mailFrom, mailTo, path);
 			log.debug("findPaginated({})", params);
 			SearchModule sm = ModuleManager.getSearchModule();
-			ResultSet rs = sm.findPaginated(null, params, offset, limit);
+			ResultSet rs;
+
+			if (cursor != null) {
+				rs = sm.findPaginated(null, params, cursor, limit);
+			} else {
+				rs = sm.findPaginated(null, params, offset, limit);
+			}
+
 			log.debug("findPaginated: {}", rs);
 			return rs;
 		} catch (Exception e) {
@@ -199,6 +208,44 @@ public class SearchService {
 		}
 	}
 
+	@GET
+	@Path("/getExcerpts")
+	// Default "domain" is "1" for documents.
+	public ExcerptList getExcerpts(@QueryParam("uuid") List<String> uuids, @QueryParam("content") String content,
+								   @QueryParam("name") String name, @DefaultValue("1") @QueryParam("domain") int domain,
+								   @QueryParam("keyword") List<String> keywords, @QueryParam("category") List<String> categories,
+								   @QueryParam("property") List<String> properties, @QueryParam("author") String author, @QueryParam("mimeType") String mimeType,
+								   @QueryParam("lastModifiedFrom") String lastModifiedFrom, @QueryParam("lastModifiedTo") String lastModifiedTo,
+								   @QueryParam("mailSubject") String mailSubject, @QueryParam("mailFrom") String mailFrom, @QueryParam("mailTo") String mailTo,
+								   @QueryParam("path") String path) throws GenericException {
+		try {
+			QueryParams params = copyToQueryParams(content, name, domain, keywords, categories, properties, author, mimeType,
+					lastModifiedFrom, lastModifiedTo, mailSubject, mailFrom, mailTo, path);
+			log.debug("getExcerpts({}, {})", uuids, params);
+			SearchModule sm = ModuleManager.getSearchModule();
+			ExcerptList el = toExcerptList(sm.getExcerpts(null, params, uuids));
+			log.debug("getExcerpts: {}", el);
+			return el;
+		} catch (Exception e) {
+			throw new GenericException(e);
+		}
+	}
+
+	@GET
+	@Path("/getSimpleQueryExcerpts")
+	public ExcerptList getSimpleQueryExcerpts(@QueryParam("uuid") List<String> uuids, @QueryParam("statement") String statement)
+			throws GenericException {
+		try {
+			log.debug("getSimpleQueryExcerpts({}, {})", uuids, statement);
+			SearchModule sm = ModuleManager.getSearchModule();
+			ExcerptList el = toExcerptList(sm.getSimpleQueryExcerpts(null, statement, uuids));
+			log.debug("getSimpleQueryExcerpts: {}", el);
+			return el;
+		} catch (Exception e) {
+			throw new GenericException(e);
+		}
+	}
+
 	@GET
 	@Path("/getKeywordMap")
 	public KeywordMapList getKeywordMap(@QueryParam("filter") String[] filter) throws GenericException {
@@ -311,6 +358,22 @@ public class SearchService {
 		}
 	}
 
+	/**
+	 * Marshall excerpt map
+	 */
+	private ExcerptList toExcerptList(Map<String, String> excerpts) {
+		ExcerptList el = new ExcerptList();
+
+		for (Entry<String, String> entry : excerpts.entrySet()) {
+			Excerpt excerpt = new Excerpt();
+			excerpt.setUuid(entry.getKey());
+			excerpt.setExcerpt(entry.getValue());
+			el.getList().add(excerpt);
+		}
+
+		return el;
+	}
+
 	/**
 	 * copyToQueryParams
 	 */
@@ -0,0 +1,252 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.servlet;
+
+import com.openkm.cache.CacheProvider;
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.HibernateUtil;
+import com.openkm.dao.bean.ProfilingStats;
+import com.openkm.extractor.ExtractorMetrics;
+import com.openkm.extractor.RegisteredExtractors;
+import com.openkm.extractor.TextExtractorWorker;
+import com.openkm.module.db.stuff.BatchBackendQueueProcessorFactory;
+import com.openkm.servlet.admin.BaseServlet;
+import com.openkm.util.SystemProfiling;
+import com.openkm.util.ThreadPoolManager;
+import com.openkm.util.UserActivityAppender;
+import com.openkm.util.metrics.Histogram;
+import com.openkm.util.metrics.MetricsWriter;
+import com.openkm.util.metrics.RepositoryMetrics;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Expose repository metrics in Prometheus text format. Disabled unless system.metrics is set,
+ * then allowed to administrators and to the hosts configured in system.metrics.allowed.hosts
+ * (none by default), so a scraper does not need to log in. Hosts are matched against the
+ * remote address of the connection: behind a reverse proxy this is the proxy address, so
+ * only list hosts which reach the server directly.
+ */
+public class MetricsServlet extends HttpServlet {
+	private static Logger log = LoggerFactory.getLogger(MetricsServlet.class);
+	private static final long serialVersionUID = 1L;
+
+	public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+		log.debug("doGet({}, {})", request, response);
+
+		if (!Config.SYSTEM_METRICS) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+		} else if (!Config.SYSTEM_METRICS_ALLOWED_HOSTS.contains(request.getRemoteAddr()) && !BaseServlet.isAdmin(request)) {
+			log.warn("Metrics request denied to {}", request.getRemoteAddr());
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+		} else {
+			response.setContentType(MetricsWriter.CONTENT_TYPE);
+			PrintWriter out = response.getWriter();
+			MetricsWriter mw = new MetricsWriter(out);
+
+			try {
+				writeRepository(mw);
+				writeTextExtraction(mw);
+				writeIndexQueue(mw);
+				writeActivityLog(mw);
+				writeCaches(mw);
+				writeHibernate(mw);
+				writeThreadPools(mw);
+				writeProfiling(mw);
+			} catch (DatabaseException e) {
+				log.error(e.getMessage(), e);
+				mw.gauge("okm_metrics_error", "Metrics could not be completely collected", 1);
+			}
+
+			out.close();
+		}
+
+		log.debug("doGet: void");
+	}
+
+	/**
+	 * Latency of repository hot paths.
+	 */
+	private void writeRepository(MetricsWriter mw) {
+		for (Histogram histogram : RepositoryMetrics.getHistograms()) {
+			mw.histogram(histogram);
+		}
+
+		mw.counter("okm_document_upload_bytes_total", "Size of uploaded document content", RepositoryMetrics.UPLOAD_BYTES.sum());
+		mw.counter("okm_access_denied_total", "Node permission checks which were denied", RepositoryMetrics.ACCESS_DENIED.sum());
+	}
+
+	/**
+	 * Text extraction queue depth and throughput by extractor.
+	 */
+	private void writeTextExtraction(MetricsWriter mw) throws DatabaseException {
+		mw.gauge("okm_text_extraction_queue_depth", "Documents pending of text extraction", TextExtractorWorker.getPendingSize());
+		mw.gauge("okm_text_extraction_in_progress", "Documents being extracted", TextExtractorWorker.getInProgressWorks().size());
+		mw.gauge("okm_text_extraction_running", "Text extraction worker is running", TextExtractorWorker.isRunning() ? 1 : 0);
+
+		for (ExtractorMetrics em : RegisteredExtractors.getMetrics()) {
+			String extractor = em.getExtractor();
+			mw.counter("okm_text_extraction_total", "Text extractions", em.getExtractions(), "extractor", extractor);
+			mw.counter("okm_text_extraction_failures_total", "Failed text extractions", em.getFailures(), "extractor", extractor);
+			mw.counter("okm_text_extraction_timeouts_total", "Timed out text extractions", em.getTimeouts(), "extractor", extractor);
+			mw.counter("okm_text_extraction_seconds_total", "Time spent extracting text", em.getTime() / 1000.0, "extractor", extractor);
+			mw.counter("okm_text_extraction_bytes_total", "Size of the extracted documents", em.getBytes(), "extractor", extractor);
+			mw.counter("okm_text_extraction_chars_total", "Extracted characters", em.getChars(), "extractor", extractor);
+		}
+	}
+
+	/**
+	 * Batched index backend queue.
+	 */
+	private void writeIndexQueue(MetricsWriter mw) {
+		if (BatchBackendQueueProcessorFactory.isEnabled()) {
+			mw.gauge("okm_index_queue_depth", "Index works waiting to be committed", BatchBackendQueueProcessorFactory.getQueueDepth());
+			mw.gauge("okm_index_queue_capacity", "Index work queue capacity", BatchBackendQueueProcessorFactory.getQueueSize());
+			mw.counter("okm_index_commits_total", "Index commits", BatchBackendQueueProcessorFactory.getCommits());
+			mw.counter("okm_index_works_total", "Committed index works", BatchBackendQueueProcessorFactory.getWorks());
+			mw.counter("okm_index_failed_works_total", "Index works lost after failing to commit",
+					BatchBackendQueueProcessorFactory.getFailedWorks());
+			mw.gauge("okm_index_last_commit_seconds", "Duration of the last index commit",
+					BatchBackendQueueProcessorFactory.getLastCommitTime() / 1000.0);
+		}
+	}
+
+	/**
+	 * Asynchronous activity log writer.
+	 */
+	private void writeActivityLog(MetricsWriter mw) {
+		mw.gauge("okm_activity_log_queue_depth", "Activities waiting to be written", UserActivityAppender.getQueued());
+		mw.counter("okm_activity_log_written_total", "Written activities", UserActivityAppender.getWritten());
+		mw.counter("okm_activity_log_dropped_total", "Activities dropped because the queue was full", UserActivityAppender.getDropped());
+		mw.counter("okm_activity_log_failed_total", "Activities which could not be written", UserActivityAppender.getFailed());
+		mw.counter("okm_activity_log_failed_counters_total", "Dashboard counter updates which could not be written",
+				UserActivityAppender.getFailedStats());
+	}
+
+	/**
+	 * Ehcache caches. Hits and misses are only available while cache statistics are enabled.
+	 */
+	private void writeCaches(MetricsWriter mw) {
+		CacheProvider cp = CacheProvider.getInstance();
+
+		for (String name : cp.getOkmCacheNames()) {
+			Cache cache = cp.getCache(name);
+
+			if (cache != null) {
+				mw.gauge("okm_cache_objects", "Objects in cache", cache.getSize(), "cache", name);
+
+				if (cache.isStatisticsEnabled()) {
+					Statistics stats = cache.getStatistics();
+					long hits = stats.getCacheHits();
+					long misses = stats.getCacheMisses();
+					mw.counter("okm_cache_hits_total", "Cache hits", hits, "cache", name);
+					mw.counter("okm_cache_misses_total", "Cache misses", misses, "cache", name);
+					mw.gauge("okm_cache_hit_ratio", "Cache hit ratio", hits + misses > 0 ? (double) hits / (hits + misses) : 0, "cache", name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hibernate statistics, only available while enabled.
+	 */
+	private void writeHibernate(MetricsWriter mw) {
+		org.hibernate.stat.Statistics stats = HibernateUtil.getSessionFactory().getStatistics();
+		mw.gauge("okm_hibernate_statistics_enabled", "Hibernate statistics are enabled", stats.isStatisticsEnabled() ? 1 : 0);
+
+		if (stats.isStatisticsEnabled()) {
+			mw.counter("okm_hibernate_sessions_opened_total", "Opened sessions", stats.getSessionOpenCount());
+			mw.counter("okm_hibernate_transactions_total", "Transactions", stats.getTransactionCount());
+			mw.counter("okm_hibernate_connections_total", "Obtained JDBC connections", stats.getConnectCount());
+			mw.counter("okm_hibernate_statements_total", "Prepared statements", stats.getPrepareStatementCount());
+			mw.counter("okm_hibernate_flushes_total", "Session flushes", stats.getFlushCount());
+			mw.counter("okm_hibernate_queries_total", "Executed queries", stats.getQueryExecutionCount());
+			mw.gauge("okm_hibernate_query_max_seconds", "Slowest query time", stats.getQueryExecutionMaxTime() / 1000.0);
+			mw.counter("okm_hibernate_entity_loads_total", "Loaded entities", stats.getEntityLoadCount());
+			mw.counter("okm_hibernate_entity_fetches_total", "Fetched entities", stats.getEntityFetchCount());
+			mw.counter("okm_hibernate_entity_inserts_total", "Inserted entities", stats.getEntityInsertCount());
+			mw.counter("okm_hibernate_entity_updates_total", "Updated entities", stats.getEntityUpdateCount());
+			mw.counter("okm_hibernate_entity_deletes_total", "Deleted entities", stats.getEntityDeleteCount());
+			mw.counter("okm_hibernate_second_level_cache_hits_total", "Second level cache hits", stats.getSecondLevelCacheHitCount());
+			mw.counter("okm_hibernate_second_level_cache_misses_total", "Second level cache misses", stats.getSecondLevelCacheMissCount());
+			mw.counter("okm_hibernate_query_cache_hits_total", "Query cache hits", stats.getQueryCacheHitCount());
+			mw.counter("okm_hibernate_query_cache_misses_total", "Query cache misses", stats.getQueryCacheMissCount());
+			mw.counter("okm_hibernate_optimistic_failures_total", "Optimistic lock failures", stats.getOptimisticFailureCount());
+		}
+	}
+
+	/**
+	 * Thread pool saturation. Unnamed pools are skipped, their instance identifier would
+	 * create a new series for every pool created.
+	 */
+	private void writeThreadPools(MetricsWriter mw) {
+		for (ThreadPoolManager tpm : ThreadPoolManager.getManagers()) {
+			if (!tpm.isNamed()) {
+				continue;
+			}
+
+			String pool = tpm.getName();
+			mw.gauge("okm_thread_pool_size", "Threads of the pool", tpm.getPoolSize(), "pool", pool);
+			mw.gauge("okm_thread_pool_active", "Threads running a task", tpm.getActiveCount(), "pool", pool);
+			mw.gauge("okm_thread_pool_queue_depth", "Tasks waiting for a thread", tpm.getQueueSize(), "pool", pool);
+			mw.counter("okm_thread_pool_completed_total", "Finished tasks", tpm.getCompletedTaskCount(), "pool", pool);
+		}
+	}
+
+	/**
+	 * Per method latency from the system profiler, only while profiling is active.
+	 */
+	private void writeProfiling(MetricsWriter mw) {
+		if (Config.SYSTEM_PROFILING) {
+			String name = "okm_profiling_call_seconds";
+			mw.describe(name, "Profiled method call time", "summary");
+
+			List<ProfilingStats> stats = SystemProfiling.getStatistics();
+
+			for (ProfilingStats ps : stats) {
+				String clazz = ps.getClazz();
+				String method = ps.getMethod();
+				mw.sample(name, ps.getP50Time() / 1000.0, "class", clazz, "method", method, "quantile", "0.5");
+				mw.sample(name, ps.getP90Time() / 1000.0, "class", clazz, "method", method, "quantile", "0.9");
+				mw.sample(name, ps.getP99Time() / 1000.0, "class", clazz, "method", method, "quantile", "0.99");
+				mw.sample(name + "_sum", ps.getTotalTime() / 1000.0, "class", clazz, "method", method);
+				mw.sample(name + "_count", ps.getExecutionCount(), "class", clazz, "method", method);
+			}
+
+			for (ProfilingStats ps : stats) {
+				mw.counter("okm_profiling_call_errors_total", "Profiled method calls which failed", ps.getErrorCount(),
+						"class", ps.getClazz(), "method", ps.getMethod());
+			}
+		}
+	}
+}
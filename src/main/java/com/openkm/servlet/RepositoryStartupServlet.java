@@ -27,10 +27,13 @@ import com.openkm.cache.CacheProvider;
 import com.openkm.cache.UserItemsManager;
 import com.openkm.cache.UserNodeKeywordsManager;
 import com.openkm.core.*;
+import com.openkm.dao.DashboardStatsDAO;
 import com.openkm.dao.HibernateUtil;
 import com.openkm.extension.core.ExtensionManager;
+import com.openkm.extractor.TextExtractorWorker;
 import com.openkm.kea.RDFREpository;
 import com.openkm.module.db.DbRepositoryModule;
+import com.openkm.module.db.stuff.DataStoreTierMover;
 import com.openkm.module.db.stuff.FsDataStore;
 import com.openkm.spring.SystemAuthentication;
 import com.openkm.util.*;
@@ -46,6 +49,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.Properties;
 import java.util.Timer;
@@ -128,6 +132,10 @@ public class RepositoryStartupServlet extends HttpServlet {
 		// Invoke stop
 		stop(this);
 
+		// Write pending activity
+		log.info("*** Shutting down activity log writer... ***");
+		UserActivityAppender.shutdown();
+
 		try {
 			log.info("*** Shutting down cache manager... ***");
 			CacheProvider.getInstance().getManager().shutdown();
@@ -216,9 +224,19 @@ public class RepositoryStartupServlet extends HttpServlet {
 
 		try {
 			// General maintenance works
-			String dapContent = "com.openkm.dao.DashboardActivityDAO.purge();";
+			String dapContent = "com.openkm.dao.DashboardActivityDAO.purge();\ncom.openkm.dao.DashboardStatsDAO.purge();";
 			CronTabUtils.createOrUpdate("Dashboard Activity Purge", "@daily", dapContent);
 
+			if (DashboardStatsDAO.isEmpty()) {
+				DashboardStatsDAO.rebuild(UserActivity.DASHBOARD_STATS_ACTIONS, UserActivity.DASHBOARD_STATS_PATH);
+			}
+
+			String aarContent = "com.openkm.util.ActivityArchiver.archive();";
+			CronTabUtils.createOrUpdate("Activity Log Archive", "@daily", aarContent);
+
+			String spsContent = "com.openkm.util.SystemProfiling.snapshot();";
+			CronTabUtils.createOrUpdate("System Profiling Snapshot", "*/5 * * * *", spsContent);
+
 			String uisContent = "com.openkm.cache.UserItemsManager.serialize();";
 			CronTabUtils.createOrUpdate("User Items Serialize", "@hourly", uisContent);
 
@@ -239,6 +257,13 @@ public class RepositoryStartupServlet extends HttpServlet {
 
 			String pptContent = "new com.openkm.util.pendtask.PendingTaskExecutor().run();";
 			CronTabUtils.createOrUpdate("Process Pending Tasks", "*/5 * * * *", pptContent);
+
+			if (DataStoreTierMover.isEnabled()) {
+				String dtmContent = "new com.openkm.module.db.stuff.DataStoreTierMover().run();";
+				CronTabUtils.createOrUpdate("Datastore Tier Mover", "@daily", dtmContent);
+			} else {
+				CronTabUtils.delete("Datastore Tier Mover");
+			}
 		} catch (Exception e) {
 			log.warn(e.getMessage(), e);
 		}
@@ -313,6 +338,10 @@ public class RepositoryStartupServlet extends HttpServlet {
 		log.info("*** Shutting pending task executor... ***");
 		PendingTaskExecutor.shutdown();
 
+		// Shutdown text extraction pipeline
+		log.info("*** Shutting text extraction workers... ***");
+		TextExtractorWorker.shutdown();
+
 		log.info("*** Shutting down repository... ***");
 
 		if (Config.USER_ITEM_CACHE) {
@@ -326,6 +355,15 @@ public class RepositoryStartupServlet extends HttpServlet {
 			}
 		}
 
+		if (Config.SYSTEM_PROFILING) {
+			try {
+				log.info("*** System profiling snapshot ***");
+				SystemProfiling.snapshot();
+			} catch (DatabaseException | IOException e) {
+				log.warn(e.getMessage(), e);
+			}
+		}
+
 		log.info("*** Repository shutted down ***");
 
 		try {
@@ -406,7 +444,7 @@ public class RepositoryStartupServlet extends HttpServlet {
 			}
 		}
 
-		if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND)) {
+		if (FsDataStore.isFileBacked()) {
 			// Initialize datastore
 			File repoDatastoreFolder = new File(Config.REPOSITORY_DATASTORE_HOME);
 			if (!repoDatastoreFolder.exists()) {
@@ -27,6 +27,7 @@ import com.openkm.dao.ActivityDAO;
 import com.openkm.dao.bean.ActivityFilter;
 import com.openkm.principal.PrincipalAdapterException;
 import com.openkm.util.UserActivity;
+import com.openkm.util.UserActivityAppender;
 import com.openkm.util.WebUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -168,6 +169,11 @@ public class ActivityLogServlet extends BaseServlet {
 			sc.setAttribute("itemFilter", item);
 			sc.setAttribute("actions", actions);
 			sc.setAttribute("users", OKMAuth.getInstance().getUsers(null));
+			sc.setAttribute("activityQueued", UserActivityAppender.getQueued());
+			sc.setAttribute("activityWritten", UserActivityAppender.getWritten());
+			sc.setAttribute("activityDropped", UserActivityAppender.getDropped());
+			sc.setAttribute("activityFailed", UserActivityAppender.getFailed());
+			sc.setAttribute("activityFailedStats", UserActivityAppender.getFailedStats());
 			sc.getRequestDispatcher("/admin/activity_log.jsp").forward(request, response);
 		} catch (ParseException | DatabaseException | PrincipalAdapterException e) {
 			sendErrorRedirect(request, response, e);
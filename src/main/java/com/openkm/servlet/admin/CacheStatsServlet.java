@@ -166,6 +166,7 @@ public class CacheStatsServlet extends BaseServlet {
 			stat.put("cache", cache);
 			stat.put("cacheHits", Long.toString(stats.getCacheHits()));
 			stat.put("cacheMisses", Long.toString(stats.getCacheMisses()));
+			stat.put("hitRatio", getHitRatio(stats.getCacheHits(), stats.getCacheMisses()));
 			stat.put("objectCount", Long.toString(stats.getObjectCount()));
 			stat.put("inMemoryHits", Long.toString(stats.getInMemoryHits()));
 			stat.put("inMemoryMisses", Long.toString(stats.getInMemoryMisses()));
@@ -188,6 +189,17 @@ public class CacheStatsServlet extends BaseServlet {
 		log.debug("view: void");
 	}
 
+	/**
+	 * Get hit ratio as percentage
+	 */
+	private String getHitRatio(long hits, long misses) {
+		if (hits + misses > 0) {
+			return String.format("%.1f%%", 100.0 * hits / (hits + misses));
+		} else {
+			return "-";
+		}
+	}
+
 	/**
 	 * Refresh stats
 	 */
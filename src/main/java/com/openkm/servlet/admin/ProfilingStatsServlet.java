@@ -26,6 +26,7 @@ import com.openkm.core.DatabaseException;
 import com.openkm.dao.ProfilingDAO;
 import com.openkm.dao.bean.Profiling;
 import com.openkm.dao.bean.ProfilingStats;
+import com.openkm.util.SystemProfiling;
 import com.openkm.util.UserActivity;
 import com.openkm.util.WebUtils;
 import org.slf4j.Logger;
@@ -107,7 +108,7 @@ public class ProfilingStatsServlet extends BaseServlet {
 	 */
 	private void clear(HttpServletRequest request, HttpServletResponse response) throws IOException,
 			ServletException, DatabaseException {
-		ProfilingDAO.clear();
+		SystemProfiling.clear();
 	}
 
 	/**
@@ -118,7 +119,7 @@ public class ProfilingStatsServlet extends BaseServlet {
 		log.debug("view({}, {})", request, response);
 
 		// Query Statistics
-		List<ProfilingStats> stats = ProfilingDAO.getStatistics();
+		List<ProfilingStats> stats = SystemProfiling.getStatistics();
 
 		ServletContext sc = getServletContext();
 		sc.setAttribute("stats", stats);
@@ -23,6 +23,7 @@ package com.openkm.servlet.admin;
 
 import com.openkm.dao.HibernateUtil;
 import com.openkm.dao.bean.NodeBase;
+import com.openkm.module.db.stuff.EffectivePermissionCache;
 import com.openkm.util.WebUtils;
 import org.hibernate.Query;
 import org.hibernate.Session;
@@ -99,6 +100,7 @@ public class PurgePermissionsServlet extends BaseServlet {
 			}
 
 			HibernateUtil.commit(tx);
+			EffectivePermissionCache.invalidate();
 		} catch (Exception e) {
 			HibernateUtil.rollback(tx);
 			sendErrorRedirect(request, response, e);
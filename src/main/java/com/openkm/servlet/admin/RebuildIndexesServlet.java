@@ -25,10 +25,13 @@ import com.openkm.core.Config;
 import com.openkm.core.MimeTypeConfig;
 import com.openkm.dao.HibernateUtil;
 import com.openkm.dao.NodeBaseDAO;
+import com.openkm.dao.NodeTreeDAO;
 import com.openkm.dao.bean.NodeDocument;
 import com.openkm.dao.bean.NodeFolder;
 import com.openkm.dao.bean.NodeMail;
 import com.openkm.extractor.TextExtractorWorker;
+import com.openkm.module.db.stuff.ParallelIndexRebuilder;
+import com.openkm.module.db.stuff.ReadAccessFilterFactory;
 import com.openkm.util.FileLogger;
 import com.openkm.util.StackTraceUtils;
 import com.openkm.util.UserActivity;
@@ -86,12 +89,24 @@ public class RebuildIndexesServlet extends BaseServlet {
 		String action = WebUtils.getString(request, "action");
 		updateSessionManager(request);
 
+		// Other actions leave read only mode, so an interrupted parallel rebuild can not be resumed
+		if (!action.isEmpty() && !("luceneIndexes".equals(action) && Config.HIBERNATE_INDEXER_PARALLEL)
+				&& ParallelIndexRebuilder.hasCheckpoint()) {
+			ParallelIndexRebuilder.discard();
+			Config.SYSTEM_READONLY = false;
+		}
+
 		if ("textExtractor".equals(action)) {
 			textExtractor(request, response);
 		} else if ("luceneIndexes".equals(action)) {
 			luceneIndexes(request, response);
 		} else if ("optimizeIndexes".equals(action)) {
 			optimizeIndexes(request, response);
+		} else if ("nodeTree".equals(action)) {
+			nodeTree(request, response);
+		} else if ("discardRebuild".equals(action)) {
+			ServletContext sc = getServletContext();
+			sc.getRequestDispatcher("/admin/rebuild_indexes.jsp").forward(request, response);
 		} else {
 			ServletContext sc = getServletContext();
 			sc.getRequestDispatcher("/admin/rebuild_indexes.jsp").forward(request, response);
@@ -164,7 +179,9 @@ public class RebuildIndexesServlet extends BaseServlet {
 	 * @see http://in.relation.to/Bloggers/HibernateSearch32FastIndexRebuild
 	 */
 	private void luceneIndexes(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		if (Config.HIBERNATE_INDEXER_MASS_INDEXER) {
+		if (Config.HIBERNATE_INDEXER_PARALLEL) {
+			luceneIndexesParallel(request, response);
+		} else if (Config.HIBERNATE_INDEXER_MASS_INDEXER) {
 			luceneIndexesMassIndexer(request, response);
 		} else {
 			luceneIndexesFlushToIndexes(request, response);
@@ -265,6 +282,9 @@ public class RebuildIndexesServlet extends BaseServlet {
 			HibernateUtil.close(session);
 		}
 
+		// Cached read access filters point to the discarded index segments
+		ReadAccessFilterFactory.invalidate();
+
 		// Finalized
 		FileLogger.info(BASE_NAME, "END - Rebuild Lucene indexes");
 
@@ -348,6 +368,9 @@ public class RebuildIndexesServlet extends BaseServlet {
 			HibernateUtil.close(session);
 		}
 
+		// Cached read access filters point to the discarded index segments
+		ReadAccessFilterFactory.invalidate();
+
 		// Finalized
 		FileLogger.info(BASE_NAME, "END - Rebuild Lucene indexes");
 
@@ -359,6 +382,90 @@ public class RebuildIndexesServlet extends BaseServlet {
 		log.debug("luceneIndexesMassIndexer: void");
 	}
 
+	/**
+	 * Parallel implementation, indexes are rebuilt apart and swapped in when done.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void luceneIndexesParallel(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		log.debug("luceneIndexesParallel({}, {})", request, response);
+		PrintWriter out = response.getWriter();
+		response.setContentType(MimeTypeConfig.MIME_HTML);
+		header(out, "Rebuild Lucene indexes", breadcrumb);
+		out.flush();
+
+		// Activity log
+		UserActivity.log(request.getRemoteUser(), "ADMIN_FORCE_REBUILD_INDEXES", null, null, null);
+
+		try {
+			// Current indexes are still used for searching while the new ones are built
+			Config.SYSTEM_READONLY = true;
+			out.println("<ul>");
+			out.println("<li>System into read only mode</li>");
+			FileLogger.info(BASE_NAME, "BEGIN - Rebuild Lucene indexes");
+			long total = 0;
+
+			// Calculate number of entities
+			for (Class cls : classes) {
+				String nodeType = cls.getSimpleName();
+				out.println("<li>Calculate " + nodeType + "</li>");
+				out.flush();
+				long partial = NodeBaseDAO.getInstance().getCount(nodeType);
+				FileLogger.info(BASE_NAME, "Number of {0}: {1}", nodeType, partial);
+				out.println("<li>Number of " + nodeType + ": " + partial + "</li>");
+				out.flush();
+				total += partial;
+			}
+
+			// Rebuild indexes
+			if (ParallelIndexRebuilder.hasCheckpoint()) {
+				out.println("<li>Resuming interrupted rebuild</li>");
+			}
+
+			out.println("<li>Rebuilding indexes</li>");
+			out.flush();
+			ProgressMonitor monitor = new ProgressMonitor(out, "NodeBase", total);
+			long count = ParallelIndexRebuilder.rebuild(classes, monitor);
+			FileLogger.info(BASE_NAME, "Number of indexed nodes: {0}", count);
+
+			Config.SYSTEM_READONLY = false;
+			out.println("<li>System out of read only mode</li>");
+			out.flush();
+
+			// Finalized
+			out.println("<li>Index rebuilding completed!</li>");
+			out.println("</ul>");
+			out.flush();
+		} catch (Exception e) {
+			FileLogger.error(BASE_NAME, StackTraceUtils.toString(e));
+			out.println("<div class=\"warn\">Exception: " + e.getMessage() + "</div>");
+
+			// Read only mode is not persisted, so the checkpoint is discarded after a restart
+			if (ParallelIndexRebuilder.hasCheckpoint()) {
+				out.println("<div class=\"warn\">System kept in read only mode: rebuild again to resume or " +
+						"<a href=\"RebuildIndexes?action=discardRebuild\">discard the rebuild</a></div>");
+			}
+
+			out.flush();
+		} finally {
+			if (!ParallelIndexRebuilder.hasCheckpoint()) {
+				Config.SYSTEM_READONLY = false;
+			}
+		}
+
+		// Cached read access filters point to the discarded index segments
+		ReadAccessFilterFactory.invalidate();
+
+		// Finalized
+		FileLogger.info(BASE_NAME, "END - Rebuild Lucene indexes");
+
+		// End page
+		footer(out);
+		out.flush();
+		out.close();
+
+		log.debug("luceneIndexesParallel: void");
+	}
+
 	/**
 	 * Perform index optimization
 	 */
@@ -410,6 +517,58 @@ public class RebuildIndexesServlet extends BaseServlet {
 		out.close();
 	}
 
+	/**
+	 * Rebuild node tree closure table
+	 */
+	private void nodeTree(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		PrintWriter out = response.getWriter();
+		response.setContentType(MimeTypeConfig.MIME_HTML);
+		header(out, "Rebuild node tree", breadcrumb);
+		out.flush();
+
+		// Activity log
+		UserActivity.log(request.getRemoteUser(), "ADMIN_FORCE_REBUILD_NODE_TREE", null, null, null);
+
+		try {
+			Config.SYSTEM_MAINTENANCE = true;
+			Config.SYSTEM_READONLY = true;
+			out.println("<ul>");
+			out.println("<li>System into maintenance mode</li>");
+			FileLogger.info(BASE_NAME, "BEGIN - Rebuild node tree");
+
+			// Rebuild node tree
+			out.println("<li>Rebuilding node tree</li>");
+			out.flush();
+			NodeTreeDAO.getInstance().rebuild();
+			out.println("<li>Node tree ready: " + NodeTreeDAO.getInstance().isReady() + "</li>");
+
+			Config.SYSTEM_READONLY = false;
+			Config.SYSTEM_MAINTENANCE = false;
+			out.println("<li>System out of maintenance mode</li>");
+			out.flush();
+
+			// Finalized
+			out.println("<li>Node tree rebuilding completed!</li>");
+			out.println("</ul>");
+			out.flush();
+		} catch (Exception e) {
+			FileLogger.error(BASE_NAME, StackTraceUtils.toString(e));
+			out.println("<div class=\"warn\">Exception: " + e.getMessage() + "</div>");
+			out.flush();
+		} finally {
+			Config.SYSTEM_READONLY = false;
+			Config.SYSTEM_MAINTENANCE = false;
+		}
+
+		// Finalized
+		FileLogger.info(BASE_NAME, "END - Rebuild node tree");
+
+		// End page
+		footer(out);
+		out.flush();
+		out.close();
+	}
+
 	/**
 	 * Do real indexes optimization.
 	 */
@@ -23,9 +23,11 @@ package com.openkm.servlet.admin;
 
 import com.openkm.api.OKMFolder;
 import com.openkm.bean.ContentInfo;
+import com.openkm.bean.DataStoreTierInfo;
 import com.openkm.bean.Repository;
 import com.openkm.core.Config;
 import com.openkm.core.MimeTypeConfig;
+import com.openkm.module.db.stuff.DataStoreTierMover;
 import com.openkm.util.FormatUtil;
 import com.openkm.util.UserActivity;
 import com.openkm.util.WebUtils;
@@ -124,6 +126,20 @@ public class RepositoryCheckerServlet extends BaseServlet {
 				out.println("<b>Size:</b> " + FormatUtil.formatSize(stats.getSize()) + "<br/>");
 				out.println("<b>Time:</b> " + FormatUtil.formatSeconds(end - begin) + "<br/>");
 
+				if (DataStoreTierMover.isEnabled()) {
+					DataStoreTierInfo tierInfo = DataStoreTierMover.getTierInfo();
+					out.println("<br/>");
+					out.println("<b>Hot tier:</b> " + tierInfo.getHotObjects() + " objects, "
+							+ FormatUtil.formatSize(tierInfo.getHotSize()) + "<br/>");
+					out.println("<b>Cold tier:</b> " + tierInfo.getColdObjects() + " objects, "
+							+ FormatUtil.formatSize(tierInfo.getColdSize()) + "<br/>");
+					out.println("<b>Cold tier age:</b> " + Config.REPOSITORY_DATASTORE_COLD_AGE + " days<br/>");
+
+					if (DataStoreTierMover.lastExecution() != null) {
+						out.println("<b>Last tier move:</b> " + DataStoreTierMover.lastExecution().getTime() + "<br/>");
+					}
+				}
+
 				// Activity log
 				UserActivity.log(request.getRemoteUser(), "ADMIN_REPOSITORY_CHECKER", null, null, "Documents: " + stats.getDocuments()
 						+ ", Folders: " + stats.getFolders() + ", Size: " + FormatUtil.formatSize(stats.getSize()) + ", Time: "
@@ -22,8 +22,10 @@
 package com.openkm.servlet.admin;
 
 import com.openkm.core.DatabaseException;
+import com.openkm.extractor.RegisteredExtractors;
 import com.openkm.extractor.TextExtractorWork;
 import com.openkm.extractor.TextExtractorWorker;
+import com.openkm.module.db.stuff.BatchBackendQueueProcessorFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +63,20 @@ public class TextExtractionQueueServlet extends BaseServlet {
 			sc.setAttribute("pendingSize", TextExtractorWorker.getPendingSize());
 			sc.setAttribute("lastExecution", TextExtractorWorker.lastExecution());
 			sc.setAttribute("inProgressWorks", TextExtractorWorker.getInProgressWorks());
+			sc.setAttribute("waitingWorks", TextExtractorWorker.getWaitingWorks(MAX_RESULTS));
+			sc.setAttribute("extractorMetrics", RegisteredExtractors.getMetrics());
+			sc.setAttribute("indexBatchEnabled", BatchBackendQueueProcessorFactory.isEnabled());
+			sc.setAttribute("indexQueueDepth", BatchBackendQueueProcessorFactory.getQueueDepth());
+			sc.setAttribute("indexQueueSize", BatchBackendQueueProcessorFactory.getQueueSize());
+			sc.setAttribute("indexCommitSize", BatchBackendQueueProcessorFactory.getCommitSize());
+			sc.setAttribute("indexRefreshInterval", BatchBackendQueueProcessorFactory.getRefreshInterval());
+			sc.setAttribute("indexCommits", BatchBackendQueueProcessorFactory.getCommits());
+			sc.setAttribute("indexWorks", BatchBackendQueueProcessorFactory.getWorks());
+			sc.setAttribute("indexLastCommitSize", BatchBackendQueueProcessorFactory.getLastCommitSize());
+			sc.setAttribute("indexLastCommitTime", BatchBackendQueueProcessorFactory.getLastCommitTime());
+			sc.setAttribute("indexLastCommit", BatchBackendQueueProcessorFactory.getLastCommit());
+			sc.setAttribute("indexFailedWorks", BatchBackendQueueProcessorFactory.getFailedWorks());
+			sc.setAttribute("indexLastError", BatchBackendQueueProcessorFactory.getLastError());
 			sc.getRequestDispatcher("/admin/text_extraction_queue.jsp").forward(request, response);
 		} catch (DatabaseException e) {
 			sendErrorRedirect(request, response, e);
@@ -179,6 +179,49 @@ public class SearchServlet extends OKMRemoteServiceServlet implements OKMSearchS
 		return gwtResultSet;
 	}
 
+	@Override
+	public GWTResultSet findPaginatedByCursor(GWTQueryParams params, String cursor, int limit) throws OKMException {
+		log.debug("findPaginatedByCursor({}, {}, {})", params, cursor, limit);
+		List<GWTQueryResult> resultList = new ArrayList<>();
+		GWTResultSet gwtResultSet = new GWTResultSet();
+		QueryParams queryParams = new QueryParams();
+		ResultSet results;
+		updateSessionManager();
+
+		try {
+			queryParams = GWTUtil.copy(params);
+			results = OKMSearch.getInstance().findPaginated(null, queryParams, cursor, limit);
+
+			for (QueryResult queryResult : results.getResults()) {
+				GWTQueryResult gwtQueryResult = GWTUtil.copy(queryResult, getUserWorkspaceSession());
+				resultList.add(gwtQueryResult);
+			}
+
+			gwtResultSet.setTotal(results.getTotal());
+			gwtResultSet.setResults(resultList);
+			gwtResultSet.setCursor(results.getCursor());
+		} catch (ParseException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Parse),
+					e.getMessage());
+		} catch (RepositoryException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Repository),
+					e.getMessage());
+		} catch (DatabaseException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Database),
+					e.getMessage());
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_General),
+					e.getMessage());
+		}
+
+		log.debug("findPaginatedByCursor: {}", resultList);
+		return gwtResultSet;
+	}
+
 	@Override
 	public GWTResultSet find(GWTQueryParams params) throws OKMException {
 		log.debug("find({})", params);
@@ -410,4 +453,65 @@ public class SearchServlet extends OKMRemoteServiceServlet implements OKMSearchS
 
 		return gwtResultSet;
 	}
+
+	@Override
+	public Map<String, String> getExcerpts(GWTQueryParams params, List<String> uuids) throws OKMException {
+		log.debug("getExcerpts({}, {})", params, uuids);
+		Map<String, String> excerpts = new HashMap<>();
+		updateSessionManager();
+
+		try {
+			QueryParams queryParams = GWTUtil.copy(params);
+			excerpts.putAll(OKMSearch.getInstance().getExcerpts(null, queryParams, uuids));
+		} catch (ParseException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Parse),
+					e.getMessage());
+		} catch (RepositoryException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Repository),
+					e.getMessage());
+		} catch (DatabaseException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Database),
+					e.getMessage());
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_General),
+					e.getMessage());
+		}
+
+		log.debug("getExcerpts: {}", excerpts.keySet());
+		return excerpts;
+	}
+
+	@Override
+	public Map<String, String> getSimpleQueryExcerpts(String statement, List<String> uuids) throws OKMException {
+		log.debug("getSimpleQueryExcerpts({}, {})", statement, uuids);
+		Map<String, String> excerpts = new HashMap<>();
+		updateSessionManager();
+
+		try {
+			excerpts.putAll(OKMSearch.getInstance().getSimpleQueryExcerpts(null, statement, uuids));
+		} catch (ParseException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Parse),
+					e.getMessage());
+		} catch (RepositoryException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Repository),
+					e.getMessage());
+		} catch (DatabaseException e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_Database),
+					e.getMessage());
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			throw new OKMException(ErrorCode.get(ErrorCode.ORIGIN_OKMSearchService, ErrorCode.CAUSE_General),
+					e.getMessage());
+		}
+
+		log.debug("getSimpleQueryExcerpts: {}", excerpts.keySet());
+		return excerpts;
+	}
 }
@@ -74,6 +74,7 @@ public class WorkspaceServlet extends OKMRemoteServiceServlet implements OKMWork
 		workspace.setWorkflowProcessIntanceVariablePath(Config.WORKFLOW_PROCESS_INSTANCE_VARIABLE_PATH);
 		workspace.setSessionId(getThreadLocalRequest().getSession().getId());
 		workspace.setMinSearchCharacters(Config.MIN_SEARCH_CHARACTERS);
+		workspace.setSearchLazyExcerpts(Config.SEARCH_LAZY_EXCERPTS);
 		workspace.setSystemReadOnly(Config.SYSTEM_READONLY);
 
 		// TinyMCE 4
@@ -25,6 +25,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 			.csrf().disable()
 			.authorizeRequests()
 			.antMatchers("/Status/**").authenticated()
+			// Checked by MetricsServlet: disabled by default, then allowed hosts or administrators
+			.antMatchers("/metrics").permitAll()
 			.antMatchers("/css/**", "/js/**", "/img/**", "/logo/**","/fonts/**","/Rss").permitAll()
 			.antMatchers("/Download/**").authenticated()
 			.antMatchers("/workflow-register/**").authenticated()
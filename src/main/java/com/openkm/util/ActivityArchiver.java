@@ -0,0 +1,417 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.util;
+
+import com.googlecode.jcsv.CSVStrategy;
+import com.googlecode.jcsv.reader.CSVEntryParser;
+import com.googlecode.jcsv.reader.CSVReader;
+import com.googlecode.jcsv.reader.internal.CSVReaderBuilder;
+import com.googlecode.jcsv.writer.CSVEntryConverter;
+import com.googlecode.jcsv.writer.CSVWriter;
+import com.googlecode.jcsv.writer.internal.CSVWriterBuilder;
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.HibernateUtil;
+import com.openkm.dao.bean.Activity;
+import com.openkm.dao.bean.ActivityFilter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Move activity older than the configured retention (activity.log.retention, in months)
+ * out of the database, into compressed CSV files per month. Each run writes a new part
+ * file and only removes the exported rows, so activity logged late for a month is kept
+ * and archived by a later run. Archived months are still searched by the activity log,
+ * reading only the files of the requested range, and by the activity of a node.
+ * <p>
+ * Only the activity log is archived: dashboard activity and counters are kept in their
+ * own tables, and queries such as {@link com.openkm.dao.ActivityDAO#getActivityDate} or
+ * the status page only look at activity still in database.
+ */
+public class ActivityArchiver {
+	private static Logger log = LoggerFactory.getLogger(ActivityArchiver.class);
+	public static final String ACTIVITY_ARCHIVE_DIRNAME = "activity";
+	private static final String FILE_PREFIX = "activity-";
+	private static final String FILE_SUFFIX = ".csv.gz";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final String MONTH_FORMAT = "yyyy-MM";
+	private static final Pattern FILE_PATTERN = Pattern.compile(FILE_PREFIX + "(\\d{4})-(\\d{2})(\\.\\d+)?" + Pattern.quote(FILE_SUFFIX));
+	private static final int DELETE_BATCH_SIZE = 500;
+	private static final CSVStrategy CSV_STRATEGY = new CSVStrategy(',', '"', '#', false, true);
+
+	private ActivityArchiver() {
+	}
+
+	/**
+	 * Archive every whole month older than the retention.
+	 *
+	 * @return Number of archived activities.
+	 */
+	public static synchronized long archive() throws DatabaseException, IOException {
+		log.debug("archive()");
+		long archived = 0;
+
+		if (Config.ACTIVITY_LOG_RETENTION > 0) {
+			Calendar limit = getMonth(Calendar.getInstance());
+			limit.add(Calendar.MONTH, -Config.ACTIVITY_LOG_RETENTION);
+			File dir = getArchiveDir();
+			FileUtils.forceMkdir(dir);
+
+			for (Calendar month = findOldest(limit); month != null && month.before(limit); month.add(Calendar.MONTH, 1)) {
+				archived += archive(dir, month);
+			}
+		}
+
+		log.debug("archive: {}", archived);
+		return archived;
+	}
+
+	/**
+	 * Write a month of activity to a new part file and remove the exported rows from database.
+	 */
+	private static long archive(File dir, Calendar month) throws DatabaseException, IOException {
+		Calendar next = (Calendar) month.clone();
+		next.add(Calendar.MONTH, 1);
+		File tmp = new File(dir, FILE_PREFIX + format(month) + FILE_SUFFIX + TMP_SUFFIX);
+		List<Long> ids = new ArrayList<>();
+		long count = export(tmp, month, next, ids);
+
+		if (count > 0) {
+			File file = getNewFile(dir, month);
+			delete(ids, tmp, file);
+			log.info("Archived {} activities of {} to {}", count, format(month), file.getPath());
+		} else {
+			FileUtils.deleteQuietly(tmp);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Export activity between dates.
+	 *
+	 * @param ids Collects the identifiers of the exported activities.
+	 */
+	private static long export(File file, Calendar begin, Calendar end, List<Long> ids) throws DatabaseException, IOException {
+		String qs = "from Activity a where a.date>=:begin and a.date<:end order by a.date";
+		Session session = null;
+		Writer out = null;
+		long count = 0;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs).setReadOnly(true).setFetchSize(1000);
+			q.setCalendar("begin", begin);
+			q.setCalendar("end", end);
+			ScrollableResults results = q.scroll(ScrollMode.FORWARD_ONLY);
+			out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), "UTF-8"));
+			CSVWriter<Activity> csvWriter = new CSVWriterBuilder<Activity>(out).strategy(CSV_STRATEGY)
+					.entryConverter(new ActivityEntryConverter()).build();
+
+			while (results.next()) {
+				Activity act = (Activity) results.get(0);
+				csvWriter.write(act);
+				ids.add(act.getId());
+
+				if (++count % 1000 == 0) {
+					session.clear();
+				}
+			}
+
+			csvWriter.flush();
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(out);
+			HibernateUtil.close(session);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Remove exported activity from database and publish its archive file. The file is moved
+	 * before commit, so a failed commit can leave activity archived twice but never lost.
+	 */
+	private static void delete(List<Long> ids, File tmp, File file) throws DatabaseException, IOException {
+		String qs = "delete Activity a where a.id in (:ids)";
+		Session session = null;
+		Transaction tx = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			tx = session.beginTransaction();
+			Query q = session.createQuery(qs);
+
+			for (int i = 0; i < ids.size(); i += DELETE_BATCH_SIZE) {
+				q.setParameterList("ids", ids.subList(i, Math.min(i + DELETE_BATCH_SIZE, ids.size())));
+				q.executeUpdate();
+			}
+
+			FileUtils.moveFile(tmp, file);
+			HibernateUtil.commit(tx);
+		} catch (HibernateException e) {
+			HibernateUtil.rollback(tx);
+			throw new DatabaseException(e.getMessage(), e);
+		} catch (IOException e) {
+			HibernateUtil.rollback(tx);
+			throw e;
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Month of the oldest activity before a date.
+	 */
+	private static Calendar findOldest(Calendar limit) throws DatabaseException {
+		String qs = "select min(a.date) from Activity a where a.date<:limit";
+		Session session = null;
+
+		try {
+			session = HibernateUtil.getSessionFactory().openSession();
+			Query q = session.createQuery(qs);
+			q.setCalendar("limit", limit);
+			Calendar oldest = (Calendar) q.uniqueResult();
+			return oldest == null ? null : getMonth(oldest);
+		} catch (HibernateException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		} finally {
+			HibernateUtil.close(session);
+		}
+	}
+
+	/**
+	 * Beginning of the first month not archived, or null if there is no archived activity.
+	 */
+	public static Calendar getArchivedUntil() {
+		String[] names = getArchiveDir().list();
+		Calendar until = null;
+
+		if (names != null) {
+			for (String name : names) {
+				Calendar month = parseFileName(name);
+
+				if (month != null) {
+					month.add(Calendar.MONTH, 1);
+
+					if (until == null || month.after(until)) {
+						until = month;
+					}
+				}
+			}
+		}
+
+		return until;
+	}
+
+	/**
+	 * Find archived activity, only files of the months in the filter range are read. Without
+	 * begin or end date every archived month from or until it is read.
+	 */
+	public static List<Activity> findByFilter(ActivityFilter filter) throws IOException {
+		log.debug("findByFilter({})", filter);
+		List<Activity> ret = new ArrayList<>();
+		String[] names = getArchiveDir().list();
+
+		if (names != null) {
+			Arrays.sort(names);
+			Calendar begin = filter.getBegin() == null ? null : getMonth(filter.getBegin());
+
+			for (String name : names) {
+				Calendar month = parseFileName(name);
+
+				if (month != null && (begin == null || !month.before(begin)) &&
+						(filter.getEnd() == null || !month.after(filter.getEnd()))) {
+					find(new File(getArchiveDir(), name), filter, ret);
+				}
+			}
+		}
+
+		log.debug("findByFilter: {}", ret.size());
+		return ret;
+	}
+
+	/**
+	 * Read matching activity from an archive file.
+	 */
+	private static void find(File file, ActivityFilter filter, List<Activity> ret) throws IOException {
+		Reader in = null;
+
+		try {
+			in = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+			CSVReader<Activity> csvReader = new CSVReaderBuilder<Activity>(in).strategy(CSV_STRATEGY)
+					.entryParser(new ActivityEntryParser()).build();
+
+			for (Activity act : csvReader) {
+				if (matches(act, filter)) {
+					ret.add(act);
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Check activity against filter.
+	 */
+	private static boolean matches(Activity act, ActivityFilter filter) {
+		if ((filter.getBegin() != null && act.getDate().before(filter.getBegin())) ||
+				(filter.getEnd() != null && act.getDate().after(filter.getEnd()))) {
+			return false;
+		}
+
+		if (filter.getUser() != null && !filter.getUser().equals("") && !filter.getUser().equals(act.getUser())) {
+			return false;
+		}
+
+		if (filter.getAction() != null && !filter.getAction().equals("") && !filter.getAction().equals(act.getAction())) {
+			return false;
+		}
+
+		if (filter.getItem() != null && !filter.getItem().equals("") && !filter.getItem().equals(act.getItem())) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Archive directory.
+	 */
+	public static File getArchiveDir() {
+		return new File(Config.REPOSITORY_HOME, ACTIVITY_ARCHIVE_DIRNAME);
+	}
+
+	/**
+	 * First archive file of a month not written yet.
+	 */
+	private static File getNewFile(File dir, Calendar month) {
+		File file = new File(dir, FILE_PREFIX + format(month) + FILE_SUFFIX);
+
+		for (int part = 1; file.exists(); part++) {
+			file = new File(dir, FILE_PREFIX + format(month) + "." + part + FILE_SUFFIX);
+		}
+
+		return file;
+	}
+
+	/**
+	 * Month of an archive file name, any part.
+	 */
+	private static Calendar parseFileName(String name) {
+		Matcher m = FILE_PATTERN.matcher(name);
+
+		if (m.matches()) {
+			Calendar month = Calendar.getInstance();
+			month.clear();
+			month.set(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)) - 1, 1);
+			return month;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Beginning of the month of a date.
+	 */
+	public static Calendar getMonth(Calendar date) {
+		Calendar month = (Calendar) date.clone();
+		month.set(Calendar.DAY_OF_MONTH, 1);
+		month.set(Calendar.HOUR_OF_DAY, 0);
+		month.set(Calendar.MINUTE, 0);
+		month.set(Calendar.SECOND, 0);
+		month.set(Calendar.MILLISECOND, 0);
+		return month;
+	}
+
+	private static String format(Calendar month) {
+		return new SimpleDateFormat(MONTH_FORMAT).format(month.getTime());
+	}
+
+	/**
+	 * Activity to CSV columns: date, user, action, item, path and params.
+	 */
+	private static class ActivityEntryConverter implements CSVEntryConverter<Activity> {
+		@Override
+		public String[] convertEntry(Activity act) {
+			return new String[]{Long.toString(act.getDate().getTimeInMillis()), toColumn(act.getUser()), toColumn(act.getAction()),
+					toColumn(act.getItem()), toColumn(act.getPath()), toColumn(act.getParams())};
+		}
+
+		private String toColumn(String value) {
+			return value == null ? "" : value;
+		}
+	}
+
+	/**
+	 * CSV columns to activity.
+	 */
+	private static class ActivityEntryParser implements CSVEntryParser<Activity> {
+		@Override
+		public Activity parseEntry(String... data) {
+			Activity act = new Activity();
+			Calendar date = Calendar.getInstance();
+			date.setTimeInMillis(Long.parseLong(data[0]));
+			act.setDate(date);
+			act.setUser(fromColumn(data, 1));
+			act.setAction(fromColumn(data, 2));
+			act.setItem(fromColumn(data, 3));
+			act.setPath(fromColumn(data, 4));
+			act.setParams(fromColumn(data, 5));
+			return act;
+		}
+
+		private String fromColumn(String[] data, int idx) {
+			return idx < data.length && !data[idx].isEmpty() ? data[idx] : null;
+		}
+	}
+}
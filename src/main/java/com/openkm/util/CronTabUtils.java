@@ -71,6 +71,20 @@ public class CronTabUtils {
 		log.debug("createOrUpdate: void");
 	}
 
+	/**
+	 * Remove internal cron task, if exists
+	 */
+	public static void delete(String name) throws DatabaseException {
+		log.debug("delete({})", name);
+		CronTab ct = CronTabDAO.findByName(name);
+
+		if (ct != null) {
+			CronTabDAO.delete(ct.getId());
+		}
+
+		log.debug("delete: void");
+	}
+
 	/**
 	 * Change "Text Extractor Worker" or "Text extractor worker" to "TextExtractorWorker".
 	 */
@@ -94,6 +94,48 @@ public class SecureStore {
 		return sb.toString();
 	}
 
+	/**
+	 * Digest encoder, for any supported algorithm
+	 */
+	public static String digestEncode(File file, String algorithm) throws NoSuchAlgorithmException, IOException {
+		InputStream is = new FileInputStream(file);
+
+		try {
+			return digestEncode(is, algorithm);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	/**
+	 * Digest encoder, for any supported algorithm. Stream is not closed.
+	 */
+	public static String digestEncode(InputStream is, String algorithm) throws NoSuchAlgorithmException, IOException {
+		MessageDigest md = MessageDigest.getInstance(algorithm);
+		byte[] buffer = new byte[64 * 1024];
+		int numRead;
+
+		while ((numRead = is.read(buffer)) != -1) {
+			md.update(buffer, 0, numRead);
+		}
+
+		return hexEncode(md.digest());
+	}
+
+	/**
+	 * Hexadecimal encoder
+	 */
+	public static String hexEncode(byte[] src) {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < src.length; i++) {
+			sb.append(Integer.toHexString((src[i] >> 4) & 0xf));
+			sb.append(Integer.toHexString(src[i] & 0xf));
+		}
+
+		return sb.toString();
+	}
+
 	/**
 	 * Password generator.
 	 */
@@ -25,57 +25,350 @@ import com.openkm.core.Config;
 import com.openkm.core.DatabaseException;
 import com.openkm.dao.ProfilingDAO;
 import com.openkm.dao.bean.Profiling;
+import com.openkm.dao.bean.ProfilingStats;
 import com.openkm.spring.PrincipalUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
+ * In memory profiler. Every call is added to a latency histogram of its class and method,
+ * without locks nor database access. Only a sample of calls (system.profiling.sample.rate)
+ * capture their stack trace, which is stored with the periodic snapshot.
  *
  * @author pavila
  */
 public class SystemProfiling {
 	private static Logger log = LoggerFactory.getLogger(SystemProfiling.class);
+	private static final String SNAPSHOT_FILE = "profiling.ser";
+	private static final int MAX_PENDING_SAMPLES = 1000;
+	private static final StackWalker walker = StackWalker.getInstance();
+	private static final Map<String, MethodStats> stats = new ConcurrentHashMap<>();
+	private static final ConcurrentLinkedQueue<Profiling> samples = new ConcurrentLinkedQueue<>();
+	private static final AtomicLong pendingSamples = new AtomicLong();
+	private static volatile boolean loaded = false;
 
 	/**
 	 * Log system profiling
 	 *
-	 * @param clazz The class which generate the action.
-	 * @param method The method of the class which generate the action.
+	 * @param params Parameters of the profiled call.
 	 * @param time Time in milliseconds to register.
 	 */
 	public static void log(String params, long time) {
 		if (Config.SYSTEM_PROFILING) {
+			add(params, time, false);
+		}
+	}
+
+	/**
+	 * Log system profiling of a failed call
+	 *
+	 * @param params Parameters of the profiled call.
+	 * @param time Time in milliseconds to register.
+	 */
+	public static void error(String params, long time) {
+		if (Config.SYSTEM_PROFILING) {
+			add(params, time, true);
+		}
+	}
+
+	/**
+	 * Register a call of the method which invoked log or error.
+	 */
+	private static void add(String params, long time, boolean error) {
+		StackWalker.StackFrame caller = walker.walk(new Function<Stream<StackWalker.StackFrame>, StackWalker.StackFrame>() {
+			@Override
+			public StackWalker.StackFrame apply(Stream<StackWalker.StackFrame> frames) {
+				return frames.skip(2).findFirst().orElse(null);
+			}
+		});
+
+		if (caller != null) {
+			if (!loaded) {
+				load();
+			}
+
+			String key = caller.getClassName() + "#" + caller.getMethodName();
+			MethodStats ms = stats.get(key);
+
+			if (ms == null) {
+				MethodStats created = new MethodStats(caller.getClassName(), caller.getMethodName());
+				ms = stats.putIfAbsent(key, created);
+
+				if (ms == null) {
+					ms = created;
+				}
+			}
+
+			ms.add(time, error);
+			int rate = Config.SYSTEM_PROFILING_SAMPLE_RATE;
+
+			if (rate > 0 && ThreadLocalRandom.current().nextInt(rate) == 0 && pendingSamples.get() < MAX_PENDING_SAMPLES) {
+				sample(caller, params, time);
+			}
+		}
+	}
+
+	/**
+	 * Capture the call trace, to be stored with the next snapshot.
+	 */
+	private static void sample(StackWalker.StackFrame caller, String params, long time) {
+		StringBuilder sb = new StringBuilder();
+
+		for (StackTraceElement elto : new Throwable().getStackTrace()) {
+			if (elto.getClassName().startsWith("com.openkm") && !elto.getClassName().equals(SystemProfiling.class.getName())) {
+				sb.append(elto);
+				sb.append("\n");
+			}
+		}
+
+		Profiling vo = new Profiling();
+		vo.setDate(Calendar.getInstance());
+		vo.setUser(PrincipalUtils.getUser());
+		vo.setClazz(caller.getClassName());
+		vo.setMethod(caller.getMethodName());
+		vo.setParams(params);
+		vo.setTime(time);
+		vo.setTrace(sb.toString());
+		samples.add(vo);
+		pendingSamples.incrementAndGet();
+	}
+
+	/**
+	 * Get statistics of every profiled method.
+	 */
+	public static List<ProfilingStats> getStatistics() {
+		if (!loaded) {
+			load();
+		}
+
+		List<ProfilingStats> ret = new ArrayList<>();
+
+		for (MethodStats ms : stats.values()) {
+			ret.add(ms.toProfilingStats());
+		}
+
+		Collections.sort(ret, new Comparator<ProfilingStats>() {
+			@Override
+			public int compare(ProfilingStats o1, ProfilingStats o2) {
+				int cmp = o1.getClazz().compareTo(o2.getClazz());
+				return cmp != 0 ? cmp : o1.getMethod().compareTo(o2.getMethod());
+			}
+		});
+
+		return ret;
+	}
+
+	/**
+	 * Discard collected statistics and samples.
+	 */
+	public static synchronized void clear() throws DatabaseException {
+		stats.clear();
+		samples.clear();
+		pendingSamples.set(0);
+		FileUtils.deleteQuietly(getSnapshotFile());
+		ProfilingDAO.clear();
+	}
+
+	/**
+	 * Store sampled traces in database and statistics in the snapshot file, so they survive a restart.
+	 */
+	public static synchronized void snapshot() throws DatabaseException, IOException {
+		log.debug("snapshot()");
+		List<Profiling> pending = new ArrayList<>();
+
+		for (Profiling vo = samples.poll(); vo != null; vo = samples.poll()) {
+			pending.add(vo);
+			pendingSamples.decrementAndGet();
+		}
+
+		if (!pending.isEmpty()) {
+			ProfilingDAO.create(pending);
+		}
+
+		if (!stats.isEmpty()) {
+			File file = getSnapshotFile();
+			File tmp = new File(file.getPath() + ".tmp");
+			ObjectOutputStream oos = null;
+
 			try {
-				StackTraceElement[] trace = (new Throwable()).getStackTrace();
-
-				// Once you have the trace you can pick out information you need.
-				if (trace.length >= 1) {
-					StringBuilder sb = new StringBuilder();
-					StackTraceElement caller = trace[1];
-
-					if (trace.length >= 2) {
-						for (int i = 2; i < trace.length; i++) {
-							if (trace[i].getClassName().startsWith("com.openkm")) {
-								sb.append(trace[i]);
-								sb.append("\n");
-							}
-						}
+				oos = new ObjectOutputStream(new FileOutputStream(tmp));
+				oos.writeObject(new HashMap<>(stats));
+			} finally {
+				IOUtils.closeQuietly(oos);
+			}
+
+			FileUtils.deleteQuietly(file);
+			FileUtils.moveFile(tmp, file);
+		}
+
+		log.debug("snapshot: void");
+	}
+
+	/**
+	 * Load statistics from the last snapshot.
+	 */
+	@SuppressWarnings("unchecked")
+	private static synchronized void load() {
+		if (!loaded) {
+			File file = getSnapshotFile();
+
+			if (file.exists()) {
+				ObjectInputStream ois = null;
+
+				try {
+					ois = new ObjectInputStream(new FileInputStream(file));
+					Map<String, MethodStats> snapshot = (Map<String, MethodStats>) ois.readObject();
+
+					for (Map.Entry<String, MethodStats> entry : snapshot.entrySet()) {
+						stats.putIfAbsent(entry.getKey(), entry.getValue());
 					}
+				} catch (IOException | ClassNotFoundException | ClassCastException e) {
+					log.warn("Unable to load profiling snapshot: {}", e.getMessage());
+				} finally {
+					IOUtils.closeQuietly(ois);
+				}
+			}
 
-					Profiling vo = new Profiling();
-					vo.setDate(Calendar.getInstance());
-					vo.setUser(PrincipalUtils.getUser());
-					vo.setClazz(caller.getClassName());
-					vo.setMethod(caller.getMethodName());
-					vo.setParams(params);
-					vo.setTime(time);
-					vo.setTrace(sb.toString());
-					ProfilingDAO.create(vo);
+			loaded = true;
+		}
+	}
+
+	private static File getSnapshotFile() {
+		return new File(Config.REPOSITORY_HOME, SNAPSHOT_FILE);
+	}
+
+	/**
+	 * Latency histogram of a method. Buckets are log scale with four sub buckets by power
+	 * of two, so a percentile is estimated with an error below 25%.
+	 */
+	private static class MethodStats implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private static final int SUB_BUCKETS = 4;
+		private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 3) * SUB_BUCKETS;
+		private final String clazz;
+		private final String method;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		MethodStats(String clazz, String method) {
+			this.clazz = clazz;
+			this.method = method;
+		}
+
+		/**
+		 * Register a call.
+		 */
+		void add(long time, boolean error) {
+			count.increment();
+			total.add(time);
+			buckets.incrementAndGet(bucket(time));
+
+			if (error) {
+				errors.increment();
+			}
+
+			for (long cur = max.get(); time > cur && !max.compareAndSet(cur, time); cur = max.get()) {
+				// Retry
+			}
+
+			for (long cur = min.get(); time < cur && !min.compareAndSet(cur, time); cur = min.get()) {
+				// Retry
+			}
+		}
+
+		/**
+		 * Estimate the time below which this ratio of calls are.
+		 */
+		long percentile(double ratio) {
+			long calls = 0;
+
+			for (int i = 0; i < BUCKETS; i++) {
+				calls += buckets.get(i);
+			}
+
+			long target = (long) Math.ceil(ratio * calls);
+			long cumulative = 0;
+
+			for (int i = 0; i < BUCKETS; i++) {
+				cumulative += buckets.get(i);
+
+				if (cumulative >= target && cumulative > 0) {
+					return Math.min(upperBound(i), max.get());
 				}
-			} catch (DatabaseException e) {
-				log.error(e.getMessage());
+			}
+
+			return 0;
+		}
+
+		ProfilingStats toProfilingStats() {
+			long calls = count.sum();
+			ProfilingStats ps = new ProfilingStats();
+			ps.setClazz(clazz);
+			ps.setMethod(method);
+			ps.setExecutionCount(calls);
+			ps.setErrorCount(errors.sum());
+			ps.setTotalTime(total.sum());
+			ps.setMaxTime(calls == 0 ? 0 : max.get());
+			ps.setMinTime(calls == 0 ? 0 : min.get());
+			ps.setAvgTime(calls == 0 ? 0 : Math.round((double) total.sum() / calls));
+			ps.setP50Time(percentile(0.5));
+			ps.setP90Time(percentile(0.9));
+			ps.setP99Time(percentile(0.99));
+			return ps;
+		}
+
+		/**
+		 * Bucket of a time: values below 4 have their own bucket, and every power of two above is split in four.
+		 */
+		static int bucket(long time) {
+			if (time < SUB_BUCKETS) {
+				return (int) Math.max(0, time);
+			} else {
+				int octave = Long.SIZE - 1 - Long.numberOfLeadingZeros(time);
+				int sub = (int) (time >> (octave - 2)) & (SUB_BUCKETS - 1);
+				return SUB_BUCKETS + (octave - 2) * SUB_BUCKETS + sub;
+			}
+		}
+
+		/**
+		 * Higher time of a bucket.
+		 */
+		static long upperBound(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			} else {
+				int octave = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+				int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+				return ((long) (SUB_BUCKETS + sub + 1) << (octave - 2)) - 1;
 			}
 		}
 	}
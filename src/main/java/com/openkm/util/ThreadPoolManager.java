@@ -26,10 +26,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class ThreadPoolManager {
@@ -37,16 +36,17 @@ public class ThreadPoolManager {
 	private static final int POOL_TIMEOUT = 1;
 	private static final int MAX_TIMEOUTS = 10;
 	private static List<ThreadPoolManager> createdManagers = new ArrayList<>();
-	private ExecutorService executor;
+	private ThreadPoolExecutor executor;
 	private String name;
+	private boolean named;
 
 	/**
 	 * Create new thread pool manage.
 	 */
 	public ThreadPoolManager() {
-		this.executor = Executors.newFixedThreadPool(Config.AVAILABLE_PROCESSORS);
+		this.executor = newFixedThreadPool(Config.AVAILABLE_PROCESSORS);
 		this.name = Integer.toHexString(hashCode());
-		createdManagers.add(this);
+		register(this);
 	}
 
 	/**
@@ -55,9 +55,9 @@ public class ThreadPoolManager {
 	 * @param nThreads Number of concurrent threads.
 	 */
 	public ThreadPoolManager(int nThreads) {
-		this.executor = Executors.newFixedThreadPool(nThreads);
+		this.executor = newFixedThreadPool(nThreads);
 		this.name = Integer.toHexString(hashCode());
-		createdManagers.add(this);
+		register(this);
 	}
 
 	/**
@@ -67,9 +67,17 @@ public class ThreadPoolManager {
 	 * @param name     Name of the thread pool.
 	 */
 	public ThreadPoolManager(int nThreads, String name) {
-		this.executor = Executors.newFixedThreadPool(nThreads);
+		this.executor = newFixedThreadPool(nThreads);
 		this.name = name;
-		createdManagers.add(this);
+		this.named = true;
+		register(this);
+	}
+
+	/**
+	 * Same as Executors.newFixedThreadPool, but keeping the pool type so its usage can be queried.
+	 */
+	private static ThreadPoolExecutor newFixedThreadPool(int nThreads) {
+		return new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
 	}
 
 	/**
@@ -115,7 +123,7 @@ public class ThreadPoolManager {
 			log.warn("### {}: Exception awaiting for pool tasks termination: {} ###", name, e.getMessage());
 		}
 
-		createdManagers.remove(this);
+		unregister(this);
 		log.info("### {}: All threads have finished ###", name);
 	}
 
@@ -131,12 +139,71 @@ public class ThreadPoolManager {
 	 *
 	 * @param now If the shutdown should be right now or can wait until all thread have finished.
 	 */
-	public static synchronized void shutdownAll(boolean now) {
-		for (Iterator<ThreadPoolManager> it = createdManagers.iterator(); it.hasNext(); ) {
-			ThreadPoolManager tpm = it.next();
+	public static void shutdownAll(boolean now) {
+		// Each manager removes itself from the list on shutdown
+		for (ThreadPoolManager tpm : getManagers()) {
 			tpm.shutdown(now);
-			it.remove();
 			log.info("{}: Removed from list", tpm.name);
 		}
 	}
+
+	/**
+	 * Keep track of a created pool manager.
+	 */
+	private static synchronized void register(ThreadPoolManager tpm) {
+		createdManagers.add(tpm);
+	}
+
+	/**
+	 * Forget a pool manager which has been shutdown.
+	 */
+	private static synchronized void unregister(ThreadPoolManager tpm) {
+		createdManagers.remove(tpm);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Check if the pool was given a name, otherwise its name is only an instance identifier.
+	 */
+	public boolean isNamed() {
+		return named;
+	}
+
+	/**
+	 * Number of threads of the pool.
+	 */
+	public int getPoolSize() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Approximate number of threads which are running a task.
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Number of tasks waiting for a free thread.
+	 */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Approximate number of tasks which have finished.
+	 */
+	public long getCompletedTaskCount() {
+		return executor.getCompletedTaskCount();
+	}
+
+	/**
+	 * Get the pool managers which have not been shutdown.
+	 */
+	public static synchronized List<ThreadPoolManager> getManagers() {
+		return new ArrayList<>(createdManagers);
+	}
 }
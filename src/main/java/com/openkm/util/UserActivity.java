@@ -21,18 +21,19 @@
 
 package com.openkm.util;
 
+import com.openkm.bean.Repository;
 import com.openkm.core.Config;
-import com.openkm.core.DatabaseException;
-import com.openkm.dao.ActivityDAO;
-import com.openkm.dao.DashboardActivityDAO;
 import com.openkm.dao.bean.Activity;
-import com.openkm.dao.bean.DashboardActivity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  *
@@ -41,6 +42,9 @@ import java.util.List;
 public class UserActivity {
 	private static Logger log = LoggerFactory.getLogger(UserActivity.class);
 	private static List<String> dashboardActions = new ArrayList<>();
+	public static final String[] DASHBOARD_STATS_ACTIONS = new String[]{"GET_DOCUMENT_CONTENT", "CHECKIN_DOCUMENT"};
+	public static final String DASHBOARD_STATS_PATH = "/" + Repository.ROOT + "/";
+	private static volatile ActionFilter actionFilter = null;
 
 	static {
 		dashboardActions.add("CREATE_DOCUMENT");
@@ -60,39 +64,82 @@ public class UserActivity {
 	 * @param params Other activity related parameters.
 	 */
 	public static void log(String user, String action, String item, String path, String params) {
-		try {
-			Activity act = new Activity();
-			act.setDate(Calendar.getInstance());
-			act.setUser(user);
-			act.setAction(action);
-			act.setItem(item);
-			act.setPath(path);
-			act.setParams(params);
-
-			if (log.isDebugEnabled()) {
-				log.debug(act.toString());
+		Activity act = new Activity();
+		act.setDate(Calendar.getInstance());
+		act.setUser(user);
+		act.setAction(action);
+		act.setItem(item);
+		act.setPath(path);
+		act.setParams(params);
+
+		if (log.isDebugEnabled()) {
+			log.debug(act.toString());
+		}
+
+		// Only log activity if match pattern
+		boolean logged = getFilter().matches(action);
+
+		// Dashboard hack
+		boolean dashboard = dashboardActions.contains(action);
+
+		// Top nodes counters
+		boolean stats = path != null && path.startsWith(DASHBOARD_STATS_PATH) && Arrays.asList(DASHBOARD_STATS_ACTIONS).contains(action);
+
+		if (logged || dashboard || stats) {
+			UserActivityAppender.append(act, logged, dashboard, stats);
+		}
+	}
+
+	/**
+	 * Get action filter, compiled again when the configured actions change.
+	 */
+	private static ActionFilter getFilter() {
+		ActionFilter filter = actionFilter;
+
+		if (filter == null || filter.actions != Config.ACTIVITY_LOG_ACTIONS) {
+			filter = new ActionFilter(Config.ACTIVITY_LOG_ACTIONS);
+			actionFilter = filter;
+		}
+
+		return filter;
+	}
+
+	/**
+	 * Precompiled activity log action patterns.
+	 */
+	private static class ActionFilter {
+		private final List<String> actions;
+		private final List<Pattern> patterns = new ArrayList<>();
+		private final Map<String, Boolean> matches = new ConcurrentHashMap<>();
+
+		ActionFilter(List<String> actions) {
+			this.actions = actions;
+
+			for (String actPattern : actions) {
+				patterns.add(Pattern.compile(actPattern));
 			}
+		}
+
+		/**
+		 * Check if an action match any pattern.
+		 */
+		boolean matches(String action) {
+			Boolean match = matches.get(action);
 
-			// Only log activity if match pattern
-			for (String actPattern : Config.ACTIVITY_LOG_ACTIONS) {
-				if (action.matches(actPattern)) {
-					ActivityDAO.create(act);
-					break;
+			if (match == null) {
+				match = false;
+
+				for (Pattern pattern : patterns) {
+					if (pattern.matcher(action).matches()) {
+						match = true;
+						break;
+					}
 				}
-			}
 
-			// Dashboard hack
-			if (dashboardActions.contains(action)) {
-				DashboardActivity dashAct = new DashboardActivity();
-				dashAct.setDate(act.getDate());
-				dashAct.setUser(act.getUser());
-				dashAct.setAction(act.getAction());
-				dashAct.setItem(act.getItem());
-				dashAct.setPath(act.getPath());
-				DashboardActivityDAO.create(dashAct);
+				matches.put(action, match);
 			}
-		} catch (DatabaseException e) {
-			log.error(e.getMessage());
+
+			return match;
 		}
 	}
 }
@@ -0,0 +1,327 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.util;
+
+import com.openkm.core.Config;
+import com.openkm.core.DatabaseException;
+import com.openkm.dao.ActivityDAO;
+import com.openkm.dao.DashboardStatsDAO;
+import com.openkm.dao.bean.Activity;
+import com.openkm.dao.bean.DashboardActivity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write user activity out of the request thread. Activities are kept in a bounded
+ * queue and stored in batches when the batch size or the flush interval is reached.
+ * When the queue is full new activities are dropped instead of blocking the user.
+ */
+public class UserActivityAppender {
+	private static Logger log = LoggerFactory.getLogger(UserActivityAppender.class);
+	private static final long SHUTDOWN_WAIT = TimeUnit.SECONDS.toMillis(10);
+	private static final long DROPPED_WARN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+	private static final AtomicLong written = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final AtomicLong failed = new AtomicLong();
+	private static final AtomicLong failedStats = new AtomicLong();
+	private static volatile BlockingQueue<Entry> queue = null;
+	private static volatile Thread writer = null;
+	private static volatile boolean running = false;
+	private static volatile boolean stopped = false;
+	private static volatile long lastDroppedWarn = 0;
+
+	private UserActivityAppender() {
+	}
+
+	/**
+	 * Queue an activity.
+	 *
+	 * @param activity Activity to log.
+	 * @param logged If should be stored in the activity log.
+	 * @param dashboard If should be stored in the dashboard activity.
+	 * @param stats If should be counted in the dashboard counters.
+	 */
+	public static void append(Activity activity, boolean logged, boolean dashboard, boolean stats) {
+		Entry entry = new Entry(activity, logged, dashboard, stats);
+
+		if (!Config.ACTIVITY_LOG_ASYNC || stopped) {
+			List<Entry> batch = new ArrayList<>(1);
+			batch.add(entry);
+			write(batch);
+		} else {
+			if (writer == null) {
+				start();
+			}
+
+			if (!queue.offer(entry)) {
+				dropped.incrementAndGet();
+				long now = System.currentTimeMillis();
+
+				if (now - lastDroppedWarn > DROPPED_WARN_INTERVAL) {
+					lastDroppedWarn = now;
+					log.warn("Activity log queue full, {} activities dropped", dropped.get());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Start the writer thread.
+	 */
+	private static synchronized void start() {
+		if (writer == null && !stopped) {
+			log.info("Starting activity log writer with queue size {}", Config.ACTIVITY_LOG_QUEUE_SIZE);
+			queue = new ArrayBlockingQueue<>(Math.max(1, Config.ACTIVITY_LOG_QUEUE_SIZE));
+			running = true;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					writeLoop();
+				}
+			}, "UserActivityAppender");
+			thread.setDaemon(true);
+			thread.start();
+			writer = thread;
+		}
+	}
+
+	/**
+	 * Stop the writer thread once queued activities are written. Activities logged
+	 * afterwards are written synchronously.
+	 */
+	public static synchronized void shutdown() {
+		stopped = true;
+
+		if (writer != null) {
+			running = false;
+
+			try {
+				writer.join(SHUTDOWN_WAIT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			if (writer.isAlive()) {
+				log.warn("Activity log writer not finished, {} activities pending", queue.size());
+			}
+
+			writer = null;
+		}
+
+		log.info("Activity log writer stopped: {} written, {} dropped, {} failed, {} counters failed", written.get(), dropped.get(),
+				failed.get(), failedStats.get());
+	}
+
+	/**
+	 * Take queued activities and write them in batches.
+	 */
+	private static void writeLoop() {
+		int batchSize = Math.max(1, Config.ACTIVITY_LOG_BATCH_SIZE);
+		List<Entry> batch = new ArrayList<>(batchSize);
+		long lastFlush = System.currentTimeMillis();
+
+		while (running || !queue.isEmpty()) {
+			try {
+				Entry entry = queue.poll(Config.ACTIVITY_LOG_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+
+				if (entry != null) {
+					batch.add(entry);
+					queue.drainTo(batch, batchSize - batch.size());
+				}
+
+				if (batch.size() >= batchSize || (!batch.isEmpty() &&
+						(entry == null || !running || System.currentTimeMillis() - lastFlush >= Config.ACTIVITY_LOG_FLUSH_INTERVAL))) {
+					write(batch);
+					batch.clear();
+					lastFlush = System.currentTimeMillis();
+				}
+			} catch (InterruptedException e) {
+				running = false;
+			} catch (Throwable t) {
+				log.error("Error in activity log writer: {}", t.getMessage(), t);
+			}
+		}
+
+		if (!batch.isEmpty()) {
+			write(batch);
+		}
+	}
+
+	/**
+	 * Store a batch of activities. When the batch fails the activities are stored one by one,
+	 * so a single bad row does not lose the whole batch. Dashboard counters are updated apart
+	 * and their failures are counted on their own.
+	 */
+	private static void write(List<Entry> batch) {
+		List<Activity> activities = new ArrayList<>(batch.size());
+		List<DashboardActivity> dashActivities = new ArrayList<>();
+		Map<String, Entry> counters = new LinkedHashMap<>();
+		Map<String, Long> times = new LinkedHashMap<>();
+
+		for (Entry entry : batch) {
+			Activity act = entry.activity;
+
+			if (entry.logged) {
+				activities.add(act);
+			}
+
+			if (entry.dashboard) {
+				dashActivities.add(toDashboardActivity(act));
+			}
+
+			if (entry.stats) {
+				// Same node and action counted once per batch
+				String key = act.getAction() + ":" + act.getItem() + ":" + DashboardStatsDAO.getDay(act.getDate()).getTimeInMillis();
+				Long count = times.get(key);
+				times.put(key, count == null ? 1 : count + 1);
+				counters.put(key, entry);
+			}
+		}
+
+		try {
+			if (!activities.isEmpty() || !dashActivities.isEmpty()) {
+				ActivityDAO.create(activities, dashActivities);
+			}
+
+			written.addAndGet(batch.size());
+		} catch (DatabaseException e) {
+			log.warn("Error writing {} activities, writing them one by one: {}", batch.size(), e.getMessage());
+
+			for (Entry entry : batch) {
+				write(entry);
+			}
+		}
+
+		for (Map.Entry<String, Entry> counter : counters.entrySet()) {
+			Activity act = counter.getValue().activity;
+
+			try {
+				DashboardStatsDAO.increment(act.getAction(), act.getItem(), act.getDate(), times.get(counter.getKey()));
+			} catch (DatabaseException e) {
+				failedStats.incrementAndGet();
+				log.error("Error counting activity {} on {}: {}", act.getAction(), act.getItem(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Store a single activity.
+	 */
+	private static void write(Entry entry) {
+		List<Activity> activities = new ArrayList<>(1);
+		List<DashboardActivity> dashActivities = new ArrayList<>(1);
+
+		if (entry.logged) {
+			activities.add(entry.activity);
+		}
+
+		if (entry.dashboard) {
+			dashActivities.add(toDashboardActivity(entry.activity));
+		}
+
+		try {
+			if (!activities.isEmpty() || !dashActivities.isEmpty()) {
+				ActivityDAO.create(activities, dashActivities);
+			}
+
+			written.incrementAndGet();
+		} catch (DatabaseException e) {
+			failed.incrementAndGet();
+			log.error("Error writing activity {} on {}: {}", entry.activity.getAction(), entry.activity.getItem(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Copy an activity for the dashboard.
+	 */
+	private static DashboardActivity toDashboardActivity(Activity act) {
+		DashboardActivity dashAct = new DashboardActivity();
+		dashAct.setDate(act.getDate());
+		dashAct.setUser(act.getUser());
+		dashAct.setAction(act.getAction());
+		dashAct.setItem(act.getItem());
+		dashAct.setPath(act.getPath());
+		return dashAct;
+	}
+
+	/**
+	 * Activities waiting to be written.
+	 */
+	public static int getQueued() {
+		BlockingQueue<Entry> q = queue;
+		return q == null ? 0 : q.size();
+	}
+
+	/**
+	 * Activities written since startup.
+	 */
+	public static long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * Activities dropped because the queue was full.
+	 */
+	public static long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Activities lost because of database errors.
+	 */
+	public static long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Dashboard counter updates lost because of database errors.
+	 */
+	public static long getFailedStats() {
+		return failedStats.get();
+	}
+
+	/**
+	 * Queued activity.
+	 */
+	private static class Entry {
+		private final Activity activity;
+		private final boolean logged;
+		private final boolean dashboard;
+		private final boolean stats;
+
+		Entry(Activity activity, boolean logged, boolean dashboard, boolean stats) {
+			this.activity = activity;
+			this.logged = logged;
+			this.dashboard = dashboard;
+			this.stats = stats;
+		}
+	}
+}
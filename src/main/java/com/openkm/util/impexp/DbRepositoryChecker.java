@@ -178,14 +178,11 @@ public class DbRepositoryChecker {
 		try {
 			String docUuid = NodeBaseDAO.getInstance().getUuidFromPath(docPath);
 
-			if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND) && fast) {
+			if (fast) {
 				NodeDocumentVersion nDocVer = NodeDocumentVersionDAO.getInstance().findCurrentVersion(docUuid);
-				File dsDocVerFile = FsDataStore.resolveFile(nDocVer.getUuid());
 
-				if (!dsDocVerFile.exists()) {
-					throw new IOException("File does not exists: " + dsDocVerFile);
-				} else if (!dsDocVerFile.canRead()) {
-					throw new IOException("Can't read file: " + dsDocVerFile);
+				if (!FsDataStore.exists(nDocVer)) {
+					throw new IOException("Content does not exists: " + FsDataStore.getKey(nDocVer));
 				}
 			} else {
 				fosTmp = new FileOutputStream(fsTmp);
@@ -207,14 +204,11 @@ public class DbRepositoryChecker {
 
 				for (Version ver : dm.getVersionHistory(token, docPath)) {
 					if (!curVerName.equals(ver.getName())) {
-						if (FsDataStore.DATASTORE_BACKEND_FS.equals(Config.REPOSITORY_DATASTORE_BACKEND) && fast) {
+						if (fast) {
 							NodeDocumentVersion nDocVer = NodeDocumentVersionDAO.getInstance().findVersion(docUuid, ver.getName());
-							File dsDocVerFile = FsDataStore.resolveFile(nDocVer.getUuid());
 
-							if (!dsDocVerFile.exists()) {
-								throw new IOException("File does not exists: " + dsDocVerFile + ", version: " + ver.getName());
-							} else if (!dsDocVerFile.canRead()) {
-								throw new IOException("Can't read file: " + dsDocVerFile + ", version: " + ver.getName());
+							if (!FsDataStore.exists(nDocVer)) {
+								throw new IOException("Content does not exists: " + FsDataStore.getKey(nDocVer) + ", version: " + ver.getName());
 							}
 						} else {
 							is = dm.getContentByVersion(token, docPath, ver.getName());
@@ -29,6 +29,7 @@ import com.openkm.core.*;
 import com.openkm.dao.HibernateUtil;
 import com.openkm.dao.NodeBaseDAO;
 import com.openkm.dao.NodeDocumentVersionDAO;
+import com.openkm.dao.NodeTreeDAO;
 import com.openkm.dao.bean.*;
 import com.openkm.module.db.stuff.FsDataStore;
 import com.openkm.spring.PrincipalUtils;
@@ -204,11 +205,12 @@ public class DbMetadataAdapter extends MetadataAdapter {
 			}
 
 			// Persist file in datastore
-			FsDataStore.persist(nDocVer, is);
+			FsDataStore.persist(session, nDocVer, is);
 
 			// Persist
 			session.save(nDoc);
 			session.save(nDocVer);
+			NodeTreeDAO.getInstance().insert(session, nDoc);
 
 			// Notes
 			if (!dmd.getNotes().isEmpty()) {
@@ -228,7 +230,7 @@ public class DbMetadataAdapter extends MetadataAdapter {
 			HibernateUtil.rollback(tx);
 
 			// What happen when create fails? This datastore file should be deleted!
-			FsDataStore.delete(nDocVer.getUuid());
+			FsDataStore.discard(nDocVer);
 
 			throw new DatabaseException(e.getMessage(), e);
 		} catch (PathNotFoundException e) {
@@ -308,7 +310,7 @@ public class DbMetadataAdapter extends MetadataAdapter {
 			}
 
 			// Persist file in datastore
-			FsDataStore.persist(nDocVer, is);
+			FsDataStore.persist(session, nDocVer, is);
 
 			// Persist
 			session.save(nDocVer);
@@ -319,7 +321,7 @@ public class DbMetadataAdapter extends MetadataAdapter {
 			HibernateUtil.rollback(tx);
 
 			// What happen when create fails? This datastore file should be deleted!
-			FsDataStore.delete(nDocVer.getUuid());
+			FsDataStore.discard(nDocVer);
 
 			throw new DatabaseException(e.getMessage(), e);
 		} catch (PathNotFoundException e) {
@@ -415,6 +417,7 @@ public class DbMetadataAdapter extends MetadataAdapter {
 
 			// Persist
 			session.save(nFld);
+			NodeTreeDAO.getInstance().insert(session, nFld);
 
 			// Notes
 			if (!fmd.getNotes().isEmpty()) {
@@ -540,6 +543,7 @@ public class DbMetadataAdapter extends MetadataAdapter {
 
 			// Persist
 			session.save(nMail);
+			NodeTreeDAO.getInstance().insert(session, nMail);
 
 			// Notes
 			if (!mmd.getNotes().isEmpty()) {
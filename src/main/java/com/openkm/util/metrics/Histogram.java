@@ -0,0 +1,126 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.util.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, updated without locks.
+ *
+ * @see RepositoryMetrics
+ */
+public class Histogram {
+	private static final double[] DEFAULT_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5,
+			5, 10};
+	private final String name;
+	private final String help;
+	private final double[] buckets;
+	private final long[] bounds;
+	private final LongAdder[] counts;
+	private final LongAdder sum = new LongAdder();
+
+	public Histogram(String name, String help) {
+		this(name, help, DEFAULT_BUCKETS);
+	}
+
+	/**
+	 * @param buckets Upper bounds of the buckets in seconds, in ascending order.
+	 */
+	public Histogram(String name, String help, double[] buckets) {
+		this.name = name;
+		this.help = help;
+		this.buckets = buckets.clone();
+		this.bounds = new long[buckets.length];
+		this.counts = new LongAdder[buckets.length + 1];
+
+		for (int i = 0; i < buckets.length; i++) {
+			bounds[i] = (long) (buckets[i] * TimeUnit.SECONDS.toNanos(1));
+		}
+
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Register an observation.
+	 *
+	 * @param nanos Elapsed time in nanoseconds.
+	 */
+	public void observe(long nanos) {
+		int i = 0;
+
+		while (i < bounds.length && nanos > bounds[i]) {
+			i++;
+		}
+
+		counts[i].increment();
+		sum.add(nanos);
+	}
+
+	/**
+	 * Register an observation.
+	 *
+	 * @param millis Elapsed time in milliseconds.
+	 */
+	public void observeMillis(long millis) {
+		observe(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+
+	/**
+	 * Upper bounds of the buckets in seconds, without the +Inf one.
+	 */
+	public double[] getBuckets() {
+		return buckets.clone();
+	}
+
+	/**
+	 * Cumulative observation count of every bucket. The last one is the +Inf bucket, which is the total count.
+	 */
+	public long[] getCumulativeCounts() {
+		long[] ret = new long[counts.length];
+		long cumulative = 0;
+
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i].sum();
+			ret[i] = cumulative;
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Sum of the observations in seconds.
+	 */
+	public double getSum() {
+		return (double) sum.sum() / TimeUnit.SECONDS.toNanos(1);
+	}
+}
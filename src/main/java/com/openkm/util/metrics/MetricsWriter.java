@@ -0,0 +1,148 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.util.metrics;
+
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Write metrics in the Prometheus text exposition format.
+ *
+ * @see <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Exposition formats</a>
+ */
+public class MetricsWriter {
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+	private final PrintWriter out;
+	private final Set<String> described = new HashSet<>();
+
+	public MetricsWriter(PrintWriter out) {
+		this.out = out;
+	}
+
+	/**
+	 * Write a gauge sample.
+	 *
+	 * @param labels Label names and values, alternated.
+	 */
+	public void gauge(String name, String help, double value, String... labels) {
+		describe(name, help, "gauge");
+		sample(name, value, labels);
+	}
+
+	/**
+	 * Write a counter sample.
+	 *
+	 * @param labels Label names and values, alternated.
+	 */
+	public void counter(String name, String help, double value, String... labels) {
+		describe(name, help, "counter");
+		sample(name, value, labels);
+	}
+
+	/**
+	 * Write a latency histogram.
+	 */
+	public void histogram(Histogram histogram) {
+		String name = histogram.getName();
+		double[] buckets = histogram.getBuckets();
+		long[] counts = histogram.getCumulativeCounts();
+		describe(name, histogram.getHelp(), "histogram");
+
+		for (int i = 0; i < buckets.length; i++) {
+			sample(name + "_bucket", counts[i], "le", format(buckets[i]));
+		}
+
+		sample(name + "_bucket", counts[buckets.length], "le", "+Inf");
+		sample(name + "_sum", histogram.getSum());
+		sample(name + "_count", counts[buckets.length]);
+	}
+
+	/**
+	 * Write the HELP and TYPE lines of a metric, only once.
+	 */
+	public void describe(String name, String help, String type) {
+		if (described.add(name)) {
+			out.print("# HELP ");
+			out.print(name);
+			out.print(' ');
+			out.println(help.replace("\\", "\\\\").replace("\n", "\\n"));
+			out.print("# TYPE ");
+			out.print(name);
+			out.print(' ');
+			out.println(type);
+		}
+	}
+
+	/**
+	 * Write a sample line.
+	 *
+	 * @param labels Label names and values, alternated.
+	 */
+	public void sample(String name, double value, String... labels) {
+		out.print(name);
+
+		if (labels.length > 0) {
+			out.print('{');
+
+			for (int i = 0; i + 1 < labels.length; i += 2) {
+				if (i > 0) {
+					out.print(',');
+				}
+
+				out.print(labels[i]);
+				out.print("=\"");
+				out.print(escape(labels[i + 1]));
+				out.print('"');
+			}
+
+			out.print('}');
+		}
+
+		out.print(' ');
+		out.println(format(value));
+	}
+
+	/**
+	 * Format a sample value, without decimals when it is an integer.
+	 */
+	private static String format(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		} else if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		} else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		} else {
+			return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+		}
+	}
+
+	private static String escape(String value) {
+		if (value == null) {
+			return "";
+		} else {
+			return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		}
+	}
+}
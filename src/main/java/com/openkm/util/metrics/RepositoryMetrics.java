@@ -0,0 +1,51 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the repository hot paths, exposed by the metrics servlet.
+ */
+public class RepositoryMetrics {
+	public static final Histogram DOCUMENT_UPLOAD = new Histogram("okm_document_upload_seconds",
+			"Time to store new document content, on create or checkin");
+	public static final Histogram DOCUMENT_DOWNLOAD = new Histogram("okm_document_download_seconds",
+			"Time to open document content for download");
+	public static final Histogram PATH_RESOLUTION = new Histogram("okm_path_resolution_seconds",
+			"Time to resolve a node path into its UUID");
+	public static final Histogram ACCESS_CHECK = new Histogram("okm_access_check_seconds",
+			"Time to check node permissions, single or batch");
+	public static final Histogram SEARCH = new Histogram("okm_search_seconds", "Time to run a search query");
+	public static final LongAdder UPLOAD_BYTES = new LongAdder();
+	public static final LongAdder ACCESS_DENIED = new LongAdder();
+
+	private RepositoryMetrics() {
+	}
+
+	/**
+	 * All the latency histograms.
+	 */
+	public static Histogram[] getHistograms() {
+		return new Histogram[]{DOCUMENT_UPLOAD, DOCUMENT_DOWNLOAD, PATH_RESOLUTION, ACCESS_CHECK, SEARCH};
+	}
+}
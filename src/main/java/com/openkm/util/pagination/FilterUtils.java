@@ -235,7 +235,7 @@ public class FilterUtils {
 						|| order == GWTPaginated.COL_COLUMN6 || order == GWTPaginated.COL_COLUMN7
 						|| order == GWTPaginated.COL_COLUMN8 || order == GWTPaginated.COL_COLUMN9) {
 					if (obj instanceof NodeFolder) {
-						String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeFolder) obj).getUuid());
+						String path = NodeBaseDAO.getInstance().getPath((NodeFolder) obj);
 
 						if (order == GWTPaginated.COL_COLUMN0) {
 							oto.setFormElement(GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn0()));
@@ -259,7 +259,7 @@ public class FilterUtils {
 							oto.setFormElement(GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn9()));
 						}
 					} else if (obj instanceof NodeDocument) {
-						String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeDocument) obj).getUuid());
+						String path = NodeBaseDAO.getInstance().getPath((NodeDocument) obj);
 
 						if (order == GWTPaginated.COL_COLUMN0) {
 							oto.setFormElement(GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn0()));
@@ -283,7 +283,7 @@ public class FilterUtils {
 							oto.setFormElement(GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn9()));
 						}
 					} else if (obj instanceof NodeMail) {
-						String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeMail) obj).getUuid());
+						String path = NodeBaseDAO.getInstance().getPath((NodeMail) obj);
 
 						if (order == GWTPaginated.COL_COLUMN0) {
 							oto.setFormElement(GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn0()));
@@ -337,7 +337,7 @@ public class FilterUtils {
 							int extraColumn = Integer.parseInt(key);
 
 							if (obj instanceof NodeFolder) {
-								String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeFolder) obj).getUuid());
+								String path = NodeBaseDAO.getInstance().getPath((NodeFolder) obj);
 
 								if (extraColumn == GWTPaginated.COL_COLUMN0) {
 									formElement = GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn0());
@@ -361,7 +361,7 @@ public class FilterUtils {
 									formElement = GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn9());
 								}
 							} else if (obj instanceof NodeDocument) {
-								String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeDocument) obj).getUuid());
+								String path = NodeBaseDAO.getInstance().getPath((NodeDocument) obj);
 
 								if (extraColumn == GWTPaginated.COL_COLUMN0) {
 									formElement = GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn0());
@@ -385,7 +385,7 @@ public class FilterUtils {
 									formElement = GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn9());
 								}
 							} else if (obj instanceof NodeMail) {
-								String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeMail) obj).getUuid());
+								String path = NodeBaseDAO.getInstance().getPath((NodeMail) obj);
 
 								if (extraColumn == GWTPaginated.COL_COLUMN0) {
 									formElement = GWTUtil.getExtraColumn(path, workspace.getProfileFileBrowser().getColumn0());
@@ -484,21 +484,21 @@ public class FilterUtils {
 					// When selectedRowId any filtering, ordering, reverse etc.. value is empty
 					if (selectedRowId != null && !selectedRowId.equals("") && !foundRow) {
 						if (obj instanceof NodeFolder) {
-							String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeFolder) obj).getUuid());
+							String path = NodeBaseDAO.getInstance().getPath((NodeFolder) obj);
 
 							if (path.equals(selectedRowId)) {
 								selectedRow = actualRow;
 								foundRow = true;
 							}
 						} else if (obj instanceof NodeDocument) {
-							String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeDocument) obj).getUuid());
+							String path = NodeBaseDAO.getInstance().getPath((NodeDocument) obj);
 
 							if (path.equals(selectedRowId)) {
 								selectedRow = actualRow;
 								foundRow = true;
 							}
 						} else if (obj instanceof NodeMail) {
-							String path = NodeBaseDAO.getInstance().getPathFromUuid(((NodeMail) obj).getUuid());
+							String path = NodeBaseDAO.getInstance().getPath((NodeMail) obj);
 
 							if (path.equals(selectedRowId)) {
 								selectedRow = actualRow;
@@ -27,6 +27,7 @@ import com.openkm.core.DatabaseException;
 import com.openkm.core.PathNotFoundException;
 import com.openkm.dao.NodeBaseDAO;
 import com.openkm.dao.bean.NodeBase;
+import com.openkm.module.db.stuff.InheritedReadAccess;
 import com.openkm.module.db.stuff.SecurityHelper;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
@@ -46,14 +47,22 @@ public class ChangeSecurityTask implements ProcessInDepthTask {
 
 	@Override
 	public void securityPruneNodeList(List<? extends NodeBase> nodeList) throws DatabaseException {
-		SecurityHelper.pruneNodeList(nodeList);
+		// Inherited read permissions need every descendant to be indexed again
+		if (!InheritedReadAccess.isEnabled()) {
+			SecurityHelper.pruneNodeList(nodeList);
+		}
 	}
 
 	@Override
 	public Object doTask(Session session, NodeBase parentNode, NodeBase node) throws DatabaseException {
 		try {
+			if (InheritedReadAccess.isEnabled()) {
+				InheritedReadAccess.inherit(session, parentNode, node);
+			}
+
 			NodeBaseDAO.getInstance().changeSecurity(session, node, params.getGrantUsers(), params.getRevokeUsers(),
 					params.getGrantRoles(), params.getRevokeRoles(), true);
+			InheritedReadAccess.reindex(session, node);
 		} catch (HibernateException | PathNotFoundException | AccessDeniedException e) {
 			throw new DatabaseException(e.getMessage(), e);
 		}
@@ -27,6 +27,7 @@ import com.openkm.core.DatabaseException;
 import com.openkm.dao.HibernateUtil;
 import com.openkm.dao.NodeBaseDAO;
 import com.openkm.dao.bean.*;
+import com.openkm.module.db.stuff.EffectivePermissionCache;
 import com.openkm.spring.PrincipalUtils;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
@@ -81,10 +82,12 @@ public class PendingTaskProcessor {
 			session.delete(pt);
 
 			HibernateUtil.commit(session.getTransaction());
+			committed(true);
 		} catch (HibernateException e) {
 			HibernateUtil.rollback(session.getTransaction());
 		} catch (InterruptedException e) {
 			HibernateUtil.commit(session.getTransaction());
+			committed(false);
 		} finally {
 			HibernateUtil.close(session);
 		}
@@ -275,12 +278,24 @@ public class PendingTaskProcessor {
 
 			// Commit transaction
 			HibernateUtil.commit(session.getTransaction());
+			committed(false);
 			session.beginTransaction();
 		} catch (HibernateException e) {
 			throw new DatabaseException(e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Discard cached state made stale by the already committed changes.
+	 */
+	private void committed(boolean finished) {
+		if (PendingTask.TASK_CHANGE_SECURITY.equals(pt.getTask())) {
+			EffectivePermissionCache.invalidate();
+		} else if (PendingTask.TASK_UPDATE_PATH.equals(pt.getTask()) && finished) {
+			NodeBaseDAO.getInstance().pathTaskFinished();
+		}
+	}
+
 	/**
 	 * Retrieve status.
 	 */
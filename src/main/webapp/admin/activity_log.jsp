@@ -161,7 +161,10 @@
           </c:forEach>
         </tbody>
       </table>     
-      </div>      
+      </div>
+      <div style="width:95%; margin-left:auto; margin-right:auto; text-align:right;" class="fuzzy">
+        Queued: ${activityQueued} &nbsp; Written: ${activityWritten} &nbsp; Dropped: ${activityDropped} &nbsp; Failed: ${activityFailed} &nbsp; Failed counters: ${activityFailedStats}
+      </div>
     </c:when>
     <c:otherwise>
       <div class="error"><h3>Only admin users allowed</h3></div>
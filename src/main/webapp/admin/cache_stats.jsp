@@ -93,6 +93,7 @@
               <th nowrap="nowrap">Cache name</th>
               <th nowrap="nowrap">Hits</th>
               <th nowrap="nowrap">Misses</th>
+              <th nowrap="nowrap">Hit ratio</th>
               <th nowrap="nowrap">Objects</th>
               <th nowrap="nowrap">Memory hits</th>
               <th nowrap="nowrap">Memory missed</th>
@@ -113,6 +114,7 @@
                 <td>${cst.cache}</td>
                 <td>${cst.cacheHits}</td>
                 <td>${cst.cacheMisses}</td>
+                <td>${cst.hitRatio}</td>
                 <td>${cst.objectCount}</td>
                 <td>${cst.inMemoryHits}</td>
                 <td>${cst.inMemoryMisses}</td>
@@ -84,9 +84,13 @@
               <th nowrap="nowrap">Class</th>
               <th nowrap="nowrap">Method</th>
               <th nowrap="nowrap">Calls</th>
+              <th nowrap="nowrap">Errors</th>
               <th nowrap="nowrap">Max dur.</th>
               <th nowrap="nowrap">Min dur.</th>
               <th nowrap="nowrap">Avg dur.</th>
+              <th nowrap="nowrap">P50 dur.</th>
+              <th nowrap="nowrap">P90 dur.</th>
+              <th nowrap="nowrap">P99 dur.</th>
               <th nowrap="nowrap">Total dur.</th>
               <th nowrap="nowrap">Action</th>
             </tr>
@@ -102,9 +106,13 @@
                 <td>${st.clazz}</td>
                 <td>${st.method}</td>
                 <td>${st.executionCount}</td>
+                <td>${st.errorCount}</td>
                 <td>${st.maxTime}</td>
                 <td>${st.minTime}</td>
                 <td>${st.avgTime}</td>
+                <td>${st.p50Time}</td>
+                <td>${st.p90Time}</td>
+                <td>${st.p99Time}</td>
                 <td>${st.totalTime}</td>
                 <td align="center">
                   <a href="${urlList}">
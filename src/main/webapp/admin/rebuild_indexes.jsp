@@ -26,6 +26,7 @@
           <tr><td>Text extractor</td><td><input name="action" value="textExtractor" type="radio"/></td></tr>
           <tr><td>Lucene indexes</td><td><input name="action" value="luceneIndexes" type="radio"/></td></tr>
           <tr><td>Optimize indexes</td><td><input name="action" value="optimizeIndexes" type="radio"/></td></tr>
+          <tr><td>Node tree</td><td><input name="action" value="nodeTree" type="radio"/></td></tr>
           <tr>
             <td colspan="2" align="right">
               <input type="button" onclick="javascript:window.history.back()" value="Cancel" class="noButton"/>
@@ -1,6 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" %>
 <%@ page import="com.openkm.servlet.admin.BaseServlet" %>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/functions" prefix="fn" %>
 <%@ taglib uri="http://www.openkm.com/tags/utils" prefix="u" %>
 <?xml version="1.0" encoding="UTF-8" ?>
 <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Transitional//EN" "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd">
@@ -67,6 +68,30 @@
         </tbody>
       </table>
       <br/>
+      <c:if test="${!empty waitingWorks}">
+        <table class="results" width="90%">
+          <thead>
+            <tr class="fuzzy">
+              <td colspan="5" style="text-align: center; font-weight: bold; font-size: 14px">
+                Failed Extractions Waiting For Retry
+              </td>
+            </tr>
+            <tr><th>#</th><th>UUID</th><th>Attempts</th><th>Next attempt</th><th>Error</th></tr>
+          </thead>
+          <tbody>
+            <c:forEach var="lease" items="${waitingWorks}" varStatus="row">
+              <tr class="${row.index % 2 == 0 ? 'even' : 'odd'}">
+                <td>${row.index + 1}</td>
+                <td nowrap="nowrap">${lease.document}</td>
+                <td>${lease.attempts}</td>
+                <td nowrap="nowrap"><u:formatDate calendar="${lease.expiration}"/></td>
+                <td>${lease.error}</td>
+              </tr>
+            </c:forEach>
+          </tbody>
+        </table>
+        <br/>
+      </c:if>
       <table id="trick" class="results" width="90%">
         <thead>
           <tr class="fuzzy">
@@ -108,6 +133,67 @@
           </c:if>
         </tbody>
       </table>
+      <c:if test="${indexBatchEnabled}">
+        <br/>
+        <table class="results" width="90%">
+          <thead>
+            <tr class="fuzzy">
+              <td colspan="8" style="text-align: center; font-weight: bold; font-size: 14px">
+                Index Queue
+              </td>
+            </tr>
+            <tr>
+              <th>Queued transactions</th><th>Commit size</th><th>Refresh interval (ms)</th><th>Commits</th>
+              <th>Indexed changes</th><th>Failed changes</th><th>Last commit</th><th>Last commit time (ms)</th>
+            </tr>
+          </thead>
+          <tbody>
+            <tr class="even">
+              <td>${indexQueueDepth} / ${indexQueueSize}</td>
+              <td>${indexCommitSize}</td>
+              <td>${indexRefreshInterval}</td>
+              <td>${indexCommits}</td>
+              <td>${indexWorks}</td>
+              <td title="${fn:escapeXml(indexLastError)}">${indexFailedWorks}</td>
+              <td nowrap="nowrap">
+                <c:if test="${indexLastCommit != null}">
+                  <u:formatDate calendar="${indexLastCommit}"/> (${indexLastCommitSize} changes)
+                </c:if>
+              </td>
+              <td>${indexLastCommitTime}</td>
+            </tr>
+          </tbody>
+        </table>
+      </c:if>
+      <c:if test="${!empty extractorMetrics}">
+        <br/>
+        <table class="results" width="90%">
+          <thead>
+            <tr class="fuzzy">
+              <td colspan="7" style="text-align: center; font-weight: bold; font-size: 14px">
+                Text Extractors
+              </td>
+            </tr>
+            <tr>
+              <th>Extractor</th><th>Extractions</th><th>Failures</th><th>Timeouts</th>
+              <th>Average time (ms)</th><th>Read</th><th>Characters</th>
+            </tr>
+          </thead>
+          <tbody>
+            <c:forEach var="em" items="${extractorMetrics}" varStatus="row">
+              <tr class="${row.index % 2 == 0 ? 'even' : 'odd'}">
+                <td>${em.extractor}</td>
+                <td>${em.extractions}</td>
+                <td>${em.failures}</td>
+                <td>${em.timeouts}</td>
+                <td>${em.averageTime}</td>
+                <td><u:formatSize size="${em.bytes}"/></td>
+                <td>${em.chars}</td>
+              </tr>
+            </c:forEach>
+          </tbody>
+        </table>
+      </c:if>
     </c:when>
     <c:otherwise>
       <div class="error"><h3>Only admin users allowed</h3></div>
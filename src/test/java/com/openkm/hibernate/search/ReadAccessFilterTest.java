@@ -0,0 +1,228 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.hibernate.search;
+
+import com.openkm.core.Config;
+import com.openkm.dao.SearchDAO;
+import com.openkm.module.db.stuff.ReadAccessFilterFactory;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Test the cached read access filter, and compare the Lucene search throughput with and without it.
+ * The throughput benchmark is only run when enabled with -Dopenkm.benchmark=true, and its index
+ * size can be changed with -Dbenchmark.docs=5000000
+ */
+public class ReadAccessFilterTest extends TestCase {
+	private static Logger log = LoggerFactory.getLogger(ReadAccessFilterTest.class);
+	private static final String BENCHMARK_PROPERTY = "openkm.benchmark";
+	private static final boolean BENCHMARK = Boolean.getBoolean(BENCHMARK_PROPERTY);
+	private static final int DOCS = Integer.getInteger("benchmark.docs", BENCHMARK ? 200000 : 5000);
+	private static final int QUERIES = Integer.getInteger("benchmark.queries", 200);
+	private static final int USERS = 100;
+	private static final int ROLES = 20;
+	private static final String[] WORDS = {"openkm", "repository", "document", "folder", "version", "invoice", "contract",
+			"report", "budget", "meeting", "project", "customer"};
+	private static final String USER = "user7";
+	private static final List<String> USER_ROLES = Arrays.asList("ROLE_USER", "role3", "role11");
+	private Directory directory;
+	private IndexReader reader;
+	private IndexSearcher searcher;
+	private String evaluation;
+	private int cacheSize;
+
+	public ReadAccessFilterTest(String name) {
+		super(name);
+	}
+
+	public static void main(String[] args) throws Exception {
+		ReadAccessFilterTest test = new ReadAccessFilterTest("main");
+		test.setUp();
+		test.testSameResults();
+		test.benchmark();
+		test.tearDown();
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		log.debug("setUp()");
+		evaluation = Config.SECURITY_SEARCH_EVALUATION;
+		cacheSize = Config.SECURITY_SEARCH_FILTER_CACHE_SIZE;
+		Config.SECURITY_SEARCH_EVALUATION = SearchDAO.SEARCH_LUCENE;
+		ReadAccessFilterFactory.invalidate();
+		Random rnd = new Random(0);
+		directory = new RAMDirectory();
+		IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_31, new WhitespaceAnalyzer(Version.LUCENE_31));
+		IndexWriter writer = new IndexWriter(directory, iwc);
+		long begin = System.currentTimeMillis();
+
+		for (int i = 0; i < DOCS; i++) {
+			Document doc = new Document();
+			doc.add(new Field("text", WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)], Field.Store.NO,
+					Field.Index.ANALYZED));
+			doc.add(new Field("userPermission", "user" + rnd.nextInt(USERS), Field.Store.NO, Field.Index.NOT_ANALYZED));
+			doc.add(new Field("rolePermission", "role" + rnd.nextInt(ROLES), Field.Store.NO, Field.Index.NOT_ANALYZED));
+
+			if (rnd.nextInt(10) == 0) {
+				doc.add(new Field("rolePermission", "ROLE_USER", Field.Store.NO, Field.Index.NOT_ANALYZED));
+			}
+
+			writer.addDocument(doc);
+		}
+
+		writer.close();
+		reader = IndexReader.open(directory, true);
+		searcher = new IndexSearcher(reader);
+		log.info("Indexed {} documents in {} ms", DOCS, System.currentTimeMillis() - begin);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		log.debug("tearDown()");
+		searcher.close();
+		reader.close();
+		directory.close();
+		ReadAccessFilterFactory.invalidate();
+		Config.SECURITY_SEARCH_EVALUATION = evaluation;
+		Config.SECURITY_SEARCH_FILTER_CACHE_SIZE = cacheSize;
+	}
+
+	public void testCachedFilter() throws IOException {
+		log.debug("testCachedFilter()");
+		Config.SECURITY_SEARCH_FILTER_CACHE_SIZE = 10;
+		Filter filter = ReadAccessFilterFactory.getCachedFilter(USER, roles("ROLE_USER", "role3", "role11"));
+
+		// Same principal set, no matter the role order
+		assertSame(filter, ReadAccessFilterFactory.getCachedFilter(USER, roles("role11", "ROLE_USER", "role3")));
+		assertNotSame(filter, ReadAccessFilterFactory.getCachedFilter("user8", roles("ROLE_USER", "role3", "role11")));
+		assertNotSame(filter, ReadAccessFilterFactory.getCachedFilter(USER, roles("ROLE_USER")));
+
+		TermQuery query = new TermQuery(new Term("text", WORDS[0]));
+		assertEquals(searcher.search(query, ReadAccessFilterFactory.createFilter(USER, USER_ROLES), 10).totalHits,
+				searcher.search(query, filter, 10).totalHits);
+	}
+
+	public void testCachedFilterEviction() {
+		log.debug("testCachedFilterEviction()");
+		Config.SECURITY_SEARCH_FILTER_CACHE_SIZE = 2;
+		Filter first = ReadAccessFilterFactory.getCachedFilter("user1", roles("ROLE_USER"));
+		Filter second = ReadAccessFilterFactory.getCachedFilter("user2", roles("ROLE_USER"));
+
+		// Least recently used is the second one
+		assertSame(first, ReadAccessFilterFactory.getCachedFilter("user1", roles("ROLE_USER")));
+		ReadAccessFilterFactory.getCachedFilter("user3", roles("ROLE_USER"));
+
+		assertSame(first, ReadAccessFilterFactory.getCachedFilter("user1", roles("ROLE_USER")));
+		assertNotSame(second, ReadAccessFilterFactory.getCachedFilter("user2", roles("ROLE_USER")));
+	}
+
+	public void testCachedFilterInvalidate() {
+		log.debug("testCachedFilterInvalidate()");
+		Config.SECURITY_SEARCH_FILTER_CACHE_SIZE = 10;
+		Filter filter = ReadAccessFilterFactory.getCachedFilter(USER, roles("ROLE_USER"));
+		ReadAccessFilterFactory.invalidate();
+		assertNotSame(filter, ReadAccessFilterFactory.getCachedFilter(USER, roles("ROLE_USER")));
+	}
+
+	public void testSameResults() throws IOException {
+		log.debug("testSameResults()");
+		Filter cached = new CachingWrapperFilter(ReadAccessFilterFactory.createFilter(USER, USER_ROLES));
+
+		for (String word : WORDS) {
+			TermQuery query = new TermQuery(new Term("text", word));
+			TopDocs uncachedDocs = searcher.search(query, ReadAccessFilterFactory.createFilter(USER, USER_ROLES), 10);
+			TopDocs cachedDocs = searcher.search(query, cached, 10);
+			TopDocs cachedAgainDocs = searcher.search(query, cached, 10);
+			assertEquals(uncachedDocs.totalHits, cachedDocs.totalHits);
+			assertEquals(uncachedDocs.totalHits, cachedAgainDocs.totalHits);
+			assertTrue(cachedDocs.totalHits > 0);
+		}
+	}
+
+	public void testBenchmark() throws IOException {
+		log.debug("testBenchmark()");
+
+		if (BENCHMARK) {
+			benchmark();
+		} else {
+			log.info("Benchmark skipped, enable with -D{}=true", BENCHMARK_PROPERTY);
+		}
+	}
+
+	private void benchmark() throws IOException {
+		Filter cached = new CachingWrapperFilter(ReadAccessFilterFactory.createFilter(USER, USER_ROLES));
+
+		// Warm up
+		search(null, QUERIES / 10);
+		search(cached, QUERIES / 10);
+
+		long begin = System.nanoTime();
+		long uncachedHits = search(null, QUERIES);
+		long uncached = System.nanoTime() - begin;
+		begin = System.nanoTime();
+		long cachedHits = search(cached, QUERIES);
+		long cachedTime = System.nanoTime() - begin;
+
+		assertEquals(uncachedHits, cachedHits);
+		log.info("Docs: {}, queries: {}", DOCS, QUERIES);
+		log.info("Uncached filter: {} queries/s", String.format("%.1f", QUERIES * 1e9 / uncached));
+		log.info("Cached filter: {} queries/s", String.format("%.1f", QUERIES * 1e9 / cachedTime));
+	}
+
+	private static Set<String> roles(String... roles) {
+		return new HashSet<>(Arrays.asList(roles));
+	}
+
+	/**
+	 * Run several queries, building the filter on every query when no cached one is given.
+	 */
+	private long search(Filter cached, int queries) throws IOException {
+		long hits = 0;
+
+		for (int i = 0; i < queries; i++) {
+			TermQuery query = new TermQuery(new Term("text", WORDS[i % WORDS.length]));
+			Filter filter = cached != null ? cached : ReadAccessFilterFactory.createFilter(USER, USER_ROLES);
+			hits += searcher.search(query, filter, 10).totalHits;
+		}
+
+		return hits;
+	}
+}
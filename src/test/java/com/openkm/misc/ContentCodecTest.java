@@ -0,0 +1,173 @@
+/**
+ * OpenKM, Open Document Management System (http://www.openkm.com)
+ * Copyright (c) Paco Avila & Josep Llort
+ * <p>
+ * No bytes were intentionally harmed during the development of this application.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.openkm.misc;
+
+import com.openkm.datastore.ContentCodec;
+import junit.framework.TestCase;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test datastore compression and measure its throughput. The throughput benchmark is only run
+ * when enabled with -Dopenkm.benchmark=true
+ */
+public class ContentCodecTest extends TestCase {
+	private static Logger log = LoggerFactory.getLogger(ContentCodecTest.class);
+	private static final String BENCHMARK_PROPERTY = "openkm.benchmark";
+	private static final String[] COMPRESSIONS = {ContentCodec.COMPRESSION_NONE, ContentCodec.COMPRESSION_DEFLATE};
+	private static final int SIZE = 8 * 1024 * 1024;
+	private byte[] text;
+	private byte[] binary;
+
+	public ContentCodecTest(String name) {
+		super(name);
+	}
+
+	public static void main(String[] args) throws Exception {
+		ContentCodecTest test = new ContentCodecTest("main");
+		test.setUp();
+		test.testRoundTrip();
+		test.testUncompressed();
+		test.testUncompressedHeader();
+		test.testWrongCompression();
+		test.benchmark();
+		test.tearDown();
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		log.debug("setUp()");
+		Random rnd = new Random(0);
+		String[] words = {"<document>", "</document>", "openkm", "repository", "version", "node", "folder", "the",
+				"of", "and", "\n", "<property name=\"okp:form.text\">", "</property>", "1234", "content"};
+		StringBuilder sb = new StringBuilder(SIZE);
+
+		while (sb.length() < SIZE) {
+			sb.append(words[rnd.nextInt(words.length)]).append(' ');
+		}
+
+		text = sb.substring(0, SIZE).getBytes("UTF-8");
+		binary = new byte[SIZE];
+		rnd.nextBytes(binary);
+	}
+
+	public void testRoundTrip() throws IOException {
+		log.debug("testRoundTrip()");
+
+		for (String compression : COMPRESSIONS) {
+			for (byte[] data : new byte[][]{text, binary, new byte[0], new byte[]{'O', 'K'}}) {
+				// Compress while writing
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				OutputStream os = ContentCodec.encode(baos, compression);
+				os.write(data);
+				os.close();
+				assertTrue(Arrays.equals(data, decode(baos.toByteArray(), compression)));
+
+				// Compress while reading
+				byte[] encoded = IOUtils.toByteArray(ContentCodec.encode(new ByteArrayInputStream(data), compression));
+				assertTrue(Arrays.equals(data, decode(encoded, compression)));
+			}
+		}
+	}
+
+	public void testUncompressed() throws IOException {
+		log.debug("testUncompressed()");
+		byte[] data = "OKMZ is not a compression header".getBytes("UTF-8");
+		assertTrue(Arrays.equals(data, decode(data, ContentCodec.COMPRESSION_NONE)));
+		assertTrue(Arrays.equals(data, decode(data, null)));
+	}
+
+	public void testUncompressedHeader() throws IOException {
+		log.debug("testUncompressedHeader()");
+
+		// Raw content which looks like a deflate header must be kept as is
+		byte[] data = {'O', 'K', 'M', 'Z', 1, 'r', 'a', 'w'};
+		assertTrue(Arrays.equals(data, decode(data, ContentCodec.COMPRESSION_NONE)));
+		assertTrue(Arrays.equals(data, decode(data, null)));
+	}
+
+	public void testWrongCompression() throws IOException {
+		log.debug("testWrongCompression()");
+		byte[] data = "Not compressed at all".getBytes("UTF-8");
+
+		try {
+			decode(data, ContentCodec.COMPRESSION_DEFLATE);
+			fail("Raw content decoded as compressed");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	public void testBenchmark() throws IOException {
+		log.debug("testBenchmark()");
+
+		if (Boolean.getBoolean(BENCHMARK_PROPERTY)) {
+			benchmark();
+		} else {
+			log.info("Benchmark skipped, enable with -D{}=true", BENCHMARK_PROPERTY);
+		}
+	}
+
+	private void benchmark() throws IOException {
+
+		for (String compression : COMPRESSIONS) {
+			for (byte[] data : new byte[][]{text, binary}) {
+				String type = data == text ? "text" : "binary";
+				long begin = System.nanoTime();
+				byte[] encoded = IOUtils.toByteArray(ContentCodec.encode(new ByteArrayInputStream(data), compression));
+				long encodeTime = System.nanoTime() - begin;
+
+				begin = System.nanoTime();
+				IOUtils.copyLarge(ContentCodec.decode(new ByteArrayInputStream(encoded), compression), new NullOutputStream());
+				long decodeTime = System.nanoTime() - begin;
+
+				log.info(String.format("%-8s %-7s ratio: %5.2f, encode: %7.1f MB/s, decode: %7.1f MB/s",
+						compression, type, (double) data.length / encoded.length, throughput(data.length, encodeTime),
+						throughput(data.length, decodeTime)));
+			}
+		}
+	}
+
+	private static byte[] decode(byte[] encoded, String compression) throws IOException {
+		InputStream is = ContentCodec.decode(new ByteArrayInputStream(encoded), compression);
+
+		try {
+			return IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	private static double throughput(long bytes, long nanos) {
+		return (bytes / 1024.0 / 1024.0) / (nanos / 1e9);
+	}
+}